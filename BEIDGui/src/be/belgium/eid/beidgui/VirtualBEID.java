@@ -6,6 +6,7 @@ package be.belgium.eid.beidgui;
 
 import be.belgium.eid.eidcommon.ByteConverter;
 import be.belgium.eid.eidlib.BeID;
+import be.belgium.eid.eidlib.CardSnapshot;
 import be.belgium.eid.objects.IDAddress;
 import be.belgium.eid.objects.IDData;
 import be.belgium.eid.objects.IDPhoto;
@@ -96,29 +97,22 @@ public class VirtualBEID implements Printable {
     public void reload(BeID eID, JProgressBar progressBar, 
 	    boolean verifyOCSP, boolean verifyCRL) {
 	try {
-	    // Fetch all the data
+	    // Fetch all the data at once
 	    progressBar.setValue(10);
-	    progressBar.setString("Reading identity...");
+	    progressBar.setString("Reading card...");
 
-	    fData = eID.getIDData();
-	    progressBar.setValue(20);
-	    progressBar.setString("Reading address...");
-
-	    fAddr = eID.getIDAddress();
-	    progressBar.setValue(40);
-	    progressBar.setString("Reading version information...");
-
-	    fVersionInfo = eID.getIDVersionInformation();
-	    progressBar.setValue(50);
-	    progressBar.setString("Reading picture...");
-	    
-	    fPhoto = eID.getIDPhoto();
+	    final CardSnapshot snapshot = eID.readAll();
+	    fData = snapshot.getIDData();
+	    fAddr = snapshot.getIDAddress();
+	    fVersionInfo = snapshot.getIDVersionInformation();
+	    fPhoto = snapshot.getIDPhoto();
+	    fCertificateChain = snapshot.getCertificateChain();
 	    progressBar.setValue(60);
-	    progressBar.setString("Reading certificates...");
+	    progressBar.setString("Verifying certificates...");
 	    
-	    fCertificateChain = eID.getCertificateChain();
 	    if (verifyCRL) {
-		eID.verifyCRL(fCertificateChain, eID.getNationalRegisterCertificate());
+		eID.verifyCRL(fCertificateChain, 
+			snapshot.getNationalRegisterCertificate());
 	    }
 	    if (verifyOCSP) {
 		eID.verifyOCSP(fCertificateChain);
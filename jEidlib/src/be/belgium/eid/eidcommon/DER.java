@@ -0,0 +1,194 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidcommon;
+
+/**
+ * The DER class performs operations on data encoded according to the
+ * <b>Distinguished Encoding Rules</b> of ASN.1. Certificates and most of the
+ * PKCS#15 structures on the eID card are DER encoded: every element consists
+ * of a tag, the length of the contents and the contents themselves, which can
+ * in turn be a sequence of elements. Contrary to the
+ * {@link be.belgium.eid.eidcommon.TLV} class, the methods of this class only
+ * look at the headers of the elements and never copy the contents, so that
+ * they can be used on the first block of a file that is still being read. <br />
+ * All methods work on a range of a byte array and return -1 when the range
+ * doesn't contain a complete and valid header.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class DER {
+
+	/** Contains the tag of a SEQUENCE element */
+	public final static int fgSEQUENCE = 0x30;
+
+	/**
+	 * Returns the length of the header (tag and length bytes) of the element
+	 * that starts at the given offset.
+	 * 
+	 * @param data
+	 *            contains the encoded element
+	 * @param offset
+	 *            is the offset of the element
+	 * @param end
+	 *            is the offset right after the last available byte
+	 * @return the length of the header or -1 if the header is incomplete or
+	 *         invalid
+	 */
+	public static int getHeaderLength(final byte[] data, final int offset,
+			final int end) {
+		final int tagLength = getTagLength(data, offset, end);
+		if ((tagLength < 0) || (offset + tagLength >= end)) {
+			return -1;
+		}
+
+		final int first = data[offset + tagLength] & 0xFF;
+		final int headerLength = tagLength + 1
+				+ (((first & 0x80) == 0) ? 0 : (first & 0x7F));
+		if ((first == 0x80) || (offset + headerLength > end)) {
+			// Indefinite lengths are not allowed in DER
+			return -1;
+		}
+
+		return headerLength;
+	}
+
+	/**
+	 * Returns the length of the contents of the element that starts at the
+	 * given offset. Lengths that are not encoded in the shortest possible way
+	 * are rejected.
+	 * 
+	 * @param data
+	 *            contains the encoded element
+	 * @param offset
+	 *            is the offset of the element
+	 * @param end
+	 *            is the offset right after the last available byte
+	 * @return the length of the contents or -1 if the header is incomplete or
+	 *         invalid
+	 */
+	public static int getContentLength(final byte[] data, final int offset,
+			final int end) {
+		final int headerLength = getHeaderLength(data, offset, end);
+		if (headerLength < 0) {
+			return -1;
+		}
+
+		// Short form
+		final int lengthOffset = offset + getTagLength(data, offset, end);
+		final int first = data[lengthOffset] & 0xFF;
+		if ((first & 0x80) == 0) {
+			return first;
+		}
+
+		// Long form, without leading zeros
+		final int noLengthBytes = first & 0x7F;
+		if ((noLengthBytes > 3) || (data[lengthOffset + 1] == 0)) {
+			return -1;
+		}
+		int length = 0;
+		for (int i = 1; i <= noLengthBytes; i++) {
+			length = (length << 8) | (data[lengthOffset + i] & 0xFF);
+		}
+
+		// Short lengths have to use the short form
+		return (length < 0x80) ? -1 : length;
+	}
+
+	/**
+	 * Returns the total length (header and contents) of the element that
+	 * starts at the given offset. The contents don't need to be available.
+	 * 
+	 * @param data
+	 *            contains the encoded element
+	 * @param offset
+	 *            is the offset of the element
+	 * @param end
+	 *            is the offset right after the last available byte
+	 * @return the length of the element or -1 if the header is incomplete or
+	 *         invalid
+	 */
+	public static int getEncodedLength(final byte[] data, final int offset,
+			final int end) {
+		final int contentLength = getContentLength(data, offset, end);
+		if (contentLength < 0) {
+			return -1;
+		}
+
+		return getHeaderLength(data, offset, end) + contentLength;
+	}
+
+	/**
+	 * Searches the element with the given single byte tag among the elements
+	 * that follow each other in the given range, e.g. the contents of a
+	 * SEQUENCE.
+	 * 
+	 * @param data
+	 *            contains the encoded elements
+	 * @param offset
+	 *            is the offset of the first element
+	 * @param end
+	 *            is the offset right after the last element
+	 * @param tag
+	 *            is the tag to look for
+	 * @return the offset of the element or -1 if there is no complete element
+	 *         with the given tag
+	 */
+	public static int findElement(final byte[] data, final int offset,
+			final int end, final int tag) {
+		int i = offset;
+		while (i < end) {
+			final int length = getEncodedLength(data, i, end);
+			if ((length < 0) || (i + length > end)) {
+				return -1;
+			}
+			if ((data[i] & 0xFF) == tag) {
+				return i;
+			}
+			i += length;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the length of the tag of the element that starts at the given
+	 * offset, or -1 if the tag is incomplete.
+	 */
+	private static int getTagLength(final byte[] data, final int offset,
+			final int end) {
+		if (offset >= end) {
+			return -1;
+		}
+
+		// Tags with number 31 continue in the next bytes
+		int i = offset + 1;
+		if ((data[offset] & 0x1F) == 0x1F) {
+			while ((i < end) && ((data[i] & 0x80) != 0)) {
+				i++;
+			}
+			i++;
+		}
+
+		return (i <= end) ? i - offset : -1;
+	}
+}
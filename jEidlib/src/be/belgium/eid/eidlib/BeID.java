@@ -23,6 +23,7 @@ package be.belgium.eid.eidlib;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -32,40 +33,56 @@ import java.security.SignatureException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509CRL;
-import java.security.cert.X509Certificate;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
 
 import be.belgium.eid.eidcommon.HTTPFileDownload;
-import be.belgium.eid.event.CardAlivePromptTask;
+import be.belgium.eid.event.CardEventDispatcher;
 import be.belgium.eid.event.CardListener;
+import be.belgium.eid.event.CardMonitor;
+import be.belgium.eid.exceptions.BufferTooSmallException;
+import be.belgium.eid.exceptions.CardNotFoundException;
 import be.belgium.eid.exceptions.EIDException;
 import be.belgium.eid.exceptions.HashVerificationException;
 import be.belgium.eid.exceptions.InvalidSWException;
+import be.belgium.eid.exceptions.NoReadersFoundException;
+import be.belgium.eid.exceptions.OperationAbortedException;
 import be.belgium.eid.exceptions.RootVerificationException;
 import be.belgium.eid.exceptions.SignatureVerificationException;
+import be.belgium.eid.exceptions.TagNotFoundException;
 import be.belgium.eid.objects.IDAddress;
 import be.belgium.eid.objects.IDData;
 import be.belgium.eid.objects.IDPhoto;
 import be.belgium.eid.objects.IDTokenInfo;
 import be.belgium.eid.objects.IDVersion;
+import be.belgium.eid.security.AuthenticationCertificate;
+import be.belgium.eid.security.CACertificate;
 import be.belgium.eid.security.Certificate;
 import be.belgium.eid.security.CertificateChain;
 import be.belgium.eid.security.CertificateStatus;
-import be.belgium.eid.security.HardCodedRootCertificate;
-import be.belgium.eid.security.HardCodedRootCertificateV2;
+import be.belgium.eid.security.KnownCertificateRegistry;
 import be.belgium.eid.security.OCSPClient;
 import be.belgium.eid.security.RNCertificate;
+import be.belgium.eid.security.RootCertificate;
+import be.belgium.eid.security.SignatureCertificate;
+import be.belgium.eid.security.TrustAnchorRegistry;
 
 /**
  * The beID class is the main interface to perform operations on the Belgian eID
  * card and to perform verification, sign documents, etc... . This interface
  * should be used when trying to perform high-level operations in your own
  * system. Every operation connects to the smart card if not yet connected
- * before performing the operation itself.
+ * before performing the operation itself. The data read and verified is kept
+ * until the card is disconnected or removed, so asking for it again doesn't
+ * communicate with the card.
  * 
  * TODO Check SW's after every execution of transmitAPDU. Perhaps check the SW
  * there and throw the exception
@@ -75,28 +92,84 @@ import be.belgium.eid.security.RNCertificate;
  */
 public class BeID extends SmartCard {
 
+	/**
+	 * A card operation is an operation of this class that can be run
+	 * asynchronously.
+	 */
+	private interface CardOperation<T> {
+
+		/**
+		 * Performs the operation.
+		 * 
+		 * @return the result of the operation
+		 * @throws EIDException
+		 *             when the operation couldn't be performed successfully
+		 */
+		T perform() throws EIDException;
+	}
+
 	/** Contains the types of signatures */
 	public enum SignatureType {
 		AUTHENTICATIONSIG, NONREPUDIATIONSIG
 	};
 
 	/** Indicates whether test cards with an invalid root are enabled */
-	private boolean fEnableTestCard;
+	private final boolean fEnableTestCard;
 
 	/**
 	 * Contains the name of the smart card reader to connect with, leave empty
 	 * to connect with the first available smart card reader
 	 */
-	private String fName;
+	private final String fName;
+
+	/**
+	 * Contains the files and verified objects read from the connected card,
+	 * cleared when the card is disconnected or can't be held anymore
+	 */
+	private final CardCache fCache = new CardCache();
+
+	/** Contains the store of the snapshots of cards read before, if any */
+	private volatile SnapshotStore fSnapshotStore = null;
+
+	/** Contains the accepted root certificates, null for the default ones */
+	private volatile TrustAnchorRegistry fTrustAnchors = null;
+
+	/**
+	 * Contains the known root and CA certificates that don't need to be read
+	 * in full, null for the default ones
+	 */
+	private volatile KnownCertificateRegistry fKnownCertificates = null;
 
-	/** Contains the listener when the card is inserted or removed */
-	private CardListener fCardListener = null;
+	/**
+	 * Indicates whether only the first block of the known root and CA
+	 * certificates is read
+	 */
+	private volatile boolean fKnownCertificateReads = false;
+
+	/** Contains the listeners when the card is inserted or removed */
+	private CardEventDispatcher fCardEventDispatcher = new CardEventDispatcher();
+
+	/**
+	 * Contains the thread that monitors the smart card readers for the card
+	 * listeners, null when there are none.
+	 */
+	private CardMonitor fCardListenThread = null;
+
+	/** Contains what is read as soon as the card listener connects a card */
+	private volatile PrefetchPolicy fPrefetchPolicy = PrefetchPolicy.NONE;
 
 	/**
-	 * Contains the thread in which the card listener is prompting for the
-	 * presence of a smart card.
+	 * Contains the scheduler that runs all asynchronous operations, chosen by
+	 * the first one, null until then
 	 */
-	private CardAlivePromptTask fCardListenThread;
+	private ReaderScheduler fScheduler = null;
+
+	/** Contains the priority of the asynchronous operations */
+	private volatile OperationPriority fOperationPriority = OperationPriority.NORMAL;
+
+	/** Contains the read started by the last prefetch */
+	private volatile CompletableFuture<Void> fPrefetch = CompletableFuture
+			.completedFuture(null);
 
 	/**
 	 * Sets up the requirements needed for a valid functioning. The system
@@ -153,6 +226,91 @@ public class BeID extends SmartCard {
 		}
 	}
 
+	/**
+	 * Connects the system to the smart card reader with the name given at
+	 * construction, or to the first compatible smart card reader when no name
+	 * was given. If the card was already connected to the system nothing will
+	 * be done.
+	 * 
+	 * @throws NoReadersFoundException
+	 *             when no card readers were found on the current device
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	@Override
+	public void connectCard() throws CardException, NoReadersFoundException {
+		if ("".equals(fName)) {
+			super.connectCard();
+		} else {
+			super.connectCard(fName);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see be.belgium.eid.eidlib.SmartCard#disconnect()
+	 */
+	@Override
+	public void disconnect() throws CardException {
+		fCache.clear();
+		super.disconnect();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see be.belgium.eid.eidlib.SmartCard#beginTransaction()
+	 */
+	@Override
+	public void beginTransaction() throws CardNotFoundException, CardException {
+		try {
+			super.beginTransaction();
+		} catch (OperationAbortedException e) {
+			// Only waited for the card, which says nothing about the card
+			throw e;
+		} catch (CardException e) {
+			// The exclusive access fails once the card has been removed or
+			// replaced, so the cached contents may be of another card
+			fCache.clear();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads a file from the smart card, or returns its contents when it has
+	 * been read before from the same card.
+	 * 
+	 * @param fileID
+	 *            is the identifier for the file to read
+	 * @param maxOutputLength
+	 *            is the maximum length of the output returned by the reader
+	 * @return the contents of the file
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset, it could also be that no connection with the smart
+	 *             card has been made yet
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	@Override
+	public byte[] readFile(final byte[] fileID, final int maxOutputLength)
+			throws CardNotFoundException, CardException {
+		// Hold the card, which proves that it is still the cached one
+		this.beginTransaction();
+		try {
+			byte[] contents = fCache.getFile(fileID, maxOutputLength);
+			if (contents == null) {
+				contents = super.readFile(fileID, maxOutputLength);
+				fCache.putFile(fileID, maxOutputLength, contents);
+			}
+
+			return contents;
+		} finally {
+			this.endTransaction();
+		}
+	}
+
 	/**
 	 * Returns the ID information from the card currently inserted in the smart
 	 * card reader. This data includes the personal information and some ID
@@ -164,9 +322,23 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public IDData getIDData() throws EIDException {
+		// Return the identity data read before from the same card
+		final IDData cached = getCached(IDData.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final IDData prefetched = fCache.getObject(IDData.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
 			// Read data and signature of ID
 			byte[] readData;
@@ -176,18 +348,17 @@ public class BeID extends SmartCard {
 			final byte[] signatureFileToRead = { IDData.fgDFID[0],
 					IDData.fgDFID[1], IDData.fgDataTag, IDData.fgDataTagIDSIG };
 
-			readData = super.readFile(fileToRead, IDData.fgMAX_RAW_LEN);
-			readSignatureData = super.readFile(signatureFileToRead,
+			readData = this.readFile(fileToRead, IDData.fgMAX_RAW_LEN);
+			readSignatureData = this.readFile(signatureFileToRead,
 					IDData.fgMAX_SIGNATURE_LEN);
 
 			// Verify the root and the signature
 			if (verifyRoot()) {
-				if (verifyRNSignature(readData, readSignatureData)) {
-					// Return read identity data
-					return IDData.parse(readData);
-				} else {
-					throw new SignatureVerificationException("ID");
-				}
+				final IDData data = parseIDData(this
+						.getNationalRegisterCertificate(), readData,
+						readSignatureData);
+				fCache.putObject(IDData.class, data);
+				return data;
 				// } else {
 				// throw new RootVerificationException();
 			} else {
@@ -198,6 +369,8 @@ public class BeID extends SmartCard {
 			throw e;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
@@ -211,9 +384,23 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public IDAddress getIDAddress() throws EIDException {
+		// Return the address read before from the same card
+		final IDAddress cached = getCached(IDAddress.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final IDAddress prefetched = fCache.getObject(IDAddress.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
 			// Read the address data, the ID signature and the address signature
 			byte[] readDataRaw;
@@ -228,37 +415,19 @@ public class BeID extends SmartCard {
 					IDAddress.fgDFID[1], IDAddress.fgDataTag,
 					IDAddress.fgDataTagADDRSIG };
 
-			readIDSignature = super.readFile(idSigFileToRead,
+			readIDSignature = this.readFile(idSigFileToRead,
 					IDAddress.fgMAX_SIGNATURE_LEN);
-			readAddrSignature = super.readFile(addrSigFileToRead,
+			readAddrSignature = this.readFile(addrSigFileToRead,
 					IDAddress.fgMAX_SIGNATURE_LEN);
-			readDataRaw = super.readFile(fileToRead, IDAddress.fgMAX_RAW_LEN);
-
-			// Trim trailing zeroes of read data
-			int indexLastNonZero = -1;
-			for (int i = readDataRaw.length - 1; i >= 0; i--) {
-				if (readDataRaw[i] != 0) {
-					indexLastNonZero = i;
-					break;
-				}
-			}
-			final byte[] readData = new byte[indexLastNonZero + 1];
-			System.arraycopy(readDataRaw, 0, readData, 0, indexLastNonZero + 1);
-
-			// Append the ID signature
-			byte[] fullData = new byte[readData.length + readIDSignature.length];
-			System.arraycopy(readData, 0, fullData, 0, readData.length);
-			System.arraycopy(readIDSignature, 0, fullData, readData.length,
-					readIDSignature.length);
+			readDataRaw = this.readFile(fileToRead, IDAddress.fgMAX_RAW_LEN);
 
 			// Verify the root and the signature
 			if (verifyRoot()) {
-				if (verifyRNSignature(fullData, readAddrSignature)) {
-					// Return read address data
-					return IDAddress.parse(readData);
-				} else {
-					throw new SignatureVerificationException("Address");
-				}
+				final IDAddress address = parseIDAddress(this
+						.getNationalRegisterCertificate(), readDataRaw,
+						readIDSignature, readAddrSignature);
+				fCache.putObject(IDAddress.class, address);
+				return address;
 			} else {
 				throw new RootVerificationException();
 			}
@@ -267,6 +436,8 @@ public class BeID extends SmartCard {
 			throw e;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
@@ -280,22 +451,37 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public IDPhoto getIDPhoto() throws EIDException {
+		// Return the photo read before from the same card
+		final IDPhoto cached = getCached(IDPhoto.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final IDPhoto prefetched = fCache.getObject(IDPhoto.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
 			// Read file
 			byte[] readData = new byte[] {};
 			final byte[] fileToRead = { IDPhoto.fgDFID[0], IDPhoto.fgDFID[1],
 					IDPhoto.fgDataTag, IDPhoto.fgDataTagPHOTO };
 
-			readData = super.readFile(fileToRead, IDPhoto.fgMAX_RAW_LEN);
+			readData = this.readFile(fileToRead, IDPhoto.fgMAX_RAW_LEN);
 
 			// Parse data and verify whether correct root and hash
 			final IDPhoto photo = IDPhoto.parse(readData);
 			// Verify the root and the signature
 			if (verifyRoot()) {
 				if (photo.verifyHash(this.getIDData().getHashPhoto())) {
+					fCache.putObject(IDPhoto.class, photo);
 					return photo;
 				} else {
 					throw new HashVerificationException("Photo");
@@ -308,6 +494,8 @@ public class BeID extends SmartCard {
 			throw e;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
@@ -320,9 +508,23 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public IDVersion getIDVersionInformation() throws EIDException {
+		// Return the version information read before from the same card
+		final IDVersion cached = getCached(IDVersion.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final IDVersion prefetched = fCache.getObject(IDVersion.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
 			// Read token information
 			byte[] readData = new byte[] {};
@@ -330,12 +532,17 @@ public class BeID extends SmartCard {
 					IDTokenInfo.fgDFCert[1], IDTokenInfo.fgTokenInfo[0],
 					IDTokenInfo.fgTokenInfo[1] };
 
-			readData = super.readFile(fileToRead, IDTokenInfo.fgOFFSET + 4);
+			readData = this.readFile(fileToRead, IDTokenInfo.fgOFFSET + 4);
 
 			// Return data
-			return IDVersion.parse(super.getCardData(), readData);
+			final IDVersion version = IDVersion.parse(super.getCardData(),
+					readData);
+			fCache.putObject(IDVersion.class, version);
+			return version;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
@@ -348,13 +555,34 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public CertificateChain getCertificateChain() throws EIDException {
+		// Return the certificate chain read before from the same card
+		final CertificateChain cached = getCached(CertificateChain.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final CertificateChain prefetched = fCache.getObject(CertificateChain.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
-			return new CertificateChain(this);
+			final CertificateChain chain = new CertificateChain(this,
+					fKnownCertificateReads ? getKnownCertificateRegistry()
+							: null);
+			learnCertificates(chain);
+			fCache.putObject(CertificateChain.class, chain);
+			return chain;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
@@ -367,18 +595,254 @@ public class BeID extends SmartCard {
 	 *             cause of the problem contains a more detailed description
 	 */
 	public RNCertificate getNationalRegisterCertificate() throws EIDException {
+		// Return the certificate read before from the same card
+		final RNCertificate cached = getCached(RNCertificate.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final RNCertificate prefetched = fCache.getObject(RNCertificate.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
 
 			final RNCertificate rn = new RNCertificate(this);
 			rn.verify();
+			fCache.putObject(RNCertificate.class, rn);
 			return rn;
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
+		}
+	}
+
+	/**
+	 * Reads and verifies everything on the currently inserted card at once:
+	 * the identity, address, photo, version information and certificates.
+	 * Every file is read exactly once while the card is held exclusively, the
+	 * files of one directory one after the other so that they are selected by
+	 * their short identifier. This is considerably faster than calling the
+	 * separate getters one after another.
+	 * 
+	 * When a {@link be.belgium.eid.eidlib.SnapshotStore snapshot store} is
+	 * set, only the card data and the identity and address signatures are
+	 * read from a card of which an up to date snapshot is stored. The rest is
+	 * taken from the store and verified again. Snapshots of other cards are
+	 * stored once read.
+	 * 
+	 * @return the snapshot of the card
+	 * @throws EIDException
+	 *             when the operation couldn't be performed successfully, the
+	 *             cause of the problem contains a more detailed description
+	 */
+	public CardSnapshot readAll() throws EIDException {
+		// Return the snapshot read before from the same card
+		final CardSnapshot cached = getCached(CardSnapshot.class);
+		if (cached != null) {
+			return cached;
+		}
+
+		CardSession session = null;
+		try {
+			// Connect if not yet connected and hold the card until done
+			this.connectCard();
+			session = this.openSession();
+
+			// A prefetch may have read it while the card was held
+			final CardSnapshot prefetched = fCache.getObject(CardSnapshot.class);
+			if (prefetched != null) {
+				return prefetched;
+			}
+
+			// Fetch the card data before selecting any file
+			final byte[] cardData = super.getCardData();
+
+			// Read the signatures first, they tell whether a stored snapshot
+			// is up to date
+			final byte[] idSignature = this.readFile(new byte[] {
+					IDData.fgDFID[0], IDData.fgDFID[1], IDData.fgDataTag,
+					IDData.fgDataTagIDSIG }, IDData.fgMAX_SIGNATURE_LEN);
+			final byte[] addressSignature = this.readFile(new byte[] {
+					IDAddress.fgDFID[0], IDAddress.fgDFID[1],
+					IDAddress.fgDataTag, IDAddress.fgDataTagADDRSIG },
+					IDAddress.fgMAX_SIGNATURE_LEN);
+			final SnapshotStore store = fSnapshotStore;
+			byte[][] files = null;
+			if (store != null) {
+				files = loadSnapshot(store, cardData, idSignature,
+						addressSignature);
+			}
+			final boolean stored = (files != null);
+
+			if (!stored) {
+				files = new byte[SnapshotStore.fgFILE_COUNT][];
+				files[SnapshotStore.fgCARD_DATA] = cardData;
+				files[SnapshotStore.fgID_SIGNATURE] = idSignature;
+				files[SnapshotStore.fgADDRESS_SIGNATURE] = addressSignature;
+
+				// Read the rest of the identity directory
+				files[SnapshotStore.fgID] = this.readFile(new byte[] {
+						IDData.fgDFID[0], IDData.fgDFID[1], IDData.fgDataTag,
+						IDData.fgDataTagID }, IDData.fgMAX_RAW_LEN);
+				files[SnapshotStore.fgADDRESS] = this.readFile(new byte[] {
+						IDAddress.fgDFID[0], IDAddress.fgDFID[1],
+						IDAddress.fgDataTag, IDAddress.fgDataTagADDR },
+						IDAddress.fgMAX_RAW_LEN);
+				files[SnapshotStore.fgPHOTO] = this.readFile(new byte[] {
+						IDPhoto.fgDFID[0], IDPhoto.fgDFID[1],
+						IDPhoto.fgDataTag, IDPhoto.fgDataTagPHOTO },
+						IDPhoto.fgMAX_RAW_LEN);
+
+				// Read the certificates directory
+				files[SnapshotStore.fgTOKEN_INFO] = this.readFile(new byte[] {
+						IDTokenInfo.fgDFCert[0], IDTokenInfo.fgDFCert[1],
+						IDTokenInfo.fgTokenInfo[0],
+						IDTokenInfo.fgTokenInfo[1] }, IDTokenInfo.fgOFFSET + 4);
+				files[SnapshotStore.fgAUTH] = readCertificate(
+						AuthenticationCertificate.fgAuth);
+				files[SnapshotStore.fgSIG] = readCertificate(
+						SignatureCertificate.fgSig);
+				files[SnapshotStore.fgCA] = readKnownCertificate(
+						CACertificate.fgCA);
+				files[SnapshotStore.fgROOT] = readKnownCertificate(
+						RootCertificate.fgRoot);
+				files[SnapshotStore.fgRN] = readCertificate(
+						RNCertificate.fgRN);
+			}
+
+			// All files are read, the card isn't needed anymore
+			closeSession(session);
+			session = null;
+
+			final CardSnapshot snapshot = createSnapshot(files);
+			if ((store != null) && !stored) {
+				saveSnapshot(store, snapshot);
+			}
+
+			// Every getter can answer from the snapshot from now on
+			fCache.putObject(IDData.class, snapshot.getIDData());
+			fCache.putObject(IDAddress.class, snapshot.getIDAddress());
+			fCache.putObject(IDPhoto.class, snapshot.getIDPhoto());
+			fCache.putObject(IDVersion.class, snapshot
+					.getIDVersionInformation());
+			fCache.putObject(CertificateChain.class, snapshot
+					.getCertificateChain());
+			fCache.putObject(RNCertificate.class, snapshot
+					.getNationalRegisterCertificate());
+			fCache.putObject(CardSnapshot.class, snapshot);
+			return snapshot;
+		} catch (Exception e) {
+			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
+	/**
+	 * Sets the store in which snapshots of the cards read by
+	 * {@link #readAll()} are kept, so that returning cards can be read
+	 * faster. The store is shared by all instances that are given the same
+	 * store.
+	 * 
+	 * @param store
+	 *            is the store to use, or null to disable it
+	 */
+	public void setSnapshotStore(final SnapshotStore store) {
+		fSnapshotStore = store;
+	}
+
+	/**
+	 * Returns the store in which snapshots of the cards read are kept.
+	 * 
+	 * @return the store, or null when disabled
+	 */
+	public SnapshotStore getSnapshotStore() {
+		return fSnapshotStore;
+	}
+
+	/**
+	 * Sets the root certificates accepted at the top of the certificate chain
+	 * of the cards.
+	 * 
+	 * @param registry
+	 *            is the registry of the accepted roots, or null to use
+	 *            {@link TrustAnchorRegistry#getDefault()}
+	 */
+	public void setTrustAnchorRegistry(final TrustAnchorRegistry registry) {
+		fTrustAnchors = registry;
+	}
+
+	/**
+	 * Returns the root certificates accepted at the top of the certificate
+	 * chain of the cards.
+	 * 
+	 * @return the registry of the accepted roots
+	 */
+	public TrustAnchorRegistry getTrustAnchorRegistry() {
+		final TrustAnchorRegistry registry = fTrustAnchors;
+		return (registry != null) ? registry : TrustAnchorRegistry
+				.getDefault();
+	}
+
+	/**
+	 * Sets the root and CA certificates that are known, so that only the
+	 * first block of their files is read from the cards that have them when
+	 * {@link #setKnownCertificateReads(boolean)} is enabled. The root and CA
+	 * certificates of the cards of which the root is accepted and the chain
+	 * is valid are added to it.
+	 * 
+	 * @param registry
+	 *            is the registry of the known certificates, or null to use
+	 *            {@link KnownCertificateRegistry#getDefault()}
+	 */
+	public void setKnownCertificateRegistry(
+			final KnownCertificateRegistry registry) {
+		fKnownCertificates = registry;
+	}
+
+	/**
+	 * Returns the root and CA certificates that are known.
+	 * 
+	 * @return the registry of the known certificates
+	 */
+	public KnownCertificateRegistry getKnownCertificateRegistry() {
+		final KnownCertificateRegistry registry = fKnownCertificates;
+		return (registry != null) ? registry : KnownCertificateRegistry
+				.getDefault();
+	}
+
+	/**
+	 * Sets whether only the first block of the known root and CA certificates
+	 * is read from the card, taking the rest from the registry of known
+	 * certificates. Disabled by default, so that all certificates are read in
+	 * full and exactly as they are stored on the card.
+	 * 
+	 * @param known
+	 *            indicates whether to read the known certificates from the
+	 *            registry of known certificates
+	 */
+	public void setKnownCertificateReads(final boolean known) {
+		fKnownCertificateReads = known;
+	}
+
+	/**
+	 * Indicates whether only the first block of the known root and CA
+	 * certificates is read from the card.
+	 * 
+	 * @return whether the known certificates are read from the registry
+	 */
+	public boolean isKnownCertificateReads() {
+		return fKnownCertificateReads;
+	}
+
 	/**
 	 * Generates a signature for the given data. This signature is calculated on
 	 * the SHA1 hash of the given data. The signature can later be verified by
@@ -402,9 +866,11 @@ public class BeID extends SmartCard {
 	 */
 	public byte[] generateSignature(byte[] data, String pinCode,
 			SignatureType sigType) throws EIDException {
+		CardSession session = null;
 		try {
-			// Connect if not yet connected
+			// Connect if not yet connected and hold the card until done
 			this.connectCard();
+			session = this.openSession();
 
 			MessageDigest md = MessageDigest.getInstance("SHA1");
 			md.update(data);
@@ -441,9 +907,150 @@ public class BeID extends SmartCard {
 			}
 		} catch (Exception e) {
 			throw new EIDException(e);
+		} finally {
+			closeSession(session);
 		}
 	}
 
+	/**
+	 * Returns the ID information asynchronously, see {@link #getIDData()}.
+	 * Like all asynchronous operations, it runs on the single thread of the
+	 * reader with the priority of this instance, after the operations of the
+	 * same or a higher priority submitted before, so that the caller isn't
+	 * blocked while the card is read. A caller holding a
+	 * {@link be.belgium.eid.eidlib.CardSession session} must not wait for the
+	 * result, since the operation can't access the card until the session is
+	 * closed. Cancelling the future, or completing it otherwise such as with
+	 * {@link CompletableFuture#orTimeout(long, java.util.concurrent.TimeUnit)},
+	 * aborts the operation before the next command it sends to the card.
+	 * 
+	 * @return the future ID information, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<IDData> getIDDataAsync() {
+		return submit(this::getIDData);
+	}
+
+	/**
+	 * Returns the address asynchronously, see {@link #getIDAddress()}.
+	 * 
+	 * @return the future address, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<IDAddress> getIDAddressAsync() {
+		return submit(this::getIDAddress);
+	}
+
+	/**
+	 * Returns the photo asynchronously, see {@link #getIDPhoto()}.
+	 * 
+	 * @return the future photo, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<IDPhoto> getIDPhotoAsync() {
+		return submit(this::getIDPhoto);
+	}
+
+	/**
+	 * Returns the version information asynchronously, see
+	 * {@link #getIDVersionInformation()}.
+	 * 
+	 * @return the future version information, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<IDVersion> getIDVersionInformationAsync() {
+		return submit(this::getIDVersionInformation);
+	}
+
+	/**
+	 * Returns the certificate chain asynchronously, see
+	 * {@link #getCertificateChain()}.
+	 * 
+	 * @return the future certificate chain, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<CertificateChain> getCertificateChainAsync() {
+		return submit(this::getCertificateChain);
+	}
+
+	/**
+	 * Returns the national register certificate asynchronously, see
+	 * {@link #getNationalRegisterCertificate()}.
+	 * 
+	 * @return the future RN certificate, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<RNCertificate> getNationalRegisterCertificateAsync() {
+		return submit(this::getNationalRegisterCertificate);
+	}
+
+	/**
+	 * Reads everything on the card asynchronously, see {@link #readAll()}.
+	 * 
+	 * @return the future snapshot, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<CardSnapshot> readAllAsync() {
+		return submit(this::readAll);
+	}
+
+	/**
+	 * Generates a signature asynchronously, see
+	 * {@link #generateSignature(byte[], String, SignatureType)}.
+	 * 
+	 * @param data
+	 *            is the data to generate a signature for
+	 * @param pinCode
+	 *            is the PIN code of the card needed to provide secure signing
+	 * @param sigType
+	 *            is the type of signature to use
+	 * @return the future signature, completed exceptionally with an
+	 *         {@link EIDException} when the operation failed
+	 */
+	public CompletableFuture<byte[]> generateSignatureAsync(final byte[] data,
+			final String pinCode, final SignatureType sigType) {
+		// Someone is waiting with the PIN code entered
+		return submit(OperationPriority.INTERACTIVE, () -> generateSignature(
+				data, pinCode, sigType));
+	}
+
+	/**
+	 * Runs the given job on this instance on the thread of the reader with
+	 * the given priority. Operations of a higher priority go ahead of the
+	 * ones waiting, and the file being read for an operation of a lower
+	 * priority is interrupted between two blocks to let them run.
+	 * 
+	 * @param priority
+	 *            is the priority of the job
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job
+	 */
+	public <T> CompletableFuture<T> schedule(final OperationPriority priority,
+			final CardJob<T> job) {
+		return submit(priority, () -> job.run(this));
+	}
+
+	/**
+	 * Sets the priority of the asynchronous operations of this instance,
+	 * apart from signatures which are always interactive.
+	 * 
+	 * @param priority
+	 *            is the priority of the operations from now on
+	 */
+	public void setOperationPriority(final OperationPriority priority) {
+		fOperationPriority = priority;
+	}
+
+	/**
+	 * Returns the priority of the asynchronous operations of this instance.
+	 * 
+	 * @return the priority of the operations
+	 */
+	public OperationPriority getOperationPriority() {
+		return fOperationPriority;
+	}
+
 	/**
 	 * Verifies the signature by verifying the buffer against the signature,
 	 * using the given public key and the algorithm SHA1withRSA.
@@ -527,16 +1134,10 @@ public class BeID extends SmartCard {
 
 			// Verify every certificate if they're not verified yet
 			for (Certificate certif : certifs) {
-				final X509Certificate x509 = certif.getX509Certificate();
-
 				// Fetch the authority access point where to verify the OCSP
-				final String AUHORITY_INFO_ACCESS_OID = "1.3.6.1.5.5.7.1.1";
-				if (x509.getNonCriticalExtensionOIDs().contains(
-						AUHORITY_INFO_ACCESS_OID)) {
-					final String extensionValue = new String(x509
-							.getExtensionValue(AUHORITY_INFO_ACCESS_OID));
-					final String url = extensionValue.substring(extensionValue
-							.lastIndexOf("http://"));
+				final List<String> urls = certif.getView().getOCSPURLs();
+				if (!urls.isEmpty()) {
+					final String url = urls.get(0);
 
 					// Verify via OCSP
 					if (!OCSPClient.processOCSPRequest(certChain
@@ -586,10 +1187,7 @@ public class BeID extends SmartCard {
 
 			if (cert.getStatus().equals(
 					CertificateStatus.BEID_CERTSTATUS_CERT_NOT_VALIDATED)) {
-				if (cert.getX509Certificate().getSubjectX500Principal()
-						.getName().equals(
-								cert.getX509Certificate()
-										.getIssuerX500Principal().getName())) {
+				if (cert.getView().isSelfIssued()) {
 					cert
 							.setStatus(CertificateStatus.BEID_CERTSTATUS_SELF_SIGNED_CERT_IN_CHAIN);
 				} else {
@@ -608,23 +1206,20 @@ public class BeID extends SmartCard {
 
 			// Verify every certificate if they're not verified yet
 			for (Certificate certif : certifs) {
-				final X509Certificate x509 = certif.getX509Certificate();
-
 				// Fetch distribution point with the URL to download the CRL
 				// from
-				final String CRL_DISTRIBUTION_POINTS_OID = "2.5.29.31";
-				final byte[] extCoded = x509
-						.getExtensionValue(CRL_DISTRIBUTION_POINTS_OID);
-
-				final String extensionValue = new String(extCoded);
-				final String url = extensionValue.substring(extensionValue
-						.indexOf("http://"));
-				final String filepath = url.substring(url.lastIndexOf('/') + 1);
+				final List<String> urls = certif.getView().getCRLURLs();
 
 				// Download file
 				boolean fileFound = true;
 				FileInputStream fis = null;
+				String filepath = null;
 				try {
+					if (urls.isEmpty()) {
+						throw new IOException("No CRL distribution point");
+					}
+					final String url = urls.get(0);
+					filepath = url.substring(url.lastIndexOf('/') + 1);
 					HTTPFileDownload.download(url, filepath);
 					fis = new FileInputStream(filepath);
 				} catch (IOException e1) {
@@ -642,7 +1237,7 @@ public class BeID extends SmartCard {
 					final X509CRL crl = (X509CRL) cf.generateCRL(fis);
 
 					// Check revoked
-					if (crl.isRevoked(x509)) {
+					if (crl.isRevoked(certif.getX509Certificate())) {
 						allOk = false;
 						certif
 								.setStatus(CertificateStatus.BEID_CERTSTATUS_CERT_REVOKED);
@@ -688,17 +1283,31 @@ public class BeID extends SmartCard {
 			// true
 			return true;
 		} else {
-			// Verify the root certificate
-		    final Certificate root = getCertificateChain().getRootCert();
-			final Certificate cert = new HardCodedRootCertificate();
-			final Certificate certV2 = new HardCodedRootCertificateV2();
+			return verifyRoot(getCertificateChain().getRootCert());
+		}
+	}
 
-			if (root.getX509Certificate().equals(cert.getX509Certificate()) ||
-			        root.getX509Certificate().equals(certV2.getX509Certificate())) {
+	/**
+	 * Verifies the given root certificate read from the smart card against the
+	 * accepted root certificates, by looking up its fingerprint in the trust
+	 * anchor registry. The status of the certificate is set when it isn't one
+	 * of them.
+	 * 
+	 * @param root
+	 *            is the root certificate read from the card
+	 * @return whether the verification succeeded or not
+	 */
+	private boolean verifyRoot(final Certificate root) {
+		if (fEnableTestCard) {
+			// Test card can't verify signatures correctly so always reply with
+			// true
+			return true;
+		} else {
+			// Verify the root certificate
+			if (getTrustAnchorRegistry().isTrusted(root)) {
 				return true;
 			} else {
-				this.getCertificateChain().getRootCert().setStatus(
-						CertificateStatus.BEID_CERTSTATUS_INVALID_ROOT);
+				root.setStatus(CertificateStatus.BEID_CERTSTATUS_INVALID_ROOT);
 				return false;
 			}
 		}
@@ -709,6 +1318,8 @@ public class BeID extends SmartCard {
 	 * using the given public key and the algorithm SHA1withRSA. This method is
 	 * a helper class for the retrieval of certain types of data.
 	 * 
+	 * @param rnCert
+	 *            is the national register certificate that signed the data
 	 * @param data
 	 *            is the data to verify
 	 * @param signature
@@ -716,9 +1327,6 @@ public class BeID extends SmartCard {
 	 * @return whether the verification succeeded or not
 	 * @throws CertificateException
 	 *             when the instance couldn't be parsed
-	 * @throws EIDException
-	 *             when the operation couldn't be performed successfully, the
-	 *             cause of the problem contains a more detailed description
 	 * @throws IOException
 	 *             is the verification failed because of IO fault
 	 * @throws InvalidKeyException
@@ -728,13 +1336,14 @@ public class BeID extends SmartCard {
 	 * @throws SignatureException
 	 *             when the signature is invalid
 	 */
-	private boolean verifyRNSignature(final byte[] data, final byte[] signature)
-			throws EIDException, CertificateException, IOException,
-			InvalidKeyException, NoSuchAlgorithmException, SignatureException {
+	private boolean verifyRNSignature(final RNCertificate rnCert,
+			final byte[] data, final byte[] signature)
+			throws CertificateException, IOException, InvalidKeyException,
+			NoSuchAlgorithmException, SignatureException {
 		// Verify the RRNDN of the national register certificate if card is no
 		// testcard, then verify the data against the signature using the public
 		// key
-		if (fEnableTestCard || this.getNationalRegisterCertificate().verify()) {
+		if (fEnableTestCard || rnCert.verify()) {
 			// Initialize signature with correct algorithm
 			Signature sig = null;
 			try {
@@ -745,8 +1354,7 @@ public class BeID extends SmartCard {
 			}
 
 			// Fetch public key of correct certificate
-			PublicKey pk = this.getNationalRegisterCertificate()
-					.getX509Certificate().getPublicKey();
+			PublicKey pk = rnCert.getX509Certificate().getPublicKey();
 
 			// Verify signature and return results
 			sig.initVerify(pk);
@@ -758,40 +1366,490 @@ public class BeID extends SmartCard {
 		return false;
 	}
 
+	/**
+	 * Verifies the signature of the national register on the given identity
+	 * file and parses it.
+	 * 
+	 * @param rnCert
+	 *            is the national register certificate
+	 * @param idFile
+	 *            are the contents of the identity file
+	 * @param idSignature
+	 *            are the contents of the identity signature file
+	 * @return the identity data
+	 * @throws SignatureVerificationException
+	 *             when the signature is invalid
+	 * @throws TagNotFoundException
+	 *             when the identity file lacks a tag
+	 * @throws ParseException
+	 *             when a date in the identity file couldn't be parsed
+	 * @throws GeneralSecurityException
+	 *             when the signature couldn't be verified
+	 * @throws IOException
+	 *             when the certificate couldn't be parsed
+	 */
+	private IDData parseIDData(final RNCertificate rnCert,
+			final byte[] idFile, final byte[] idSignature)
+			throws SignatureVerificationException, TagNotFoundException,
+			ParseException, GeneralSecurityException, IOException {
+		if (verifyRNSignature(rnCert, idFile, idSignature)) {
+			// Return read identity data
+			return IDData.parse(idFile);
+		} else {
+			throw new SignatureVerificationException("ID");
+		}
+	}
+
+	/**
+	 * Verifies the signature of the national register on the given address
+	 * file, which signs the address together with the identity signature, and
+	 * parses it.
+	 * 
+	 * @param rnCert
+	 *            is the national register certificate
+	 * @param addressFile
+	 *            are the contents of the address file, padded with zeroes
+	 * @param idSignature
+	 *            are the contents of the identity signature file
+	 * @param addressSignature
+	 *            are the contents of the address signature file
+	 * @return the address
+	 * @throws SignatureVerificationException
+	 *             when the signature is invalid
+	 * @throws TagNotFoundException
+	 *             when the address file lacks a tag
+	 * @throws GeneralSecurityException
+	 *             when the signature couldn't be verified
+	 * @throws IOException
+	 *             when the certificate couldn't be parsed
+	 */
+	private IDAddress parseIDAddress(final RNCertificate rnCert,
+			final byte[] addressFile, final byte[] idSignature,
+			final byte[] addressSignature)
+			throws SignatureVerificationException, TagNotFoundException,
+			GeneralSecurityException, IOException {
+		// Trim trailing zeroes of read data
+		int indexLastNonZero = -1;
+		for (int i = addressFile.length - 1; i >= 0; i--) {
+			if (addressFile[i] != 0) {
+				indexLastNonZero = i;
+				break;
+			}
+		}
+		final byte[] readData = new byte[indexLastNonZero + 1];
+		System.arraycopy(addressFile, 0, readData, 0, indexLastNonZero + 1);
+
+		// Append the ID signature
+		byte[] fullData = new byte[readData.length + idSignature.length];
+		System.arraycopy(readData, 0, fullData, 0, readData.length);
+		System.arraycopy(idSignature, 0, fullData, readData.length,
+				idSignature.length);
+
+		if (verifyRNSignature(rnCert, fullData, addressSignature)) {
+			// Return read address data
+			return IDAddress.parse(readData);
+		} else {
+			throw new SignatureVerificationException("Address");
+		}
+	}
+
+	/**
+	 * Reads the certificate with the given identifier from the certificates
+	 * directory.
+	 * 
+	 * @return the contents of the certificate
+	 */
+	private byte[] readCertificate(final byte[] certificateID)
+			throws CardNotFoundException, CardException {
+		return this.readFile(new byte[] { Certificate.fgDFCert[0],
+				Certificate.fgDFCert[1], certificateID[0], certificateID[1] },
+				Certificate.fgMAX_CERT_LEN);
+	}
+
+	/**
+	 * Reads the root or CA certificate with the given identifier from the
+	 * certificates directory, only its first block when it is a known
+	 * certificate and known certificate reads are enabled.
+	 * 
+	 * @return the contents of the certificate
+	 */
+	private byte[] readKnownCertificate(final byte[] certificateID)
+			throws CardNotFoundException, CardException {
+		if (fKnownCertificateReads) {
+			return getKnownCertificateRegistry().readCertificate(this,
+					certificateID);
+		} else {
+			return readCertificate(certificateID);
+		}
+	}
+
+	/**
+	 * Adds the root and CA certificates of the given chain to the known
+	 * certificates when the root is accepted and the chain is valid, so that
+	 * they are read faster from the next cards.
+	 * 
+	 * @param chain
+	 *            is the validated certificate chain of the card
+	 */
+	private void learnCertificates(final CertificateChain chain) {
+		getKnownCertificateRegistry().addChain(chain,
+				getTrustAnchorRegistry());
+	}
+
+	/**
+	 * Parses and verifies the given files into a snapshot, as read from the
+	 * card or the snapshot store.
+	 * 
+	 * @param files
+	 *            are the files indexed like the constants of the snapshot
+	 *            store
+	 * @return the snapshot
+	 * @throws RootVerificationException
+	 *             when the root certificate isn't a known root
+	 * @throws SignatureVerificationException
+	 *             when the identity or address signature is invalid
+	 * @throws HashVerificationException
+	 *             when the photo doesn't match its hash
+	 * @throws TagNotFoundException
+	 *             when the identity or address file lacks a tag
+	 * @throws ParseException
+	 *             when a date in the identity file couldn't be parsed
+	 * @throws BufferTooSmallException
+	 *             when the card data or token information is too short
+	 * @throws GeneralSecurityException
+	 *             when a certificate or signature couldn't be verified
+	 * @throws IOException
+	 *             when a certificate couldn't be parsed
+	 */
+	private CardSnapshot createSnapshot(final byte[][] files)
+			throws RootVerificationException, SignatureVerificationException,
+			HashVerificationException, TagNotFoundException, ParseException,
+			BufferTooSmallException, GeneralSecurityException, IOException {
+		// Verify the certificates, the root and the signatures
+		final RootCertificate rootCert = new RootCertificate(
+				files[SnapshotStore.fgROOT]);
+		final CACertificate caCert = new CACertificate(
+				files[SnapshotStore.fgCA]);
+		final AuthenticationCertificate authCert = new AuthenticationCertificate(
+				files[SnapshotStore.fgAUTH]);
+		final SignatureCertificate sigCert = new SignatureCertificate(
+				files[SnapshotStore.fgSIG]);
+		final RNCertificate rnCert = new RNCertificate(
+				files[SnapshotStore.fgRN]);
+		final CertificateChain chain = new CertificateChain(rootCert, caCert,
+				authCert, sigCert);
+		// Validate the RN certificate also when the chain isn't valid
+		final boolean certificatesValid = chain.validate()
+				& chain.validate(rnCert);
+		if (!verifyRoot(rootCert)) {
+			throw new RootVerificationException();
+		}
+		learnCertificates(chain);
+		final IDData data = parseIDData(rnCert, files[SnapshotStore.fgID],
+				files[SnapshotStore.fgID_SIGNATURE]);
+		final IDAddress address = parseIDAddress(rnCert,
+				files[SnapshotStore.fgADDRESS],
+				files[SnapshotStore.fgID_SIGNATURE],
+				files[SnapshotStore.fgADDRESS_SIGNATURE]);
+		final IDPhoto photo = IDPhoto.parse(files[SnapshotStore.fgPHOTO]);
+		if (!photo.verifyHash(data.getHashPhoto())) {
+			throw new HashVerificationException("Photo");
+		}
+
+		return new CardSnapshot(data, address, photo, IDVersion.parse(
+				files[SnapshotStore.fgCARD_DATA],
+				files[SnapshotStore.fgTOKEN_INFO]), chain, rnCert,
+				certificatesValid, files[SnapshotStore.fgID],
+				files[SnapshotStore.fgID_SIGNATURE],
+				files[SnapshotStore.fgADDRESS],
+				files[SnapshotStore.fgADDRESS_SIGNATURE],
+				files[SnapshotStore.fgPHOTO],
+				files[SnapshotStore.fgTOKEN_INFO],
+				files[SnapshotStore.fgCARD_DATA]);
+	}
+
+	/**
+	 * Returns the files of the snapshot stored for the card with the given
+	 * card data and signatures. A store that can't be read is treated as if
+	 * nothing was stored, since the card can always be read instead.
+	 * 
+	 * @return the files, or null when no up to date snapshot is stored
+	 */
+	private static byte[][] loadSnapshot(final SnapshotStore store,
+			final byte[] cardData, final byte[] idSignature,
+			final byte[] addressSignature) {
+		try {
+			return store.load(Arrays.copyOf(cardData,
+					IDVersion.fgCHIPNUMBERLENGTH), idSignature,
+					addressSignature);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given snapshot. A failure to store is ignored, the card is
+	 * read again next time.
+	 */
+	private static void saveSnapshot(final SnapshotStore store,
+			final CardSnapshot snapshot) {
+		try {
+			store.save(snapshot);
+		} catch (IOException e) {
+			// Read completely next time
+		}
+	}
+
+	/**
+	 * Runs the given operation on the thread of the reader with the priority
+	 * of this instance.
+	 * 
+	 * @param operation
+	 *            is the operation to run
+	 * @return the future result of the operation
+	 */
+	private <T> CompletableFuture<T> submit(final CardOperation<T> operation) {
+		return submit(fOperationPriority, operation);
+	}
+
+	/**
+	 * Runs the given operation on the thread of the reader with the given
+	 * priority.
+	 * 
+	 * @param priority
+	 *            is the priority of the operation
+	 * @param operation
+	 *            is the operation to run
+	 * @return the future result of the operation
+	 */
+	private <T> CompletableFuture<T> submit(final OperationPriority priority,
+			final CardOperation<T> operation) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		getScheduler().execute(priority, () -> {
+			try {
+				future.complete(performFor(future, operation::perform));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Returns the scheduler of the reader that the operations use: the
+	 * connected reader, or else the reader with the name given at
+	 * construction, or else the reader that would be connected with. It is
+	 * chosen once and kept, so that the operations never run concurrently,
+	 * not even when the first one is scheduled before connecting.
+	 */
+	private synchronized ReaderScheduler getScheduler() {
+		if (fScheduler == null) {
+			String name = fName;
+			try {
+				if (isConnected()) {
+					name = getConnectedReader().getName();
+				} else if ("".equals(name)) {
+					// The first reader is connected with, as in connectCard()
+					final List<CardTerminal> readers = getSmartCardReaders();
+					if (!readers.isEmpty()) {
+						name = readers.get(0).getName();
+					}
+				}
+			} catch (CardNotFoundException e) {
+				// Disconnected meanwhile, use the reader given
+			} catch (CardException e) {
+				// The readers are unavailable, use the reader given
+			}
+			fScheduler = ReaderScheduler.get(name);
+		}
+
+		return fScheduler;
+	}
+
+	/**
+	 * Returns the object of the given type read before from the same card.
+	 * The cache is only used while the card is held exclusively: the
+	 * exclusive access fails once the card has been removed, so holding it
+	 * proves that the card hasn't been replaced by another one since, even
+	 * when no card listener is running. No command is sent to the card.
+	 * 
+	 * @param type
+	 *            is the type of the object
+	 * @return the object, or null when not read yet or the card isn't held
+	 */
+	private <T> T getCached(final Class<T> type) {
+		return isInTransaction() ? fCache.getObject(type) : null;
+	}
+
+	/**
+	 * Closes the given session, if any. A session of which the card has been
+	 * removed in the meantime lost its exclusive access already, so the
+	 * failure to release it is ignored.
+	 * 
+	 * @param session
+	 *            is the session to close, or null
+	 */
+	private void closeSession(final CardSession session) {
+		if (session != null) {
+			try {
+				session.close();
+			} catch (CardException e) {
+				// The exclusive access ended with the removal of the card
+			}
+		}
+	}
+
 	/**
 	 * Enables the prompting for the card being inserted or removed. This
 	 * enables the user to plug in their own actions to execute when the card is
-	 * inserted or removed.
+	 * inserted or removed. Several listeners can be enabled, each of which is
+	 * informed on the executor of the card event dispatcher, so that a slow
+	 * listener doesn't delay the others nor the detection of cards.
 	 * 
 	 * @param cl
 	 *            are the actions to occur when the card is inserted/removed
-	 * @throws IllegalArgumentException
-	 *             when the interval is negative
-	 * 
 	 */
-	public void enableCardListener(final CardListener cl)
-			throws IllegalArgumentException {
-		fCardListener = cl;
-		fCardListenThread = new CardAlivePromptTask(this, fCardListener);
-		fCardListenThread.start();
+	public synchronized void enableCardListener(final CardListener cl) {
+		fCardEventDispatcher.addCardListener(cl);
+		if (fCardListenThread == null) {
+			fCardListenThread = new CardMonitor(this, fCardEventDispatcher) {
+				protected void cardConnected(final CardTerminal terminal) {
+					// Start reading before the listeners hear of the card
+					if (fPrefetchPolicy != PrefetchPolicy.NONE) {
+						prefetch();
+					}
+				}
+			};
+			fCardListenThread.start();
+		}
+	}
 
+	/**
+	 * Stops informing the given listener. The prompting for the card stops
+	 * when no listeners remain.
+	 * 
+	 * @param cl
+	 *            is the listener to remove
+	 */
+	public synchronized void removeCardListener(final CardListener cl) {
+		fCardEventDispatcher.removeCardListener(cl);
+		if (fCardEventDispatcher.getCardListeners().isEmpty()) {
+			disableCardListener();
+		}
 	}
 
 	/**
-	 * Disables the prompting for the card being inserted or removed.
+	 * Disables the prompting for the card being inserted or removed, removing
+	 * all listeners.
 	 */
-	public void disableCardListener() {
-		fCardListener = null;
-		fCardListenThread.stopThread();
+	public synchronized void disableCardListener() {
+		fCardEventDispatcher.removeAllCardListeners();
+		if (fCardListenThread != null) {
+			fCardListenThread.stopThread();
+			fCardListenThread = null;
+		}
 	}
 
 	/**
-	 * Returns the card listener. Returns null if the listening is not enabled.
+	 * Returns the card listener enabled first. Returns null if the listening
+	 * is not enabled.
 	 * 
 	 * @return the card listener
 	 */
 	public CardListener getCardListener() {
-		return fCardListener;
+		final List<CardListener> listeners = getCardListeners();
+		if (listeners.isEmpty()) {
+			return null;
+		} else {
+			return listeners.get(0);
+		}
+	}
+
+	/**
+	 * Returns the card listeners enabled, in the order in which they were.
+	 * 
+	 * @return a list of the card listeners
+	 */
+	public synchronized List<CardListener> getCardListeners() {
+		return fCardEventDispatcher.getCardListeners();
+	}
+
+	/**
+	 * Sets the dispatcher informing the card listeners, which determines the
+	 * executor on which they are informed and the number of events queued for
+	 * each.
+	 * 
+	 * @param dispatcher
+	 *            is the card event dispatcher to use
+	 * @throws IllegalStateException
+	 *             when the prompting for the card is enabled
+	 */
+	public synchronized void setCardEventDispatcher(
+			final CardEventDispatcher dispatcher) throws IllegalStateException {
+		if (fCardListenThread != null) {
+			throw new IllegalStateException(
+					"The card listener is enabled already.");
+		}
+
+		fCardEventDispatcher = dispatcher;
+	}
+
+	/**
+	 * Sets what is read from a card as soon as the card listener connects it.
+	 * The reading happens on the thread of the reader while the application
+	 * is informed of the card. The getters return what has been read, or wait
+	 * for the read in progress. By default, nothing is read in advance.
+	 * 
+	 * @param policy
+	 *            is the prefetch policy to use
+	 */
+	public void setPrefetchPolicy(final PrefetchPolicy policy) {
+		fPrefetchPolicy = policy;
+	}
+
+	/**
+	 * Returns what is read from a card as soon as the card listener connects
+	 * it.
+	 * 
+	 * @return the prefetch policy in use
+	 */
+	public PrefetchPolicy getPrefetchPolicy() {
+		return fPrefetchPolicy;
+	}
+
+	/**
+	 * Starts reading what the prefetch policy prescribes from the connected
+	 * card on the thread of the reader.
+	 * 
+	 * @return the future completed when the read has finished, exceptionally
+	 *         when it failed
+	 */
+	public CompletableFuture<Void> prefetch() {
+		final PrefetchPolicy policy = fPrefetchPolicy;
+		fPrefetch = submit(OperationPriority.BACKGROUND, () -> {
+			policy.prefetch(this);
+			return null;
+		});
+
+		return fPrefetch;
+	}
+
+	/**
+	 * Returns the read started by the last prefetch.
+	 * 
+	 * @return the future completed when the read has finished
+	 */
+	public CompletableFuture<Void> getPrefetch() {
+		return fPrefetch;
+	}
+
+	/**
+	 * Returns the dispatcher informing the card listeners.
+	 * 
+	 * @return the card event dispatcher in use
+	 */
+	public synchronized CardEventDispatcher getCardEventDispatcher() {
+		return fCardEventDispatcher;
 	}
 
 	/*
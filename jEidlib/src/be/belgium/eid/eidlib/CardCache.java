@@ -0,0 +1,148 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+
+/**
+ * The card cache holds the contents of the files read from the connected card
+ * and the objects parsed and verified from them, so that asking for the same
+ * data again doesn't require any communication with the card. The cache
+ * belongs to one connection and is cleared when the card is disconnected or
+ * can't be held exclusively anymore, which happens once it has been removed.
+ * It is only used while the card is held, so that the contents of a card
+ * that has been replaced by another one are never returned.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+final class CardCache {
+
+	/**
+	 * A file entry holds the contents of a file together with the maximum
+	 * length with which it was read.
+	 */
+	private final static class FileEntry {
+
+		/** Contains the contents of the file */
+		private final byte[] fContents;
+
+		/** Contains the maximum length with which the file was read */
+		private final int fMaxLength;
+
+		/**
+		 * Initializes the entry with the given contents and maximum length.
+		 */
+		private FileEntry(final byte[] contents, final int maxLength) {
+			fContents = contents;
+			fMaxLength = maxLength;
+		}
+	}
+
+	/** Contains the files read, indexed by their hexified path */
+	private final Map<String, FileEntry> fFiles = new ConcurrentHashMap<String, FileEntry>();
+
+	/** Contains the parsed objects, indexed by their type */
+	private final Map<Class<?>, Object> fObjects = new ConcurrentHashMap<Class<?>, Object>();
+
+	/**
+	 * Returns the contents of the file with the given path as if it were read
+	 * with the given maximum length, if known.
+	 * 
+	 * @param fileID
+	 *            is the path of the file
+	 * @param maxOutputLength
+	 *            is the maximum length of the contents to return
+	 * @return a copy of the contents, or null when the file or the asked part
+	 *         of it hasn't been read yet
+	 */
+	byte[] getFile(final byte[] fileID, final int maxOutputLength) {
+		final FileEntry entry = fFiles.get(ByteConverter.hexify(fileID));
+		if (entry == null) {
+			return null;
+		}
+
+		// The whole file is known when less than the maximum was returned
+		final int length = entry.fContents.length;
+		if ((length < entry.fMaxLength) || (maxOutputLength <= length)) {
+			return Arrays.copyOf(entry.fContents, Math.min(length,
+					maxOutputLength));
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Remembers the contents of the file with the given path, read with the
+	 * given maximum length.
+	 * 
+	 * @param fileID
+	 *            is the path of the file
+	 * @param maxOutputLength
+	 *            is the maximum length with which the file was read
+	 * @param contents
+	 *            are the contents read, which are copied
+	 */
+	void putFile(final byte[] fileID, final int maxOutputLength,
+			final byte[] contents) {
+		fFiles.put(ByteConverter.hexify(fileID), new FileEntry(contents
+				.clone(), maxOutputLength));
+	}
+
+	/**
+	 * Returns the object of the given type, if known.
+	 * 
+	 * @param type
+	 *            is the type of the object
+	 * @return the object, or null when not known
+	 */
+	<T> T getObject(final Class<T> type) {
+		return type.cast(fObjects.get(type));
+	}
+
+	/**
+	 * Remembers the given object for its type. Nothing is remembered when the
+	 * object is null.
+	 * 
+	 * @param type
+	 *            is the type of the object
+	 * @param object
+	 *            is the object to remember
+	 */
+	<T> void putObject(final Class<T> type, final T object) {
+		if (object != null) {
+			fObjects.put(type, object);
+		}
+	}
+
+	/**
+	 * Forgets all files and objects.
+	 */
+	void clear() {
+		fFiles.clear();
+		fObjects.clear();
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import be.belgium.eid.exceptions.EIDException;
+
+/**
+ * A card job is the work to be done with the card in one of the readers of a
+ * {@link be.belgium.eid.eidlib.ReaderPool reader pool}, such as reading and
+ * processing the data of the card holder.
+ * 
+ * @param <T>
+ *            is the type of the result of the job
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public interface CardJob<T> {
+
+	/**
+	 * Runs the job with the card in the given reader. The job runs on the
+	 * thread of the reader, no other job uses the reader meanwhile.
+	 * 
+	 * @param eID
+	 *            is the eID connected to the reader
+	 * @return the result of the job
+	 * @throws EIDException
+	 *             when the job failed
+	 */
+	T run(BeID eID) throws EIDException;
+}
@@ -0,0 +1,104 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import javax.smartcardio.CardException;
+
+import be.belgium.eid.exceptions.CardNotFoundException;
+
+/**
+ * The card session holds the exclusive access to a connected smart card for
+ * a batch of operations. Without a session every operation, like reading a
+ * file or verifying the PIN code, acquires and releases the exclusive access
+ * on its own, which costs time and allows other applications to interleave
+ * between the operations. A session is opened with
+ * {@link be.belgium.eid.eidlib.SmartCard#openSession()} and is used as
+ * follows: <br />
+ * 
+ * <pre>
+ * eID.connect();
+ * try (CardSession session = eID.openSession()) {
+ * 	final IDData data = eID.getIDData();
+ * 	final IDAddress address = eID.getIDAddress();
+ * }
+ * </pre>
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardSession implements AutoCloseable {
+
+	/** Contains the card that is held exclusively */
+	private final SmartCard fCard;
+
+	/** Indicates whether the session is still open */
+	private boolean fOpen = true;
+
+	/**
+	 * Initializes the session on the given card, of which the transaction has
+	 * begun already.
+	 * 
+	 * @param card
+	 *            is the card that is held exclusively
+	 */
+	CardSession(final SmartCard card) {
+		fCard = card;
+	}
+
+	/**
+	 * Returns the card that is held exclusively by this session.
+	 * 
+	 * @return the card
+	 */
+	public SmartCard getCard() {
+		return fCard;
+	}
+
+	/**
+	 * Indicates whether the session is still open.
+	 * 
+	 * @return whether the session is open
+	 */
+	public synchronized boolean isOpen() {
+		return fOpen;
+	}
+
+	/**
+	 * Closes the session and releases the exclusive access to the card,
+	 * unless an enclosing session still holds it. Closing a session that is
+	 * closed already has no effect, neither has closing a session of a card
+	 * that has been disconnected in the meantime.
+	 * 
+	 * @throws CardException
+	 *             if the exclusive access couldn't be released
+	 */
+	public synchronized void close() throws CardException {
+		if (fOpen) {
+			fOpen = false;
+			try {
+				fCard.endTransaction();
+			} catch (CardNotFoundException e) {
+				// The disconnection released the exclusive access already
+			}
+		}
+	}
+}
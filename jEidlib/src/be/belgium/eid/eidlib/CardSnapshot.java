@@ -0,0 +1,273 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import be.belgium.eid.objects.IDAddress;
+import be.belgium.eid.objects.IDData;
+import be.belgium.eid.objects.IDPhoto;
+import be.belgium.eid.objects.IDVersion;
+import be.belgium.eid.security.CertificateChain;
+import be.belgium.eid.security.RNCertificate;
+
+/**
+ * A card snapshot holds everything that has been read from an eID card in one
+ * go by {@link be.belgium.eid.eidlib.BeID#readAll()}: the verified identity,
+ * address, photo, version information and certificates, together with the raw
+ * contents of the files they were parsed from. The snapshot doesn't change
+ * once it has been taken and remains available after the card has been
+ * removed.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public final class CardSnapshot {
+
+	/** Contains the identity data */
+	private final IDData fIDData;
+
+	/** Contains the address of the holder */
+	private final IDAddress fIDAddress;
+
+	/** Contains the photo of the holder */
+	private final IDPhoto fIDPhoto;
+
+	/** Contains the version information */
+	private final IDVersion fIDVersion;
+
+	/** Contains the certificate chain */
+	private final CertificateChain fCertificateChain;
+
+	/** Contains the national register certificate */
+	private final RNCertificate fRNCertificate;
+
+	/**
+	 * Indicates whether the certificate chain and the national register
+	 * certificate were valid when the snapshot was taken
+	 */
+	private final boolean fCertificatesValid;
+
+	/** Contains the raw contents of the identity file */
+	private final byte[] fIDFile;
+
+	/** Contains the raw contents of the identity signature file */
+	private final byte[] fIDSignature;
+
+	/** Contains the raw contents of the address file */
+	private final byte[] fAddressFile;
+
+	/** Contains the raw contents of the address signature file */
+	private final byte[] fAddressSignature;
+
+	/** Contains the raw contents of the photo file */
+	private final byte[] fPhotoFile;
+
+	/** Contains the raw contents of the token information file */
+	private final byte[] fTokenInfo;
+
+	/** Contains the response to the GET CARD DATA command */
+	private final byte[] fCardData;
+
+	/**
+	 * Initializes the snapshot with the given parsed objects and raw contents.
+	 * The raw contents are copied.
+	 * 
+	 * @param data
+	 *            is the verified identity data
+	 * @param address
+	 *            is the verified address
+	 * @param photo
+	 *            is the verified photo
+	 * @param version
+	 *            is the version information
+	 * @param chain
+	 *            is the certificate chain
+	 * @param rnCert
+	 *            is the national register certificate
+	 * @param certificatesValid
+	 *            indicates whether the chain and the RN certificate are valid
+	 * @param idFile
+	 *            are the contents of the identity file
+	 * @param idSignature
+	 *            are the contents of the identity signature file
+	 * @param addressFile
+	 *            are the contents of the address file
+	 * @param addressSignature
+	 *            are the contents of the address signature file
+	 * @param photoFile
+	 *            are the contents of the photo file
+	 * @param tokenInfo
+	 *            are the contents of the token information file
+	 * @param cardData
+	 *            is the response to the GET CARD DATA command
+	 */
+	CardSnapshot(final IDData data, final IDAddress address,
+			final IDPhoto photo, final IDVersion version,
+			final CertificateChain chain, final RNCertificate rnCert,
+			final boolean certificatesValid, final byte[] idFile, final byte[] idSignature,
+			final byte[] addressFile, final byte[] addressSignature,
+			final byte[] photoFile, final byte[] tokenInfo,
+			final byte[] cardData) {
+		fIDData = data;
+		fIDAddress = address;
+		fIDPhoto = photo;
+		fIDVersion = version;
+		fCertificateChain = chain;
+		fRNCertificate = rnCert;
+		fCertificatesValid = certificatesValid;
+		fIDFile = idFile.clone();
+		fIDSignature = idSignature.clone();
+		fAddressFile = addressFile.clone();
+		fAddressSignature = addressSignature.clone();
+		fPhotoFile = photoFile.clone();
+		fTokenInfo = tokenInfo.clone();
+		fCardData = cardData.clone();
+	}
+
+	/**
+	 * Returns the identity data.
+	 * 
+	 * @return the identity data
+	 */
+	public IDData getIDData() {
+		return fIDData;
+	}
+
+	/**
+	 * Returns the address of the holder.
+	 * 
+	 * @return the address
+	 */
+	public IDAddress getIDAddress() {
+		return fIDAddress;
+	}
+
+	/**
+	 * Returns the photo of the holder.
+	 * 
+	 * @return the photo
+	 */
+	public IDPhoto getIDPhoto() {
+		return fIDPhoto;
+	}
+
+	/**
+	 * Returns the version information of the card.
+	 * 
+	 * @return the version information
+	 */
+	public IDVersion getIDVersionInformation() {
+		return fIDVersion;
+	}
+
+	/**
+	 * Returns the certificates in the certificate validation chain.
+	 * 
+	 * @return the certificate chain
+	 */
+	public CertificateChain getCertificateChain() {
+		return fCertificateChain;
+	}
+
+	/**
+	 * Returns the national register certificate.
+	 * 
+	 * @return the RN certificate
+	 */
+	public RNCertificate getNationalRegisterCertificate() {
+		return fRNCertificate;
+	}
+
+	/**
+	 * Indicates whether all certificates of the chain and the national
+	 * register certificate were valid when the snapshot was taken. The data
+	 * of a card of which a certificate is expired or revoked is still read,
+	 * the status of every certificate tells why it isn't valid.
+	 * 
+	 * @return whether the certificates are valid
+	 */
+	public boolean isCertificatesValid() {
+		return fCertificatesValid;
+	}
+
+	/**
+	 * Returns the raw contents of the identity file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getIDFile() {
+		return fIDFile.clone();
+	}
+
+	/**
+	 * Returns the raw contents of the identity signature file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getIDSignature() {
+		return fIDSignature.clone();
+	}
+
+	/**
+	 * Returns the raw contents of the address file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getAddressFile() {
+		return fAddressFile.clone();
+	}
+
+	/**
+	 * Returns the raw contents of the address signature file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getAddressSignature() {
+		return fAddressSignature.clone();
+	}
+
+	/**
+	 * Returns the raw contents of the photo file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getPhotoFile() {
+		return fPhotoFile.clone();
+	}
+
+	/**
+	 * Returns the raw contents of the token information file.
+	 * 
+	 * @return a copy of the contents
+	 */
+	public byte[] getTokenInfo() {
+		return fTokenInfo.clone();
+	}
+
+	/**
+	 * Returns the response of the card to the GET CARD DATA command.
+	 * 
+	 * @return a copy of the card data
+	 */
+	public byte[] getCardData() {
+		return fCardData.clone();
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+
+import be.belgium.eid.event.CardAdapter;
+import be.belgium.eid.event.CardEvent;
+import be.belgium.eid.event.CardEventDispatcher;
+import be.belgium.eid.event.CardMonitor;
+
+/**
+ * The card snapshot publisher publishes a snapshot of every card inserted in
+ * any smart card reader to its subscribers. A card is only read when every
+ * subscriber has requested another snapshot, so a slow subscriber holds back
+ * the reading of cards instead of letting snapshots pile up in memory. Cards
+ * inserted meanwhile wait in their reader, at most one per reader, and are
+ * read in the order in which they were inserted once there is demand. A card
+ * removed before it has been read is skipped, and so is a card that couldn't
+ * be read. Every snapshot is delivered to the subscribers that requested one.
+ * 
+ * The cards are read with {@link BeID#readAll()} on the thread of their
+ * reader, so cards in different readers are read in parallel when the demand
+ * allows it.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardSnapshotPublisher implements Flow.Publisher<CardSnapshot>,
+		AutoCloseable {
+
+	/** Contains the readers reading the cards */
+	private final ReaderPool fPool;
+
+	/** Contains the monitor reporting the cards inserted in all readers */
+	private final CardMonitor fMonitor;
+
+	/** Contains the readers of which the card awaits reading, in order */
+	private final Set<String> fPending = new LinkedHashSet<String>();
+
+	/** Contains the subscriptions, in order of subscription */
+	private final List<CardSubscription> fSubscriptions = new ArrayList<CardSubscription>();
+
+	/** Contains the number of cards being read */
+	private int fInFlight = 0;
+
+	/** Indicates whether the publisher has been closed */
+	private boolean fClosed = false;
+
+	/**
+	 * Initializes the publisher and starts watching the readers. Cards
+	 * present already count as inserted.
+	 * 
+	 * @param enableTestCard
+	 *            indicates whether test cards with invalid roots are enabled
+	 * @throws CardException
+	 *             when the readers couldn't be listed
+	 */
+	public CardSnapshotPublisher(final boolean enableTestCard)
+			throws CardException {
+		fPool = new ReaderPool(enableTestCard);
+
+		final CardEventDispatcher dispatcher = new CardEventDispatcher();
+		dispatcher.addCardListener(new CardAdapter() {
+			public void cardInserted(final CardEvent event) {
+				inserted(event.getTerminal().getName());
+			}
+
+			public void cardRemoved(final CardEvent event) {
+				removed(event.getTerminal().getName());
+			}
+
+			public void readerDetached(final CardTerminal terminal) {
+				removed(terminal.getName());
+			}
+		});
+		fMonitor = new CardMonitor(dispatcher);
+		fMonitor.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.Flow.Publisher#subscribe(java.util.concurrent.Flow.Subscriber)
+	 */
+	public void subscribe(final Flow.Subscriber<? super CardSnapshot> subscriber) {
+		final CardSubscription subscription = new CardSubscription(subscriber);
+		final boolean closed;
+		synchronized (this) {
+			closed = fClosed;
+			if (!closed) {
+				fSubscriptions.add(subscription);
+			}
+		}
+
+		subscriber.onSubscribe(subscription);
+		if (closed) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * Returns the number of readers of which the card awaits reading.
+	 * 
+	 * @return the number of cards waiting for demand
+	 */
+	public synchronized int getPendingCount() {
+		return fPending.size();
+	}
+
+	/**
+	 * Stops watching the readers, disconnects the cards once the reads in
+	 * progress have finished and completes the subscriptions. When
+	 * interrupted, the wait for the reads stops like with
+	 * {@link ReaderPool#close()}.
+	 */
+	public void close() {
+		final List<CardSubscription> subscriptions;
+		synchronized (this) {
+			fClosed = true;
+			fPending.clear();
+			subscriptions = new ArrayList<CardSubscription>(fSubscriptions);
+			fSubscriptions.clear();
+		}
+
+		fMonitor.stopThread();
+		fPool.close();
+		for (CardSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * Records that a card has been inserted in the reader with the given
+	 * name, and reads it when there is demand.
+	 */
+	private void inserted(final String name) {
+		synchronized (this) {
+			if (fClosed) {
+				return;
+			}
+			fPending.add(name);
+		}
+
+		readPending();
+	}
+
+	/**
+	 * Forgets the card of the reader with the given name, which has been
+	 * removed, and disconnects it after the read in progress, if any.
+	 */
+	private void removed(final String name) {
+		synchronized (this) {
+			fPending.remove(name);
+		}
+
+		try {
+			fPool.submit(name, eID -> {
+				try {
+					eID.disconnect();
+				} catch (CardException e) {
+					// The card is gone already
+				}
+				return null;
+			});
+		} catch (IllegalArgumentException e) {
+			// Never read from this reader
+		}
+	}
+
+	/**
+	 * Starts reading as many waiting cards as every subscriber has requested
+	 * beyond the cards being read.
+	 */
+	private void readPending() {
+		final List<String> toRead = new ArrayList<String>();
+		synchronized (this) {
+			long demand = Long.MAX_VALUE;
+			for (CardSubscription subscription : fSubscriptions) {
+				demand = Math.min(demand, subscription.fDemand);
+			}
+			if (fSubscriptions.isEmpty()) {
+				demand = 0;
+			}
+
+			final Iterator<String> it = fPending.iterator();
+			while (demand > fInFlight && it.hasNext()) {
+				toRead.add(it.next());
+				it.remove();
+				fInFlight++;
+			}
+		}
+
+		for (String name : toRead) {
+			read(name);
+		}
+	}
+
+	/**
+	 * Reads the card in the reader with the given name and publishes its
+	 * snapshot.
+	 */
+	private void read(final String name) {
+		CompletableFuture<CardSnapshot> future;
+		try {
+			if (!fPool.getReaderNames().contains(name)) {
+				fPool.refresh();
+			}
+			future = fPool.submit(name, BeID::readAll);
+		} catch (Exception e) {
+			future = new CompletableFuture<CardSnapshot>();
+			future.completeExceptionally(e);
+		}
+
+		future.whenComplete((snapshot, e) -> publish(snapshot));
+	}
+
+	/**
+	 * Delivers the given snapshot to the subscribers that requested one and
+	 * reads the next waiting card when there is demand.
+	 * 
+	 * @param snapshot
+	 *            is the snapshot read, null when the card couldn't be read
+	 */
+	private void publish(final CardSnapshot snapshot) {
+		final List<CardSubscription> receivers = new ArrayList<CardSubscription>();
+		synchronized (this) {
+			fInFlight--;
+			if (snapshot != null) {
+				for (CardSubscription subscription : fSubscriptions) {
+					if (subscription.fDemand > 0) {
+						subscription.fDemand--;
+						receivers.add(subscription);
+					}
+				}
+			}
+		}
+
+		for (CardSubscription subscription : receivers) {
+			subscription.deliver(snapshot);
+		}
+		readPending();
+	}
+
+	/**
+	 * The subscription of one subscriber. The demand is guarded by the lock of
+	 * the publisher, the subscriber is called while holding the lock of the
+	 * subscription so that it is never called concurrently.
+	 */
+	private final class CardSubscription implements Flow.Subscription {
+
+		/** Contains the subscriber */
+		private final Flow.Subscriber<? super CardSnapshot> fSubscriber;
+
+		/** Contains the number of snapshots requested but not delivered */
+		private long fDemand = 0;
+
+		/** Indicates whether the subscriber is no longer called */
+		private volatile boolean fCancelled = false;
+
+		/**
+		 * Initializes the subscription of the given subscriber.
+		 * 
+		 * @param subscriber
+		 *            is the subscriber
+		 */
+		private CardSubscription(
+				final Flow.Subscriber<? super CardSnapshot> subscriber) {
+			fSubscriber = subscriber;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Flow.Subscription#request(long)
+		 */
+		public void request(final long n) {
+			if (n <= 0) {
+				cancel();
+				fail(new IllegalArgumentException(
+						"The number of snapshots requested should be positive."));
+				return;
+			}
+
+			synchronized (CardSnapshotPublisher.this) {
+				if (fCancelled) {
+					return;
+				}
+				fDemand = fDemand + n < 0 ? Long.MAX_VALUE : fDemand + n;
+			}
+			readPending();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.Flow.Subscription#cancel()
+		 */
+		public void cancel() {
+			synchronized (CardSnapshotPublisher.this) {
+				fSubscriptions.remove(this);
+			}
+			fCancelled = true;
+
+			// The remaining subscribers may have more demand
+			readPending();
+		}
+
+		/**
+		 * Delivers the given snapshot unless cancelled.
+		 */
+		private synchronized void deliver(final CardSnapshot snapshot) {
+			if (!fCancelled) {
+				fSubscriber.onNext(snapshot);
+			}
+		}
+
+		/**
+		 * Completes the subscription unless cancelled.
+		 */
+		private synchronized void complete() {
+			if (!fCancelled) {
+				fCancelled = true;
+				fSubscriber.onComplete();
+			}
+		}
+
+		/**
+		 * Ends the subscription with the given error.
+		 */
+		private synchronized void fail(final Throwable error) {
+			fSubscriber.onError(error);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+/**
+ * This enumeration contains the priorities of the operations scheduled on a
+ * smart card reader, from low to high. Operations of a higher priority are
+ * performed first, and a file being read for an operation of a lower
+ * priority is interrupted between two blocks to let them go ahead.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public enum OperationPriority {
+	/** Indicates work nobody is waiting for, such as prefetching */
+	BACKGROUND,
+
+	/** Indicates the priority of operations unless told otherwise */
+	NORMAL,
+
+	/** Indicates an operation a user is waiting for, such as a signature */
+	INTERACTIVE;
+
+	/**
+	 * Returns whether this priority is higher than the given one.
+	 * 
+	 * @param other
+	 *            is the priority to compare with
+	 * @return true when operations of this priority go first
+	 */
+	public boolean isHigherThan(final OperationPriority other) {
+		return ordinal() > other.ordinal();
+	}
+}
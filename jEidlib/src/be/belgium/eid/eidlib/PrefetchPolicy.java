@@ -0,0 +1,80 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import be.belgium.eid.exceptions.EIDException;
+
+/**
+ * This enumeration contains what is read from a card as soon as the card
+ * listener of a {@link BeID} connects it, before the application asks for
+ * it. The getters then return what has been read, or wait for the read in
+ * progress.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public enum PrefetchPolicy {
+	/** Indicates that nothing is read before it is asked for */
+	NONE {
+		void prefetch(final BeID eID) {
+			// Nothing to read
+		}
+	},
+
+	/**
+	 * Indicates that the identity, its signature and the national register
+	 * certificate are read and verified
+	 */
+	IDENTITY {
+		void prefetch(final BeID eID) throws EIDException {
+			eID.getIDData();
+		}
+	},
+
+	/**
+	 * Indicates that the identity and the address are read and verified, with
+	 * their signatures and the national register certificate
+	 */
+	IDENTITY_AND_ADDRESS {
+		void prefetch(final BeID eID) throws EIDException {
+			eID.getIDData();
+			eID.getIDAddress();
+		}
+	},
+
+	/** Indicates that everything is read and verified at once */
+	ALL {
+		void prefetch(final BeID eID) throws EIDException {
+			eID.readAll();
+		}
+	};
+
+	/**
+	 * Reads what the policy prescribes from the given card.
+	 * 
+	 * @param eID
+	 *            is the connected card
+	 * @throws EIDException
+	 *             when the card couldn't be read
+	 */
+	abstract void prefetch(BeID eID) throws EIDException;
+}
@@ -0,0 +1,498 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+
+import be.belgium.eid.exceptions.EIDException;
+
+/**
+ * The reader pool serves all smart card readers of the system in parallel.
+ * Every reader has its own {@link be.belgium.eid.eidlib.BeID} connection and
+ * its own thread, the same thread that runs the asynchronous operations of
+ * the BeID class for that reader. Submitted
+ * {@link be.belgium.eid.eidlib.CardJob card jobs} run on the reader they are
+ * submitted to, on the reader holding the card with a given chip number, or
+ * on the least busy reader holding a card. The pool keeps count of the jobs
+ * to report its throughput and the number of jobs waiting.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class ReaderPool implements AutoCloseable {
+
+	/**
+	 * A pooled reader holds the connection and the job count of one reader.
+	 */
+	private final static class PooledReader {
+
+		/** Contains the reader */
+		private final CardTerminal fTerminal;
+
+		/** Contains the connection to the card in the reader */
+		private final BeID fBeID;
+
+		/** Contains the number of jobs submitted but not yet finished */
+		private final AtomicInteger fPending = new AtomicInteger();
+
+		/**
+		 * Initializes the pooled reader.
+		 */
+		private PooledReader(final CardTerminal terminal,
+				final boolean enableTestCard) {
+			fTerminal = terminal;
+			fBeID = new BeID(terminal.getName(), enableTestCard);
+		}
+	}
+
+	/** Indicates whether test cards with an invalid root are enabled */
+	private final boolean fEnableTestCard;
+
+	/** Contains the readers of the pool indexed by their name */
+	private final Map<String, PooledReader> fReaders = new ConcurrentHashMap<String, PooledReader>();
+
+	/** Contains the number of jobs submitted */
+	private final AtomicLong fSubmitted = new AtomicLong();
+
+	/** Contains the number of jobs finished successfully */
+	private final AtomicLong fCompleted = new AtomicLong();
+
+	/** Contains the number of jobs that failed */
+	private final AtomicLong fFailed = new AtomicLong();
+
+	/** Contains the time at which the statistics were reset */
+	private volatile long fStatisticsStart = System.nanoTime();
+
+	/**
+	 * Initializes the pool with all smart card readers currently attached to
+	 * the system.
+	 * 
+	 * @param enableTestCard
+	 *            indicates whether test cards with invalid roots are enabled
+	 * @throws CardException
+	 *             when the readers couldn't be listed
+	 */
+	public ReaderPool(final boolean enableTestCard) throws CardException {
+		fEnableTestCard = enableTestCard;
+		refresh();
+	}
+
+	/**
+	 * Adds the readers attached since the pool was initialized or refreshed
+	 * and removes the readers detached meanwhile.
+	 * 
+	 * @throws CardException
+	 *             when the readers couldn't be listed
+	 */
+	public synchronized void refresh() throws CardException {
+		final List<String> names = new ArrayList<String>();
+		for (CardTerminal terminal : SmartCard.getSmartCardReaders()) {
+			names.add(terminal.getName());
+			if (!fReaders.containsKey(terminal.getName())) {
+				fReaders.put(terminal.getName(), new PooledReader(terminal,
+						fEnableTestCard));
+			}
+		}
+
+		for (String name : fReaders.keySet()) {
+			if (!names.contains(name)) {
+				disconnect(fReaders.remove(name));
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of the readers in the pool.
+	 * 
+	 * @return the names of the readers
+	 */
+	public List<String> getReaderNames() {
+		return new ArrayList<String>(fReaders.keySet());
+	}
+
+	/**
+	 * Submits the given job to the reader with the given name. Cancelling the
+	 * future, or completing it otherwise such as with
+	 * {@link CompletableFuture#orTimeout(long, java.util.concurrent.TimeUnit)},
+	 * aborts the job before the next command it sends to the card.
+	 * 
+	 * @param name
+	 *            is the name of the reader
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally when the
+	 *         job failed
+	 * @throws IllegalArgumentException
+	 *             when the pool has no reader with the given name
+	 */
+	public <T> CompletableFuture<T> submit(final String name,
+			final CardJob<T> job) throws IllegalArgumentException {
+		return submit(name, OperationPriority.NORMAL, job);
+	}
+
+	/**
+	 * Submits the given job to the reader with the given name with the given
+	 * priority.
+	 * 
+	 * @param name
+	 *            is the name of the reader
+	 * @param priority
+	 *            is the priority of the job
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally when the
+	 *         job failed
+	 * @throws IllegalArgumentException
+	 *             when the pool has no reader with the given name
+	 */
+	public <T> CompletableFuture<T> submit(final String name,
+			final OperationPriority priority, final CardJob<T> job)
+			throws IllegalArgumentException {
+		final PooledReader reader = fReaders.get(name);
+		if (reader == null) {
+			throw new IllegalArgumentException("Unknown reader " + name);
+		}
+
+		return submit(reader, priority, job);
+	}
+
+	/**
+	 * Submits the given job to the reader holding a card with the fewest jobs
+	 * waiting.
+	 * 
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally when the
+	 *         job failed
+	 * @throws IllegalStateException
+	 *             when no reader holds a card
+	 */
+	public <T> CompletableFuture<T> submit(final CardJob<T> job)
+			throws IllegalStateException {
+		return submit(OperationPriority.NORMAL, job);
+	}
+
+	/**
+	 * Submits the given job with the given priority to the reader holding a
+	 * card with the fewest jobs waiting.
+	 * 
+	 * @param priority
+	 *            is the priority of the job
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally when the
+	 *         job failed
+	 * @throws IllegalStateException
+	 *             when no reader holds a card
+	 */
+	public <T> CompletableFuture<T> submit(final OperationPriority priority,
+			final CardJob<T> job) throws IllegalStateException {
+		PooledReader leastBusy = null;
+		for (PooledReader reader : fReaders.values()) {
+			if (isCardPresent(reader)) {
+				final int pending = reader.fPending.get();
+				if ((leastBusy == null)
+						|| (pending < leastBusy.fPending.get())) {
+					leastBusy = reader;
+				}
+			}
+		}
+		if (leastBusy == null) {
+			throw new IllegalStateException("No card inserted");
+		}
+
+		return submit(leastBusy, priority, job);
+	}
+
+	/**
+	 * Submits the given job to the reader holding the card with the given chip
+	 * number.
+	 * 
+	 * @param chipNumber
+	 *            is the chip number of the card, as in
+	 *            {@link be.belgium.eid.objects.IDVersion#getChipNumber()}
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally with an
+	 *         {@link IllegalStateException} when no reader holds the card, or
+	 *         otherwise when the job failed
+	 * @throws IllegalStateException
+	 *             when no reader holds a card
+	 */
+	public <T> CompletableFuture<T> submit(final byte[] chipNumber,
+			final CardJob<T> job) throws IllegalStateException {
+		return submit(chipNumber, OperationPriority.NORMAL, job);
+	}
+
+	/**
+	 * Submits the given job with the given priority to the reader holding the
+	 * card with the given chip number. Every reader holding a card reads the
+	 * chip number on its own thread, so that it doesn't interfere with the
+	 * jobs running, and the reader holding the card runs the job right after.
+	 * 
+	 * @param chipNumber
+	 *            is the chip number of the card, as in
+	 *            {@link be.belgium.eid.objects.IDVersion#getChipNumber()}
+	 * @param priority
+	 *            is the priority of the job
+	 * @param job
+	 *            is the job to run
+	 * @return the future result of the job, completed exceptionally with an
+	 *         {@link IllegalStateException} when no reader holds the card, or
+	 *         otherwise when the job failed
+	 * @throws IllegalStateException
+	 *             when no reader holds a card
+	 */
+	public <T> CompletableFuture<T> submit(final byte[] chipNumber,
+			final OperationPriority priority, final CardJob<T> job)
+			throws IllegalStateException {
+		final List<PooledReader> holding = new ArrayList<PooledReader>();
+		for (PooledReader reader : fReaders.values()) {
+			if (isCardPresent(reader)) {
+				holding.add(reader);
+			}
+		}
+		if (holding.isEmpty()) {
+			throw new IllegalStateException("No card inserted");
+		}
+
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		final byte[] wanted = chipNumber.clone();
+		final AtomicInteger unmatched = new AtomicInteger(holding.size());
+		final IllegalStateException notFound = new IllegalStateException(
+				"No card with the chip number inserted");
+		fSubmitted.incrementAndGet();
+		for (PooledReader reader : holding) {
+			reader.fPending.incrementAndGet();
+			final ReaderScheduler scheduler = ReaderScheduler
+					.get(reader.fTerminal.getName());
+			scheduler.execute(priority, () -> {
+				if (!future.isDone() && holdsCard(reader, wanted)) {
+					run(reader, future, job);
+				} else {
+					reader.fPending.decrementAndGet();
+					if ((unmatched.decrementAndGet() == 0)
+							&& future.completeExceptionally(notFound)) {
+						fFailed.incrementAndGet();
+					}
+				}
+			});
+		}
+		return future;
+	}
+
+	/**
+	 * Returns the number of jobs submitted to all readers that haven't
+	 * finished yet, including the jobs running.
+	 * 
+	 * @return the number of jobs waiting or running
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (PooledReader reader : fReaders.values()) {
+			depth += reader.fPending.get();
+		}
+		return depth;
+	}
+
+	/**
+	 * Returns the number of jobs submitted to the reader with the given name
+	 * that haven't finished yet, including the job running.
+	 * 
+	 * @param name
+	 *            is the name of the reader
+	 * @return the number of jobs waiting or running, 0 for an unknown reader
+	 */
+	public int getQueueDepth(final String name) {
+		final PooledReader reader = fReaders.get(name);
+		return (reader == null) ? 0 : reader.fPending.get();
+	}
+
+	/**
+	 * Returns the number of jobs submitted since the statistics were reset.
+	 * 
+	 * @return the number of jobs submitted
+	 */
+	public long getSubmittedCount() {
+		return fSubmitted.get();
+	}
+
+	/**
+	 * Returns the number of jobs finished successfully since the statistics
+	 * were reset.
+	 * 
+	 * @return the number of jobs completed
+	 */
+	public long getCompletedCount() {
+		return fCompleted.get();
+	}
+
+	/**
+	 * Returns the number of jobs that failed since the statistics were reset.
+	 * 
+	 * @return the number of jobs failed
+	 */
+	public long getFailedCount() {
+		return fFailed.get();
+	}
+
+	/**
+	 * Returns the number of jobs finished per second, successfully or not,
+	 * since the statistics were reset.
+	 * 
+	 * @return the throughput in jobs per second
+	 */
+	public double getThroughput() {
+		final long elapsed = System.nanoTime() - fStatisticsStart;
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return (fCompleted.get() + fFailed.get()) * 1e9 / elapsed;
+	}
+
+	/**
+	 * Resets the job counts and the start of the throughput measurement.
+	 */
+	public void resetStatistics() {
+		fSubmitted.set(0);
+		fCompleted.set(0);
+		fFailed.set(0);
+		fStatisticsStart = System.nanoTime();
+	}
+
+	/**
+	 * Disconnects all readers once the jobs submitted before have finished,
+	 * and waits for that. When interrupted, the readers are still
+	 * disconnected after their jobs, but the wait stops and the interrupt
+	 * flag of the thread is set again.
+	 */
+	public void close() {
+		final List<CompletableFuture<Void>> closed = new ArrayList<CompletableFuture<Void>>();
+		for (PooledReader reader : fReaders.values()) {
+			closed.add(disconnect(reader));
+		}
+		fReaders.clear();
+
+		for (CompletableFuture<Void> future : closed) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				// The reader is gone
+			} catch (InterruptedException e) {
+				// Stop waiting, but let the caller know
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Runs the given job on the thread of the given reader with the given
+	 * priority.
+	 */
+	private <T> CompletableFuture<T> submit(final PooledReader reader,
+			final OperationPriority priority, final CardJob<T> job) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		fSubmitted.incrementAndGet();
+		reader.fPending.incrementAndGet();
+		final ReaderScheduler scheduler = ReaderScheduler.get(reader.fTerminal
+				.getName());
+		scheduler.execute(priority, () -> run(reader, future, job));
+		return future;
+	}
+
+	/**
+	 * Runs the given job of the given future on the given reader, on the
+	 * thread of the reader.
+	 */
+	private <T> void run(final PooledReader reader,
+			final CompletableFuture<T> future, final CardJob<T> job) {
+		// The job is accounted for before whoever waits for it resumes
+		try {
+			final T result = reader.fBeID.performFor(future,
+					() -> job.run(reader.fBeID));
+			reader.fPending.decrementAndGet();
+			fCompleted.incrementAndGet();
+			future.complete(result);
+		} catch (Throwable e) {
+			reader.fPending.decrementAndGet();
+			fFailed.incrementAndGet();
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Disconnects the given reader once the jobs submitted before have
+	 * finished, unless they are background jobs submitted later.
+	 */
+	private CompletableFuture<Void> disconnect(final PooledReader reader) {
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		final ReaderScheduler scheduler = ReaderScheduler.get(reader.fTerminal
+				.getName());
+		scheduler.execute(OperationPriority.BACKGROUND, () -> {
+			try {
+				reader.fBeID.disconnect();
+			} catch (CardException e) {
+				// The card is gone already
+			}
+			future.complete(null);
+		});
+		return future;
+	}
+
+	/**
+	 * Indicates whether the given reader holds the card with the given chip
+	 * number, on the thread of the reader.
+	 */
+	private static boolean holdsCard(final PooledReader reader,
+			final byte[] chipNumber) {
+		try {
+			return Arrays.equals(chipNumber, reader.fBeID
+					.getIDVersionInformation().getChipNumber());
+		} catch (EIDException e) {
+			// Not an eID card, or removed meanwhile
+			return false;
+		}
+	}
+
+	/**
+	 * Indicates whether the given reader holds a card.
+	 */
+	private static boolean isCardPresent(final PooledReader reader) {
+		try {
+			return reader.fTerminal.isCardPresent();
+		} catch (CardException e) {
+			return false;
+		}
+	}
+}
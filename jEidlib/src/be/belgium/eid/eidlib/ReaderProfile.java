@@ -0,0 +1,136 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+
+/**
+ * The reader profile describes a quirk of a smart card reader or card type
+ * that the library has to take into account: some readers need time to settle
+ * after a file has been read before they accept the next command. A profile
+ * applies to the readers of which the name contains a given text, to the
+ * cards of which the ATR starts with given bytes, or to both. Profiles are
+ * registered in {@link be.belgium.eid.eidlib.ReaderProfiles}.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class ReaderProfile {
+
+	/** Contains the text the name of the reader has to contain, if any */
+	private final String fTerminalName;
+
+	/** Contains the bytes the ATR of the card has to start with, if any */
+	private final byte[] fATRPrefix;
+
+	/** Contains the time to wait after reading a file in milliseconds */
+	private final long fSettleDelay;
+
+	/**
+	 * Initializes the profile for the readers of which the name contains the
+	 * given text and the cards of which the ATR starts with the given bytes.
+	 * 
+	 * @param terminalName
+	 *            is the text the name of the reader has to contain, null for
+	 *            all readers
+	 * @param atrPrefix
+	 *            are the bytes the ATR of the card has to start with, null
+	 *            for all cards
+	 * @param settleDelay
+	 *            is the time to wait after reading a file in milliseconds
+	 */
+	public ReaderProfile(final String terminalName, final byte[] atrPrefix,
+			final long settleDelay) {
+		if (settleDelay < 0) {
+			throw new IllegalArgumentException("Negative settle delay");
+		}
+
+		fTerminalName = terminalName;
+		fATRPrefix = (atrPrefix == null) ? null : atrPrefix.clone();
+		fSettleDelay = settleDelay;
+	}
+
+	/**
+	 * Initializes the profile for the readers of which the name contains the
+	 * given text.
+	 * 
+	 * @param terminalName
+	 *            is the text the name of the reader has to contain
+	 * @param settleDelay
+	 *            is the time to wait after reading a file in milliseconds
+	 */
+	public ReaderProfile(final String terminalName, final long settleDelay) {
+		this(terminalName, null, settleDelay);
+	}
+
+	/**
+	 * Indicates whether the profile applies to the given reader and card.
+	 * 
+	 * @param terminalName
+	 *            is the name of the reader
+	 * @param atr
+	 *            is the ATR of the card
+	 * @return whether the profile applies
+	 */
+	public boolean matches(final String terminalName, final byte[] atr) {
+		if ((fTerminalName != null)
+				&& ((terminalName == null) || !terminalName
+						.contains(fTerminalName))) {
+			return false;
+		}
+		if (fATRPrefix != null) {
+			if ((atr == null) || (atr.length < fATRPrefix.length)) {
+				return false;
+			}
+			for (int i = 0; i < fATRPrefix.length; i++) {
+				if (atr[i] != fATRPrefix[i]) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the time to wait after reading a file.
+	 * 
+	 * @return the settle delay in milliseconds
+	 */
+	public long getSettleDelay() {
+		return fSettleDelay;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "Reader profile: "
+				+ ((fTerminalName == null) ? "*" : fTerminalName)
+				+ " / "
+				+ ((fATRPrefix == null) ? "*" : ByteConverter
+						.hexify(fATRPrefix)) + ", settle delay "
+				+ fSettleDelay + " ms";
+	}
+}
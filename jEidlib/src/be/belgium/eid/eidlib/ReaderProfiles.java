@@ -0,0 +1,236 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The reader profiles contain the quirks of the smart card readers that the
+ * library has to take into account. By default no reader needs time to
+ * settle after a file has been read. Readers that do can be registered with a
+ * {@link be.belgium.eid.eidlib.ReaderProfile}, keyed by the name of the
+ * reader or the ATR of the card. <br />
+ * When auto detection is enabled, which is the default, a reader that fails
+ * to transmit a command while the card is still present is given a settle
+ * delay that doubles on every further failure, up to
+ * {@link #fgMAX_SETTLE_DELAY}. Well behaved readers therefore never wait. The
+ * learned delay is halved again after {@link #fgDECAY_READS} successful reads
+ * in a row and forgotten when it drops below {@link #fgINITIAL_SETTLE_DELAY},
+ * so that a single glitch doesn't slow the reader down for good.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class ReaderProfiles {
+
+	/** Contains the settle delay after the first failure in milliseconds */
+	public final static long fgINITIAL_SETTLE_DELAY = 25;
+
+	/** Contains the largest settle delay that is learned in milliseconds */
+	public final static long fgMAX_SETTLE_DELAY = 100;
+
+	/**
+	 * Contains the number of successful reads in a row after which a learned
+	 * settle delay is halved
+	 */
+	public final static int fgDECAY_READS = 32;
+
+	/** Contains the registered profiles, the first matching one applies */
+	private final static List<ReaderProfile> fgProfiles = new CopyOnWriteArrayList<ReaderProfile>();
+
+	/** Contains the settle delays learned from failures, indexed by reader */
+	private final static Map<String, LearnedDelay> fgLearnedDelays = new ConcurrentHashMap<String, LearnedDelay>();
+
+	/** Indicates whether settle delays are learned from failures */
+	private static volatile boolean fgAutoDetection = true;
+
+	/**
+	 * A learned delay is the settle delay learned for a reader, together with
+	 * the number of successful reads since it was last changed. It is only
+	 * changed while holding the lock on the learned delays.
+	 */
+	private static final class LearnedDelay {
+
+		/** Contains the settle delay in milliseconds */
+		private volatile long fDelay = fgINITIAL_SETTLE_DELAY;
+
+		/** Contains the number of successful reads in a row */
+		private int fSuccesses = 0;
+	}
+
+	/**
+	 * Registers the given profile. Profiles registered earlier take
+	 * precedence.
+	 * 
+	 * @param profile
+	 *            is the profile to register
+	 */
+	public static void addProfile(final ReaderProfile profile) {
+		fgProfiles.add(profile);
+	}
+
+	/**
+	 * Unregisters the given profile.
+	 * 
+	 * @param profile
+	 *            is the profile to unregister
+	 */
+	public static void removeProfile(final ReaderProfile profile) {
+		fgProfiles.remove(profile);
+	}
+
+	/**
+	 * Returns the registered profile that applies to the given reader and
+	 * card.
+	 * 
+	 * @param terminalName
+	 *            is the name of the reader
+	 * @param atr
+	 *            is the ATR of the card
+	 * @return the profile or null if no profile applies
+	 */
+	public static ReaderProfile getProfile(final String terminalName,
+			final byte[] atr) {
+		for (ReaderProfile profile : fgProfiles) {
+			if (profile.matches(terminalName, atr)) {
+				return profile;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the time to wait after reading a file from the given reader and
+	 * card, being the largest of the delay in the applying profile and the
+	 * delay learned from failures.
+	 * 
+	 * @param terminalName
+	 *            is the name of the reader
+	 * @param atr
+	 *            is the ATR of the card
+	 * @return the settle delay in milliseconds
+	 */
+	public static long getSettleDelay(final String terminalName,
+			final byte[] atr) {
+		final ReaderProfile profile = getProfile(terminalName, atr);
+		long delay = (profile == null) ? 0 : profile.getSettleDelay();
+
+		final LearnedDelay learned = fgLearnedDelays.get(terminalName);
+		if (learned != null) {
+			delay = Math.max(delay, learned.fDelay);
+		}
+
+		return delay;
+	}
+
+	/**
+	 * Reports that the given reader failed to transmit a command while the
+	 * card was present. When auto detection is enabled, the settle delay of
+	 * the reader is increased.
+	 * 
+	 * @param terminalName
+	 *            is the name of the reader
+	 * @return whether the settle delay was increased, false when it had
+	 *         already reached its maximum or auto detection is disabled
+	 */
+	public static boolean reportTransmissionFailure(final String terminalName) {
+		if (!fgAutoDetection) {
+			return false;
+		}
+
+		synchronized (fgLearnedDelays) {
+			final LearnedDelay learned = fgLearnedDelays.get(terminalName);
+			if (learned == null) {
+				fgLearnedDelays.put(terminalName, new LearnedDelay());
+			} else {
+				learned.fSuccesses = 0;
+				if (learned.fDelay < fgMAX_SETTLE_DELAY) {
+					learned.fDelay = Math.min(2 * learned.fDelay,
+							fgMAX_SETTLE_DELAY);
+				} else {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reports that a file has been read successfully from the given reader.
+	 * After {@link #fgDECAY_READS} successful reads in a row, the settle
+	 * delay learned for the reader is halved, or forgotten when it would drop
+	 * below {@link #fgINITIAL_SETTLE_DELAY}.
+	 * 
+	 * @param terminalName
+	 *            is the name of the reader
+	 */
+	public static void reportTransmissionSuccess(final String terminalName) {
+		// Nothing to do for the readers that never failed
+		if (!fgLearnedDelays.containsKey(terminalName)) {
+			return;
+		}
+
+		synchronized (fgLearnedDelays) {
+			final LearnedDelay learned = fgLearnedDelays.get(terminalName);
+			if ((learned != null) && (++learned.fSuccesses >= fgDECAY_READS)) {
+				learned.fSuccesses = 0;
+				final long delay = learned.fDelay / 2;
+				if (delay < fgINITIAL_SETTLE_DELAY) {
+					fgLearnedDelays.remove(terminalName);
+				} else {
+					learned.fDelay = delay;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets whether settle delays are learned from transmission failures.
+	 * 
+	 * @param autoDetection
+	 *            indicates whether to learn settle delays
+	 */
+	public static void setAutoDetection(final boolean autoDetection) {
+		fgAutoDetection = autoDetection;
+	}
+
+	/**
+	 * Indicates whether settle delays are learned from transmission failures.
+	 * 
+	 * @return whether settle delays are learned
+	 */
+	public static boolean isAutoDetection() {
+		return fgAutoDetection;
+	}
+
+	/**
+	 * Forgets the settle delays learned from transmission failures.
+	 */
+	public static void resetLearnedDelays() {
+		fgLearnedDelays.clear();
+	}
+}
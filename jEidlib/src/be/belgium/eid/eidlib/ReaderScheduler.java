@@ -0,0 +1,219 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The reader scheduler runs the asynchronous operations of the
+ * {@link be.belgium.eid.eidlib.BeID} class. Every smart card reader has its
+ * own scheduler with a single thread, so that the operations on one card run
+ * one after the other while different readers work in parallel. The
+ * operations are queued by priority, and in order of scheduling within the
+ * same priority. An operation reading a file lets operations of a higher
+ * priority that are waiting run in between two blocks of the file, see
+ * {@link #runHigherPriority()}. The threads are daemon threads that don't
+ * keep the virtual machine alive.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+final class ReaderScheduler {
+
+	/**
+	 * An operation holds the task to run together with its priority and the
+	 * order in which it was scheduled.
+	 */
+	private final static class Operation implements Comparable<Operation> {
+
+		/** Contains the priority of the operation */
+		private final OperationPriority fPriority;
+
+		/** Contains the number of operations scheduled before */
+		private final long fSequence;
+
+		/** Contains the task to run */
+		private final Runnable fTask;
+
+		/**
+		 * Initializes the operation.
+		 */
+		private Operation(final OperationPriority priority,
+				final long sequence, final Runnable task) {
+			fPriority = priority;
+			fSequence = sequence;
+			fTask = task;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Comparable#compareTo(java.lang.Object)
+		 */
+		public int compareTo(final Operation other) {
+			if (fPriority != other.fPriority) {
+				return fPriority.isHigherThan(other.fPriority) ? -1 : 1;
+			} else {
+				return Long.compare(fSequence, other.fSequence);
+			}
+		}
+	}
+
+	/** Contains the schedulers indexed by the name of their reader */
+	private final static Map<String, ReaderScheduler> fgSchedulers = new ConcurrentHashMap<String, ReaderScheduler>();
+
+	/** Contains the scheduler of which the current thread runs operations */
+	private final static ThreadLocal<ReaderScheduler> fgCurrent = new ThreadLocal<ReaderScheduler>();
+
+	/** Contains the number of operations scheduled on all readers */
+	private final static AtomicLong fgSequence = new AtomicLong();
+
+	/** Contains the name of the reader */
+	private final String fName;
+
+	/** Contains the operations waiting to run */
+	private final PriorityBlockingQueue<Operation> fQueue = new PriorityBlockingQueue<Operation>();
+
+	/**
+	 * Contains the priorities of the operations running, the interrupted ones
+	 * first, only used by the thread of the scheduler
+	 */
+	private final Deque<OperationPriority> fRunning = new ArrayDeque<OperationPriority>();
+
+	/**
+	 * Initializes the scheduler of the reader with the given name and starts
+	 * its thread.
+	 * 
+	 * @param name
+	 *            is the name of the reader, empty for the first reader found
+	 */
+	private ReaderScheduler(final String name) {
+		fName = name;
+
+		final Thread thread = new Thread(this::serve, "eID reader "
+				+ ("".equals(name) ? "(default)" : name));
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Returns the scheduler of the reader with the given name, which is
+	 * created when needed.
+	 * 
+	 * @param name
+	 *            is the name of the reader, empty for the first reader found
+	 * @return the scheduler of the reader
+	 */
+	static ReaderScheduler get(final String name) {
+		return fgSchedulers.computeIfAbsent(name, ReaderScheduler::new);
+	}
+
+	/**
+	 * Returns the scheduler of which the current thread runs operations.
+	 * 
+	 * @return the scheduler, or null when called from another thread
+	 */
+	static ReaderScheduler current() {
+		return fgCurrent.get();
+	}
+
+	/**
+	 * Schedules the given task with the given priority.
+	 * 
+	 * @param priority
+	 *            is the priority of the task
+	 * @param task
+	 *            is the task to run
+	 */
+	void execute(final OperationPriority priority, final Runnable task) {
+		fQueue.add(new Operation(priority, fgSequence.incrementAndGet(), task));
+	}
+
+	/**
+	 * Indicates whether the scheduler serves the reader with the given name.
+	 * 
+	 * @param name
+	 *            is the name of the reader
+	 * @return true when it does, the scheduler of the first reader found
+	 *         serves any reader
+	 */
+	boolean serves(final String name) {
+		return "".equals(fName) || fName.equals(name);
+	}
+
+	/**
+	 * Returns whether an operation of a higher priority than the one running
+	 * is waiting. Only called by the thread of the scheduler.
+	 * 
+	 * @return true when an operation needs to go ahead
+	 */
+	boolean hasHigherPriorityWaiting() {
+		final Operation next = fQueue.peek();
+		return (next != null) && !fRunning.isEmpty()
+				&& next.fPriority.isHigherThan(fRunning.peekLast());
+	}
+
+	/**
+	 * Runs the waiting operations of a higher priority than the one running,
+	 * which is interrupted meanwhile. Only called by the thread of the
+	 * scheduler.
+	 */
+	void runHigherPriority() {
+		while (hasHigherPriorityWaiting()) {
+			run(fQueue.poll());
+		}
+	}
+
+	/**
+	 * Runs the operations as they are scheduled.
+	 */
+	private void serve() {
+		fgCurrent.set(this);
+		while (true) {
+			try {
+				run(fQueue.take());
+			} catch (InterruptedException e) {
+				// Daemon threads run until the virtual machine exits
+			}
+		}
+	}
+
+	/**
+	 * Runs the given operation, ignoring its failure since the task reports
+	 * that itself.
+	 */
+	private void run(final Operation operation) {
+		fRunning.addLast(operation.fPriority);
+		try {
+			operation.fTask.run();
+		} catch (RuntimeException e) {
+			// Reported by the task
+		} finally {
+			fRunning.removeLast();
+		}
+	}
+}
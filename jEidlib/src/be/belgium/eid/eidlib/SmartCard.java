@@ -21,20 +21,34 @@
  */
 package be.belgium.eid.eidlib;
 
+import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.smartcardio.ATR;
 import javax.smartcardio.Card;
 import javax.smartcardio.CardChannel;
 import javax.smartcardio.CardException;
 import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
 import javax.smartcardio.TerminalFactory;
 
+import be.belgium.eid.eidcommon.ByteConverter;
+import be.belgium.eid.eidcommon.DER;
 import be.belgium.eid.exceptions.CardNotFoundException;
 import be.belgium.eid.exceptions.InvalidSWException;
 import be.belgium.eid.exceptions.NoReadersFoundException;
+import be.belgium.eid.exceptions.OperationAbortedException;
 import be.belgium.eid.exceptions.WrongPINException;
 import be.belgium.eid.objects.SmartCardReadable;
 
@@ -52,20 +66,174 @@ import be.belgium.eid.objects.SmartCardReadable;
  */
 public class SmartCard {
 
+	/**
+	 * Contains the terminal factory from which the smart card readers are
+	 * obtained, null to use the default PC/SC factory of the platform
+	 */
+	private static volatile TerminalFactory fgTerminalFactory = null;
+
+	/**
+	 * Contains the readers obtained from the terminal factory, kept so that
+	 * they are not set up again for every list of readers requested
+	 */
+	private static CardTerminals fgTerminals = null;
+
+	/** Contains the terminal factory from which the readers were obtained */
+	private static TerminalFactory fgTerminalsFactory = null;
+
+	/** Contains the default number of bytes read by one READ BINARY command */
+	public final static int fgDEFAULT_BLOCK_LENGTH = 0xF8;
+
+	/** Contains the length of the longest command APDU sent by the library */
+	private final static int fgMAX_COMMAND_LENGTH = 5 + 255 + 1;
+
+	/**
+	 * Contains the block lengths that are tried when negotiating the block
+	 * length, from large to small: an extended length APDU, a short APDU with
+	 * Le=0x00 (256 bytes) and the default block length
+	 */
+	private final static int[] fgBLOCK_LENGTH_CANDIDATES = { 0x10000, 0x100,
+			fgDEFAULT_BLOCK_LENGTH };
+
+	/**
+	 * Contains the negotiated block lengths indexed by the name of the reader
+	 * and the ATR of the card, so that every reader/card pair is probed once
+	 */
+	private final static Map<String, Integer> fgNegotiatedBlockLengths = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Indicates for every reader/card pair whether the card returns the file
+	 * control information on a SELECT, indexed like the negotiated block
+	 * lengths
+	 */
+	private final static Map<String, Boolean> fgFCISupport = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * Indicates for every reader/card pair whether the card accepts a SELECT
+	 * of an elementary file under the current dedicated file, indexed like the
+	 * negotiated block lengths
+	 */
+	private final static Map<String, Boolean> fgRelativeSelectSupport = new ConcurrentHashMap<String, Boolean>();
+
+	/** Contains the maximum length of a path of which the selection is tracked */
+	private final static int fgMAX_TRACKED_PATH_LENGTH = 16;
+
+	/**
+	 * Contains for every reader the permit held by the outermost transaction
+	 * on it, so that instances connected to the same reader take turns
+	 */
+	private final static Map<String, Semaphore> fgReaderLocks = new ConcurrentHashMap<String, Semaphore>();
+
+	/**
+	 * Contains the number of times a card has been removed from each reader,
+	 * as reported by the card monitors
+	 */
+	private final static Map<String, AtomicLong> fgRemovals = new ConcurrentHashMap<String, AtomicLong>();
+
 	/** Contains the card on which the operations need to be performed */
-	private Card fCard;
+	private volatile Card fCard;
 
 	/** Contains the smart card reader with which a connection has been made */
-	private CardTerminal fTerminal;
+	private volatile CardTerminal fTerminal;
 
 	/** Contains the channel over which the communication occurs */
-	private CardChannel fChannel;
+	private volatile CardChannel fChannel;
 
 	/** Contains the ATR (Answer To Reset) of the card */
-	private ATR fATR;
+	private volatile ATR fATR;
 
-	/** Indicates whether a successful connection has already been made */
-	private boolean fIsConnected = false;
+	/**
+	 * Indicates whether a successful connection has already been made, set
+	 * after the fields of the connection so that those are seen by any thread
+	 * that sees it set
+	 */
+	private volatile boolean fIsConnected = false;
+
+	/**
+	 * Contains the key of the connected reader/card pair in the negotiated
+	 * block lengths and the FCI support
+	 */
+	private volatile String fCardTypeKey;
+
+	/** Contains the bytes of the ATR, looked up for every reader profile */
+	private volatile byte[] fATRBytes;
+
+	/** Contains the reusable buffer in which command APDUs are encoded */
+	private final ByteBuffer fCommandBuffer = ByteBuffer
+			.allocate(fgMAX_COMMAND_LENGTH);
+
+	/** Contains the reusable buffer in which response APDUs are received */
+	private ByteBuffer fResponseBuffer = ByteBuffer
+			.allocate(fgDEFAULT_BLOCK_LENGTH + 2);
+
+	/** Contains the reusable buffer for files of which the length is unknown */
+	private ByteBuffer fScratchBuffer = null;
+
+	/** Indicates whether the block length is negotiated with the card */
+	private volatile boolean fNegotiateBlockLength = false;
+
+	/** Contains the number of bytes read by one READ BINARY command */
+	private volatile int fBlockLength = fgDEFAULT_BLOCK_LENGTH;
+
+	/** Indicates whether the block length has been negotiated already */
+	private volatile boolean fBlockLengthNegotiated = false;
+
+	/** Indicates whether files are read with their exact length */
+	private volatile boolean fExactLengthReads = false;
+
+	/**
+	 * Contains the number of transactions that have begun but not yet ended,
+	 * only the outermost one acquires and releases the exclusive access.
+	 * Changed while holding the lock of this object only.
+	 */
+	private volatile int fTransactionDepth = 0;
+
+	/** Contains the thread that holds the transaction, if any */
+	private volatile Thread fTransactionOwner = null;
+
+	/**
+	 * Contains, per thread of which the transaction was ended by a disconnect,
+	 * the number of transactions it has yet to end. Until then, the commands
+	 * of the thread fail rather than run on the next connection.
+	 */
+	private final Map<Thread, Integer> fEndedTransactions =
+			new ConcurrentHashMap<Thread, Integer>();
+
+	/** Contains the permit of the reader held by the transaction, if any */
+	private Semaphore fReaderLock = null;
+
+	/** Contains the number of removals from the connected reader */
+	private volatile AtomicLong fRemovals = null;
+
+	/** Contains the number of removals when the card was connected */
+	private volatile long fRemovalsAtConnect = 0;
+
+	/** Contains the time in milliseconds an operation may take, 0 if unlimited */
+	private volatile long fTimeout = 0;
+
+	/** Indicates whether the transaction in progress has a deadline */
+	private volatile boolean fDeadlineSet = false;
+
+	/** Contains the {@link System#nanoTime()} at which the transaction times out */
+	private volatile long fDeadline = 0;
+
+	/** Contains the thread of which the transaction has been cancelled, if any */
+	private volatile Thread fCancelled = null;
+
+	/**
+	 * Contains the path, below the master file, of the file that the library
+	 * selected last within the current transaction
+	 */
+	private final byte[] fSelectedPath = new byte[fgMAX_TRACKED_PATH_LENGTH];
+
+	/**
+	 * Contains the length of the selected path, -1 when the selection on the
+	 * card is unknown
+	 */
+	private volatile int fSelectedPathLength = -1;
+
+	/** Contains the length of the selected file, -1 when unknown */
+	private volatile int fSelectedFileLength = -1;
 
 	/**
 	 * Returns the smart card readers in the current context of the system.
@@ -75,7 +243,54 @@ public class SmartCard {
 	 *             if the card operation failed
 	 */
 	public static List<CardTerminal> getSmartCardReaders() throws CardException {
-		return TerminalFactory.getDefault().terminals().list();
+		return getTerminals().list();
+	}
+
+	/**
+	 * Returns the readers of the terminal factory in use, obtained once for
+	 * every factory. Since waiting for changes depends on the state kept in
+	 * the returned object, code that waits for changes should obtain its own
+	 * from the factory instead.
+	 * 
+	 * @return the readers of the system
+	 */
+	public static synchronized CardTerminals getTerminals() {
+		final TerminalFactory factory = getTerminalFactory();
+		if (fgTerminals == null || fgTerminalsFactory != factory) {
+			fgTerminals = factory.terminals();
+			fgTerminalsFactory = factory;
+		}
+
+		return fgTerminals;
+	}
+
+	/**
+	 * Sets the terminal factory from which the smart card readers are
+	 * obtained. This allows to plug in another provider than the default
+	 * PC/SC one, such as the card emulator in
+	 * {@link be.belgium.eid.emulator.EmulatorProvider}. Passing null restores
+	 * the default terminal factory of the platform.
+	 * 
+	 * @param factory
+	 *            is the terminal factory to use from now on
+	 */
+	public static void setTerminalFactory(final TerminalFactory factory) {
+		fgTerminalFactory = factory;
+	}
+
+	/**
+	 * Returns the terminal factory from which the smart card readers are
+	 * obtained.
+	 * 
+	 * @return the terminal factory in use
+	 */
+	public static TerminalFactory getTerminalFactory() {
+		final TerminalFactory factory = fgTerminalFactory;
+		if (factory == null) {
+			return TerminalFactory.getDefault();
+		} else {
+			return factory;
+		}
 	}
 
 	/**
@@ -100,23 +315,26 @@ public class SmartCard {
 	 * @throws CardException
 	 *             if the card operation failed
 	 */
-	public void connectCard(final String name) throws NoReadersFoundException,
-			CardException {
+	public synchronized void connectCard(final String name)
+			throws NoReadersFoundException, CardException {
+		disconnectRemovedCard();
 		if (!fIsConnected) {
 			// Connects with the smart card reader whose name matches the given
 			// name
-			TerminalFactory factory = TerminalFactory.getDefault();
-			List<CardTerminal> terminals = factory.terminals().list();
+			List<CardTerminal> terminals = getSmartCardReaders();
 
 			// Check all terminals
 			for (CardTerminal ct : terminals) {
 				// Connect if matched
 				if (ct.getName().equals(name)) {
 					fTerminal = ct;
+					fRemovals = getRemovals(ct.getName());
+					fRemovalsAtConnect = fRemovals.get();
 					fCard = fTerminal.connect("*");
 					fATR = fCard.getATR();
 					fChannel = fCard.getBasicChannel();
 					fIsConnected = true;
+					loadCardTypeSettings();
 					break;
 				}
 			}
@@ -138,18 +356,22 @@ public class SmartCard {
 	 * @throws CardException
 	 *             if the card operation failed
 	 */
-	public void connectCard() throws CardException, NoReadersFoundException {
+	public synchronized void connectCard() throws CardException,
+			NoReadersFoundException {
+		disconnectRemovedCard();
 		if (!fIsConnected) {
 			// Connects with the first available smart card reader
-			TerminalFactory factory = TerminalFactory.getDefault();
-			List<CardTerminal> terminals = factory.terminals().list();
+			List<CardTerminal> terminals = getSmartCardReaders();
 
 			if (terminals.size() > 0) {
 				fTerminal = terminals.get(0);
+				fRemovals = getRemovals(fTerminal.getName());
+				fRemovalsAtConnect = fRemovals.get();
 				fCard = fTerminal.connect("*");
 				fATR = fCard.getATR();
 				fChannel = fCard.getBasicChannel();
 				fIsConnected = true;
+				loadCardTypeSettings();
 			} else {
 				throw new NoReadersFoundException();
 			}
@@ -162,10 +384,195 @@ public class SmartCard {
 	 * @throws CardException
 	 *             if the card operation failed
 	 */
-	public void disconnect() throws CardException {
+	public synchronized void disconnect() throws CardException {
 		if (fIsConnected) {
-			fCard.disconnect(true);
-			fIsConnected = false;
+			// A transaction in progress ends with the connection
+			if (fTransactionOwner != null) {
+				fEndedTransactions.put(fTransactionOwner, fTransactionDepth);
+			}
+			fTransactionDepth = 0;
+			fTransactionOwner = null;
+			fCancelled = null;
+			releaseReader();
+			invalidateSelection();
+			notifyAll();
+			try {
+				fCard.disconnect(true);
+			} finally {
+				// The card can't be used anymore, also when its reader is gone
+				fIsConnected = false;
+			}
+		}
+	}
+
+	/**
+	 * Disconnects the card when it has been removed from its reader, so that
+	 * the card inserted next can be connected.
+	 */
+	private void disconnectRemovedCard() {
+		if (isCardRemoved()) {
+			try {
+				this.disconnect();
+			} catch (CardException e) {
+				// The card is gone already
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether the connected card has been removed from its reader,
+	 * as reported by a card monitor. The card stays connected until it is
+	 * disconnected or another card is connected, but the operations on it are
+	 * aborted.
+	 * 
+	 * @return whether the connected card has been removed
+	 */
+	public boolean isCardRemoved() {
+		final AtomicLong removals = fRemovals;
+		return fIsConnected && (removals != null)
+				&& (removals.get() != fRemovalsAtConnect);
+	}
+
+	/**
+	 * Aborts the operations on the cards connected to the reader with the
+	 * given name, since the card has been removed from it. Each operation is
+	 * aborted before the next command it would send to the card, so that the
+	 * reader is free for the card inserted next. This is called by the card
+	 * monitors, which notice the removal before the reader fails the
+	 * commands.
+	 * 
+	 * @param reader
+	 *            is the name of the reader the card has been removed from
+	 */
+	public static void cardRemoved(final String reader) {
+		getRemovals(reader).incrementAndGet();
+	}
+
+	/**
+	 * Returns the number of times a card has been removed from the reader
+	 * with the given name.
+	 */
+	private static AtomicLong getRemovals(final String reader) {
+		return fgRemovals.computeIfAbsent(reader, key -> new AtomicLong());
+	}
+
+	/**
+	 * Sets the time an operation may take, from when it begins waiting for the
+	 * card until it releases the card. An operation that takes longer is
+	 * aborted with an {@link OperationAbortedException} before the next
+	 * command it would send to the card, or while waiting for the card. The
+	 * operation of a {@link be.belgium.eid.eidlib.CardSession session} lasts
+	 * until it is closed.
+	 * 
+	 * @param timeout
+	 *            is the time in milliseconds, 0 to wait for as long as it takes
+	 */
+	public void setTimeout(final long timeout) {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Negative timeout");
+		}
+		fTimeout = timeout;
+	}
+
+	/**
+	 * Returns the time an operation may take.
+	 * 
+	 * @return the time in milliseconds, 0 when unlimited
+	 */
+	public long getTimeout() {
+		return fTimeout;
+	}
+
+	/**
+	 * Cancels the operation holding the card, if any. The operation is
+	 * aborted with an {@link OperationAbortedException} before the next
+	 * command it would send to the card.
+	 */
+	public synchronized void cancel() {
+		cancel(fTransactionOwner);
+	}
+
+	/**
+	 * Cancels the operation of the given thread when it holds the card.
+	 * 
+	 * @param owner
+	 *            is the thread of which the operation is cancelled
+	 */
+	synchronized void cancel(final Thread owner) {
+		if ((owner != null) && (fTransactionOwner == owner)) {
+			fCancelled = owner;
+		}
+	}
+
+	/**
+	 * Performs the given operation of the given future on the current thread.
+	 * When the future completes before the operation, because it was
+	 * cancelled or timed out for instance, the operation is cancelled.
+	 * 
+	 * @param future
+	 *            is the future to be completed with the result of the
+	 *            operation
+	 * @param operation
+	 *            is the operation to perform
+	 * @return the result of the operation
+	 * @throws CancellationException
+	 *             when the future completed before the operation started
+	 * @throws Exception
+	 *             when the operation failed
+	 */
+	<T> T performFor(final CompletableFuture<?> future,
+			final Callable<T> operation) throws Exception {
+		final AtomicReference<Thread> performer = new AtomicReference<Thread>(
+				Thread.currentThread());
+		future.whenComplete((result, e) -> {
+			synchronized (performer) {
+				cancel(performer.get());
+			}
+		});
+
+		try {
+			if (future.isDone()) {
+				throw new CancellationException();
+			}
+			return operation.call();
+		} finally {
+			synchronized (performer) {
+				performer.set(null);
+			}
+		}
+	}
+
+	/**
+	 * Checks, before a command is sent to the card, whether the operation
+	 * sending it has been aborted.
+	 * 
+	 * @throws CardNotFoundException
+	 *             when the card has been removed or the transaction of the
+	 *             operation was ended by a disconnect
+	 * @throws OperationAbortedException
+	 *             when the operation has been cancelled or timed out
+	 */
+	private void checkAborted() throws CardNotFoundException,
+			OperationAbortedException {
+		if (isCardRemoved()) {
+			throw new CardNotFoundException(
+					CardNotFoundException.CardNotFoundType.REMOVED);
+		}
+
+		final Thread current = Thread.currentThread();
+		if (fEndedTransactions.containsKey(current)) {
+			throw new CardNotFoundException(
+					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+		}
+		if (fTransactionOwner == current) {
+			if (fCancelled == current) {
+				throw new OperationAbortedException(
+						OperationAbortedException.AbortType.CANCELLED);
+			}
+			if (fDeadlineSet && (System.nanoTime() - fDeadline >= 0)) {
+				throw new OperationAbortedException(
+						OperationAbortedException.AbortType.TIMED_OUT);
+			}
 		}
 	}
 
@@ -213,8 +620,159 @@ public class SmartCard {
 		}
 	}
 
+	/**
+	 * Sets whether the number of bytes read by one READ BINARY command is
+	 * negotiated with the card. When enabled, the first read on a reader/card
+	 * pair probes whether an extended length APDU or a short APDU with
+	 * Le=0x00 (256 bytes) is accepted before falling back to the default block
+	 * length. The outcome is remembered for later connections with the same
+	 * reader and card type. Disabled by default.
+	 * 
+	 * @param negotiate
+	 *            indicates whether to negotiate the block length
+	 */
+	public void setBlockLengthNegotiation(final boolean negotiate) {
+		fNegotiateBlockLength = negotiate;
+		if (negotiate) {
+			loadCardTypeSettings();
+		} else {
+			fBlockLength = fgDEFAULT_BLOCK_LENGTH;
+			fBlockLengthNegotiated = false;
+		}
+	}
+
+	/**
+	 * Indicates whether the block length is negotiated with the card.
+	 * 
+	 * @return whether the block length is negotiated
+	 */
+	public boolean isBlockLengthNegotiation() {
+		return fNegotiateBlockLength;
+	}
+
+	/**
+	 * Returns the number of bytes currently read by one READ BINARY command.
+	 * 
+	 * @return the block length
+	 */
+	public int getBlockLength() {
+		return fBlockLength;
+	}
+
+	/**
+	 * Sets whether files are read with their exact length. When enabled, the
+	 * size of a file is learned up front from the file control information
+	 * returned by the SELECT command, or otherwise from the DER header in the
+	 * first block of the file. The file is then read with exactly the needed
+	 * READ BINARY commands into an array of exactly the right size, without
+	 * reading past the end of the file. Cards that don't return the file
+	 * control information are remembered so that they aren't asked again.
+	 * Disabled by default.
+	 * 
+	 * @param exact
+	 *            indicates whether to read files with their exact length
+	 */
+	public void setExactLengthReads(final boolean exact) {
+		fExactLengthReads = exact;
+	}
+
+	/**
+	 * Indicates whether files are read with their exact length.
+	 * 
+	 * @return whether files are read with their exact length
+	 */
+	public boolean isExactLengthReads() {
+		return fExactLengthReads;
+	}
+
+	/**
+	 * Looks up the settings of the connected reader and card, such as the
+	 * block length negotiated before.
+	 */
+	private void loadCardTypeSettings() {
+		fBlockLength = fgDEFAULT_BLOCK_LENGTH;
+		fBlockLengthNegotiated = false;
+		invalidateSelection();
+		if (!fIsConnected) {
+			return;
+		}
+
+		fATRBytes = fATR.getBytes();
+		fCardTypeKey = fTerminal.getName() + "/"
+				+ ByteConverter.hexify(fATRBytes);
+		if (fNegotiateBlockLength) {
+			final Integer negotiated = fgNegotiatedBlockLengths
+					.get(fCardTypeKey);
+			if (negotiated != null) {
+				fBlockLength = negotiated;
+				fBlockLengthNegotiated = true;
+			}
+		}
+	}
+
+	/**
+	 * Probes the largest block length that the card and the reader accept by
+	 * reading the first block of the currently selected file. The negotiated
+	 * block length is remembered and the response of the accepted probe is
+	 * left in the response buffer so that it can be used as the first block
+	 * of the file.
+	 * 
+	 * @return the length of the response to the first READ BINARY command
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private int negotiateBlockLength() throws CardNotFoundException,
+			CardException {
+		int responseLength = -1;
+		for (int i = 0; i < fgBLOCK_LENGTH_CANDIDATES.length; i++) {
+			final int candidate = fgBLOCK_LENGTH_CANDIDATES[i];
+			final boolean last = (i == fgBLOCK_LENGTH_CANDIDATES.length - 1);
+
+			try {
+				responseLength = transmitReadBinary(0, candidate);
+			} catch (CardException e) {
+				// The reader couldn't transport the APDU, try a smaller block
+				// unless there is none left
+				if (last) {
+					throw e;
+				}
+				continue;
+			}
+
+			final int sw = getSW(responseLength);
+			if ((((sw >> 8) == 0x67) || ((sw >> 8) == 0x6C)) && !last) {
+				// Wrong length, try a smaller block. A card also asks for an
+				// exact length when it can't return the whole block, which
+				// can't be told apart from a file shorter than the block.
+				continue;
+			} else if ((sw == 0x9000) || (sw == 0x6282)) {
+				// The block length was accepted
+				fBlockLength = candidate;
+				fBlockLengthNegotiated = true;
+				fgNegotiatedBlockLengths.put(fCardTypeKey, candidate);
+			}
+
+			// The response is either accepted or inconclusive, in which case
+			// the negotiation is tried again on the next read
+			break;
+		}
+
+		return responseLength;
+	}
+
 	/**
 	 * Locks the connected smart card reader to avoid concurrency problems.
+	 * Transactions can be nested, only the outermost transaction acquires the
+	 * exclusive access to the card. A transaction belongs to the thread that
+	 * begins it, other threads wait until it has ended. This includes threads
+	 * using other instances connected to the same reader, so a thread holding
+	 * a transaction must not begin one on another instance of the same reader.
+	 * When a timeout is set, the outermost transaction fails with an
+	 * {@link OperationAbortedException} when the card isn't free in time, and
+	 * its deadline applies to the commands sent until it ends.
 	 * 
 	 * @throws CardNotFoundException
 	 *             indicates that the card wasn't present in the system or was
@@ -224,20 +782,98 @@ public class SmartCard {
 	 *             if the card operation failed
 	 */
 	public void beginTransaction() throws CardNotFoundException, CardException {
+		final Thread current = Thread.currentThread();
+		final long timeout = TimeUnit.MILLISECONDS.toNanos(fTimeout);
+		final long deadline = System.nanoTime() + timeout;
+		final Semaphore readerLock;
 		synchronized (this) {
-			// Handle the case when no connection has yet been made
-			if (!isConnected()) {
+			// Handle the case when no connection has yet been made, or when
+			// the transaction of this thread ended with an earlier one
+			if (!isConnected() || fEndedTransactions.containsKey(current)) {
 				throw new CardNotFoundException(
 						CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
-			} else {
-				fCard.beginExclusive();
 			}
+
+			// Wait for the transaction of another thread to end
+			while ((fTransactionDepth > 0) && (fTransactionOwner != current)) {
+				try {
+					if (timeout > 0) {
+						final long left = deadline - System.nanoTime();
+						if (left <= 0) {
+							throw new OperationAbortedException(
+									OperationAbortedException.AbortType.TIMED_OUT);
+						}
+						TimeUnit.NANOSECONDS.timedWait(this, left);
+					} else {
+						wait();
+					}
+				} catch (InterruptedException e) {
+					throw new CardException(
+							"Interrupted while waiting for the card", e);
+				}
+				if (!isConnected()) {
+					throw new CardNotFoundException(
+							CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+				}
+			}
+
+			fTransactionDepth++;
+			if (fTransactionDepth > 1) {
+				return;
+			}
+
+			// Claim the transaction before waiting for the reader, without
+			// holding the lock so that the card can be disconnected meanwhile
+			fTransactionOwner = current;
+			fCancelled = null;
+			fDeadline = deadline;
+			fDeadlineSet = timeout > 0;
+			readerLock = fgReaderLocks.computeIfAbsent(fTerminal.getName(),
+					key -> new Semaphore(1, true));
+		}
+
+		try {
+			if (timeout <= 0) {
+				readerLock.acquire();
+			} else if (!readerLock.tryAcquire(deadline - System.nanoTime(),
+					TimeUnit.NANOSECONDS)) {
+				abandonTransaction(current);
+				throw new OperationAbortedException(
+						OperationAbortedException.AbortType.TIMED_OUT);
+			}
+		} catch (InterruptedException e) {
+			abandonTransaction(current);
+			throw new CardException("Interrupted while waiting for the reader",
+					e);
+		}
+
+		synchronized (this) {
+			fReaderLock = readerLock;
+			if (fTransactionOwner != current) {
+				// Disconnected while waiting
+				fEndedTransactions.remove(current);
+				releaseReader();
+				throw new CardNotFoundException(
+						CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+			}
+		}
+
+		try {
+			fCard.beginExclusive();
+		} catch (CardException e) {
+			abandonTransaction(current);
+			throw e;
+		} catch (RuntimeException e) {
+			abandonTransaction(current);
+			throw e;
 		}
 	}
 
 	/**
 	 * Unlocks the connected smart card reader to allow other instances to
-	 * access the data on the smart card.
+	 * access the data on the smart card. The exclusive access is only released
+	 * when the outermost transaction ends. Ending a transaction that was
+	 * already ended by a disconnect does nothing.
 	 * 
 	 * @throws CardNotFoundException
 	 *             indicates that the card wasn't present in the system or was
@@ -248,16 +884,155 @@ public class SmartCard {
 	 */
 	public void endTransaction() throws CardNotFoundException, CardException {
 		synchronized (this) {
+			final Thread current = Thread.currentThread();
+			final Integer ended = fEndedTransactions.get(current);
+			if (ended != null) {
+				// The disconnect has ended the transaction already
+				if (ended > 1) {
+					fEndedTransactions.put(current, ended - 1);
+				} else {
+					fEndedTransactions.remove(current);
+				}
+				return;
+			}
+
 			// Handle the case when no connection has yet been made
 			if (!isConnected()) {
 				throw new CardNotFoundException(
 						CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
-			} else {
-				fCard.endExclusive();
+			} else if ((fTransactionDepth > 0)
+					&& (fTransactionOwner == current)) {
+				fTransactionDepth--;
+				if (fTransactionDepth == 0) {
+					// Other applications may select other files from now on
+					fTransactionOwner = null;
+					invalidateSelection();
+					notifyAll();
+					try {
+						// The exclusive access ended with the removal
+						if (!isCardRemoved()) {
+							fCard.endExclusive();
+						}
+					} finally {
+						releaseReader();
+					}
+				}
 			}
 		}
 	}
 
+	/**
+	 * Ends the transaction of the current thread, however deeply nested, so
+	 * that others can use the card until it is resumed.
+	 * 
+	 * @return the depth of the transaction to resume
+	 * @throws CardNotFoundException
+	 *             indicates that the card has been disconnected
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private synchronized int suspendTransaction()
+			throws CardNotFoundException, CardException {
+		if (fTransactionOwner != Thread.currentThread()) {
+			// The transaction was ended by a disconnect
+			throw new CardNotFoundException(
+					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+		}
+		final int depth = fTransactionDepth;
+		fTransactionDepth = 1;
+		this.endTransaction();
+
+		return depth;
+	}
+
+	/**
+	 * Begins the transaction of the current thread again, as deeply nested as
+	 * when it was suspended and with the same deadline.
+	 * 
+	 * @param depth
+	 *            is the depth of the suspended transaction
+	 * @param deadlineSet
+	 *            indicates whether the suspended transaction has a deadline
+	 * @param deadline
+	 *            is the deadline of the suspended transaction
+	 * @throws CardNotFoundException
+	 *             indicates that the card has been disconnected
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private void resumeTransaction(final int depth, final boolean deadlineSet,
+			final long deadline) throws CardNotFoundException, CardException {
+		this.beginTransaction();
+		synchronized (this) {
+			fTransactionDepth = depth;
+			fDeadlineSet = deadlineSet;
+			fDeadline = deadline;
+		}
+	}
+
+	/**
+	 * Ends the outermost transaction of the given thread that failed to
+	 * acquire the exclusive access, unless the card was disconnected
+	 * meanwhile.
+	 * 
+	 * @param owner
+	 *            is the thread that began the transaction
+	 */
+	private synchronized void abandonTransaction(final Thread owner) {
+		if (fTransactionOwner == owner) {
+			fTransactionDepth = 0;
+			fTransactionOwner = null;
+			fCancelled = null;
+			notifyAll();
+			releaseReader();
+		} else {
+			// The disconnect has released the reader already
+			fEndedTransactions.remove(owner);
+		}
+	}
+
+	/**
+	 * Releases the permit of the reader held by the transaction, if any.
+	 */
+	private synchronized void releaseReader() {
+		if (fReaderLock != null) {
+			fReaderLock.release();
+			fReaderLock = null;
+		}
+	}
+
+	/**
+	 * Opens a session that holds the exclusive access to the card until it is
+	 * closed. All operations performed in the meantime, such as reading
+	 * multiple files, run without other applications interleaving and
+	 * without acquiring and releasing the access for every operation. The
+	 * session belongs to the thread that opens it and has to be closed, which
+	 * is easiest with a try-with-resources statement.
+	 * 
+	 * @return the opened session
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset, it could also be that no connection with the smart
+	 *             card has been made yet
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	public CardSession openSession() throws CardNotFoundException,
+			CardException {
+		this.beginTransaction();
+		return new CardSession(this);
+	}
+
+	/**
+	 * Indicates whether a transaction or session is currently holding the
+	 * exclusive access to the card.
+	 * 
+	 * @return whether the card is held exclusively
+	 */
+	public boolean isInTransaction() {
+		return fTransactionDepth > 0;
+	}
+
 	/**
 	 * Transmits the given command APDU to the smart card.
 	 * 
@@ -275,8 +1050,19 @@ public class SmartCard {
 	public ResponseAPDU transmitAPDU(final CommandAPDU cAPDU)
 			throws CardException, CardNotFoundException {
 		if (isConnected()) {
-			// Transmit APDU over channel and return response
-			return fChannel.transmit(cAPDU);
+			// Keep other threads from sending commands in between
+			this.beginTransaction();
+			try {
+				checkAborted();
+
+				// The command may change the selection on the card
+				invalidateSelection();
+
+				// Transmit APDU over channel and return response
+				return fChannel.transmit(cAPDU);
+			} finally {
+				this.endTransaction();
+			}
 		} else {
 			throw new CardNotFoundException(
 					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
@@ -309,6 +1095,33 @@ public class SmartCard {
 				0x00));
 	}
 
+	/**
+	 * Selects a file on the smart card and asks for its file control
+	 * information, which contains among others the size of the file.
+	 * 
+	 * @param fileID
+	 *            is the ID of the file to select
+	 * @return the response APDU containing the file control information, if
+	 *         supported by the card, and the two resulting status bits
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset, it could also be that no connection with the smart
+	 *             card has been made yet
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	public ResponseAPDU selectFileWithFCI(final byte[] fileID)
+			throws CardNotFoundException, CardException {
+		// Handle the case when no connection has yet been made
+		if (!isConnected()) {
+			throw new CardNotFoundException(
+					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+		}
+
+		return transmitAPDU(new CommandAPDU(0x00, 0xA4, 0x08, 0x00, fileID,
+				0x100));
+	}
+
 	/**
 	 * Sends a command to the smart card to read a block of the currently
 	 * selected file.
@@ -340,7 +1153,11 @@ public class SmartCard {
 
 	/**
 	 * Reads a file from the smart card and returns the contents of the read
-	 * file.
+	 * file. Afterwards the reader is given the time to settle that its
+	 * {@link be.belgium.eid.eidlib.ReaderProfiles reader profile} asks for.
+	 * When the transmission fails while the card is still present, the read
+	 * is retried with an increasing settle delay if auto detection is
+	 * enabled.
 	 * 
 	 * @param fileID
 	 *            is the identifier for the file to read
@@ -356,82 +1173,644 @@ public class SmartCard {
 	 */
 	public byte[] readFile(byte[] fileID, final int maxOutputLength)
 			throws CardNotFoundException, CardException {
+		// Hold the card until the scratch buffer has been copied, other
+		// threads reuse it as soon as the transaction ends
+		this.beginTransaction();
+		try {
+			final ByteBuffer output = readFile(fileID, null, maxOutputLength);
+
+			// Return the data, which is only copied when it was read in the
+			// scratch buffer or when less was read than expected
+			if (output == null) {
+				return new byte[0];
+			} else if ((output != fScratchBuffer)
+					&& (output.position() == output.capacity())) {
+				return output.array();
+			} else {
+				final byte[] result = new byte[output.position()];
+				System.arraycopy(output.array(), 0, result, 0, result.length);
+				return result;
+			}
+		} finally {
+			this.endTransaction();
+		}
+	}
+
+	/**
+	 * Reads a file from the smart card into the given buffer, starting at its
+	 * current position. No more bytes are read than the buffer has remaining,
+	 * the position of the buffer is advanced by the number of bytes read.
+	 * Reading a file into a buffer that is reused doesn't allocate any memory,
+	 * apart from what the underlying PC/SC implementation does. The reader is
+	 * given the time to settle like with
+	 * {@link #readFile(byte[], int)}.
+	 * 
+	 * @param fileID
+	 *            is the identifier for the file to read
+	 * @param dst
+	 *            is the buffer to read the contents of the file into
+	 * @return the number of bytes read
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset, it could also be that no connection with the smart
+	 *             card has been made yet
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	public int readFile(final byte[] fileID, final ByteBuffer dst)
+			throws CardNotFoundException, CardException {
+		final int start = dst.position();
+		readFile(fileID, dst, dst.remaining());
+
+		return dst.position() - start;
+	}
+
+	/**
+	 * Reads a file from the smart card into the given buffer, or into a buffer
+	 * that is allocated when none is given, retrying when the reader has to
+	 * settle.
+	 * 
+	 * @return the buffer the file was read into, null if nothing was read
+	 */
+	private ByteBuffer readFile(final byte[] fileID, final ByteBuffer dst,
+			final int maxOutputLength) throws CardNotFoundException,
+			CardException {
 		// Handle the case when no connection has yet been made
 		if (!isConnected()) {
 			throw new CardNotFoundException(
 					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
 		}
 
+		final int start = (dst == null) ? 0 : dst.position();
+		ByteBuffer output = null;
+		boolean read = false;
+		while (!read) {
+			try {
+				output = readFileContents(fileID, dst, maxOutputLength);
+				read = true;
+			} catch (OperationAbortedException e) {
+				// Aborted on purpose, the reader didn't fail
+				throw e;
+			} catch (CardException e) {
+				// Readers that need time to settle fail while the card is
+				// still present, back off and try again, unless the thread
+				// was interrupted
+				if (isInterruption(e) || !fTerminal.isCardPresent()
+						|| !ReaderProfiles.reportTransmissionFailure(fTerminal
+								.getName())) {
+					throw e;
+				}
+				if (dst != null) {
+					dst.position(start);
+				}
+				settle(null);
+			}
+		}
+		ReaderProfiles.reportTransmissionSuccess(fTerminal.getName());
+		settle(output);
+
+		return output;
+	}
+
+	/**
+	 * Indicates whether the given failure was caused by the interruption of
+	 * the current thread rather than by the reader.
+	 */
+	private static boolean isInterruption(final CardException e) {
+		return (e.getCause() instanceof InterruptedException)
+				|| Thread.currentThread().isInterrupted();
+	}
+
+	/**
+	 * Waits for the time the connected reader needs to settle after reading a
+	 * file, according to its reader profile. The transaction of the current
+	 * thread is suspended meanwhile, so that the reader isn't held while
+	 * nothing is sent to it.
+	 * 
+	 * @param output
+	 *            is the buffer the file has been read into, if any
+	 * @throws CardNotFoundException
+	 *             indicates that the card has been disconnected
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private void settle(final ByteBuffer output) throws CardNotFoundException,
+			CardException {
+		final long delay = ReaderProfiles.getSettleDelay(fTerminal.getName(),
+				fATRBytes);
+		if (delay <= 0) {
+			return;
+		}
+
+		final Runnable sleep = () -> {
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				// Stop waiting, but let the caller know
+				Thread.currentThread().interrupt();
+			}
+		};
+		if (fTransactionOwner == Thread.currentThread()) {
+			whileSuspended(output, sleep);
+		} else {
+			sleep.run();
+		}
+	}
+
+	/**
+	 * Runs the given action with the transaction of the current thread
+	 * suspended, and begins it again afterwards with the same depth and
+	 * deadline. The scratch buffer isn't handed out meanwhile when it holds
+	 * the given output.
+	 * 
+	 * @param output
+	 *            is the buffer a file is read into, if any
+	 * @param action
+	 *            is the action to run
+	 * @throws CardNotFoundException
+	 *             indicates that the card has been disconnected
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private void whileSuspended(final ByteBuffer output, final Runnable action)
+			throws CardNotFoundException, CardException {
+		// The operations read into a scratch buffer of their own
+		final ByteBuffer scratch = fScratchBuffer;
+		final boolean ownScratch = (output != null) && (output == scratch);
+		if (ownScratch) {
+			fScratchBuffer = null;
+		}
+
+		final boolean deadlineSet = fDeadlineSet;
+		final long deadline = fDeadline;
+		final int depth = suspendTransaction();
+		try {
+			action.run();
+		} finally {
+			resumeTransaction(depth, deadlineSet, deadline);
+		}
+
+		// Hand the scratch buffer back only once the card is held again, so
+		// that no other operation can take it while this one still reads
+		if (ownScratch) {
+			fScratchBuffer = scratch;
+		}
+	}
+
+	/**
+	 * Lets the operations of a higher priority waiting for the connected
+	 * reader run before the next block of a file is read, when reading for an
+	 * operation of its scheduler. The transaction is suspended meanwhile, and
+	 * the file is selected again afterwards so that it can be read on from the
+	 * same offset.
+	 * 
+	 * @param fileID
+	 *            is the identifier of the file being read
+	 * @param output
+	 *            is the buffer the file is read into
+	 * @throws CardNotFoundException
+	 *             indicates that the card has been disconnected
+	 * @throws CardException
+	 *             if the card operation failed
+	 */
+	private void yieldBetweenBlocks(final byte[] fileID, final ByteBuffer output)
+			throws CardNotFoundException, CardException {
+		final ReaderScheduler scheduler = ReaderScheduler.current();
+		if ((scheduler == null) || !scheduler.serves(fTerminal.getName())
+				|| !scheduler.hasHigherPriorityWaiting()) {
+			return;
+		}
+
+		whileSuspended(output, scheduler::runHigherPriority);
+		selectFileToRead(fileID);
+	}
+
+	/**
+	 * Reads the contents of a file from the smart card within one exclusive
+	 * transaction. When no buffer is given, an array of the exact length is
+	 * allocated as soon as the length of the file is known, until then the
+	 * file is read into the scratch buffer.
+	 * 
+	 * @return the buffer the file was read into, null if nothing was read
+	 */
+	private ByteBuffer readFileContents(final byte[] fileID,
+			final ByteBuffer dst, final int maxOutputLength)
+			throws CardNotFoundException, CardException {
 		// Lock card
 		this.beginTransaction();
 
-		// Init
-		int blocklength = 0xF8;
-		int length = 0;
-		boolean enough = false;
-		byte[] tmpReadData = new byte[maxOutputLength];
-
-		// Select the file to read
-		byte[] fullfileID = new byte[2 + fileID.length];
-		fullfileID[0] = SmartCardReadable.fgMF[0];
-		fullfileID[1] = SmartCardReadable.fgMF[1];
-		System.arraycopy(fileID, 0, fullfileID, 2, fileID.length);
-		this.selectFile(fullfileID);
-
-		// Keep on reading the file until everything has been read
-		while (!enough) {
-			// Read block
-			int p1 = length / 256;
-			int p2 = length % 256;
-			int noBytesToRead = blocklength;
-			ResponseAPDU rAPDU = readBinaryData(p1, p2, noBytesToRead);
-
-			if ((rAPDU.getSW1() == 0x90) && (rAPDU.getSW2() == 0x00)) {
-				// Data remains to be read
-				System.arraycopy(rAPDU.getData(), 0, tmpReadData, length, rAPDU
-						.getData().length);
-				length += rAPDU.getData().length;
-			} else {
-				enough = true;
-
-				if (rAPDU.getSW1() == 0x6C) {
-					// Wrong length read (too much), so we are at the end of
-					// the file and thus only need to read the value of SW2
-					// number of bytes
-					blocklength = rAPDU.getSW2();
-
-					p1 = length / 256;
-					p2 = length % 256;
-					noBytesToRead = blocklength;
-					rAPDU = readBinaryData(p1, p2, noBytesToRead);
-
-					// This should have worked
-					assert ((rAPDU.getSW1() == 0x90) && (rAPDU.getSW2() == 0x00));
-
-					// Copy last bit of data in certificate
-					System.arraycopy(rAPDU.getData(), 0, tmpReadData, length,
-							blocklength);
-					length += blocklength;
+		boolean completed = false;
+		try {
+			// Select the file to read, learning its length when possible
+			int capacity = maxOutputLength;
+			ByteBuffer output = dst;
+			final int fileLength = selectFileToRead(fileID);
+			if (fileLength >= 0) {
+				capacity = Math.min(fileLength, capacity);
+				if (output == null) {
+					output = ByteBuffer.wrap(new byte[capacity]);
+				}
+			}
+
+			// Negotiate the block length on the first block when still needed
+			int responseLength = -1;
+			if (fNegotiateBlockLength && !fBlockLengthNegotiated) {
+				responseLength = negotiateBlockLength();
+			}
+
+			// Keep on reading the file until everything has been read
+			boolean lengthKnown = (fileLength >= 0);
+			boolean enough = false;
+			int length = 0;
+			while (!enough && (length < capacity)) {
+				// Read block, never more than fits in the output
+				int noBytesToRead = Math.min(fBlockLength, capacity - length);
+				if (responseLength < 0) {
+					responseLength = transmitReadBinary(length, noBytesToRead);
+				} else {
+					noBytesToRead = fBlockLength;
+				}
+
+				final byte[] response = fResponseBuffer.array();
+				final int sw = getSW(responseLength);
+				if ((sw == 0x9000) || (sw == 0x6282)) {
+					// Data remains to be read, unless less data was returned
+					// than asked for or the end of file was reported
+					final int dataLength = responseLength - 2;
+					enough = (dataLength < noBytesToRead) || (sw == 0x6282);
+					if (!lengthKnown) {
+						// The first block may reveal the length of the file
+						final int blockFileLength = getFileLength(response,
+								dataLength, enough);
+						if (blockFileLength >= 0) {
+							capacity = Math.min(blockFileLength, capacity);
+							if (output == null) {
+								output = ByteBuffer.wrap(new byte[capacity]);
+							}
+						}
+						lengthKnown = true;
+					}
+					if (output == null) {
+						output = getScratchBuffer(capacity);
+					}
+
+					final int copied = Math.min(dataLength, capacity - length);
+					output.put(response, 0, copied);
+					length += copied;
+				} else {
+					enough = true;
+
+					if ((sw >> 8) == 0x6C) {
+						// Wrong length read (too much), so we are at the end
+						// of the file and thus only need to read the value of
+						// SW2 number of bytes
+						final int blocklength = Math.min(sw & 0xFF, capacity
+								- length);
+						responseLength = transmitReadBinary(length, blocklength);
+
+						// This should have worked
+						assert (getSW(responseLength) == 0x9000);
+
+						// Copy last bit of data in certificate
+						if (output == null) {
+							output = ByteBuffer.wrap(new byte[blocklength]);
+						}
+						final int copied = Math.min(responseLength - 2,
+								blocklength);
+						output.put(response, 0, copied);
+						length += copied;
+					}
 				}
+				responseLength = -1;
+
+				// Let operations of a higher priority go ahead between blocks
+				if (!enough && (length < capacity)) {
+					yieldBetweenBlocks(fileID, output);
+				}
+			}
+
+			completed = true;
+			return output;
+		} finally {
+			// The selection on the card is unknown after a failed read
+			if (!completed) {
+				invalidateSelection();
 			}
+
+			// Unlock card
+			this.endTransaction();
 		}
+	}
 
-		// Unlock card
-		this.endTransaction();
+	/**
+	 * Returns the scratch buffer, cleared and limited to the given capacity.
+	 */
+	private ByteBuffer getScratchBuffer(final int capacity) {
+		if ((fScratchBuffer == null) || (fScratchBuffer.capacity() < capacity)) {
+			fScratchBuffer = ByteBuffer.allocate(capacity);
+		}
+		fScratchBuffer.clear();
+		fScratchBuffer.limit(capacity);
 
-		// Return the data
-		byte[] result = new byte[length];
-		System.arraycopy(tmpReadData, 0, result, 0, length);
+		return fScratchBuffer;
+	}
 
-		// TODO Avoid an error to occur because transmission is reassured to be
-		// complete. Kind of stupid actually but it is not my fault.
-		try {
-			Thread.sleep(100);
-		} catch (InterruptedException e) {
-			// Ignore
+	/**
+	 * Selects the file with the given path, relative to the master file, to
+	 * read it. When reading files with their exact length and the card
+	 * supports it, the file control information is asked for.
+	 * 
+	 * @return the length of the file or -1 if unknown
+	 */
+	private int selectFileToRead(final byte[] fileID)
+			throws CardNotFoundException, CardException {
+		// Nothing needs to be sent when the file is selected already
+		if (isSelected(fileID)) {
+			return fSelectedFileLength;
+		}
+
+		if (fExactLengthReads
+				&& !Boolean.FALSE.equals(fgFCISupport.get(fCardTypeKey))) {
+			final int responseLength = transmitShortestSelect(fileID, 0x00);
+			final int sw = getSW(responseLength);
+			if (sw == 0x9000) {
+				final int fileLength = getFileLength(fResponseBuffer.array(),
+						responseLength - 2);
+				if (fileLength >= 0) {
+					fgFCISupport.put(fCardTypeKey, Boolean.TRUE);
+				}
+				setSelection(fileID, fileLength);
+				return fileLength;
+			} else if ((sw != 0x6A86) && (sw != 0x6B00)) {
+				// The file couldn't be selected, which becomes clear when
+				// reading it
+				invalidateSelection();
+				return -1;
+			}
+
+			// The card doesn't return the file control information, select
+			// the file without it from now on
+			fgFCISupport.put(fCardTypeKey, Boolean.FALSE);
+		}
+
+		if (getSW(transmitShortestSelect(fileID, 0x0C)) == 0x9000) {
+			setSelection(fileID, -1);
+		} else {
+			invalidateSelection();
+		}
+		return -1;
+	}
+
+	/**
+	 * Selects the file with the given path with the shortest SELECT command.
+	 * When the currently selected file lies in the same dedicated file, only
+	 * the identifier of the elementary file is sent. Otherwise, or when the
+	 * card rejects the short command, the file is selected by its full path.
+	 * 
+	 * @return the length of the response in the response buffer
+	 */
+	private int transmitShortestSelect(final byte[] fileID, final int p2)
+			throws CardNotFoundException, CardException {
+		if (isSelectedDF(fileID)
+				&& !Boolean.FALSE.equals(fgRelativeSelectSupport
+						.get(fCardTypeKey))) {
+			final int responseLength = transmitSelectEF(fileID, p2);
+			if (getSW(responseLength) == 0x9000) {
+				fgRelativeSelectSupport.put(fCardTypeKey, Boolean.TRUE);
+				return responseLength;
+			}
+
+			// Select by path and don't try again if that does work
+			invalidateSelection();
+			final int pathResponseLength = transmitSelect(fileID, p2);
+			if (getSW(pathResponseLength) == 0x9000) {
+				fgRelativeSelectSupport.put(fCardTypeKey, Boolean.FALSE);
+			}
+			return pathResponseLength;
+		}
+
+		return transmitSelect(fileID, p2);
+	}
+
+	/**
+	 * Indicates whether the file with the given path is the file selected
+	 * last by the library.
+	 */
+	private boolean isSelected(final byte[] fileID) {
+		return (fSelectedPathLength == fileID.length)
+				&& isPrefixSelected(fileID, fileID.length);
+	}
+
+	/**
+	 * Indicates whether the file with the given path lies in the same
+	 * dedicated file as the file selected last by the library.
+	 */
+	private boolean isSelectedDF(final byte[] fileID) {
+		return (fSelectedPathLength == fileID.length) && (fileID.length >= 2)
+				&& isPrefixSelected(fileID, fileID.length - 2);
+	}
+
+	/**
+	 * Indicates whether the given number of bytes of the given path equal the
+	 * path selected last by the library.
+	 */
+	private boolean isPrefixSelected(final byte[] fileID, final int length) {
+		for (int i = 0; i < length; i++) {
+			if (fSelectedPath[i] != fileID[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers that the file with the given path and length is selected.
+	 */
+	private void setSelection(final byte[] fileID, final int fileLength) {
+		if (fileID.length > fSelectedPath.length) {
+			invalidateSelection();
+			return;
+		}
+
+		System.arraycopy(fileID, 0, fSelectedPath, 0, fileID.length);
+		fSelectedPathLength = fileID.length;
+		fSelectedFileLength = fileLength;
+	}
+
+	/**
+	 * Forgets the selected file, so that the next file is selected by its
+	 * full path.
+	 */
+	private void invalidateSelection() {
+		fSelectedPathLength = -1;
+		fSelectedFileLength = -1;
+	}
+
+	/**
+	 * Returns the length of the file as found in the given file control
+	 * information, either in a FCP template (0x62) or a FCI template (0x6F).
+	 * 
+	 * @return the length of the file or -1 if not present
+	 */
+	private static int getFileLength(final byte[] fci, final int fciLength) {
+		if ((fciLength == 0)
+				|| ((fci[0] != (byte) 0x62) && (fci[0] != (byte) 0x6F))) {
+			return -1;
+		}
+		final int headerLength = DER.getHeaderLength(fci, 0, fciLength);
+		final int contentLength = DER.getContentLength(fci, 0, fciLength);
+		if ((contentLength < 0) || (headerLength + contentLength > fciLength)) {
+			return -1;
+		}
+
+		// Look for the number of data bytes (0x80) or the allocated size
+		// (0x81) of the file
+		final int end = headerLength + contentLength;
+		int size = DER.findElement(fci, headerLength, end, 0x80);
+		if (size < 0) {
+			size = DER.findElement(fci, headerLength, end, 0x81);
+		}
+		if ((size < 0) || (fci[size + 1] < 1) || (fci[size + 1] > 3)) {
+			return -1;
+		}
+
+		int length = 0;
+		for (int i = 0; i < fci[size + 1]; i++) {
+			length = (length << 8) | (fci[size + 2 + i] & 0xFF);
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the length of a file as revealed by its first block. When the
+	 * first block was the last one, the file is as long as the block.
+	 * Otherwise, when reading files with their exact length, the length is
+	 * taken from the DER header of the file. Only headers of the form 30 82 LL
+	 * LL are taken into account, since shorter sequences can't be told apart
+	 * from raw data such as signatures.
+	 * 
+	 * @return the length of the file or -1 if unknown
+	 */
+	private int getFileLength(final byte[] firstBlock, final int blockLength,
+			final boolean last) {
+		if (last) {
+			return blockLength;
+		} else if (fExactLengthReads && (blockLength >= 4)
+				&& (firstBlock[0] == DER.fgSEQUENCE)
+				&& (firstBlock[1] == (byte) 0x82)) {
+			final int encodedLength = DER.getEncodedLength(firstBlock, 0,
+					blockLength);
+			if (encodedLength >= blockLength) {
+				return encodedLength;
+			}
 		}
-		
-		return result;
+
+		return -1;
+	}
+
+	/**
+	 * Encodes a SELECT command by path from the master file in the command
+	 * buffer and transmits it. The path starts with the identifier of the
+	 * master file, followed by the given path. The file control information
+	 * is asked for when P2 is 0x00.
+	 * 
+	 * @return the length of the response in the response buffer
+	 */
+	private int transmitSelect(final byte[] fileID, final int p2)
+			throws CardNotFoundException, CardException {
+		fCommandBuffer.clear();
+		fCommandBuffer.put((byte) 0x00).put((byte) 0xA4).put((byte) 0x08).put(
+				(byte) p2).put(
+				(byte) (SmartCardReadable.fgMF.length + fileID.length)).put(
+				SmartCardReadable.fgMF).put(fileID);
+		if (p2 != 0x0C) {
+			fCommandBuffer.put((byte) 0x00);
+		}
+
+		return transmitBuffers(256);
+	}
+
+	/**
+	 * Encodes a SELECT command of the elementary file with the last two bytes
+	 * of the given path as identifier under the current dedicated file and
+	 * transmits it. The file control information is asked for when P2 is
+	 * 0x00.
+	 * 
+	 * @return the length of the response in the response buffer
+	 */
+	private int transmitSelectEF(final byte[] fileID, final int p2)
+			throws CardNotFoundException, CardException {
+		fCommandBuffer.clear();
+		fCommandBuffer.put((byte) 0x00).put((byte) 0xA4).put((byte) 0x02).put(
+				(byte) p2).put((byte) 0x02).put(fileID[fileID.length - 2])
+				.put(fileID[fileID.length - 1]);
+		if (p2 != 0x0C) {
+			fCommandBuffer.put((byte) 0x00);
+		}
+
+		return transmitBuffers(256);
+	}
+
+	/**
+	 * Encodes a READ BINARY command in the command buffer and transmits it.
+	 * Blocks longer than 256 bytes are read with an extended length command.
+	 * 
+	 * @return the length of the response in the response buffer
+	 */
+	private int transmitReadBinary(final int offset, final int noBytesToRead)
+			throws CardNotFoundException, CardException {
+		fCommandBuffer.clear();
+		fCommandBuffer.put((byte) 0x00).put((byte) 0xB0).put(
+				(byte) (offset >> 8)).put((byte) offset);
+		if (noBytesToRead > 256) {
+			fCommandBuffer.put((byte) 0x00).put((byte) (noBytesToRead >> 8))
+					.put((byte) noBytesToRead);
+		} else {
+			fCommandBuffer.put((byte) noBytesToRead);
+		}
+
+		return transmitBuffers(noBytesToRead);
+	}
+
+	/**
+	 * Transmits the command in the command buffer and receives the response in
+	 * the response buffer, which is enlarged when it can't hold the expected
+	 * number of bytes.
+	 * 
+	 * @return the length of the response in the response buffer
+	 */
+	private int transmitBuffers(final int expectedLength)
+			throws CardNotFoundException, CardException {
+		checkAborted();
+
+		// Handle the case when no connection has yet been made
+		if (!isConnected()) {
+			throw new CardNotFoundException(
+					CardNotFoundException.CardNotFoundType.NOT_CONNECTED);
+		}
+
+		if (fResponseBuffer.capacity() < expectedLength + 2) {
+			fResponseBuffer = ByteBuffer.allocate(expectedLength + 2);
+		}
+		fCommandBuffer.flip();
+		fResponseBuffer.clear();
+		final int responseLength = fChannel.transmit(fCommandBuffer,
+				fResponseBuffer);
+		if (responseLength < 2) {
+			throw new CardException("Response APDU without status word");
+		}
+
+		return responseLength;
+	}
+
+	/**
+	 * Returns the status word of the response of the given length in the
+	 * response buffer.
+	 */
+	private int getSW(final int responseLength) {
+		final byte[] response = fResponseBuffer.array();
+		return ((response[responseLength - 2] & 0xFF) << 8)
+				| (response[responseLength - 1] & 0xFF);
 	}
 
 	/**
@@ -573,23 +1952,26 @@ public class SmartCard {
 
 		// Write protect the verification of the PIN
 		this.beginTransaction();
+		final ResponseAPDU rAPDU;
+		try {
+			// Insert PIN in APDU field
+			byte[] pin = new byte[] { (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF };
+			pin[0] = (byte) (2 * 16 + evenLengthCode.length());
+			for (int i = 0; i < evenLengthCode.length(); i += 2) {
+				pin[(i / 2) + 1] = (byte) (Integer.parseInt(evenLengthCode
+						.substring(i, i + 2), 16));
+			}
 
-		// Insert PIN in APDU field
-		byte[] pin = new byte[] { (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
-		pin[0] = (byte) (2 * 16 + evenLengthCode.length());
-		for (int i = 0; i < evenLengthCode.length(); i += 2) {
-			pin[(i / 2) + 1] = (byte) (Integer.parseInt(evenLengthCode
-					.substring(i, i + 2), 16));
+			// Send command
+			rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x20,
+					0x00, 0x01 /* hardcoded reference */, pin));
+		} finally {
+			// End lock, also when the command failed or was aborted
+			this.endTransaction();
 		}
 
-		// Send command
-		ResponseAPDU rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x20,
-				0x00, 0x01 /* hardcoded reference */, pin));
-
-		// End lock
-		this.endTransaction();
-
 		// Check whether correct
 		if ((rAPDU.getSW1() == 0x90) && (rAPDU.getSW2() == 0x00)) {
 			// Correct PIN code
@@ -649,36 +2031,39 @@ public class SmartCard {
 
 		// Write protect the verification of the PIN
 		this.beginTransaction();
+		final ResponseAPDU rAPDU;
+		try {
+			// Insert two PINs in APDU field, one for old PIN and one for new
+			// one
+			final int PIN_LENGTH = 8;
+			byte[] pin = new byte[] { (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, };
+
+			// Insert first PIN
+			pin[0] = (byte) (2 * 16 + evenLengthOldCode.length());
+			for (int i = 0; i < evenLengthOldCode.length(); i += 2) {
+				pin[(i / 2) + 1] = (byte) (Integer.parseInt(evenLengthOldCode
+						.substring(i, i + 2), 16));
+			}
 
-		// Insert two PINs in APDU field, one for old PIN and one for new one
-		final int PIN_LENGTH = 8;
-		byte[] pin = new byte[] { (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, (byte) 0x2F, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, };
-
-		// Insert first PIN
-		pin[0] = (byte) (2 * 16 + evenLengthOldCode.length());
-		for (int i = 0; i < evenLengthOldCode.length(); i += 2) {
-			pin[(i / 2) + 1] = (byte) (Integer.parseInt(evenLengthOldCode
-					.substring(i, i + 2), 16));
-		}
+			// Insert second PIN
+			pin[PIN_LENGTH] = (byte) (2 * 16 + evenLengthNewCode.length());
+			for (int i = 0; i < evenLengthNewCode.length(); i += 2) {
+				pin[(i / 2) + 1 + PIN_LENGTH] = (byte) (Integer.parseInt(
+						evenLengthNewCode.substring(i, i + 2), 16));
+			}
 
-		// Insert second PIN
-		pin[PIN_LENGTH] = (byte) (2 * 16 + evenLengthNewCode.length());
-		for (int i = 0; i < evenLengthNewCode.length(); i += 2) {
-			pin[(i / 2) + 1 + PIN_LENGTH] = (byte) (Integer.parseInt(
-					evenLengthNewCode.substring(i, i + 2), 16));
+			// Send command
+			rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x24,
+					0x00, 0x01 /* hardcoded reference */, pin));
+		} finally {
+			// End lock, also when the command failed or was aborted
+			this.endTransaction();
 		}
 
-		// Send command
-		ResponseAPDU rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x24,
-				0x00, 0x01 /* hardcoded reference */, pin));
-
-		// End lock
-		this.endTransaction();
-
 		// Check whether correct
 		if ((rAPDU.getSW1() == 0x90) && (rAPDU.getSW2() == 0x00)) {
 			// Correct PIN code
@@ -728,23 +2113,26 @@ public class SmartCard {
 
 		// Write protect the verification of the PIN
 		this.beginTransaction();
+		final ResponseAPDU rAPDU;
+		try {
+			// Insert PIN in APDU field
+			byte[] pukBytes = new byte[] { (byte) 0x2C, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+					(byte) 0xFF, (byte) 0xFF };
+			pukBytes[0] = (byte) (2 * 16 + fullPUK.length());
+			for (int i = 0; i < fullPUK.length(); i += 2) {
+				pukBytes[(i / 2) + 1] = (byte) (Integer.parseInt(fullPUK
+						.substring(i, i + 2), 16));
+			}
 
-		// Insert PIN in APDU field
-		byte[] pukBytes = new byte[] { (byte) 0x2C, (byte) 0xFF, (byte) 0xFF,
-				(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
-		pukBytes[0] = (byte) (2 * 16 + fullPUK.length());
-		for (int i = 0; i < fullPUK.length(); i += 2) {
-			pukBytes[(i / 2) + 1] = (byte) (Integer.parseInt(fullPUK.substring(
-					i, i + 2), 16));
+			// Send command
+			rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x2C,
+					0x00, 0x01 /* hardcoded reference */, pukBytes));
+		} finally {
+			// End lock, also when the command failed or was aborted
+			this.endTransaction();
 		}
 
-		// Send command
-		ResponseAPDU rAPDU = this.transmitAPDU(new CommandAPDU(0x00, 0x2C,
-				0x00, 0x01 /* hardcoded reference */, pukBytes));
-
-		// End lock
-		this.endTransaction();
-
 		// Check whether correct
 		if ((rAPDU.getSW1() == 0x90) && (rAPDU.getSW2() == 0x00)) {
 			// Reactivation succeeded
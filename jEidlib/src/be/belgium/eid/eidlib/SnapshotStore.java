@@ -0,0 +1,361 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.eidlib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+import be.belgium.eid.security.CertificateChain;
+
+/**
+ * The snapshot store keeps the contents of the cards read before on disk, one
+ * file per card named after its chip number, so that the card of a returning
+ * visitor doesn't need to be read completely again. A stored snapshot is only
+ * used when the identity and address signature files on the card still equal
+ * the stored ones, which detects any change of the identity or address. Only
+ * the lengths and the signatures are read from a stored file to compare
+ * them, the rest only when they are equal. The stored files aren't memory
+ * mapped, so that they can be replaced or removed right after they have been
+ * read, also on Windows.
+ * 
+ * The store holds personal data of the card holders and should be kept in a
+ * directory that only the application can access.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public final class SnapshotStore {
+
+	/** Contains the index of the card data in a stored snapshot */
+	final static int fgCARD_DATA = 0;
+
+	/** Contains the index of the identity file in a stored snapshot */
+	final static int fgID = 1;
+
+	/** Contains the index of the identity signature in a stored snapshot */
+	final static int fgID_SIGNATURE = 2;
+
+	/** Contains the index of the address file in a stored snapshot */
+	final static int fgADDRESS = 3;
+
+	/** Contains the index of the address signature in a stored snapshot */
+	final static int fgADDRESS_SIGNATURE = 4;
+
+	/** Contains the index of the photo file in a stored snapshot */
+	final static int fgPHOTO = 5;
+
+	/** Contains the index of the token information in a stored snapshot */
+	final static int fgTOKEN_INFO = 6;
+
+	/** Contains the index of the root certificate in a stored snapshot */
+	final static int fgROOT = 7;
+
+	/** Contains the index of the CA certificate in a stored snapshot */
+	final static int fgCA = 8;
+
+	/** Contains the index of the authentication certificate */
+	final static int fgAUTH = 9;
+
+	/** Contains the index of the signature certificate */
+	final static int fgSIG = 10;
+
+	/** Contains the index of the national register certificate */
+	final static int fgRN = 11;
+
+	/** Contains the number of files in a stored snapshot */
+	final static int fgFILE_COUNT = 12;
+
+	/** Contains the bytes with which every stored snapshot starts */
+	private final static byte[] fgMAGIC = { 'B', 'E', 'I', 'D', 'S', 'N',
+			'P', '1' };
+
+	/** Contains the extension of the stored snapshots */
+	private final static String fgEXTENSION = ".snapshot";
+
+	/** Contains the directory in which the snapshots are stored */
+	private final File fDirectory;
+
+	/**
+	 * Initializes the store in the given directory, which is created when it
+	 * doesn't exist yet.
+	 * 
+	 * @param directory
+	 *            is the directory in which the snapshots are stored
+	 * @throws IOException
+	 *             when the directory couldn't be created
+	 */
+	public SnapshotStore(final File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Can't create " + directory);
+		}
+		fDirectory = directory;
+	}
+
+	/**
+	 * Returns the directory in which the snapshots are stored.
+	 * 
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return fDirectory;
+	}
+
+	/**
+	 * Returns the files of the snapshot stored for the card with the given
+	 * chip number, provided that its identity and address signatures equal
+	 * the given ones.
+	 * 
+	 * @param chipNumber
+	 *            is the chip number of the card
+	 * @param idSignature
+	 *            is the identity signature read from the card
+	 * @param addressSignature
+	 *            is the address signature read from the card
+	 * @return the stored files indexed like the constants of this class, or
+	 *         null when no snapshot is stored for the card, it is out of date
+	 *         or it is damaged
+	 * @throws IOException
+	 *             when the stored snapshot couldn't be read
+	 */
+	byte[][] load(final byte[] chipNumber, final byte[] idSignature,
+			final byte[] addressSignature) throws IOException {
+		final File file = getFile(chipNumber);
+		if (!file.isFile()) {
+			return null;
+		}
+
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// Find the files from their lengths, without reading them
+			final FileChannel channel = raf.getChannel();
+			final long[] offsets = new long[fgFILE_COUNT];
+			final int[] lengths = new int[fgFILE_COUNT];
+			if (!locateFiles(channel, offsets, lengths)) {
+				return null;
+			}
+
+			// Only an up to date snapshot is of use, so read the signatures
+			// first and the rest only when they are equal
+			final byte[][] files = new byte[fgFILE_COUNT][];
+			if (!readFile(channel, offsets, lengths, fgID_SIGNATURE,
+					idSignature, files)
+					|| !readFile(channel, offsets, lengths,
+							fgADDRESS_SIGNATURE, addressSignature, files)) {
+				return null;
+			}
+			for (int i = 0; i < fgFILE_COUNT; i++) {
+				if (files[i] != null) {
+					// Read already
+					continue;
+				}
+				if (!readFile(channel, offsets, lengths, i, null, files)) {
+					return null;
+				}
+			}
+			return files;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Stores the given snapshot, replacing the snapshot stored before for the
+	 * same card.
+	 * 
+	 * @param snapshot
+	 *            is the snapshot to store
+	 * @throws IOException
+	 *             when the snapshot couldn't be written
+	 */
+	public void save(final CardSnapshot snapshot) throws IOException {
+		final CertificateChain chain = snapshot.getCertificateChain();
+		final ByteBuffer[] files = new ByteBuffer[fgFILE_COUNT];
+		files[fgCARD_DATA] = ByteBuffer.wrap(snapshot.getCardData());
+		files[fgID] = ByteBuffer.wrap(snapshot.getIDFile());
+		files[fgID_SIGNATURE] = ByteBuffer.wrap(snapshot.getIDSignature());
+		files[fgADDRESS] = ByteBuffer.wrap(snapshot.getAddressFile());
+		files[fgADDRESS_SIGNATURE] = ByteBuffer.wrap(snapshot
+				.getAddressSignature());
+		files[fgPHOTO] = ByteBuffer.wrap(snapshot.getPhotoFile());
+		files[fgTOKEN_INFO] = ByteBuffer.wrap(snapshot.getTokenInfo());
+
+		// The certificates are written from their shared contents
+		files[fgROOT] = chain.getRootCert().getContentsBuffer();
+		files[fgCA] = chain.getCertificateAuthorityCert().getContentsBuffer();
+		files[fgAUTH] = chain.getAuthenticationCert().getContentsBuffer();
+		files[fgSIG] = chain.getSignatureCert().getContentsBuffer();
+		files[fgRN] = snapshot.getNationalRegisterCertificate()
+				.getContentsBuffer();
+
+		int length = fgMAGIC.length;
+		for (ByteBuffer contents : files) {
+			length += 4 + contents.remaining();
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(length);
+		buffer.put(fgMAGIC);
+		for (ByteBuffer contents : files) {
+			buffer.putInt(contents.remaining()).put(contents);
+		}
+		buffer.flip();
+
+		// Write a temporary file first, so that a snapshot is never read
+		// half written
+		final File file = getFile(snapshot.getIDVersionInformation()
+				.getChipNumber());
+		final File temporary = File.createTempFile("snapshot", ".tmp",
+				fDirectory);
+		try {
+			final RandomAccessFile raf = new RandomAccessFile(temporary, "rw");
+			try {
+				final FileChannel channel = raf.getChannel();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} finally {
+				raf.close();
+			}
+			Files.move(temporary.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Removes the snapshot stored for the card with the given chip number.
+	 * 
+	 * @param chipNumber
+	 *            is the chip number of the card
+	 */
+	public void remove(final byte[] chipNumber) {
+		getFile(chipNumber).delete();
+	}
+
+	/**
+	 * Removes all stored snapshots.
+	 */
+	public void clear() {
+		final File[] files = fDirectory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (file.getName().endsWith(fgEXTENSION)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the file in which the snapshot of the card with the given chip
+	 * number is stored.
+	 */
+	private File getFile(final byte[] chipNumber) {
+		return new File(fDirectory, ByteConverter.hexify(chipNumber)
+				+ fgEXTENSION);
+	}
+
+	/**
+	 * Looks up the offset and length of every file in the stored snapshot
+	 * opened by the given channel, reading only the magic bytes and the
+	 * lengths.
+	 * 
+	 * @return whether the snapshot is well formed
+	 */
+	private static boolean locateFiles(final FileChannel channel,
+			final long[] offsets, final int[] lengths) throws IOException {
+		final long size = channel.size();
+		final ByteBuffer magic = ByteBuffer.allocate(fgMAGIC.length);
+		if (!read(channel, magic, 0)
+				|| !Arrays.equals(fgMAGIC, magic.array())) {
+			return false;
+		}
+
+		final ByteBuffer length = ByteBuffer.allocate(4);
+		long position = fgMAGIC.length;
+		for (int i = 0; i < fgFILE_COUNT; i++) {
+			length.clear();
+			if (!read(channel, length, position)) {
+				return false;
+			}
+			lengths[i] = length.getInt(0);
+			position += 4;
+			if ((lengths[i] < 0) || (lengths[i] > size - position)) {
+				return false;
+			}
+			offsets[i] = position;
+			position += lengths[i];
+		}
+
+		return position == size;
+	}
+
+	/**
+	 * Reads the file with the given index from the stored snapshot into the
+	 * given files, provided that it equals the given expected contents.
+	 * 
+	 * @param expected
+	 *            are the contents the file must have, or null to accept any
+	 * @return whether the file has been read and is as expected
+	 */
+	private static boolean readFile(final FileChannel channel,
+			final long[] offsets, final int[] lengths, final int index,
+			final byte[] expected, final byte[][] files) throws IOException {
+		if ((expected != null) && (expected.length != lengths[index])) {
+			return false;
+		}
+		final byte[] contents = new byte[lengths[index]];
+		if (!read(channel, ByteBuffer.wrap(contents), offsets[index])
+				|| ((expected != null) && !Arrays.equals(expected, contents))) {
+			return false;
+		}
+
+		files[index] = contents;
+		return true;
+	}
+
+	/**
+	 * Fills the given buffer from the given position of the channel, without
+	 * changing the position of the channel.
+	 * 
+	 * @return whether the buffer has been filled, false when the end of the
+	 *         file was reached first
+	 */
+	private static boolean read(final FileChannel channel,
+			final ByteBuffer buffer, final long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			final int read = channel.read(buffer, position
+					+ buffer.position());
+			if (read < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
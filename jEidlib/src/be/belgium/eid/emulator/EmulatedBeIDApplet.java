@@ -0,0 +1,543 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+
+/**
+ * The emulated BeID applet processes the command APDUs sent to an emulated
+ * Belgian eID card. It supports the commands that are used by the library:
+ * SELECT (by path, by DF or EF identifier and with or without FCI), READ
+ * BINARY (short and extended length), GET CARD DATA, GET CHALLENGE, INTERNAL
+ * AUTHENTICATE, VERIFY, CHANGE REFERENCE DATA, RESET RETRY COUNTER, MANAGE
+ * SECURITY ENVIRONMENT and PERFORM SECURITY OPERATION (compute digital
+ * signature). The applet keeps the volatile state of the card such as the
+ * currently selected file and the security status, the persistent state is
+ * kept in the {@link be.belgium.eid.emulator.EmulatedCardImage}.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedBeIDApplet {
+
+	/** Contains the hexified path of the master file */
+	private final static String fgMF_PATH = "3F00";
+
+	/** Contains the DigestInfo prefix of a SHA-1 hash for PKCS#1 signatures */
+	private final static byte[] fgSHA1_DIGEST_INFO = { (byte) 0x30,
+			(byte) 0x21, (byte) 0x30, (byte) 0x09, (byte) 0x06, (byte) 0x05,
+			(byte) 0x2B, (byte) 0x0E, (byte) 0x03, (byte) 0x02, (byte) 0x1A,
+			(byte) 0x05, (byte) 0x00, (byte) 0x04, (byte) 0x14 };
+
+	/** Contains the key reference of the authentication key */
+	private final static int fgAUTH_KEY = 0x82;
+
+	/** Contains the key reference of the non repudiation key */
+	private final static int fgSIG_KEY = 0x83;
+
+	/** Contains the random generator for challenges */
+	private final static SecureRandom fgRandom = new SecureRandom();
+
+	/** Contains the image of the card */
+	private final EmulatedCardImage fImage;
+
+	/** Contains the hexified path of the currently selected DF */
+	private String fCurrentDF;
+
+	/** Contains the hexified path of the currently selected EF, if any */
+	private String fCurrentEF;
+
+	/** Indicates whether the PIN has been verified successfully */
+	private boolean fPINVerified;
+
+	/** Contains the reference of the key selected for signing */
+	private int fSelectedKey;
+
+	/**
+	 * Initializes the applet on the given card image.
+	 *
+	 * @param image
+	 *            is the image of the card to serve
+	 */
+	public EmulatedBeIDApplet(final EmulatedCardImage image) {
+		fImage = image;
+		reset();
+	}
+
+	/**
+	 * Resets the volatile state of the card, as happens on a warm reset.
+	 */
+	public synchronized void reset() {
+		fCurrentDF = fgMF_PATH;
+		fCurrentEF = null;
+		fPINVerified = false;
+		fSelectedKey = 0;
+	}
+
+	/**
+	 * Returns the image of the card served by this applet.
+	 *
+	 * @return the card image
+	 */
+	public EmulatedCardImage getImage() {
+		return fImage;
+	}
+
+	/**
+	 * Processes the given command APDU and returns the response APDU,
+	 * including the two status bytes.
+	 *
+	 * @param command
+	 *            is the encoded command APDU
+	 * @return the encoded response APDU
+	 */
+	public synchronized byte[] process(final byte[] command) {
+		if (command.length < 4) {
+			return sw(0x6700);
+		}
+
+		// Decode the header and the body of the APDU
+		final int cla = command[0] & 0xFF;
+		final int ins = command[1] & 0xFF;
+		final int p1 = command[2] & 0xFF;
+		final int p2 = command[3] & 0xFF;
+		final boolean extended = isExtended(command);
+		byte[] data = new byte[0];
+		int ne = 0;
+
+		if (command.length == 5) {
+			// Case 2 short
+			ne = (command[4] == 0) ? 256 : (command[4] & 0xFF);
+		} else if (command.length > 5) {
+			if (extended) {
+				// Extended length encoding
+				if (command.length == 7) {
+					ne = ((command[5] & 0xFF) << 8) | (command[6] & 0xFF);
+					ne = (ne == 0) ? 65536 : ne;
+				} else {
+					final int nc = ((command[5] & 0xFF) << 8)
+							| (command[6] & 0xFF);
+					if (command.length < 7 + nc) {
+						return sw(0x6700);
+					}
+					data = new byte[nc];
+					System.arraycopy(command, 7, data, 0, nc);
+					if (command.length == 9 + nc) {
+						ne = ((command[7 + nc] & 0xFF) << 8)
+								| (command[8 + nc] & 0xFF);
+						ne = (ne == 0) ? 65536 : ne;
+					}
+				}
+			} else {
+				final int nc = command[4] & 0xFF;
+				if (command.length < 5 + nc) {
+					return sw(0x6700);
+				}
+				data = new byte[nc];
+				System.arraycopy(command, 5, data, 0, nc);
+				if (command.length == 6 + nc) {
+					ne = (command[5 + nc] == 0) ? 256
+							: (command[5 + nc] & 0xFF);
+				}
+			}
+		}
+
+		if (extended && !fImage.isExtendedLengthSupported()) {
+			return sw(0x6700);
+		}
+
+		// Dispatch the command
+		if (cla == 0x80) {
+			if (ins == 0xE4) {
+				return getCardData(ne);
+			}
+			return sw(0x6D00);
+		} else if (cla != 0x00) {
+			return sw(0x6E00);
+		}
+
+		switch (ins) {
+		case 0xA4:
+			return select(p1, p2, data);
+		case 0xB0:
+			return readBinary(p1, p2, ne, extended);
+		case 0x84:
+			return getChallenge(ne);
+		case 0x88:
+			return internalAuthenticate(data);
+		case 0x20:
+			return verify(data);
+		case 0x24:
+			return changeReferenceData(data);
+		case 0x2C:
+			return resetRetryCounter(data);
+		case 0x22:
+			return manageSecurityEnvironment(p1, p2, data);
+		case 0x2A:
+			return performSecurityOperation(p1, p2, data);
+		default:
+			return sw(0x6D00);
+		}
+	}
+
+	/**
+	 * Indicates whether the given command APDU uses the extended length
+	 * encoding.
+	 *
+	 * @param command
+	 *            is the encoded command APDU
+	 * @return whether the APDU is an extended length APDU
+	 */
+	public static boolean isExtended(final byte[] command) {
+		return (command.length >= 7) && (command[4] == 0);
+	}
+
+	/**
+	 * Processes a SELECT command.
+	 */
+	private byte[] select(final int p1, final int p2, final byte[] data) {
+		final String fid = ByteConverter.hexify(data);
+		String target;
+
+		// Cards without FCI support reject the SELECT, the selection is kept
+		if (((p2 & 0x0C) != 0x0C) && !fImage.isFCISupported()) {
+			return sw(0x6A86);
+		}
+
+		switch (p1) {
+		case 0x08:
+			// Select by path from the MF, with or without the MF identifier
+			target = fid.startsWith(fgMF_PATH) ? fid : fgMF_PATH + fid;
+			break;
+		case 0x02:
+			// Select an EF under the current DF
+			target = fCurrentDF + fid;
+			if (fImage.getFile(target) == null) {
+				return sw(0x6A82);
+			}
+			break;
+		case 0x01:
+			// Select a DF under the current DF
+			target = fCurrentDF + fid;
+			break;
+		case 0x00:
+			// Select by file identifier among the current DF, its children
+			// and the MF
+			if (fid.equals(fgMF_PATH) || (data.length == 0)) {
+				target = fgMF_PATH;
+			} else if (isDF(fCurrentDF + fid)
+					|| (fImage.getFile(fCurrentDF + fid) != null)) {
+				target = fCurrentDF + fid;
+			} else {
+				target = fgMF_PATH + fid;
+			}
+			break;
+		default:
+			return sw(0x6A86);
+		}
+
+		// Resolve the target
+		final byte[] contents = fImage.getFile(target);
+		if (contents != null) {
+			fCurrentDF = target.substring(0, target.length() - 4);
+			fCurrentEF = target;
+		} else if (isDF(target)) {
+			fCurrentDF = target;
+			fCurrentEF = null;
+		} else {
+			return sw(0x6A82);
+		}
+
+		// Return the FCI when asked for and supported
+		if (((p2 & 0x0C) == 0x0C) || (contents == null)) {
+			return sw(0x9000);
+		} else {
+			final byte[] fci = { (byte) 0x62, (byte) 0x0B, (byte) 0x80,
+					(byte) 0x02, (byte) (contents.length >> 8),
+					(byte) contents.length, (byte) 0x82, (byte) 0x01,
+					(byte) 0x01, (byte) 0x83, (byte) 0x02, data[data.length - 2],
+					data[data.length - 1] };
+			return response(fci, 0x9000);
+		}
+	}
+
+	/**
+	 * Indicates whether the given hexified path denotes a dedicated file.
+	 */
+	private boolean isDF(final String path) {
+		if (path.equals(fgMF_PATH)) {
+			return true;
+		}
+		for (String file : fImage.getFilePaths()) {
+			if (file.startsWith(path) && (file.length() > path.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Processes a READ BINARY command.
+	 */
+	private byte[] readBinary(final int p1, final int p2, final int ne,
+			final boolean extended) {
+		if (((p1 & 0x80) != 0) || (fCurrentEF == null)) {
+			return sw(0x6986);
+		}
+
+		final byte[] contents = fImage.getFile(fCurrentEF);
+		final int offset = (p1 << 8) | p2;
+		final int remaining = contents.length - offset;
+
+		final int max = fImage.getMaxShortResponseLength();
+		if (remaining <= 0) {
+			// Offset beyond the end of the file
+			return sw(0x6B00);
+		} else if (!extended && (ne > max)) {
+			// More than the card returns at once, the length it can return
+			// is indicated in SW2
+			return sw(0x6C00 | (Math.min(remaining, max) & 0xFF));
+		} else if (ne <= remaining) {
+			return response(contents, offset, ne, 0x9000);
+		} else if (extended) {
+			// End of file reached before reading Ne bytes
+			return response(contents, offset, remaining, 0x6282);
+		} else {
+			// Wrong length, the exact length is indicated in SW2
+			return sw(0x6C00 | Math.min(remaining, 0xFF));
+		}
+	}
+
+	/**
+	 * Processes a GET CARD DATA command.
+	 */
+	private byte[] getCardData(final int ne) {
+		final byte[] cardData = fImage.getCardData();
+		if (ne < cardData.length) {
+			return sw(0x6C00 | cardData.length);
+		}
+		return response(cardData, 0x9000);
+	}
+
+	/**
+	 * Processes a GET CHALLENGE command.
+	 */
+	private byte[] getChallenge(final int ne) {
+		final byte[] challenge = new byte[ne];
+		fgRandom.nextBytes(challenge);
+		return response(challenge, 0x9000);
+	}
+
+	/**
+	 * Processes an INTERNAL AUTHENTICATE command.
+	 */
+	private byte[] internalAuthenticate(final byte[] data) {
+		if ((data.length < 2) || (data[0] != (byte) 0x94)
+				|| ((data[1] & 0xFF) != data.length - 2)) {
+			return sw(0x6A80);
+		}
+
+		final byte[] challenge = new byte[data.length - 2];
+		System.arraycopy(data, 2, challenge, 0, challenge.length);
+		return sign(fImage.getAuthenticationKey(), challenge);
+	}
+
+	/**
+	 * Processes a VERIFY command.
+	 */
+	private byte[] verify(final byte[] data) {
+		if (fImage.getPINTriesLeft() == 0) {
+			return sw(0x6983);
+		}
+		if (matchesPINBlock(data, 0, fImage.getPIN())) {
+			fImage.setPINTriesLeft(EmulatedCardImage.fgMAX_PIN_TRIES);
+			fPINVerified = true;
+			return sw(0x9000);
+		} else {
+			fImage.setPINTriesLeft(fImage.getPINTriesLeft() - 1);
+			fPINVerified = false;
+			return sw(0x63C0 | fImage.getPINTriesLeft());
+		}
+	}
+
+	/**
+	 * Processes a CHANGE REFERENCE DATA command.
+	 */
+	private byte[] changeReferenceData(final byte[] data) {
+		if (data.length != 16) {
+			return sw(0x6700);
+		}
+		if (fImage.getPINTriesLeft() == 0) {
+			return sw(0x6983);
+		}
+		if (matchesPINBlock(data, 0, fImage.getPIN())) {
+			fImage.setPINTriesLeft(EmulatedCardImage.fgMAX_PIN_TRIES);
+			fImage.setPIN(decodePINBlock(data, 8));
+			return sw(0x9000);
+		} else {
+			fImage.setPINTriesLeft(fImage.getPINTriesLeft() - 1);
+			return sw(0x63C0 | fImage.getPINTriesLeft());
+		}
+	}
+
+	/**
+	 * Processes a RESET RETRY COUNTER command.
+	 */
+	private byte[] resetRetryCounter(final byte[] data) {
+		if (matchesPINBlock(data, 0, fImage.getPUK())) {
+			fImage.setPINTriesLeft(EmulatedCardImage.fgMAX_PIN_TRIES);
+			return sw(0x9000);
+		} else {
+			return sw(0x6982);
+		}
+	}
+
+	/**
+	 * Processes a MANAGE SECURITY ENVIRONMENT command.
+	 */
+	private byte[] manageSecurityEnvironment(final int p1, final int p2,
+			final byte[] data) {
+		if ((p1 != 0x41) || (p2 != 0xB6) || (data.length != 5)) {
+			return sw(0x6A86);
+		}
+
+		final int key = data[4] & 0xFF;
+		if ((key != fgAUTH_KEY) && (key != fgSIG_KEY)) {
+			return sw(0x6A88);
+		}
+		fSelectedKey = key;
+		return sw(0x9000);
+	}
+
+	/**
+	 * Processes a PERFORM SECURITY OPERATION (compute digital signature)
+	 * command.
+	 */
+	private byte[] performSecurityOperation(final int p1, final int p2,
+			final byte[] data) {
+		if ((p1 != 0x9E) || (p2 != 0x9A)) {
+			return sw(0x6A86);
+		}
+		if (fSelectedKey == 0) {
+			return sw(0x6985);
+		}
+		if (!fPINVerified) {
+			return sw(0x6982);
+		}
+		if (data.length != 20) {
+			return sw(0x6700);
+		}
+
+		// Wrap the hash in a DigestInfo structure
+		final byte[] digestInfo = new byte[fgSHA1_DIGEST_INFO.length
+				+ data.length];
+		System.arraycopy(fgSHA1_DIGEST_INFO, 0, digestInfo, 0,
+				fgSHA1_DIGEST_INFO.length);
+		System.arraycopy(data, 0, digestInfo, fgSHA1_DIGEST_INFO.length,
+				data.length);
+
+		// The non repudiation key requires a PIN verification for every
+		// signature
+		final PrivateKey key;
+		if (fSelectedKey == fgSIG_KEY) {
+			key = fImage.getSignatureKey();
+			fPINVerified = false;
+		} else {
+			key = fImage.getAuthenticationKey();
+		}
+
+		return sign(key, digestInfo);
+	}
+
+	/**
+	 * Computes a raw PKCS#1 signature on the given data with the given key.
+	 */
+	private byte[] sign(final PrivateKey key, final byte[] data) {
+		if (key == null) {
+			return sw(0x6A88);
+		}
+
+		try {
+			final Signature sig = Signature.getInstance("NONEwithRSA");
+			sig.initSign(key);
+			sig.update(data);
+			return response(sig.sign(), 0x9000);
+		} catch (GeneralSecurityException e) {
+			return sw(0x6F00);
+		}
+	}
+
+	/**
+	 * Indicates whether the PIN block at the given offset contains the given
+	 * code.
+	 */
+	private static boolean matchesPINBlock(final byte[] data, final int offset,
+			final String code) {
+		if (data.length < offset + 8) {
+			return false;
+		}
+		return code.equals(decodePINBlock(data, offset));
+	}
+
+	/**
+	 * Decodes the format 2 PIN block at the given offset.
+	 */
+	private static String decodePINBlock(final byte[] data, final int offset) {
+		final int length = data[offset] & 0x0F;
+		final String digits = ByteConverter.hexify(new byte[] {
+				data[offset + 1], data[offset + 2], data[offset + 3],
+				data[offset + 4], data[offset + 5], data[offset + 6],
+				data[offset + 7] });
+		return digits.substring(0, Math.min(length, digits.length()));
+	}
+
+	/**
+	 * Returns a response APDU with only the given status word.
+	 */
+	private static byte[] sw(final int sw) {
+		return new byte[] { (byte) (sw >> 8), (byte) sw };
+	}
+
+	/**
+	 * Returns a response APDU with the given data and status word.
+	 */
+	private static byte[] response(final byte[] data, final int sw) {
+		return response(data, 0, data.length, sw);
+	}
+
+	/**
+	 * Returns a response APDU with the given part of the data and status word.
+	 */
+	private static byte[] response(final byte[] data, final int offset,
+			final int length, final int sw) {
+		final byte[] result = new byte[length + 2];
+		System.arraycopy(data, offset, result, 0, length);
+		result[length] = (byte) (sw >> 8);
+		result[length + 1] = (byte) sw;
+		return result;
+	}
+}
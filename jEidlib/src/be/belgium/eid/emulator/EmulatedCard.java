@@ -0,0 +1,178 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+
+/**
+ * The emulated card is a connection with an emulated Belgian eID card inserted
+ * in an {@link be.belgium.eid.emulator.EmulatedCardTerminal}. Only the basic
+ * channel is available, as on the real card.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedCard extends Card {
+
+	/** Contains the reader in which the card is inserted */
+	private final EmulatedCardTerminal fTerminal;
+
+	/** Contains the applet of the card at the time of connecting */
+	private final EmulatedBeIDApplet fApplet;
+
+	/** Contains the basic channel of the connection */
+	private final EmulatedCardChannel fBasicChannel;
+
+	/** Indicates whether the connection has been closed */
+	private volatile boolean fDisconnected = false;
+
+	/**
+	 * Initializes the connection with the card served by the given applet in
+	 * the given reader.
+	 *
+	 * @param terminal
+	 *            is the reader in which the card is inserted
+	 * @param applet
+	 *            is the applet of the inserted card
+	 */
+	EmulatedCard(final EmulatedCardTerminal terminal,
+			final EmulatedBeIDApplet applet) {
+		super();
+		fTerminal = terminal;
+		fApplet = applet;
+		fBasicChannel = new EmulatedCardChannel(this);
+	}
+
+	/**
+	 * Returns the applet of the card this connection was made with.
+	 *
+	 * @return the applet
+	 */
+	EmulatedBeIDApplet getApplet() {
+		return fApplet;
+	}
+
+	/**
+	 * Exchanges the given command APDU with the card.
+	 *
+	 * @param command
+	 *            is the encoded command APDU
+	 * @return the encoded response APDU
+	 * @throws CardException
+	 *             when the card was removed or the connection closed
+	 */
+	byte[] exchange(final byte[] command) throws CardException {
+		checkConnected();
+		return fTerminal.exchange(this, command);
+	}
+
+	/**
+	 * Checks whether the connection is still open.
+	 */
+	private void checkConnected() {
+		if (fDisconnected) {
+			throw new IllegalStateException("Card has been disconnected");
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#getATR()
+	 */
+	public ATR getATR() {
+		return new ATR(fApplet.getImage().getATR());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#getProtocol()
+	 */
+	public String getProtocol() {
+		return "T=0";
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#getBasicChannel()
+	 */
+	public CardChannel getBasicChannel() {
+		checkConnected();
+		return fBasicChannel;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#openLogicalChannel()
+	 */
+	public CardChannel openLogicalChannel() throws CardException {
+		throw new CardException("Logical channels are not supported");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#beginExclusive()
+	 */
+	public void beginExclusive() throws CardException {
+		checkConnected();
+		fTerminal.beginExclusive(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#endExclusive()
+	 */
+	public void endExclusive() throws CardException {
+		checkConnected();
+		fTerminal.endExclusive(this);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#transmitControlCommand(int, byte[])
+	 */
+	public byte[] transmitControlCommand(final int controlCode,
+			final byte[] command) throws CardException {
+		throw new CardException("Control commands are not supported");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.Card#disconnect(boolean)
+	 */
+	public void disconnect(final boolean reset) throws CardException {
+		if (!fDisconnected) {
+			fDisconnected = true;
+			fTerminal.disconnect(this, reset);
+		}
+	}
+}
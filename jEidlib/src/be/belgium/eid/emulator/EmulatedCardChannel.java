@@ -0,0 +1,111 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.nio.ByteBuffer;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * The emulated card channel is the basic channel of a connection with an
+ * emulated Belgian eID card.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedCardChannel extends CardChannel {
+
+	/** Contains the connection this channel belongs to */
+	private final EmulatedCard fCard;
+
+	/**
+	 * Initializes the basic channel of the given connection.
+	 *
+	 * @param card
+	 *            is the connection the channel belongs to
+	 */
+	EmulatedCardChannel(final EmulatedCard card) {
+		super();
+		fCard = card;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardChannel#getCard()
+	 */
+	public Card getCard() {
+		return fCard;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardChannel#getChannelNumber()
+	 */
+	public int getChannelNumber() {
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardChannel#transmit(javax.smartcardio.CommandAPDU)
+	 */
+	public ResponseAPDU transmit(final CommandAPDU command)
+			throws CardException {
+		return new ResponseAPDU(fCard.exchange(command.getBytes()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardChannel#transmit(java.nio.ByteBuffer,
+	 * java.nio.ByteBuffer)
+	 */
+	public int transmit(final ByteBuffer command, final ByteBuffer response)
+			throws CardException {
+		final byte[] commandBytes = new byte[command.remaining()];
+		command.get(commandBytes);
+
+		final byte[] responseBytes = fCard.exchange(commandBytes);
+		if (response.remaining() < responseBytes.length) {
+			throw new CardException("Response buffer too small");
+		}
+		response.put(responseBytes);
+
+		return responseBytes.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardChannel#close()
+	 */
+	public void close() throws CardException {
+		throw new IllegalStateException("Cannot close the basic channel");
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.security.PrivateKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+
+/**
+ * The emulated card image contains everything that is stored on an emulated
+ * Belgian eID card: the elementary files of the file system, the card data as
+ * returned by GET CARD DATA, the ATR, the PIN and PUK codes and the private
+ * keys that are used for authentication and non repudiation signatures.
+ *
+ * Files are identified by their absolute path starting from the master file,
+ * e.g. 3F00 DF01 4031 for the identity file. A card image can be filled by
+ * hand or generated by {@link be.belgium.eid.emulator.TestCardGenerator}.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedCardImage {
+
+	/** Contains the ATR of a version 1 Belgian eID card */
+	public final static byte[] fgDEFAULT_ATR = { (byte) 0x3B, (byte) 0x98,
+			(byte) 0x13, (byte) 0x40, (byte) 0x0A, (byte) 0xA5, (byte) 0x03,
+			(byte) 0x01, (byte) 0x01, (byte) 0x01, (byte) 0xAD, (byte) 0x13,
+			(byte) 0x11 };
+
+	/** Contains the maximum number of PIN attempts */
+	public final static int fgMAX_PIN_TRIES = 3;
+
+	/** Contains the elementary files indexed by their hexified path */
+	private final Map<String, byte[]> fFiles = new HashMap<String, byte[]>();
+
+	/** Contains the ATR of the card */
+	private byte[] fATR = fgDEFAULT_ATR.clone();
+
+	/** Contains the card data returned by GET CARD DATA */
+	private byte[] fCardData = new byte[0x1C];
+
+	/** Contains the PIN code */
+	private String fPIN = "1234";
+
+	/** Contains the concatenation of the citizen and government PUK */
+	private String fPUK = "111111222222";
+
+	/** Contains the number of PIN attempts left */
+	private int fPINTriesLeft = fgMAX_PIN_TRIES;
+
+	/** Contains the private key used for authentication */
+	private PrivateKey fAuthenticationKey;
+
+	/** Contains the private key used for non repudiation signatures */
+	private PrivateKey fSignatureKey;
+
+	/** Indicates whether the card returns the FCI on a SELECT command */
+	private boolean fFCISupported = false;
+
+	/** Indicates whether the card accepts extended length APDUs */
+	private boolean fExtendedLengthSupported = false;
+
+	/** Contains the largest number of bytes returned to a short APDU */
+	private int fMaxShortResponseLength = 256;
+
+	/**
+	 * Stores the given contents as elementary file with the given path.
+	 *
+	 * @param path
+	 *            is the absolute path of the file, starting with 3F00
+	 * @param contents
+	 *            are the contents of the file
+	 */
+	public void putFile(final byte[] path, final byte[] contents) {
+		fFiles.put(ByteConverter.hexify(path), contents.clone());
+	}
+
+	/**
+	 * Returns the contents of the elementary file with the given path.
+	 *
+	 * @param path
+	 *            is the absolute path of the file, starting with 3F00
+	 * @return the contents of the file or null if no such file exists
+	 */
+	public byte[] getFile(final byte[] path) {
+		return getFile(ByteConverter.hexify(path));
+	}
+
+	/**
+	 * Returns the contents of the elementary file with the given hexified
+	 * path. The contents are not copied.
+	 *
+	 * @param hexPath
+	 *            is the hexified absolute path of the file
+	 * @return the contents of the file or null if no such file exists
+	 */
+	byte[] getFile(final String hexPath) {
+		return fFiles.get(hexPath);
+	}
+
+	/**
+	 * Returns the hexified paths of all elementary files on the card.
+	 *
+	 * @return the paths of the files
+	 */
+	public Set<String> getFilePaths() {
+		return Collections.unmodifiableSet(fFiles.keySet());
+	}
+
+	/**
+	 * Returns the ATR of the card.
+	 *
+	 * @return the ATR
+	 */
+	public byte[] getATR() {
+		return fATR.clone();
+	}
+
+	/**
+	 * Sets the ATR of the card.
+	 *
+	 * @param atr
+	 *            is the new ATR
+	 */
+	public void setATR(final byte[] atr) {
+		fATR = atr.clone();
+	}
+
+	/**
+	 * Returns the card data returned by GET CARD DATA.
+	 *
+	 * @return the card data
+	 */
+	public byte[] getCardData() {
+		return fCardData.clone();
+	}
+
+	/**
+	 * Sets the card data returned by GET CARD DATA.
+	 *
+	 * @param cardData
+	 *            is the card data, the first 16 bytes being the chip number
+	 */
+	public void setCardData(final byte[] cardData) {
+		fCardData = cardData.clone();
+	}
+
+	/**
+	 * Returns the PIN code of the card.
+	 *
+	 * @return the PIN code
+	 */
+	public String getPIN() {
+		return fPIN;
+	}
+
+	/**
+	 * Sets the PIN code of the card.
+	 *
+	 * @param pin
+	 *            is the new PIN code
+	 */
+	public void setPIN(final String pin) {
+		fPIN = pin;
+	}
+
+	/**
+	 * Returns the concatenation of the citizen and government PUK codes.
+	 *
+	 * @return the PUK codes
+	 */
+	public String getPUK() {
+		return fPUK;
+	}
+
+	/**
+	 * Sets the PUK codes of the card.
+	 *
+	 * @param citizen
+	 *            is the citizen PUK code
+	 * @param government
+	 *            is the government PUK code
+	 */
+	public void setPUK(final String citizen, final String government) {
+		fPUK = citizen + government;
+	}
+
+	/**
+	 * Returns the number of PIN attempts left.
+	 *
+	 * @return the number of tries left
+	 */
+	public int getPINTriesLeft() {
+		return fPINTriesLeft;
+	}
+
+	/**
+	 * Sets the number of PIN attempts left.
+	 *
+	 * @param triesLeft
+	 *            is the number of tries left
+	 */
+	void setPINTriesLeft(final int triesLeft) {
+		fPINTriesLeft = triesLeft;
+	}
+
+	/**
+	 * Returns the private key used for authentication.
+	 *
+	 * @return the authentication key
+	 */
+	public PrivateKey getAuthenticationKey() {
+		return fAuthenticationKey;
+	}
+
+	/**
+	 * Returns the private key used for non repudiation signatures.
+	 *
+	 * @return the signature key
+	 */
+	public PrivateKey getSignatureKey() {
+		return fSignatureKey;
+	}
+
+	/**
+	 * Sets the private keys that the card signs with.
+	 *
+	 * @param authenticationKey
+	 *            is the key used for authentication
+	 * @param signatureKey
+	 *            is the key used for non repudiation signatures
+	 */
+	public void setKeys(final PrivateKey authenticationKey,
+			final PrivateKey signatureKey) {
+		fAuthenticationKey = authenticationKey;
+		fSignatureKey = signatureKey;
+	}
+
+	/**
+	 * Indicates whether the card returns the file control information with
+	 * the file size when a SELECT asks for it.
+	 *
+	 * @return whether the FCI is supported
+	 */
+	public boolean isFCISupported() {
+		return fFCISupported;
+	}
+
+	/**
+	 * Sets whether the card returns the file control information.
+	 *
+	 * @param supported
+	 *            indicates whether the FCI is supported
+	 */
+	public void setFCISupported(final boolean supported) {
+		fFCISupported = supported;
+	}
+
+	/**
+	 * Indicates whether the card accepts extended length APDUs.
+	 *
+	 * @return whether extended length APDUs are supported
+	 */
+	public boolean isExtendedLengthSupported() {
+		return fExtendedLengthSupported;
+	}
+
+	/**
+	 * Sets whether the card accepts extended length APDUs.
+	 *
+	 * @param supported
+	 *            indicates whether extended length APDUs are supported
+	 */
+	public void setExtendedLengthSupported(final boolean supported) {
+		fExtendedLengthSupported = supported;
+	}
+
+	/**
+	 * Returns the largest number of bytes the card returns to a short APDU.
+	 *
+	 * @return the largest response length, at most 256
+	 */
+	public int getMaxShortResponseLength() {
+		return fMaxShortResponseLength;
+	}
+
+	/**
+	 * Sets the largest number of bytes the card returns to a short APDU. A
+	 * READ BINARY asking for more is answered with the exact length the card
+	 * can return in SW2.
+	 *
+	 * @param length
+	 *            is the largest response length, at most 256
+	 */
+	public void setMaxShortResponseLength(final int length) {
+		fMaxShortResponseLength = length;
+	}
+}
@@ -0,0 +1,450 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardNotPresentException;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * The emulated card terminal is a smart card reader in which emulated Belgian
+ * eID cards can be inserted and removed. Every APDU transmitted to the card is
+ * delayed according to the {@link be.belgium.eid.emulator.LatencyProfile} of
+ * the reader and counted, so that the cost of a read strategy can be measured
+ * in number of APDUs, bytes, exclusive transactions and (simulated) time.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedCardTerminal extends CardTerminal {
+
+	/** Contains the name of the reader */
+	private final String fName;
+
+	/** Contains the list of terminals this reader is attached to, if any */
+	private EmulatedCardTerminals fTerminals;
+
+	/** Contains the latency profile of the reader */
+	private volatile LatencyProfile fProfile;
+
+	/** Indicates whether the latency is actually waited for or only counted */
+	private volatile boolean fSimulateDelays = true;
+
+	/** Contains the applet of the inserted card, null when no card present */
+	private EmulatedBeIDApplet fApplet;
+
+	/** Contains the connection that holds exclusive access to the card */
+	private EmulatedCard fExclusiveOwner;
+
+	/**
+	 * Contains the time in milliseconds the reader needs to settle after an
+	 * exclusive transaction in which APDUs were exchanged
+	 */
+	private volatile long fSettleTime = 0;
+
+	/** Indicates whether APDUs were exchanged in the current transaction */
+	private boolean fExchangedInTransaction;
+
+	/** Contains the time the last transaction with APDUs ended in ms */
+	private long fLastTransactionEnd;
+
+	/** Contains the number of APDUs exchanged */
+	private long fAPDUCount;
+
+	/** Contains the number of bytes exchanged, in both directions */
+	private long fByteCount;
+
+	/** Contains the number of exclusive transactions started */
+	private long fTransactionCount;
+
+	/** Contains the accumulated latency of the exchanged APDUs */
+	private long fLatencyNanos;
+
+	/**
+	 * Initializes the emulated reader with the given name and latency profile.
+	 * No card is inserted yet.
+	 *
+	 * @param name
+	 *            is the name of the reader
+	 * @param profile
+	 *            is the latency profile of the reader
+	 */
+	public EmulatedCardTerminal(final String name, final LatencyProfile profile) {
+		super();
+		fName = name;
+		fProfile = profile;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminal#getName()
+	 */
+	public String getName() {
+		return fName;
+	}
+
+	/**
+	 * Sets the list of terminals that is notified of card insertions and
+	 * removals.
+	 *
+	 * @param terminals
+	 *            is the list of terminals the reader is attached to
+	 */
+	synchronized void setTerminals(final EmulatedCardTerminals terminals) {
+		fTerminals = terminals;
+	}
+
+	/**
+	 * Returns the latency profile of the reader.
+	 *
+	 * @return the latency profile
+	 */
+	public LatencyProfile getLatencyProfile() {
+		return fProfile;
+	}
+
+	/**
+	 * Sets the latency profile of the reader.
+	 *
+	 * @param profile
+	 *            is the new latency profile
+	 */
+	public void setLatencyProfile(final LatencyProfile profile) {
+		fProfile = profile;
+	}
+
+	/**
+	 * Sets whether the latency of the profile is actually waited for. When
+	 * disabled, the latency is only accumulated in
+	 * {@link #getLatencyNanos()}, which allows fast benchmarks in simulated
+	 * time.
+	 *
+	 * @param simulate
+	 *            indicates whether to wait for the latency
+	 */
+	public void setSimulateDelays(final boolean simulate) {
+		fSimulateDelays = simulate;
+	}
+
+	/**
+	 * Sets the time the reader needs to settle after an exclusive transaction
+	 * in which APDUs were exchanged. Commands transmitted before the reader
+	 * has settled fail, like they do on some physical readers.
+	 *
+	 * @param settleTime
+	 *            is the settle time in milliseconds, 0 for none
+	 */
+	public void setSettleTime(final long settleTime) {
+		fSettleTime = settleTime;
+	}
+
+	/**
+	 * Inserts the card with the given image in the reader. A card that was
+	 * still present is removed first.
+	 *
+	 * @param image
+	 *            is the image of the card to insert
+	 */
+	public void insertCard(final EmulatedCardImage image) {
+		final EmulatedCardTerminals terminals;
+		synchronized (this) {
+			fApplet = new EmulatedBeIDApplet(image);
+			fExclusiveOwner = null;
+			terminals = fTerminals;
+			notifyAll();
+		}
+		if (terminals != null) {
+			terminals.fireChange();
+		}
+	}
+
+	/**
+	 * Removes the card from the reader. Connections to the card become
+	 * invalid.
+	 */
+	public void removeCard() {
+		final EmulatedCardTerminals terminals;
+		synchronized (this) {
+			fApplet = null;
+			fExclusiveOwner = null;
+			terminals = fTerminals;
+			notifyAll();
+		}
+		if (terminals != null) {
+			terminals.fireChange();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminal#connect(java.lang.String)
+	 */
+	public synchronized Card connect(final String protocol)
+			throws CardException {
+		if (fApplet == null) {
+			throw new CardNotPresentException("No card present in " + fName);
+		}
+		if (!"*".equals(protocol) && !"T=0".equals(protocol)
+				&& !"T=1".equals(protocol)) {
+			throw new IllegalArgumentException("Unsupported protocol "
+					+ protocol);
+		}
+
+		return new EmulatedCard(this, fApplet);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminal#isCardPresent()
+	 */
+	public synchronized boolean isCardPresent() {
+		return fApplet != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminal#waitForCardPresent(long)
+	 */
+	public boolean waitForCardPresent(final long timeout) throws CardException {
+		return waitForCard(true, timeout);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminal#waitForCardAbsent(long)
+	 */
+	public boolean waitForCardAbsent(final long timeout) throws CardException {
+		return waitForCard(false, timeout);
+	}
+
+	/**
+	 * Waits until the presence of the card equals the given value or until
+	 * the timeout expires. A timeout of zero waits forever.
+	 */
+	private synchronized boolean waitForCard(final boolean present,
+			final long timeout) throws CardException {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Negative timeout");
+		}
+
+		final long end = System.currentTimeMillis() + timeout;
+		try {
+			while ((fApplet != null) != present) {
+				if (timeout == 0) {
+					wait();
+				} else {
+					final long left = end - System.currentTimeMillis();
+					if (left <= 0) {
+						return false;
+					}
+					wait(left);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new CardException("Interrupted while waiting for card", e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Acquires exclusive access to the card for the given connection, waiting
+	 * for other connections to release it.
+	 */
+	synchronized void beginExclusive(final EmulatedCard card)
+			throws CardException {
+		checkPresent(card);
+		if (fExclusiveOwner == card) {
+			throw new CardException("Exclusive access already established");
+		}
+
+		try {
+			while (fExclusiveOwner != null) {
+				wait();
+				checkPresent(card);
+			}
+		} catch (InterruptedException e) {
+			throw new CardException("Interrupted while waiting for card", e);
+		}
+
+		fExclusiveOwner = card;
+		fExchangedInTransaction = false;
+		fTransactionCount++;
+	}
+
+	/**
+	 * Releases the exclusive access to the card held by the given connection.
+	 */
+	synchronized void endExclusive(final EmulatedCard card)
+			throws CardException {
+		checkPresent(card);
+		if (fExclusiveOwner != card) {
+			throw new IllegalStateException("Exclusive access not assigned");
+		}
+
+		if (fExchangedInTransaction) {
+			fLastTransactionEnd = System.currentTimeMillis();
+		}
+		fExclusiveOwner = null;
+		notifyAll();
+	}
+
+	/**
+	 * Releases the exclusive access held by the given connection, if any, and
+	 * resets the card when asked for.
+	 */
+	synchronized void disconnect(final EmulatedCard card, final boolean reset) {
+		if (fExclusiveOwner == card) {
+			fExclusiveOwner = null;
+			notifyAll();
+		}
+		if (reset && (fApplet == card.getApplet())) {
+			fApplet.reset();
+		}
+	}
+
+	/**
+	 * Exchanges the given command APDU with the card over the given
+	 * connection, applying the latency profile of the reader.
+	 */
+	byte[] exchange(final EmulatedCard card, final byte[] command)
+			throws CardException {
+		if (EmulatedBeIDApplet.isExtended(command)
+				&& !fProfile.isExtendedLengthSupported()) {
+			throw new CardException(
+					"Extended length APDUs are not supported by " + fName);
+		}
+
+		final EmulatedBeIDApplet applet;
+		synchronized (this) {
+			checkPresent(card);
+			try {
+				while ((fExclusiveOwner != null) && (fExclusiveOwner != card)) {
+					wait();
+					checkPresent(card);
+				}
+			} catch (InterruptedException e) {
+				throw new CardException("Interrupted while waiting for card", e);
+			}
+			if (System.currentTimeMillis() - fLastTransactionEnd < fSettleTime) {
+				throw new CardException("Transmission failed, " + fName
+						+ " has not settled yet");
+			}
+			applet = fApplet;
+			fExchangedInTransaction = true;
+		}
+
+		final byte[] response = applet.process(command);
+
+		// Account for and apply the latency of the exchange
+		final long latency = fProfile.exchangeNanos(command.length,
+				response.length);
+		synchronized (this) {
+			fAPDUCount++;
+			fByteCount += command.length + response.length;
+			fLatencyNanos += latency;
+		}
+		if (fSimulateDelays && (latency > 0)) {
+			try {
+				Thread.sleep(latency / 1000000L, (int) (latency % 1000000L));
+			} catch (InterruptedException e) {
+				throw new CardException("Interrupted during transmission", e);
+			}
+		}
+
+		return response;
+	}
+
+	/**
+	 * Checks whether the card of the given connection is still inserted.
+	 */
+	private void checkPresent(final EmulatedCard card) throws CardException {
+		if ((fApplet == null) || (fApplet != card.getApplet())) {
+			throw new CardException("Card has been removed");
+		}
+	}
+
+	/**
+	 * Returns the number of APDUs exchanged since the last reset of the
+	 * statistics.
+	 *
+	 * @return the number of APDUs
+	 */
+	public synchronized long getAPDUCount() {
+		return fAPDUCount;
+	}
+
+	/**
+	 * Returns the number of bytes exchanged in both directions since the last
+	 * reset of the statistics.
+	 *
+	 * @return the number of bytes
+	 */
+	public synchronized long getByteCount() {
+		return fByteCount;
+	}
+
+	/**
+	 * Returns the number of exclusive transactions started since the last
+	 * reset of the statistics.
+	 *
+	 * @return the number of transactions
+	 */
+	public synchronized long getTransactionCount() {
+		return fTransactionCount;
+	}
+
+	/**
+	 * Returns the accumulated latency of the exchanged APDUs according to the
+	 * latency profile, whether or not it was actually waited for.
+	 *
+	 * @return the simulated latency in nanoseconds
+	 */
+	public synchronized long getLatencyNanos() {
+		return fLatencyNanos;
+	}
+
+	/**
+	 * Resets the APDU, byte, transaction and latency statistics.
+	 */
+	public synchronized void resetStatistics() {
+		fAPDUCount = 0;
+		fByteCount = 0;
+		fTransactionCount = 0;
+		fLatencyNanos = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "Emulated terminal: " + fName;
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+/**
+ * The emulated card terminals class contains the emulated smart card readers
+ * that are served by an emulated terminal factory. Readers can be attached and
+ * detached at any time. Card insertions and removals are reported through
+ * {@link #waitForChange(long)} like the PC/SC implementation does.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedCardTerminals extends CardTerminals {
+
+	/** Contains the attached readers */
+	private final List<EmulatedCardTerminal> fTerminals = new ArrayList<EmulatedCardTerminal>();
+
+	/**
+	 * Contains the card presence of every reader as known at the last call of
+	 * {@link #waitForChange(long)}, null before the first call
+	 */
+	private Map<String, Boolean> fKnownState = null;
+
+	/** Contains the readers in which a card was inserted at the last change */
+	private final Set<String> fInserted = new HashSet<String>();
+
+	/** Contains the readers from which a card was removed at the last change */
+	private final Set<String> fRemoved = new HashSet<String>();
+
+	/** Contains the number of changes that occurred */
+	private long fChangeCount = 0;
+
+	/**
+	 * Attaches the given reader.
+	 *
+	 * @param terminal
+	 *            is the reader to attach
+	 */
+	public void addTerminal(final EmulatedCardTerminal terminal) {
+		synchronized (this) {
+			fTerminals.add(terminal);
+		}
+		terminal.setTerminals(this);
+		fireChange();
+	}
+
+	/**
+	 * Detaches the given reader. The card inside, if any, is removed.
+	 *
+	 * @param terminal
+	 *            is the reader to detach
+	 */
+	public void removeTerminal(final EmulatedCardTerminal terminal) {
+		terminal.setTerminals(null);
+		terminal.removeCard();
+		synchronized (this) {
+			fTerminals.remove(terminal);
+		}
+		fireChange();
+	}
+
+	/**
+	 * Notifies the threads waiting for a change.
+	 */
+	synchronized void fireChange() {
+		fChangeCount++;
+		notifyAll();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminals#list(javax.smartcardio.CardTerminals.State)
+	 */
+	public synchronized List<CardTerminal> list(final State state)
+			throws CardException {
+		final List<CardTerminal> result = new ArrayList<CardTerminal>();
+		for (EmulatedCardTerminal terminal : fTerminals) {
+			final boolean present = terminal.isCardPresent();
+			switch (state) {
+			case ALL:
+				result.add(terminal);
+				break;
+			case CARD_PRESENT:
+				if (present) {
+					result.add(terminal);
+				}
+				break;
+			case CARD_ABSENT:
+				if (!present) {
+					result.add(terminal);
+				}
+				break;
+			case CARD_INSERTION:
+				if (fInserted.contains(terminal.getName())) {
+					result.add(terminal);
+				}
+				break;
+			case CARD_REMOVAL:
+				if (fRemoved.contains(terminal.getName())) {
+					result.add(terminal);
+				}
+				break;
+			default:
+				break;
+			}
+		}
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.CardTerminals#waitForChange(long)
+	 */
+	public synchronized boolean waitForChange(final long timeout)
+			throws CardException {
+		if (timeout < 0) {
+			throw new IllegalArgumentException("Negative timeout");
+		}
+
+		// The first call only establishes the initial state
+		if (fKnownState == null) {
+			fKnownState = currentState();
+			return true;
+		}
+
+		final long end = System.currentTimeMillis() + timeout;
+		try {
+			while (currentState().equals(fKnownState)) {
+				if (timeout == 0) {
+					wait();
+				} else {
+					final long left = end - System.currentTimeMillis();
+					if (left <= 0) {
+						return false;
+					}
+					wait(left);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new CardException("Interrupted while waiting for change", e);
+		}
+
+		// Determine what changed since the previous call
+		final Map<String, Boolean> state = currentState();
+		fInserted.clear();
+		fRemoved.clear();
+		for (Map.Entry<String, Boolean> entry : state.entrySet()) {
+			final Boolean before = fKnownState.get(entry.getKey());
+			if (entry.getValue() && !Boolean.TRUE.equals(before)) {
+				fInserted.add(entry.getKey());
+			} else if (!entry.getValue() && Boolean.TRUE.equals(before)) {
+				fRemoved.add(entry.getKey());
+			}
+		}
+		fKnownState = state;
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of card insertions, card removals and reader changes
+	 * that occurred.
+	 *
+	 * @return the number of changes
+	 */
+	public synchronized long getChangeCount() {
+		return fChangeCount;
+	}
+
+	/**
+	 * Returns the card presence of every attached reader.
+	 */
+	private Map<String, Boolean> currentState() {
+		final Map<String, Boolean> state = new HashMap<String, Boolean>();
+		for (EmulatedCardTerminal terminal : fTerminals) {
+			state.put(terminal.getName(), terminal.isCardPresent());
+		}
+		return state;
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.TerminalFactorySpi;
+
+/**
+ * The emulated terminal factory SPI provides the emulated smart card readers
+ * to a {@link javax.smartcardio.TerminalFactory} of type
+ * {@link be.belgium.eid.emulator.EmulatorProvider#fgTYPE}. The parameter
+ * given to the terminal factory is the
+ * {@link be.belgium.eid.emulator.EmulatedCardTerminals} instance to serve.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class EmulatedTerminalFactorySpi extends TerminalFactorySpi {
+
+	/** Contains the emulated readers served by the factory */
+	private final EmulatedCardTerminals fTerminals;
+
+	/**
+	 * Initializes the factory SPI with the given emulated readers.
+	 *
+	 * @param parameter
+	 *            is the {@link be.belgium.eid.emulator.EmulatedCardTerminals}
+	 *            instance to serve, when null an empty list of readers is
+	 *            served
+	 */
+	public EmulatedTerminalFactorySpi(final Object parameter) {
+		super();
+		if (parameter == null) {
+			fTerminals = new EmulatedCardTerminals();
+		} else if (parameter instanceof EmulatedCardTerminals) {
+			fTerminals = (EmulatedCardTerminals) parameter;
+		} else {
+			throw new IllegalArgumentException("Unsupported parameter: "
+					+ parameter);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.smartcardio.TerminalFactorySpi#engineTerminals()
+	 */
+	protected CardTerminals engineTerminals() {
+		return fTerminals;
+	}
+}
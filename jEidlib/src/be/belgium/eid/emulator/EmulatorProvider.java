@@ -0,0 +1,83 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+
+import javax.smartcardio.TerminalFactory;
+
+/**
+ * The emulator provider is a security provider that registers the emulated
+ * terminal factory. It allows the library to talk to emulated Belgian eID
+ * cards instead of physical ones, e.g. to test or benchmark the read
+ * operations without a smart card reader: <br/>
+ * 
+ * <pre>
+ * EmulatedCardTerminals terminals = new EmulatedCardTerminals();
+ * EmulatedCardTerminal reader = new EmulatedCardTerminal(&quot;Reader 0&quot;,
+ * 		LatencyProfile.USB_CCID_TYPICAL);
+ * terminals.addTerminal(reader);
+ * reader.insertCard(new TestCardGenerator().generate());
+ * SmartCard.setTerminalFactory(EmulatorProvider.getTerminalFactory(terminals));
+ * </pre>
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+@SuppressWarnings("serial")
+public class EmulatorProvider extends Provider {
+
+	/** Contains the type of the emulated terminal factory */
+	public final static String fgTYPE = "BeIDEmulator";
+
+	/** Contains the name of the provider */
+	public final static String fgNAME = "BeIDEmulator";
+
+	/**
+	 * Initializes the provider and registers the emulated terminal factory.
+	 */
+	@SuppressWarnings("deprecation")
+	public EmulatorProvider() {
+		super(fgNAME, 1.0, "Emulated Belgian eID cards and readers");
+		put("TerminalFactory." + fgTYPE, EmulatedTerminalFactorySpi.class
+				.getName());
+	}
+
+	/**
+	 * Returns a terminal factory that serves the given emulated readers.
+	 * 
+	 * @param terminals
+	 *            are the emulated readers to serve
+	 * @return the terminal factory
+	 */
+	public static TerminalFactory getTerminalFactory(
+			final EmulatedCardTerminals terminals) {
+		try {
+			return TerminalFactory.getInstance(fgTYPE, terminals,
+					new EmulatorProvider());
+		} catch (NoSuchAlgorithmException e) {
+			// Shouldn't occur since we registered the type ourselves
+			throw new IllegalStateException(e);
+		}
+	}
+}
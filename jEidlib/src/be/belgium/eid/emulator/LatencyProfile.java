@@ -0,0 +1,153 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+/**
+ * The latency profile class describes the timing behaviour of an emulated
+ * smart card reader. Every APDU exchanged with an emulated card costs a fixed
+ * round trip overhead (USB transfer, CCID framing, card processing) and a
+ * variable cost per byte that travels over the wire. A profile also indicates
+ * whether the reader is capable of transporting extended length APDUs.
+ *
+ * The predefined profiles mimic the USB CCID readers commonly used with the
+ * Belgian eID card. They allow benchmarks to be run in a reproducible way
+ * without a physical smart card reader.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class LatencyProfile {
+
+	/** Profile without any latency, used for functional tests */
+	public final static LatencyProfile NONE = new LatencyProfile("None", 0, 0,
+			true);
+
+	/** Profile of a fast USB CCID reader (10 ms round trip) */
+	public final static LatencyProfile USB_CCID_FAST = new LatencyProfile(
+			"USB CCID fast", 10000, 20, false);
+
+	/** Profile of a typical USB CCID reader (20 ms round trip, T=0 framing) */
+	public final static LatencyProfile USB_CCID_TYPICAL = new LatencyProfile(
+			"USB CCID typical", 20000, 87, false);
+
+	/** Profile of a slow USB CCID reader (30 ms round trip, 9600 baud) */
+	public final static LatencyProfile USB_CCID_SLOW = new LatencyProfile(
+			"USB CCID slow", 30000, 1042, false);
+
+	/** Contains the name of the profile */
+	private final String fName;
+
+	/** Contains the fixed round trip cost of one APDU in microseconds */
+	private final long fRoundTripMicros;
+
+	/** Contains the cost of transporting one byte in microseconds */
+	private final long fByteMicros;
+
+	/** Indicates whether the reader transports extended length APDUs */
+	private final boolean fExtendedLengthSupported;
+
+	/**
+	 * Initializes the latency profile with the given timings.
+	 *
+	 * @param name
+	 *            is the name of the profile
+	 * @param roundTripMicros
+	 *            is the fixed cost of one APDU round trip in microseconds
+	 * @param byteMicros
+	 *            is the cost of transporting one byte in microseconds
+	 * @param extendedLengthSupported
+	 *            indicates whether the reader transports extended length APDUs
+	 */
+	public LatencyProfile(final String name, final long roundTripMicros,
+			final long byteMicros, final boolean extendedLengthSupported) {
+		if ((roundTripMicros < 0) || (byteMicros < 0)) {
+			throw new IllegalArgumentException("Negative latency");
+		}
+
+		fName = name;
+		fRoundTripMicros = roundTripMicros;
+		fByteMicros = byteMicros;
+		fExtendedLengthSupported = extendedLengthSupported;
+	}
+
+	/**
+	 * Returns the name of the profile.
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return fName;
+	}
+
+	/**
+	 * Returns the fixed round trip cost of one APDU.
+	 *
+	 * @return the round trip cost in microseconds
+	 */
+	public long getRoundTripMicros() {
+		return fRoundTripMicros;
+	}
+
+	/**
+	 * Returns the cost of transporting one byte.
+	 *
+	 * @return the cost per byte in microseconds
+	 */
+	public long getByteMicros() {
+		return fByteMicros;
+	}
+
+	/**
+	 * Indicates whether the reader transports extended length APDUs.
+	 *
+	 * @return whether extended length APDUs are supported
+	 */
+	public boolean isExtendedLengthSupported() {
+		return fExtendedLengthSupported;
+	}
+
+	/**
+	 * Returns the time an APDU exchange with the given sizes takes with this
+	 * profile.
+	 *
+	 * @param commandLength
+	 *            is the number of bytes in the command APDU
+	 * @param responseLength
+	 *            is the number of bytes in the response APDU
+	 * @return the duration of the exchange in nanoseconds
+	 */
+	public long exchangeNanos(final int commandLength, final int responseLength) {
+		return 1000L * (fRoundTripMicros + fByteMicros
+				* (commandLength + responseLength));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return fName + " (" + fRoundTripMicros + " us/APDU, " + fByteMicros
+				+ " us/byte" + (fExtendedLengthSupported ? ", extended" : "")
+				+ ")";
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.emulator;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Random;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.CRLDistPoint;
+import org.bouncycastle.asn1.x509.DistributionPoint;
+import org.bouncycastle.asn1.x509.DistributionPointName;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.asn1.x509.X509Extensions;
+import org.bouncycastle.asn1.x509.X509ObjectIdentifiers;
+import org.bouncycastle.x509.X509V3CertificateGenerator;
+
+import be.belgium.eid.objects.IDTokenInfo;
+import be.belgium.eid.objects.SmartCardReadable;
+
+/**
+ * The test card generator creates the image of a self-consistent Belgian eID
+ * test card. The generated card contains an identity, address and photo file
+ * signed by a generated national register (RN) key, a certificate chain with a
+ * generated root, CA, authentication and signature certificate, and the
+ * matching private keys to sign with. Since the root is not one of the
+ * Belgian roots, the library must be used with test cards enabled.
+ *
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class TestCardGenerator implements SmartCardReadable {
+
+	/** Contains the number of milliseconds in a day */
+	private final static long fgDAY = 24L * 60 * 60 * 1000;
+
+	/** Contains the surname of the holder */
+	private String fName = "Specimen";
+
+	/** Contains the first names of the holder */
+	private String fFirstNames = "Alice Marie";
+
+	/** Contains the national number of the holder */
+	private String fNationalNumber = "80031512345";
+
+	/** Contains the street of the address of the holder */
+	private String fStreet = "Wetstraat 16";
+
+	/** Contains the zip code of the address of the holder */
+	private String fZipCode = "1000";
+
+	/** Contains the municipality of the address of the holder */
+	private String fMunicipality = "Brussel";
+
+	/** Contains the size of the generated photo in bytes */
+	private int fPhotoSize = 3072;
+
+	/** Contains the size of the generated RSA keys in bits */
+	private int fKeySize = 1024;
+
+	/** Contains the seed of the generator of the chip number and photo */
+	private long fSeed = 0;
+
+	/**
+	 * Sets the name of the holder of the card.
+	 *
+	 * @param name
+	 *            is the surname of the holder
+	 * @param firstNames
+	 *            are the first names of the holder
+	 * @param nationalNumber
+	 *            is the national number of the holder
+	 */
+	public void setHolder(final String name, final String firstNames,
+			final String nationalNumber) {
+		fName = name;
+		fFirstNames = firstNames;
+		fNationalNumber = nationalNumber;
+	}
+
+	/**
+	 * Sets the address of the holder of the card.
+	 *
+	 * @param street
+	 *            is the street and house number
+	 * @param zipCode
+	 *            is the zip code
+	 * @param municipality
+	 *            is the municipality
+	 */
+	public void setAddress(final String street, final String zipCode,
+			final String municipality) {
+		fStreet = street;
+		fZipCode = zipCode;
+		fMunicipality = municipality;
+	}
+
+	/**
+	 * Sets the size of the generated photo.
+	 *
+	 * @param photoSize
+	 *            is the size of the photo in bytes
+	 */
+	public void setPhotoSize(final int photoSize) {
+		fPhotoSize = photoSize;
+	}
+
+	/**
+	 * Sets the size of the generated RSA keys.
+	 *
+	 * @param keySize
+	 *            is the size of the keys in bits
+	 */
+	public void setKeySize(final int keySize) {
+		fKeySize = keySize;
+	}
+
+	/**
+	 * Sets the seed from which the chip number and the photo are generated.
+	 * Cards generated with the same seed have the same chip number.
+	 *
+	 * @param seed
+	 *            is the seed
+	 */
+	public void setSeed(final long seed) {
+		fSeed = seed;
+	}
+
+	/**
+	 * Generates the image of a test card.
+	 *
+	 * @return the generated card image
+	 * @throws GeneralSecurityException
+	 *             when the keys, certificates or signatures couldn't be
+	 *             generated
+	 */
+	public EmulatedCardImage generate() throws GeneralSecurityException {
+		final EmulatedCardImage image = new EmulatedCardImage();
+		final Random random = new Random(fSeed);
+
+		// Generate the keys
+		final KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+		kpg.initialize(fKeySize, new SecureRandom());
+		final KeyPair rootKeys = kpg.generateKeyPair();
+		final KeyPair caKeys = kpg.generateKeyPair();
+		final KeyPair rnKeys = kpg.generateKeyPair();
+		final KeyPair authKeys = kpg.generateKeyPair();
+		final KeyPair sigKeys = kpg.generateKeyPair();
+		image.setKeys(authKeys.getPrivate(), sigKeys.getPrivate());
+
+		// Generate the certificates
+		final long now = System.currentTimeMillis();
+		final X500Principal rootDN = new X500Principal(
+				"CN=Belgium Root CA Emulated, C=BE");
+		final X500Principal caDN = new X500Principal(
+				"CN=Citizen CA Emulated, SERIALNUMBER=200001, C=BE");
+		final String holder = fFirstNames + " " + fName;
+		final X509Certificate root = certificate(rootDN, rootDN, rootKeys
+				.getPublic(), rootKeys.getPrivate(), now - 3650 * fgDAY, now
+				+ 3650 * fgDAY, -1, KeyUsage.keyCertSign | KeyUsage.cRLSign,
+				null, null);
+		final X509Certificate ca = certificate(rootDN, caDN,
+				caKeys.getPublic(), rootKeys.getPrivate(), now - 1000 * fgDAY,
+				now + 2000 * fgDAY, 0, KeyUsage.keyCertSign | KeyUsage.cRLSign,
+				null, "http://crl.eid.belgium.be/belgium.crl");
+		final X509Certificate rn = certificate(rootDN, new X500Principal(
+				"CN=RRN, O=RRN, C=BE"), rnKeys.getPublic(), rootKeys
+				.getPrivate(), now - 1000 * fgDAY, now + 2000 * fgDAY, -2,
+				KeyUsage.digitalSignature | KeyUsage.nonRepudiation, null,
+				"http://crl.eid.belgium.be/belgium.crl");
+		final X509Certificate auth = certificate(caDN, new X500Principal("CN="
+				+ holder + " (Authentication), SERIALNUMBER=" + fNationalNumber
+				+ ", C=BE"), authKeys.getPublic(), caKeys.getPrivate(), now
+				- 365 * fgDAY, now + 1460 * fgDAY, -2,
+				KeyUsage.digitalSignature, "http://ocsp.eid.belgium.be",
+				"http://crl.eid.belgium.be/eidc200001.crl");
+		final X509Certificate sig = certificate(caDN, new X500Principal("CN="
+				+ holder + " (Signature), SERIALNUMBER=" + fNationalNumber
+				+ ", C=BE"), sigKeys.getPublic(), caKeys.getPrivate(), now
+				- 365 * fgDAY, now + 1460 * fgDAY, -2, KeyUsage.nonRepudiation,
+				"http://ocsp.eid.belgium.be",
+				"http://crl.eid.belgium.be/eidc200001.crl");
+
+		image.putFile(path(fgDFCert, fgCertTag, fgDataTagROOT), root
+				.getEncoded());
+		image.putFile(path(fgDFCert, fgCertTag, fgDataTagCA), ca.getEncoded());
+		image.putFile(path(fgDFCert, fgCertTag, fgDataTagRN), rn.getEncoded());
+		image.putFile(path(fgDFCert, fgCertTag, fgDataTagAUTH), auth
+				.getEncoded());
+		image.putFile(path(fgDFCert, fgCertTag, fgDataTagSIG), sig
+				.getEncoded());
+
+		// Generate the card data and the token information
+		final byte[] chipNumber = new byte[16];
+		random.nextBytes(chipNumber);
+		final byte[] cardData = new byte[0x1C];
+		System.arraycopy(chipNumber, 0, cardData, 0, chipNumber.length);
+		final byte[] versions = { (byte) 0xA5, (byte) 0x03, (byte) 0x01,
+				(byte) 0x01, (byte) 0x01, (byte) 0x11, (byte) 0x00,
+				(byte) 0x02, (byte) 0x00, (byte) 0x01, (byte) 0x01,
+				(byte) 0x0F };
+		System.arraycopy(versions, 0, cardData, chipNumber.length,
+				versions.length);
+		image.setCardData(cardData);
+
+		final byte[] tokenInfo = new byte[IDTokenInfo.fgOFFSET + 4];
+		tokenInfo[0] = (byte) 0x30;
+		tokenInfo[1] = (byte) (tokenInfo.length - 2);
+		tokenInfo[IDTokenInfo.fgOFFSET] = (byte) 0x01;
+		tokenInfo[IDTokenInfo.fgOFFSET + 1] = (byte) 0x17;
+		tokenInfo[IDTokenInfo.fgOFFSET + 2] = (byte) 0x01;
+		image.putFile(path(fgDFCert, fgCertTag, (byte) fgDataTagTOKENINFO),
+				tokenInfo);
+
+		// Generate the photo
+		final byte[] photo = new byte[fPhotoSize];
+		random.nextBytes(photo);
+		photo[0] = (byte) 0xFF;
+		photo[1] = (byte) 0xD8;
+		photo[fPhotoSize - 2] = (byte) 0xFF;
+		photo[fPhotoSize - 1] = (byte) 0xD9;
+		image.putFile(path(fgDFID, fgDataTag, fgDataTagPHOTO), photo);
+
+		// Generate the identity file and its signature
+		final ByteArrayOutputStream id = new ByteArrayOutputStream();
+		tlv(id, 0x01, "591" + fNationalNumber.substring(2));
+		tlv(id, 0x02, chipNumber);
+		tlv(id, 0x03, "01.01.2024");
+		tlv(id, 0x04, "01.01.2034");
+		tlv(id, 0x05, fMunicipality);
+		tlv(id, 0x06, fNationalNumber);
+		tlv(id, 0x07, fName);
+		tlv(id, 0x08, fFirstNames);
+		tlv(id, 0x09, "J");
+		tlv(id, 0x0A, "Belg");
+		tlv(id, 0x0B, "Leuven");
+		tlv(id, 0x0C, "15 MAR 1980");
+		tlv(id, 0x0D, "F");
+		tlv(id, 0x0E, "");
+		tlv(id, 0x0F, "01");
+		tlv(id, 0x10, "0");
+		tlv(id, 0x11, MessageDigest.getInstance("SHA-1").digest(photo));
+		final byte[] idFile = id.toByteArray();
+		final byte[] idSignature = sign(rnKeys.getPrivate(), idFile);
+		image.putFile(path(fgDFID, fgDataTag, fgDataTagID), idFile);
+		image.putFile(path(fgDFID, fgDataTag, fgDataTagIDSIG), idSignature);
+
+		// Generate the address file, padded with zeroes like on a real card,
+		// and its signature
+		final ByteArrayOutputStream address = new ByteArrayOutputStream();
+		tlv(address, 0x01, fStreet);
+		tlv(address, 0x02, fZipCode);
+		tlv(address, 0x03, fMunicipality);
+		final byte[] addressData = address.toByteArray();
+		final byte[] addressFile = new byte[Math.max(117, addressData.length)];
+		System.arraycopy(addressData, 0, addressFile, 0, addressData.length);
+		final byte[] signedAddress = new byte[addressData.length
+				+ idSignature.length];
+		System.arraycopy(addressData, 0, signedAddress, 0, addressData.length);
+		System.arraycopy(idSignature, 0, signedAddress, addressData.length,
+				idSignature.length);
+		image.putFile(path(fgDFID, fgDataTag, fgDataTagADDR), addressFile);
+		image.putFile(path(fgDFID, fgDataTag, fgDataTagADDRSIG), sign(rnKeys
+				.getPrivate(), signedAddress));
+
+		return image;
+	}
+
+	/**
+	 * Returns the absolute path of the file with the given identifiers.
+	 */
+	private static byte[] path(final byte[] df, final byte tag, final byte id) {
+		return new byte[] { fgMF[0], fgMF[1], df[0], df[1], tag, id };
+	}
+
+	/**
+	 * Appends a TLV element with the given textual value.
+	 */
+	private static void tlv(final ByteArrayOutputStream out, final int tag,
+			final String value) {
+		tlv(out, tag, value.getBytes());
+	}
+
+	/**
+	 * Appends a TLV element with the given binary value.
+	 */
+	private static void tlv(final ByteArrayOutputStream out, final int tag,
+			final byte[] value) {
+		if (value.length > 0x7F) {
+			throw new IllegalArgumentException("TLV value too long");
+		}
+		out.write(tag);
+		out.write(value.length);
+		out.write(value, 0, value.length);
+	}
+
+	/**
+	 * Signs the given data with SHA1withRSA.
+	 */
+	private static byte[] sign(final PrivateKey key, final byte[] data)
+			throws GeneralSecurityException {
+		final Signature sig = Signature.getInstance("SHA1withRSA");
+		sig.initSign(key);
+		sig.update(data);
+		return sig.sign();
+	}
+
+	/**
+	 * Generates a certificate with the given attributes. A path length below
+	 * -1 indicates an end entity certificate.
+	 */
+	private static X509Certificate certificate(final X500Principal issuer,
+			final X500Principal subject, final PublicKey publicKey,
+			final PrivateKey issuerKey, final long notBefore,
+			final long notAfter, final int pathLength, final int keyUsage,
+			final String ocspURL, final String crlURL)
+			throws GeneralSecurityException {
+		final X509V3CertificateGenerator gen = new X509V3CertificateGenerator();
+		gen.setSerialNumber(new BigInteger(64, new SecureRandom()).abs().add(
+				BigInteger.ONE));
+		gen.setIssuerDN(issuer);
+		gen.setSubjectDN(subject);
+		gen.setNotBefore(new Date(notBefore));
+		gen.setNotAfter(new Date(notAfter));
+		gen.setPublicKey(publicKey);
+		gen.setSignatureAlgorithm("SHA1withRSA");
+
+		if (pathLength == -1) {
+			gen.addExtension(X509Extensions.BasicConstraints, true,
+					new BasicConstraints(true));
+		} else if (pathLength >= 0) {
+			gen.addExtension(X509Extensions.BasicConstraints, true,
+					new BasicConstraints(pathLength));
+		} else {
+			gen.addExtension(X509Extensions.BasicConstraints, true,
+					new BasicConstraints(false));
+		}
+		gen.addExtension(X509Extensions.KeyUsage, true, new KeyUsage(keyUsage));
+		if (ocspURL != null) {
+			gen.addExtension(X509Extensions.AuthorityInfoAccess, false,
+					new AuthorityInformationAccess(
+							X509ObjectIdentifiers.ocspAccessMethod,
+							new GeneralName(
+									GeneralName.uniformResourceIdentifier,
+									ocspURL)));
+		}
+		if (crlURL != null) {
+			gen.addExtension(X509Extensions.CRLDistributionPoints, false,
+					new CRLDistPoint(new DistributionPoint[] {
+						new DistributionPoint(new DistributionPointName(
+								DistributionPointName.FULL_NAME,
+								new GeneralNames(new GeneralName(
+										GeneralName.uniformResourceIdentifier,
+										crlURL))), null, null) }));
+		}
+
+		return gen.generate(issuerKey);
+	}
+}
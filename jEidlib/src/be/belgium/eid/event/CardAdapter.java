@@ -21,6 +21,8 @@
  */
 package be.belgium.eid.event;
 
+import javax.smartcardio.CardTerminal;
+
 /**
  * The adapter class for the card listener. The method bodies are empty here
  * since the class primarily exists as convenience for creating listener
@@ -30,7 +32,7 @@ package be.belgium.eid.event;
  * @author Kristof Overdulve
  * @version 1.0.0 11 Feb 2008
  */
-public class CardAdapter implements CardListener {
+public class CardAdapter implements CardListener, ReaderListener {
 
 	/*
 	 * (non-Javadoc)
@@ -50,4 +52,22 @@ public class CardAdapter implements CardListener {
 		// Empty body
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see be.belgium.eid.event.ReaderListener#readerAttached(javax.smartcardio.CardTerminal)
+	 */
+	public void readerAttached(final CardTerminal terminal) {
+		// Empty body
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see be.belgium.eid.event.ReaderListener#readerDetached(javax.smartcardio.CardTerminal)
+	 */
+	public void readerDetached(final CardTerminal terminal) {
+		// Empty body
+	}
+
 }
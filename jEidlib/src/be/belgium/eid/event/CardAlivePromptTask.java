@@ -31,7 +31,11 @@ import be.belgium.eid.eidlib.SmartCard;
  * 
  * @author Kristof Overdulve
  * @version 1.0.0 11 Feb 2008
+ * @deprecated prompts every reader in turn, use
+ *             {@link be.belgium.eid.event.CardMonitor} which waits for a
+ *             change in any reader instead
  */
+@Deprecated
 public class CardAlivePromptTask extends Thread {
 	
 	/** Lock time to wait for card removal */
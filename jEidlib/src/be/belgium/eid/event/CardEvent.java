@@ -0,0 +1,155 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.CardTerminal;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+
+/**
+ * The card event describes a card inserted into or removed from a smart card
+ * reader, or a reader attached to or detached from the system. Events are
+ * numbered in the order in which they occur, so that listeners informed
+ * asynchronously can still tell which event came first.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public final class CardEvent {
+
+	/**
+	 * The kinds of events that occur.
+	 */
+	public enum Type {
+		/** A card has been inserted and connected */
+		CARD_INSERTED,
+		/** The connected card has been removed */
+		CARD_REMOVED,
+		/** A reader has been attached */
+		READER_ATTACHED,
+		/** A reader has been detached */
+		READER_DETACHED
+	}
+
+	/** Contains the sequence number of the last event created */
+	private final static AtomicLong fgSequence = new AtomicLong();
+
+	/** Contains the kind of event */
+	private final Type fType;
+
+	/** Contains the reader in which the event occurred */
+	private final CardTerminal fTerminal;
+
+	/** Contains the answer to reset of the card, null for reader events */
+	private final ATR fATR;
+
+	/** Contains the time at which the event occurred */
+	private final long fTimestamp;
+
+	/** Contains the sequence number of the event */
+	private final long fSequenceNumber;
+
+	/**
+	 * Initializes the event that occurs now.
+	 * 
+	 * @param type
+	 *            is the kind of event
+	 * @param terminal
+	 *            is the reader in which the event occurred
+	 * @param atr
+	 *            is the answer to reset of the card inserted or removed, or
+	 *            null for reader events
+	 */
+	public CardEvent(final Type type, final CardTerminal terminal,
+			final ATR atr) {
+		fType = type;
+		fTerminal = terminal;
+		fATR = atr;
+		fTimestamp = System.currentTimeMillis();
+		fSequenceNumber = fgSequence.incrementAndGet();
+	}
+
+	/**
+	 * Returns the kind of event.
+	 * 
+	 * @return the type of the event
+	 */
+	public Type getType() {
+		return fType;
+	}
+
+	/**
+	 * Returns the reader in which the event occurred.
+	 * 
+	 * @return the smart card reader
+	 */
+	public CardTerminal getTerminal() {
+		return fTerminal;
+	}
+
+	/**
+	 * Returns the answer to reset of the card inserted or removed.
+	 * 
+	 * @return the ATR of the card, or null for reader events
+	 */
+	public ATR getATR() {
+		return fATR;
+	}
+
+	/**
+	 * Returns the time at which the event occurred.
+	 * 
+	 * @return the time in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return fTimestamp;
+	}
+
+	/**
+	 * Returns the sequence number of the event, which is higher for every
+	 * event that occurs later.
+	 * 
+	 * @return the sequence number
+	 */
+	public long getSequenceNumber() {
+		return fSequenceNumber;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		final StringBuffer result = new StringBuffer();
+		result.append("#").append(fSequenceNumber).append(" ").append(fType);
+		result.append(" ").append(fTerminal.getName());
+		if (fATR != null) {
+			result.append(" ").append(ByteConverter.hexify(fATR.getBytes()));
+		}
+
+		return result.toString();
+	}
+}
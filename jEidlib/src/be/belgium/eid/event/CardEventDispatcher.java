@@ -0,0 +1,296 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The card event dispatcher informs any number of card listeners of card
+ * events without keeping the thread that fires them waiting. Every listener
+ * has its own bounded queue of events, which is served on the executor of
+ * the dispatcher, one event at a time and in the order in which the events
+ * were fired. A slow listener therefore only delays its own events. When the
+ * queue of a listener is full, its oldest event is dropped to make room.
+ * Listeners that implement {@link ReaderListener} are informed of readers
+ * attached and detached as well.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardEventDispatcher {
+
+	/** Contains the default number of events queued for each listener */
+	public final static int fgDEFAULT_QUEUE_CAPACITY = 64;
+
+	/** Contains the executor used by dispatchers unless told otherwise */
+	private static ExecutorService fgDefaultExecutor = null;
+
+	/** Contains the executor on which the listeners are informed */
+	private final Executor fExecutor;
+
+	/** Contains the number of events that can be queued for each listener */
+	private final int fQueueCapacity;
+
+	/** Contains the queues of the listeners, in order of registration */
+	private final List<ListenerQueue> fQueues = new CopyOnWriteArrayList<ListenerQueue>();
+
+	/** Contains the number of events dropped because a queue was full */
+	private final AtomicLong fDropped = new AtomicLong();
+
+	/**
+	 * Initializes the dispatcher on a shared pool of daemon threads, with the
+	 * default queue capacity.
+	 */
+	public CardEventDispatcher() {
+		this(getDefaultExecutor(), fgDEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Initializes the dispatcher on the given executor.
+	 * 
+	 * @param executor
+	 *            is the executor on which the listeners are informed
+	 * @param queueCapacity
+	 *            is the number of events that can be queued for each listener
+	 * @throws IllegalArgumentException
+	 *             when the queue capacity is not positive
+	 */
+	public CardEventDispatcher(final Executor executor, final int queueCapacity)
+			throws IllegalArgumentException {
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException(
+					"The queue capacity should be positive.");
+		}
+
+		fExecutor = executor;
+		fQueueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Adds the given listener, which is informed of the events fired from
+	 * now on.
+	 * 
+	 * @param cl
+	 *            is the listener to add
+	 */
+	public void addCardListener(final CardListener cl) {
+		fQueues.add(new ListenerQueue(cl));
+	}
+
+	/**
+	 * Removes the given listener. Events queued for it are not delivered.
+	 * 
+	 * @param cl
+	 *            is the listener to remove
+	 * @return true when the listener was registered
+	 */
+	public boolean removeCardListener(final CardListener cl) {
+		for (ListenerQueue queue : fQueues) {
+			if (queue.fListener == cl) {
+				queue.fQueue.clear();
+				return fQueues.remove(queue);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes all listeners.
+	 */
+	public void removeAllCardListeners() {
+		for (ListenerQueue queue : fQueues) {
+			queue.fQueue.clear();
+		}
+		fQueues.clear();
+	}
+
+	/**
+	 * Returns the listeners, in order of registration.
+	 * 
+	 * @return a list of the registered listeners
+	 */
+	public List<CardListener> getCardListeners() {
+		final List<CardListener> result = new ArrayList<CardListener>();
+		for (ListenerQueue queue : fQueues) {
+			result.add(queue.fListener);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Queues the given event for every listener and returns at once.
+	 * 
+	 * @param event
+	 *            is the event to fire
+	 */
+	public void fire(final CardEvent event) {
+		for (ListenerQueue queue : fQueues) {
+			queue.post(event);
+		}
+	}
+
+	/**
+	 * Returns the number of events dropped because the queue of a listener
+	 * was full.
+	 * 
+	 * @return the number of events dropped
+	 */
+	public long getDroppedCount() {
+		return fDropped.get();
+	}
+
+	/**
+	 * Informs the given listener of the given event. Exceptions thrown by the
+	 * listener are ignored so that they don't affect later events.
+	 * 
+	 * @param cl
+	 *            is the listener to inform
+	 * @param event
+	 *            is the event to deliver
+	 */
+	private static void deliver(final CardListener cl, final CardEvent event) {
+		try {
+			switch (event.getType()) {
+			case CARD_INSERTED:
+				cl.cardInserted(event);
+				break;
+			case CARD_REMOVED:
+				cl.cardRemoved(event);
+				break;
+			case READER_ATTACHED:
+				if (cl instanceof ReaderListener) {
+					((ReaderListener) cl).readerAttached(event.getTerminal());
+				}
+				break;
+			case READER_DETACHED:
+				if (cl instanceof ReaderListener) {
+					((ReaderListener) cl).readerDetached(event.getTerminal());
+				}
+				break;
+			}
+		} catch (RuntimeException e) {
+			// The listener failed, which doesn't concern the others
+		}
+	}
+
+	/**
+	 * Returns the shared pool of daemon threads, created when first needed.
+	 * 
+	 * @return the default executor
+	 */
+	private static synchronized Executor getDefaultExecutor() {
+		if (fgDefaultExecutor == null) {
+			fgDefaultExecutor = Executors.newCachedThreadPool(r -> {
+				final Thread thread = new Thread(r, "eID card events");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		return fgDefaultExecutor;
+	}
+
+	/**
+	 * The queue of events of one listener, which is served on the executor by
+	 * at most one task at a time.
+	 */
+	private final class ListenerQueue implements Runnable {
+
+		/** Contains the listener */
+		private final CardListener fListener;
+
+		/** Contains the events not yet delivered */
+		private final BlockingQueue<CardEvent> fQueue;
+
+		/** Indicates whether a task serving the queue has been submitted */
+		private final AtomicBoolean fScheduled = new AtomicBoolean(false);
+
+		/**
+		 * Initializes an empty queue for the given listener.
+		 * 
+		 * @param cl
+		 *            is the listener
+		 */
+		private ListenerQueue(final CardListener cl) {
+			fListener = cl;
+			fQueue = new ArrayBlockingQueue<CardEvent>(fQueueCapacity);
+		}
+
+		/**
+		 * Queues the given event, dropping the oldest one when full, and
+		 * makes sure the queue is served.
+		 * 
+		 * @param event
+		 *            is the event to queue
+		 */
+		private void post(final CardEvent event) {
+			while (!fQueue.offer(event)) {
+				if (fQueue.poll() != null) {
+					fDropped.incrementAndGet();
+				}
+			}
+			schedule();
+		}
+
+		/**
+		 * Submits a task serving the queue unless one has been submitted.
+		 */
+		private void schedule() {
+			if (fScheduled.compareAndSet(false, true)) {
+				try {
+					fExecutor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// The events remain queued until the next one is fired
+					fScheduled.set(false);
+				}
+			}
+		}
+
+		/**
+		 * Delivers the queued events in order.
+		 */
+		public void run() {
+			CardEvent event;
+			while ((event = fQueue.poll()) != null) {
+				deliver(fListener, event);
+			}
+			fScheduled.set(false);
+
+			// An event may have been queued after the last poll
+			if (!fQueue.isEmpty()) {
+				schedule();
+			}
+		}
+	}
+}
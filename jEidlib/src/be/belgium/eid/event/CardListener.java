@@ -40,4 +40,26 @@ public interface CardListener /* extends EventListener */{
 	 * When a card is removed this event is triggered.
 	 */
 	void cardRemoved();
+
+	/**
+	 * When a card is inserted this event is triggered with the details of the
+	 * event. By default, this calls {@link #cardInserted()}.
+	 * 
+	 * @param event
+	 *            describes the card inserted
+	 */
+	default void cardInserted(final CardEvent event) {
+		cardInserted();
+	}
+
+	/**
+	 * When a card is removed this event is triggered with the details of the
+	 * event. By default, this calls {@link #cardRemoved()}.
+	 * 
+	 * @param event
+	 *            describes the card removed
+	 */
+	default void cardRemoved(final CardEvent event) {
+		cardRemoved();
+	}
 }
@@ -0,0 +1,368 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.event;
+
+import java.util.List;
+
+import javax.smartcardio.ATR;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+import be.belgium.eid.eidlib.SmartCard;
+
+/**
+ * The card monitor watches all smart card readers from one thread and
+ * connects the given smart card when a card is inserted, and disconnects it
+ * when the card is removed, firing card events for both. Instead of
+ * prompting every reader in turn, the monitor waits for the readers to report
+ * a change, so it uses no processor time while nothing happens and notices a
+ * card in any reader at once. The readers themselves are kept in a terminal
+ * registry, which is refreshed with an increasing interval while the readers
+ * don't change, and events are fired for the readers attached and detached.
+ * The events are fired on a card event dispatcher, so that the listeners
+ * don't delay the monitor. Without a smart card to connect, the monitor only
+ * fires the insertions and removals in every reader. Either way, the
+ * operations still using a card that has been removed are aborted.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardMonitor extends Thread {
+
+	/**
+	 * Maximum time to wait for a change before checking whether the monitor
+	 * needs to stop
+	 */
+	public static long fsWaitForChange = 1000;
+
+	/** Time to wait before listing the readers again after a failure */
+	public static long fsInitialBackoff = 250;
+
+	/** Maximum time to wait before listing the readers again after failures */
+	public static long fsMaxBackoff = 8000;
+
+	/**
+	 * Contains the smart card to connect when a card is inserted, null when
+	 * the insertions in all readers are only reported
+	 */
+	private final SmartCard fCard;
+
+	/** Contains the dispatcher of the events to the listeners */
+	private final CardEventDispatcher fDispatcher;
+
+	/** Contains the readers attached to the system */
+	private final TerminalRegistry fRegistry;
+
+	/** Indicates that the thread needs to continue execution */
+	private volatile boolean fExecute = true;
+
+	/** Contains the time to wait before checking for readers again */
+	private long fBackoff = fsInitialBackoff;
+
+	/**
+	 * Initializes the monitor with the given smart card. When events occur,
+	 * the given listener is notified, of readers attached and detached as well
+	 * when it implements {@link ReaderListener}.
+	 * 
+	 * @param card
+	 *            is the smart card to connect to an inserted card
+	 * @param cl
+	 *            is the card listener to use to listen to changes
+	 */
+	public CardMonitor(final SmartCard card, final CardListener cl) {
+		this(card, new CardEventDispatcher());
+
+		fDispatcher.addCardListener(cl);
+	}
+
+	/**
+	 * Initializes the monitor that connects no card but fires the insertions
+	 * and removals in every reader on the given dispatcher. The events carry
+	 * no ATR then.
+	 * 
+	 * @param dispatcher
+	 *            is the dispatcher informing the listeners of the events
+	 */
+	public CardMonitor(final CardEventDispatcher dispatcher) {
+		this((SmartCard) null, dispatcher);
+	}
+
+	/**
+	 * Initializes the monitor with the given smart card. When events occur,
+	 * they are fired on the given dispatcher.
+	 * 
+	 * @param card
+	 *            is the smart card to connect to an inserted card
+	 * @param dispatcher
+	 *            is the dispatcher informing the listeners of the events
+	 */
+	public CardMonitor(final SmartCard card,
+			final CardEventDispatcher dispatcher) {
+		super("eID card monitor");
+
+		fCard = card;
+		fDispatcher = dispatcher;
+		fRegistry = new TerminalRegistry(new ReaderListener() {
+			public void readerAttached(final CardTerminal terminal) {
+				fDispatcher.fire(new CardEvent(
+						CardEvent.Type.READER_ATTACHED, terminal, null));
+			}
+
+			public void readerDetached(final CardTerminal terminal) {
+				// The readers don't report the removal of a card from a
+				// reader that is gone
+				SmartCard.cardRemoved(terminal.getName());
+				cardLost(terminal);
+				fDispatcher.fire(new CardEvent(
+						CardEvent.Type.READER_DETACHED, terminal, null));
+			}
+		});
+	}
+
+	/**
+	 * Returns the dispatcher on which the events are fired.
+	 * 
+	 * @return the card event dispatcher of the monitor
+	 */
+	public CardEventDispatcher getDispatcher() {
+		return fDispatcher;
+	}
+
+	/**
+	 * Returns the registry of the readers attached to the system.
+	 * 
+	 * @return the terminal registry of the monitor
+	 */
+	public TerminalRegistry getRegistry() {
+		return fRegistry;
+	}
+
+	/**
+	 * Waits for the readers to report a change and performs the actions
+	 * needed until the monitor is stopped.
+	 */
+	public void run() {
+		CardTerminals terminals = null;
+		while (fExecute) {
+			try {
+				if (terminals == null) {
+					terminals = SmartCard.getTerminalFactory().terminals();
+
+					// Establish the state from which changes are reported
+					// before looking at the cards, so that no change is lost
+					terminals.waitForChange(1);
+					fRegistry.refresh(terminals);
+
+					// Cards inserted before the monitor started count as
+					// inserted
+					update(terminals, terminals
+							.list(CardTerminals.State.CARD_PRESENT));
+					fBackoff = fsInitialBackoff;
+				}
+
+				if (fRegistry.getReaders().isEmpty()) {
+					pause(fRegistry.getPollInterval());
+					fRegistry.refresh(terminals);
+				} else {
+					if (terminals.waitForChange(fsWaitForChange)) {
+						update(terminals, terminals
+								.list(CardTerminals.State.CARD_INSERTION));
+					} else {
+						checkConnectedCard(terminals);
+					}
+					if (fRegistry.isRefreshDue()) {
+						fRegistry.refresh(terminals);
+					}
+				}
+			} catch (Exception e) {
+				// Start over with a fresh list of readers after a while,
+				// since readers may have been detached
+				terminals = null;
+				backOff();
+			}
+		}
+	}
+
+	/**
+	 * Indicates that the thread needs to stop running.
+	 */
+	public void stopThread() {
+		fExecute = false;
+		interrupt();
+	}
+
+	/**
+	 * Aborts the operations on the cards removed, disconnects the smart card
+	 * when its card has been removed and connects it to an inserted card when
+	 * not connected, preferably to one of the given readers. Without a smart
+	 * card, the events are fired for all readers instead.
+	 * 
+	 * @param terminals
+	 *            are the readers of the system
+	 * @param inserted
+	 *            are the readers in which a card has been inserted
+	 */
+	private void update(final CardTerminals terminals,
+			final List<CardTerminal> inserted) throws Exception {
+		final List<CardTerminal> removed = terminals
+				.list(CardTerminals.State.CARD_REMOVAL);
+		for (CardTerminal ct : removed) {
+			// Abort the operations on the card right away rather than letting
+			// them fail on the reader
+			SmartCard.cardRemoved(ct.getName());
+		}
+
+		if (fCard == null) {
+			for (CardTerminal ct : removed) {
+				fDispatcher.fire(new CardEvent(CardEvent.Type.CARD_REMOVED,
+						ct, null));
+			}
+			for (CardTerminal ct : inserted) {
+				fDispatcher.fire(new CardEvent(CardEvent.Type.CARD_INSERTED,
+						ct, null));
+			}
+			return;
+		}
+
+		if (fCard.isConnected()) {
+			final String connected = fCard.getConnectedReader().getName();
+			for (CardTerminal ct : removed) {
+				if (ct.getName().equals(connected)) {
+					disconnect(ct);
+					break;
+				}
+			}
+		}
+		checkConnectedCard(terminals);
+
+		if (!fCard.isConnected()) {
+			// Prefer the card just inserted to one present before
+			List<CardTerminal> candidates = inserted;
+			if (candidates.isEmpty()) {
+				candidates = terminals.list(CardTerminals.State.CARD_PRESENT);
+			}
+			if (!candidates.isEmpty()) {
+				final CardTerminal ct = candidates.get(0);
+				fCard.connectCard(ct.getName());
+				cardConnected(ct);
+				fDispatcher.fire(new CardEvent(CardEvent.Type.CARD_INSERTED,
+						ct, fCard.getATR()));
+			}
+		}
+	}
+
+	/**
+	 * Disconnects the smart card when the reader it is connected to holds no
+	 * card anymore, and fires the removal. The readers only report the
+	 * changes since the state was established, so a card connected after
+	 * that and removed again before the next wait isn't reported as removed.
+	 * 
+	 * @param terminals
+	 *            are the readers of the system
+	 */
+	private void checkConnectedCard(final CardTerminals terminals)
+			throws Exception {
+		if ((fCard == null) || !fCard.isConnected()) {
+			return;
+		}
+
+		final CardTerminal connected = fCard.getConnectedReader();
+		for (CardTerminal ct : terminals
+				.list(CardTerminals.State.CARD_PRESENT)) {
+			if (ct.getName().equals(connected.getName())) {
+				return;
+			}
+		}
+		SmartCard.cardRemoved(connected.getName());
+		disconnect(connected);
+	}
+
+	/**
+	 * Called when the smart card has been connected to an inserted card,
+	 * before the event is fired. Does nothing by default.
+	 * 
+	 * @param terminal
+	 *            is the reader in which the card has been inserted
+	 */
+	protected void cardConnected(final CardTerminal terminal) {
+		// Empty body
+	}
+
+	/**
+	 * Disconnects the smart card when it is connected to the given reader,
+	 * which has been detached.
+	 * 
+	 * @param terminal
+	 *            is the reader detached
+	 */
+	private void cardLost(final CardTerminal terminal) {
+		try {
+			if (fCard != null && fCard.isConnected()
+					&& fCard.getConnectedReader().getName().equals(
+							terminal.getName())) {
+				disconnect(terminal);
+			}
+		} catch (Exception e) {
+			// The card is gone with its reader
+		}
+	}
+
+	/**
+	 * Disconnects the smart card, which has been removed from the given
+	 * reader, and fires the removal.
+	 * 
+	 * @param terminal
+	 *            is the reader from which the card has been removed
+	 */
+	private void disconnect(final CardTerminal terminal) throws Exception {
+		final ATR atr = fCard.getATR();
+		try {
+			fCard.disconnect();
+		} finally {
+			fDispatcher.fire(new CardEvent(CardEvent.Type.CARD_REMOVED,
+					terminal, atr));
+		}
+	}
+
+	/**
+	 * Waits before listing the readers again, twice as long as the previous
+	 * time up to the maximum.
+	 */
+	private void backOff() {
+		pause(fBackoff);
+		fBackoff = Math.min(2 * fBackoff, fsMaxBackoff);
+	}
+
+	/**
+	 * Waits the given time unless the monitor is stopped.
+	 * 
+	 * @param millis
+	 *            is the time to wait in milliseconds
+	 */
+	private void pause(final long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			// Stopped
+		}
+	}
+}
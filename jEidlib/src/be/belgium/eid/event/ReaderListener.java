@@ -0,0 +1,51 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.event;
+
+import javax.smartcardio.CardTerminal;
+
+/**
+ * The reader listener records when a smart card reader is attached to or
+ * detached from the system. Implement it next to the card listener given to
+ * the card monitor to be informed of both.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public interface ReaderListener {
+
+	/**
+	 * When a reader is attached this event is triggered.
+	 * 
+	 * @param terminal
+	 *            is the reader attached
+	 */
+	void readerAttached(CardTerminal terminal);
+
+	/**
+	 * When a reader is detached this event is triggered.
+	 * 
+	 * @param terminal
+	 *            is the reader detached, which can no longer be used
+	 */
+	void readerDetached(CardTerminal terminal);
+}
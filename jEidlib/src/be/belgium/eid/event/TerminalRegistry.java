@@ -0,0 +1,185 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+/**
+ * The terminal registry keeps the list of smart card readers attached to the
+ * system, so that it needs not be requested from the system every time, and
+ * reports the readers attached and detached since the previous refresh to
+ * the reader listener. Refreshing the list is only due after the poll
+ * interval, which doubles up to a maximum every time the readers turn out not
+ * to have changed and starts over when they did.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class TerminalRegistry {
+
+	/** Time to wait before refreshing the readers after they changed */
+	public static long fsMinPollInterval = 250;
+
+	/** Maximum time to wait before refreshing readers that didn't change */
+	public static long fsMaxPollInterval = 8000;
+
+	/** Contains the reader listener, or null when there is none */
+	private final ReaderListener fListener;
+
+	/** Contains the readers found at the last refresh */
+	private volatile List<CardTerminal> fReaders = Collections.emptyList();
+
+	/** Contains the time to wait before the next refresh is due */
+	private long fPollInterval = fsMinPollInterval;
+
+	/** Contains the time at which the next refresh is due */
+	private long fNextPoll = 0;
+
+	/**
+	 * Initializes the registry without readers.
+	 * 
+	 * @param listener
+	 *            is the listener to inform of readers attached and detached,
+	 *            or null
+	 */
+	public TerminalRegistry(final ReaderListener listener) {
+		fListener = listener;
+	}
+
+	/**
+	 * Returns the readers found at the last refresh.
+	 * 
+	 * @return an unmodifiable list of readers
+	 */
+	public List<CardTerminal> getReaders() {
+		return fReaders;
+	}
+
+	/**
+	 * Returns the reader with the given name found at the last refresh.
+	 * 
+	 * @param name
+	 *            is the name of the reader
+	 * @return the reader, or null when there is no reader with the given name
+	 */
+	public CardTerminal getReader(final String name) {
+		final List<CardTerminal> readers = fReaders;
+		final int index = indexOf(readers, name);
+
+		return index < 0 ? null : readers.get(index);
+	}
+
+	/**
+	 * Returns the time to wait before the next refresh is due.
+	 * 
+	 * @return the poll interval in milliseconds
+	 */
+	public synchronized long getPollInterval() {
+		return fPollInterval;
+	}
+
+	/**
+	 * Returns whether the poll interval has passed since the last refresh.
+	 * 
+	 * @return true when the readers need to be refreshed
+	 */
+	public synchronized boolean isRefreshDue() {
+		return System.currentTimeMillis() >= fNextPoll;
+	}
+
+	/**
+	 * Lists the given readers and informs the listener of the readers
+	 * attached and detached since the previous refresh. The first refresh
+	 * reports all readers as attached.
+	 * 
+	 * @param terminals
+	 *            are the readers of the system
+	 * @return true when readers have been attached or detached
+	 * @throws CardException
+	 *             when the readers couldn't be listed
+	 */
+	public boolean refresh(final CardTerminals terminals) throws CardException {
+		final List<CardTerminal> attached = new ArrayList<CardTerminal>();
+		final List<CardTerminal> detached = new ArrayList<CardTerminal>();
+		synchronized (this) {
+			final List<CardTerminal> previous = fReaders;
+			final List<CardTerminal> current = terminals.list();
+			for (CardTerminal ct : current) {
+				if (indexOf(previous, ct.getName()) < 0) {
+					attached.add(ct);
+				}
+			}
+			for (CardTerminal ct : previous) {
+				if (indexOf(current, ct.getName()) < 0) {
+					detached.add(ct);
+				}
+			}
+
+			if (attached.isEmpty() && detached.isEmpty()) {
+				fPollInterval = Math.min(2 * fPollInterval, fsMaxPollInterval);
+			} else {
+				fReaders = Collections
+						.unmodifiableList(new ArrayList<CardTerminal>(current));
+				fPollInterval = fsMinPollInterval;
+			}
+			fNextPoll = System.currentTimeMillis() + fPollInterval;
+		}
+
+		// Inform the listener outside the lock so it may use the registry
+		if (fListener != null) {
+			for (CardTerminal ct : detached) {
+				fListener.readerDetached(ct);
+			}
+			for (CardTerminal ct : attached) {
+				fListener.readerAttached(ct);
+			}
+		}
+
+		return !(attached.isEmpty() && detached.isEmpty());
+	}
+
+	/**
+	 * Returns the index of the reader with the given name in the given list.
+	 * 
+	 * @param readers
+	 *            is the list to search
+	 * @param name
+	 *            is the name of the reader
+	 * @return the index of the reader, or -1 when not in the list
+	 */
+	private static int indexOf(final List<CardTerminal> readers,
+			final String name) {
+		for (int i = 0; i < readers.size(); i++) {
+			if (readers.get(i).getName().equals(name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
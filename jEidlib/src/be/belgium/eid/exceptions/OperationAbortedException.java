@@ -0,0 +1,65 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.exceptions;
+
+import javax.smartcardio.CardException;
+
+/**
+ * An operation aborted exception is thrown when an operation on the smart card
+ * is aborted before it completed, because it was cancelled or because it took
+ * longer than allowed. The operation is aborted between two commands sent to
+ * the card, after which the card can be used again.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+@SuppressWarnings("serial")
+public class OperationAbortedException extends CardException {
+
+	/** Contains the types of operation aborted exception */
+	public static enum AbortType {
+		CANCELLED, TIMED_OUT
+	}
+
+	/** Contains type of the current exception */
+	private final AbortType fType;
+
+	/**
+	 * Initializes the operation aborted exception with the given type.
+	 * 
+	 * @param type
+	 *            is the reason why the operation was aborted
+	 */
+	public OperationAbortedException(final AbortType type) {
+		super("The operation on the card was aborted (" + type + ").");
+		fType = type;
+	}
+
+	/**
+	 * Returns the reason why the operation was aborted.
+	 * 
+	 * @return the type
+	 */
+	public AbortType getType() {
+		return fType;
+	}
+}
@@ -264,8 +264,8 @@ public class IDData implements SmartCardReadable {
 		// Initialize the data
 		fCardNumber = cardNumber;
 		fChipNumber = chipNumber;
-		fValidFrom = validFrom;
-		fValidTo = validTo;
+		fValidFrom = copy(validFrom);
+		fValidTo = copy(validTo);
 		fMunicipality = municipality;
 		fNationalNumber = nationalNumber;
 		fName = name;
@@ -273,7 +273,7 @@ public class IDData implements SmartCardReadable {
 		fFirstname3 = firstname3;
 		fNationality = nationality;
 		fBirthPlace = birthPlace;
-		fBirthDate = birthDate;
+		fBirthDate = copy(birthDate);
 		fSex = sex;
 		fNobleCondition = nobleCondition;
 		fDocumentType = documentType;
@@ -334,7 +334,7 @@ public class IDData implements SmartCardReadable {
 	 * @return the begin of the validity period
 	 */
 	public Date getValidFrom() {
-		return fValidFrom;
+		return copy(fValidFrom);
 	}
 
 	/**
@@ -343,7 +343,7 @@ public class IDData implements SmartCardReadable {
 	 * @return the end of the validity period
 	 */
 	public Date getValidTo() {
-		return fValidTo;
+		return copy(fValidTo);
 	}
 
 	/**
@@ -415,7 +415,7 @@ public class IDData implements SmartCardReadable {
 	 * @return the birth date of the holder
 	 */
 	public Date getBirthDate() {
-		return fBirthDate;
+		return copy(fBirthDate);
 	}
 
 	/**
@@ -482,4 +482,16 @@ public class IDData implements SmartCardReadable {
 	public byte[] getHashPhoto() {
 		return fHashPhoto.clone();
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Returns a copy of the given date, so that the dates of the ID can't be
+	 * changed by those who read them from several threads.
+	 * 
+	 * @param date
+	 *            is the date to copy
+	 * @return the copy, or null when the date is null
+	 */
+	private static Date copy(final Date date) {
+		return (date == null) ? null : new Date(date.getTime());
+	}
+}
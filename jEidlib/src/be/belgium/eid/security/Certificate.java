@@ -21,10 +21,10 @@
  */
 package be.belgium.eid.security;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
 import java.security.cert.X509Certificate;
 import java.util.Date;
 
@@ -50,8 +50,11 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 	/** Contains the maximum length of an ID */
 	public static final int fgMAX_CERT_ID_LEN = 256;
 
-	/** Contains the contents of the certificate */
-	private final byte[] fContents;
+	/**
+	 * Contains the contents of the certificate, shared with the certificates
+	 * with the same contents
+	 */
+	private final CertificateCache.CachedCertificate fCached;
 
 	/** Contains the ID of the certificate */
 	private final String fID;
@@ -72,7 +75,7 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 		assert (ID.length() <= fgMAX_CERT_ID_LEN);
 		assert (contents.length <= fgMAX_CERT_LEN);
 
-		fContents = contents.clone();
+		fCached = CertificateCache.intern(contents);
 		fID = ID;
 		fStatus = CertificateStatus.BEID_CERTSTATUS_CERT_NOT_VALIDATED;
 	}
@@ -83,7 +86,46 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 	 * @return the contents
 	 */
 	public byte[] getContents() {
-		return fContents.clone();
+		return fCached.getContents().clone();
+	}
+
+	/**
+	 * Returns a read-only buffer on the contents of the certificate, which
+	 * doesn't copy them.
+	 * 
+	 * @return the buffer on the contents
+	 */
+	public ByteBuffer getContentsBuffer() {
+		return ByteBuffer.wrap(fCached.getContents()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns the contents of the certificate, shared with the certificates
+	 * with the same contents rather than copied.
+	 * 
+	 * @return the shared contents, which must not be modified
+	 */
+	byte[] getSharedContents() {
+		return fCached.getContents();
+	}
+
+	/**
+	 * Returns the SHA-256 fingerprint of the contents of the certificate.
+	 * 
+	 * @return the fingerprint
+	 */
+	public byte[] getFingerprint() {
+		return fCached.getFingerprint().clone();
+	}
+
+	/**
+	 * Returns the fingerprint of the certificate, shared with the
+	 * certificates with the same contents rather than copied.
+	 * 
+	 * @return the shared fingerprint, which must not be modified
+	 */
+	byte[] getSharedFingerprint() {
+		return fCached.getFingerprint();
 	}
 
 	/**
@@ -125,12 +167,13 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 			// Already verified
 			return true;
 		} else {
-			if (this.getX509Certificate().getNotBefore().after(new Date())) {
+			final CertificateView view = this.getView();
+			final Date now = new Date();
+			if (view.getNotBefore().after(now)) {
 				this
 						.setStatus(CertificateStatus.BEID_CERTSTATUS_CERT_NOT_YET_VALID);
 				return false;
-			} else if (this.getX509Certificate().getNotAfter().before(
-					new Date())) {
+			} else if (view.getNotAfter().before(now)) {
 				this
 						.setStatus(CertificateStatus.BEID_CERTSTATUS_CERT_HAS_EXPIRED);
 				return false;
@@ -141,9 +184,24 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 		}
 	}
 
+	/**
+	 * Returns the view on the metadata of the certificate, such as its serial
+	 * number, names, validity and the URLs to check its revocation, which
+	 * doesn't need the certificate to be parsed into an X509 certificate. The
+	 * view is shared with the certificates with the same contents.
+	 * 
+	 * @return the certificate view
+	 * @throws CertificateParsingException
+	 *             when the certificate isn't encoded correctly
+	 */
+	public CertificateView getView() throws CertificateParsingException {
+		return fCached.getView();
+	}
+
 	/**
 	 * Returns the parsed X509 certificate from the encoded RN certificate
-	 * fetched from the smart card.
+	 * fetched from the smart card. The certificate is parsed only once, and
+	 * shared with the certificates with the same contents.
 	 * 
 	 * @return the parsed X509 certificate
 	 * @throws IOException
@@ -154,11 +212,6 @@ public abstract class Certificate implements Verifiable, SmartCardReadable {
 	 */
 	public X509Certificate getX509Certificate() throws IOException,
 			CertificateException {
-		ByteArrayInputStream bais = new ByteArrayInputStream(this.getContents());
-		final CertificateFactory cf = CertificateFactory.getInstance("X.509");
-		final X509Certificate cert = (X509Certificate) cf
-				.generateCertificate(bais);
-
-		return cert;
+		return fCached.getX509Certificate();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.security;
+
+import java.io.ByteArrayInputStream;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The certificate cache interns the certificates of all cards read by the
+ * process, keyed by the SHA-256 fingerprint of their DER encoding. The root
+ * and CA certificates are identical on many cards, so certificates with
+ * the same encoding share one copy of the bytes, one parsed X509
+ * certificate and one view on their metadata, which are created the first
+ * time they are asked for. The built-in root certificates always stay in the
+ * cache, and the certificates of a registry stay as long as the registry.
+ * The other certificates, such as those of the card holders, stay only as
+ * long as a certificate object uses them.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public final class CertificateCache {
+
+	/** Contains the algorithm of the fingerprints */
+	public final static String fgFINGERPRINT_ALGORITHM = "SHA-256";
+
+	/** Contains the interned certificates by their fingerprint */
+	private final static ConcurrentHashMap<ByteBuffer, CachedReference> fgCertificates = new ConcurrentHashMap<ByteBuffer, CachedReference>();
+
+	/** Contains the references to the certificates no longer used */
+	private final static ReferenceQueue<CachedCertificate> fgUnused = new ReferenceQueue<CachedCertificate>();
+
+	/** Contains the built-in root certificates, which are never removed */
+	private final static CachedCertificate[] fgBUILT_IN_ROOTS = {
+			intern(HardCodedRootCertificate.fgEncodedRootCert),
+			intern(HardCodedRootCertificateV2.fgEncodedRootCert) };
+
+	/**
+	 * A cached certificate is the encoding of a certificate shared by all
+	 * certificate objects with the same encoding, together with its parsed
+	 * form.
+	 */
+	static final class CachedCertificate {
+
+		/** Contains the DER encoding, which is never modified */
+		private final byte[] fContents;
+
+		/** Contains the fingerprint of the encoding */
+		private final byte[] fFingerprint;
+
+		/** Contains the parsed certificate, null until asked for */
+		private volatile X509Certificate fX509Certificate = null;
+
+		/** Contains the view on the metadata, null until asked for */
+		private volatile CertificateView fView = null;
+
+		/**
+		 * Initializes the cached certificate with the given encoding and
+		 * fingerprint.
+		 */
+		private CachedCertificate(final byte[] contents,
+				final byte[] fingerprint) {
+			fContents = contents;
+			fFingerprint = fingerprint;
+		}
+
+		/**
+		 * Returns the DER encoding of the certificate, which must not be
+		 * modified.
+		 * 
+		 * @return the shared encoding
+		 */
+		byte[] getContents() {
+			return fContents;
+		}
+
+		/**
+		 * Returns the fingerprint of the certificate, which must not be
+		 * modified.
+		 * 
+		 * @return the shared fingerprint
+		 */
+		byte[] getFingerprint() {
+			return fFingerprint;
+		}
+
+		/**
+		 * Returns the parsed certificate, parsing it the first time.
+		 * 
+		 * @return the X509 certificate
+		 * @throws CertificateException
+		 *             when the certificate couldn't be parsed
+		 */
+		X509Certificate getX509Certificate() throws CertificateException {
+			X509Certificate x509 = fX509Certificate;
+			if (x509 == null) {
+				synchronized (this) {
+					x509 = fX509Certificate;
+					if (x509 == null) {
+						final CertificateFactory cf = CertificateFactory
+								.getInstance("X.509");
+						x509 = (X509Certificate) cf
+								.generateCertificate(new ByteArrayInputStream(
+										fContents));
+						fX509Certificate = x509;
+					}
+				}
+			}
+
+			return x509;
+		}
+
+		/**
+		 * Returns the view on the metadata of the certificate, creating it
+		 * the first time.
+		 * 
+		 * @return the certificate view
+		 * @throws CertificateParsingException
+		 *             when the certificate isn't encoded correctly
+		 */
+		CertificateView getView() throws CertificateParsingException {
+			CertificateView view = fView;
+			if (view == null) {
+				// Creating the view twice does no harm
+				view = new CertificateView(fContents);
+				fView = view;
+			}
+
+			return view;
+		}
+	}
+
+	/**
+	 * A cached reference refers to a cached certificate without keeping it
+	 * from being collected, and remembers its key to remove it afterwards.
+	 */
+	private static final class CachedReference extends
+			WeakReference<CachedCertificate> {
+
+		/** Contains the key of the certificate in the cache */
+		private final ByteBuffer fKey;
+
+		/**
+		 * Initializes the reference to the given certificate with the given
+		 * key.
+		 */
+		private CachedReference(final CachedCertificate certificate,
+				final ByteBuffer key) {
+			super(certificate, fgUnused);
+			fKey = key;
+		}
+	}
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private CertificateCache() {
+		// Empty body
+	}
+
+	/**
+	 * Returns the cached certificate with the given encoding, which is added
+	 * to the cache when not present yet. It stays in the cache as long as it
+	 * is referred to.
+	 * 
+	 * @param contents
+	 *            is the DER encoding of the certificate, which is copied when
+	 *            added
+	 * @return the cached certificate
+	 */
+	static CachedCertificate intern(final byte[] contents) {
+		removeUnused();
+
+		final byte[] fingerprint = fingerprint(contents);
+		final ByteBuffer key = ByteBuffer.wrap(fingerprint);
+		while (true) {
+			final CachedReference reference = fgCertificates.get(key);
+			final CachedCertificate cached = (reference == null) ? null
+					: reference.get();
+			if (cached != null) {
+				return cached;
+			}
+
+			final CachedCertificate created = new CachedCertificate(contents
+					.clone(), fingerprint);
+			final CachedReference replacement = new CachedReference(created,
+					key);
+			if ((reference == null) ? (fgCertificates.putIfAbsent(key,
+					replacement) == null) : fgCertificates.replace(key,
+					reference, replacement)) {
+				return created;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of certificates in the cache.
+	 * 
+	 * @return the number of distinct certificates in use
+	 */
+	public static int size() {
+		removeUnused();
+		return fgCertificates.size();
+	}
+
+	/**
+	 * Returns the SHA-256 fingerprint of the given DER encoding.
+	 * 
+	 * @param contents
+	 *            is the encoding of the certificate
+	 * @return the fingerprint
+	 */
+	public static byte[] fingerprint(final byte[] contents) {
+		try {
+			return MessageDigest.getInstance(fgFINGERPRINT_ALGORITHM).digest(
+					contents);
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform supports it
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Removes the certificates no longer used from the cache.
+	 */
+	private static void removeUnused() {
+		CachedReference reference;
+		while ((reference = (CachedReference) fgUnused.poll()) != null) {
+			fgCertificates.remove(reference.fKey, reference);
+		}
+	}
+}
@@ -22,7 +22,13 @@
 package be.belgium.eid.security;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.smartcardio.CardException;
 
@@ -35,12 +41,71 @@ import be.belgium.eid.exceptions.CardNotFoundException;
  * and signature certificates are verified by the certificate of the Certificate
  * Authority which is by itself again verified against the root certificate
  * which is self-signed (meaning that it can sign it's own validity).
+ * <p>
+ * Validating the chain checks every link: the names, the signature, the key
+ * usage, the basic constraints and the path length. The outcome of each link
+ * is remembered for a while by the fingerprints of the issuer and the
+ * subject, so that the links shared by many cards, such as the one from the
+ * root to the CA, are verified once rather than for every card.
  * 
  * @author Kristof Overdulve
  * @version 1.0.0 25 Mar 2008
  */
 public class CertificateChain {
 
+	/** Contains the time in milliseconds a validated link is remembered */
+	private static volatile long fsLinkTimeToLive = 60L * 60 * 1000;
+
+	/** Contains the maximum number of validated links remembered */
+	private final static int fgMAX_VALIDATED_LINKS = 4096;
+
+	/** Contains the key usage bit of digital signatures */
+	private final static int fgDIGITAL_SIGNATURE = 0;
+
+	/** Contains the key usage bit of non repudiation signatures */
+	private final static int fgNON_REPUDIATION = 1;
+
+	/** Contains the key usage bit of certificate signing */
+	private final static int fgKEY_CERT_SIGN = 5;
+
+	/**
+	 * Contains the outcome of the links validated recently, by the
+	 * fingerprints of their issuer and subject, least recently used first
+	 */
+	private final static Map<ByteBuffer, ValidatedLink> fgValidatedLinks = new LinkedHashMap<ByteBuffer, ValidatedLink>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				final Map.Entry<ByteBuffer, ValidatedLink> eldest) {
+			return size() > fgMAX_VALIDATED_LINKS;
+		}
+	};
+
+	/** Contains the number of links verified rather than remembered */
+	private final static AtomicLong fgLinkVerifications = new AtomicLong();
+
+	/**
+	 * A validated link is the outcome of the validation of a link, remembered
+	 * until it expires.
+	 */
+	private static final class ValidatedLink {
+
+		/** Contains the status of the subject of the link */
+		private final CertificateStatus fStatus;
+
+		/** Contains the time in milliseconds at which the outcome expires */
+		private final long fExpiry;
+
+		/**
+		 * Initializes the outcome with the given status and expiry.
+		 */
+		private ValidatedLink(final CertificateStatus status, final long expiry) {
+			fStatus = status;
+			fExpiry = expiry;
+		}
+	}
+
 	/** Contains the root certificate at the top of the certificates chain */
 	private final RootCertificate fRootCert;
 
@@ -53,9 +118,13 @@ public class CertificateChain {
 	/** Contains the signature certificate for the data */
 	private final SignatureCertificate fSigCert;
 
+	/** Indicates whether all certificates were valid at the last validation */
+	private volatile boolean fValid = false;
+
 	/**
 	 * Initializes the certificate chain by reading all the certificates in the
-	 * chain from the smart card and to verify them.
+	 * chain from the smart card and to verify them, including the links
+	 * between them. The outcome is returned by {@link #isValid()}.
 	 * 
 	 * @param card
 	 *            is the smart card to fetch the certificate data from
@@ -72,19 +141,56 @@ public class CertificateChain {
 	 */
 	public CertificateChain(final SmartCard card) throws CardNotFoundException,
 			CardException, CertificateException, IOException {
-		fRootCert = new RootCertificate(card);
+		this(card, null);
+	}
+
+	/**
+	 * Initializes the certificate chain like {@link #CertificateChain(SmartCard)},
+	 * but takes the root and CA certificates from the given registry when the
+	 * first block of their files matches a known certificate, so that the
+	 * rest of these files isn't read.
+	 * 
+	 * @param card
+	 *            is the smart card to fetch the certificate data from
+	 * @param known
+	 *            contains the known root and CA certificates, or null to read
+	 *            all certificates in full
+	 * @throws CardException
+	 *             when a card related error occurred
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset
+	 * @throws IOException
+	 *             when the certificate couldn't be parsed because the file
+	 *             system is read only
+	 * @throws CertificateException
+	 *             when the instance couldn't be parsed
+	 */
+	public CertificateChain(final SmartCard card,
+			final KnownCertificateRegistry known) throws CardNotFoundException,
+			CardException, CertificateException, IOException {
+		if (known == null) {
+			fRootCert = new RootCertificate(card);
+			fCACert = new CACertificate(card);
+		} else {
+			fRootCert = new RootCertificate(known.readCertificate(card,
+					RootCertificate.fgRoot));
+			fCACert = new CACertificate(known.readCertificate(card,
+					CACertificate.fgCA));
+		}
 		fRootCert.verify();
-		fCACert = new CACertificate(card);
 		fCACert.verify();
 		fAuthCert = new AuthenticationCertificate(card);
 		fAuthCert.verify();
 		fSigCert = new SignatureCertificate(card);
 		fSigCert.verify();
+		validate();
 	}
 
 	/**
 	 * Initializes the certificate chain by filling the data with existing
-	 * certificates.
+	 * certificates, which are validated by {@link #validate()}. The chain
+	 * isn't valid until then.
 	 * 
 	 * @param rootCert
 	 *            is the root certificate
@@ -140,4 +246,203 @@ public class CertificateChain {
 	public SignatureCertificate getSignatureCert() {
 		return fSigCert;
 	}
+
+	/**
+	 * Validates the links of the chain: the root signs itself and the CA
+	 * certificate, which signs the authentication and signature certificates.
+	 * The status of every certificate of which the link is valid and which is
+	 * valid at this time is set to validated, the status of the others to the
+	 * reason why not.
+	 * 
+	 * @return whether all certificates of the chain are valid
+	 * @throws IOException
+	 *             when a certificate couldn't be parsed because the file
+	 *             system is read only
+	 * @throws CertificateException
+	 *             when a certificate couldn't be parsed
+	 */
+	public boolean validate() throws CertificateException, IOException {
+		// Validate every certificate, even when an earlier one is invalid
+		boolean valid = validate(fRootCert, fRootCert, 1, fgKEY_CERT_SIGN);
+		valid &= validate(fRootCert, fCACert, 1, fgKEY_CERT_SIGN);
+		valid &= validate(fCACert, fAuthCert, 0, fgDIGITAL_SIGNATURE);
+		valid &= validate(fCACert, fSigCert, 0, fgNON_REPUDIATION);
+
+		fValid = valid;
+		return valid;
+	}
+
+	/**
+	 * Indicates whether all certificates of the chain were valid at the last
+	 * {@link #validate()}.
+	 * 
+	 * @return whether the chain is valid, false when it hasn't been validated
+	 */
+	public boolean isValid() {
+		return fValid;
+	}
+
+	/**
+	 * Validates the link from the root of the chain to the given national
+	 * register certificate, see {@link #validate()}.
+	 * 
+	 * @param rnCert
+	 *            is the RN certificate of the same card
+	 * @return whether the RN certificate is valid
+	 * @throws IOException
+	 *             when a certificate couldn't be parsed because the file
+	 *             system is read only
+	 * @throws CertificateException
+	 *             when a certificate couldn't be parsed
+	 */
+	public boolean validate(final RNCertificate rnCert)
+			throws CertificateException, IOException {
+		return validate(fRootCert, rnCert, 0, fgDIGITAL_SIGNATURE);
+	}
+
+	/**
+	 * Returns the number of links verified since the start, rather than
+	 * remembered from an earlier validation.
+	 * 
+	 * @return the number of links verified
+	 */
+	public static long getLinkVerificationCount() {
+		return fgLinkVerifications.get();
+	}
+
+	/**
+	 * Sets the time the outcome of a validated link is remembered. The links
+	 * validated before keep their expiry.
+	 * 
+	 * @param timeToLive
+	 *            is the time in milliseconds, 0 to validate every link again
+	 */
+	public static void setLinkTimeToLive(final long timeToLive) {
+		fsLinkTimeToLive = timeToLive;
+	}
+
+	/**
+	 * Returns the time the outcome of a validated link is remembered.
+	 * 
+	 * @return the time in milliseconds
+	 */
+	public static long getLinkTimeToLive() {
+		return fsLinkTimeToLive;
+	}
+
+	/**
+	 * Forgets the outcome of the links validated before, for instance after a
+	 * change of the accepted root certificates.
+	 */
+	public static void clearValidatedLinks() {
+		synchronized (fgValidatedLinks) {
+			fgValidatedLinks.clear();
+		}
+	}
+
+	/**
+	 * Validates the given subject certificate and its link to the given
+	 * issuer certificate, and sets its status accordingly.
+	 * 
+	 * @param issuer
+	 *            is the certificate that signed the subject
+	 * @param subject
+	 *            is the certificate to validate
+	 * @param caBelow
+	 *            is the number of CA certificates that may follow the issuer
+	 *            in the chain
+	 * @param keyUsage
+	 *            is the key usage bit the subject needs
+	 * @return whether the subject is valid
+	 */
+	private static boolean validate(final Certificate issuer,
+			final Certificate subject, final int caBelow, final int keyUsage)
+			throws CertificateException, IOException {
+		final CertificateStatus status = validateLink(issuer, subject,
+				caBelow, keyUsage);
+		if (status != CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK) {
+			subject.setStatus(status);
+			return false;
+		} else if (subject.verify()) {
+			subject.setStatus(status);
+			return true;
+		} else {
+			// Not valid at this time
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the status of the subject of the given link, remembered from an
+	 * earlier validation of the same link when it hasn't expired yet.
+	 */
+	private static CertificateStatus validateLink(final Certificate issuer,
+			final Certificate subject, final int caBelow, final int keyUsage)
+			throws CertificateException, IOException {
+		final ByteBuffer key = ByteBuffer.allocate(
+				2 * TrustAnchorRegistry.fgFINGERPRINT_LEN + 2).put(
+				issuer.getSharedFingerprint()).put(
+				subject.getSharedFingerprint()).put(
+				(byte) caBelow).put((byte) keyUsage);
+		key.flip();
+
+		final long now = System.currentTimeMillis();
+		synchronized (fgValidatedLinks) {
+			final ValidatedLink link = fgValidatedLinks.get(key);
+			if ((link != null) && (link.fExpiry > now)) {
+				return link.fStatus;
+			}
+		}
+
+		fgLinkVerifications.incrementAndGet();
+		final CertificateStatus status = verifyLink(issuer
+				.getX509Certificate(), subject.getX509Certificate(), caBelow,
+				keyUsage);
+		synchronized (fgValidatedLinks) {
+			fgValidatedLinks.put(key, new ValidatedLink(status, now
+					+ fsLinkTimeToLive));
+		}
+
+		return status;
+	}
+
+	/**
+	 * Verifies the link from the given issuer to the given subject.
+	 * 
+	 * @return the status of the subject
+	 */
+	private static CertificateStatus verifyLink(final X509Certificate issuer,
+			final X509Certificate subject, final int caBelow,
+			final int keyUsage) {
+		if (!subject.getIssuerX500Principal().equals(
+				issuer.getSubjectX500Principal())) {
+			return CertificateStatus.BEID_CERTSTATUS_SUBJECT_ISSUER_MISMATCH;
+		}
+
+		// The issuer has to be a CA allowed to sign certificates this deep
+		final int pathLength = issuer.getBasicConstraints();
+		if (pathLength < 0) {
+			return CertificateStatus.BEID_CERTSTATUS_INVALID_CA;
+		} else if (pathLength < caBelow) {
+			return CertificateStatus.BEID_CERTSTATUS_PATH_LENGTH_EXCEEDED;
+		}
+		final boolean[] issuerUsage = issuer.getKeyUsage();
+		if ((issuerUsage != null) && !issuerUsage[fgKEY_CERT_SIGN]) {
+			return CertificateStatus.BEID_CERTSTATUS_KEYUSAGE_NO_CERTSIGN;
+		}
+
+		final boolean[] subjectUsage = subject.getKeyUsage();
+		if ((subjectUsage != null)
+				&& ((subjectUsage.length <= keyUsage) || !subjectUsage[keyUsage])) {
+			return CertificateStatus.BEID_CERTSTATUS_INVALID_PURPOSE;
+		}
+
+		try {
+			subject.verify(issuer.getPublicKey());
+		} catch (GeneralSecurityException e) {
+			return CertificateStatus.BEID_CERTSTATUS_CERT_SIGNATURE_FAILURE;
+		}
+
+		return CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK;
+	}
 }
@@ -0,0 +1,637 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.security;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateParsingException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import be.belgium.eid.eidcommon.DER;
+
+/**
+ * The certificate view gives access to the metadata of a DER encoded
+ * certificate without parsing it into an X509 certificate: the serial number,
+ * the attributes of the issuer and subject names, the validity, and the URLs
+ * of the OCSP responders and the CRL distribution points. The view works on
+ * the shared encoding of the certificate. Only the position of the elements
+ * of the signed part is looked up when the view is created, every field is
+ * decoded the first time it is asked for and remembered afterwards. The
+ * signature of the certificate is not verified by the view.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public final class CertificateView {
+
+	/** Contains the OID of the common name attribute */
+	public final static String fgCOMMON_NAME = "2.5.4.3";
+
+	/** Contains the OID of the serial number attribute */
+	public final static String fgSERIAL_NUMBER = "2.5.4.5";
+
+	/** Contains the OID of the country attribute */
+	public final static String fgCOUNTRY = "2.5.4.6";
+
+	/** Contains the OID of the organization attribute */
+	public final static String fgORGANIZATION = "2.5.4.10";
+
+	/** Contains the encoded OID of the authority information access */
+	private final static byte[] fgAUTHORITY_INFO_ACCESS = { 0x2B, 0x06,
+			0x01, 0x05, 0x05, 0x07, 0x01, 0x01 };
+
+	/** Contains the encoded OID of the CRL distribution points */
+	private final static byte[] fgCRL_DISTRIBUTION_POINTS = { 0x55, 0x1D,
+			0x1F };
+
+	/** Contains the encoded OID of the OCSP access method */
+	private final static byte[] fgOCSP = { 0x2B, 0x06, 0x01, 0x05, 0x05,
+			0x07, 0x30, 0x01 };
+
+	/** Contains the tag of an INTEGER element */
+	private final static int fgINTEGER = 0x02;
+
+	/** Contains the tag of an OCTET STRING element */
+	private final static int fgOCTET_STRING = 0x04;
+
+	/** Contains the tag of an OBJECT IDENTIFIER element */
+	private final static int fgOID = 0x06;
+
+	/** Contains the tag of a UTF8String element */
+	private final static int fgUTF8_STRING = 0x0C;
+
+	/** Contains the tag of a TeletexString element */
+	private final static int fgTELETEX_STRING = 0x14;
+
+	/** Contains the tag of a UTCTime element */
+	private final static int fgUTC_TIME = 0x17;
+
+	/** Contains the tag of a GeneralizedTime element */
+	private final static int fgGENERALIZED_TIME = 0x18;
+
+	/** Contains the tag of a BMPString element */
+	private final static int fgBMP_STRING = 0x1E;
+
+	/** Contains the tag of a SET element */
+	private final static int fgSET = 0x31;
+
+	/**
+	 * Contains the tag of the explicit version of a certificate and of the
+	 * name of a distribution point
+	 */
+	private final static int fgCONTEXT_0 = 0xA0;
+
+	/** Contains the tag of the extensions of a certificate */
+	private final static int fgEXTENSIONS = 0xA3;
+
+	/** Contains the tag of a URI general name */
+	private final static int fgURI = 0x86;
+
+	/** Contains the DER encoding, which is never modified */
+	private final byte[] fContents;
+
+	/** Contains the offset of the serial number */
+	private final int fSerial;
+
+	/** Contains the offset of the issuer name */
+	private final int fIssuer;
+
+	/** Contains the offset of the validity */
+	private final int fValidity;
+
+	/** Contains the offset of the subject name */
+	private final int fSubject;
+
+	/** Contains the offset of the extensions, -1 when there are none */
+	private final int fExtensions;
+
+	/** Contains the serial number, null until asked for */
+	private volatile BigInteger fSerialNumber = null;
+
+	/** Contains the attributes of the issuer, null until asked for */
+	private volatile Map<String, String> fIssuerAttributes = null;
+
+	/** Contains the attributes of the subject, null until asked for */
+	private volatile Map<String, String> fSubjectAttributes = null;
+
+	/** Contains the start of the validity, null until asked for */
+	private volatile Date fNotBefore = null;
+
+	/** Contains the end of the validity, null until asked for */
+	private volatile Date fNotAfter = null;
+
+	/** Contains the URLs of the OCSP responders, null until asked for */
+	private volatile List<String> fOCSPURLs = null;
+
+	/** Contains the URLs of the CRL distribution points, null until asked for */
+	private volatile List<String> fCRLURLs = null;
+
+	/**
+	 * Initializes the view on the given encoding, looking up the elements of
+	 * the signed part.
+	 * 
+	 * @param contents
+	 *            is the DER encoding of the certificate, which must not be
+	 *            modified
+	 * @throws CertificateParsingException
+	 *             when the encoding isn't a valid certificate
+	 */
+	public CertificateView(final byte[] contents)
+			throws CertificateParsingException {
+		fContents = contents;
+
+		// The signed part of the certificate comes first
+		final int certificate = expect(0, contents.length, DER.fgSEQUENCE);
+		final int signed = expect(getContentStart(certificate),
+				getEnd(certificate), DER.fgSEQUENCE);
+		final int signedEnd = getEnd(signed);
+		int i = getContentStart(signed);
+		if ((i < signedEnd) && ((contents[i] & 0xFF) == fgCONTEXT_0)) {
+			i = getEnd(expect(i, signedEnd, fgCONTEXT_0));
+		}
+
+		// Serial number, signature algorithm, issuer, validity, subject and
+		// public key follow each other
+		fSerial = expect(i, signedEnd, fgINTEGER);
+		if (getContentStart(fSerial) == getEnd(fSerial)) {
+			throw invalid();
+		}
+		final int algorithm = expect(getEnd(fSerial), signedEnd,
+				DER.fgSEQUENCE);
+		fIssuer = expect(getEnd(algorithm), signedEnd, DER.fgSEQUENCE);
+		fValidity = expect(getEnd(fIssuer), signedEnd, DER.fgSEQUENCE);
+		fSubject = expect(getEnd(fValidity), signedEnd, DER.fgSEQUENCE);
+		final int publicKey = expect(getEnd(fSubject), signedEnd,
+				DER.fgSEQUENCE);
+		fExtensions = DER.findElement(contents, getEnd(publicKey), signedEnd,
+				fgEXTENSIONS);
+	}
+
+	/**
+	 * Returns the serial number of the certificate.
+	 * 
+	 * @return the serial number
+	 */
+	public BigInteger getSerialNumber() {
+		BigInteger serial = fSerialNumber;
+		if (serial == null) {
+			final int start = getContentStart(fSerial);
+			serial = new BigInteger(fContents, start, getEnd(fSerial) - start);
+			fSerialNumber = serial;
+		}
+
+		return serial;
+	}
+
+	/**
+	 * Returns the attributes of the issuer name by their OID, in the order of
+	 * the name. Only the first value of an attribute that occurs more than
+	 * once is returned.
+	 * 
+	 * @return the attributes of the issuer
+	 * @throws CertificateParsingException
+	 *             when the name isn't encoded correctly
+	 */
+	public Map<String, String> getIssuerAttributes()
+			throws CertificateParsingException {
+		Map<String, String> attributes = fIssuerAttributes;
+		if (attributes == null) {
+			attributes = decodeName(fIssuer);
+			fIssuerAttributes = attributes;
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Returns the attributes of the subject name by their OID, like
+	 * {@link #getIssuerAttributes()}.
+	 * 
+	 * @return the attributes of the subject
+	 * @throws CertificateParsingException
+	 *             when the name isn't encoded correctly
+	 */
+	public Map<String, String> getSubjectAttributes()
+			throws CertificateParsingException {
+		Map<String, String> attributes = fSubjectAttributes;
+		if (attributes == null) {
+			attributes = decodeName(fSubject);
+			fSubjectAttributes = attributes;
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Returns the value of the attribute with the given OID of the subject
+	 * name, such as {@link #fgCOMMON_NAME}.
+	 * 
+	 * @param oid
+	 *            is the OID of the attribute
+	 * @return the value of the attribute, or null when the subject doesn't
+	 *         have it
+	 * @throws CertificateParsingException
+	 *             when the name isn't encoded correctly
+	 */
+	public String getSubjectAttribute(final String oid)
+			throws CertificateParsingException {
+		return getSubjectAttributes().get(oid);
+	}
+
+	/**
+	 * Indicates whether the issuer name of the certificate equals its subject
+	 * name, as for a root certificate. The encoded names are compared.
+	 * 
+	 * @return whether the certificate is issued by its subject
+	 */
+	public boolean isSelfIssued() {
+		final int length = getEnd(fIssuer) - fIssuer;
+		if (getEnd(fSubject) - fSubject != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (fContents[fIssuer + i] != fContents[fSubject + i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the start of the validity of the certificate.
+	 * 
+	 * @return the time from which the certificate is valid
+	 * @throws CertificateParsingException
+	 *             when the validity isn't encoded correctly
+	 */
+	public Date getNotBefore() throws CertificateParsingException {
+		Date notBefore = fNotBefore;
+		if (notBefore == null) {
+			notBefore = decodeTime(getContentStart(fValidity),
+					getEnd(fValidity));
+			fNotBefore = notBefore;
+		}
+
+		return (Date) notBefore.clone();
+	}
+
+	/**
+	 * Returns the end of the validity of the certificate.
+	 * 
+	 * @return the time until which the certificate is valid
+	 * @throws CertificateParsingException
+	 *             when the validity isn't encoded correctly
+	 */
+	public Date getNotAfter() throws CertificateParsingException {
+		Date notAfter = fNotAfter;
+		if (notAfter == null) {
+			final int end = getEnd(fValidity);
+			final int notBefore = expect(getContentStart(fValidity), end, -1);
+			notAfter = decodeTime(getEnd(notBefore), end);
+			fNotAfter = notAfter;
+		}
+
+		return (Date) notAfter.clone();
+	}
+
+	/**
+	 * Returns the URLs of the OCSP responders in the authority information
+	 * access extension of the certificate.
+	 * 
+	 * @return the URLs, empty when the certificate has none
+	 * @throws CertificateParsingException
+	 *             when the extension isn't encoded correctly
+	 */
+	public List<String> getOCSPURLs() throws CertificateParsingException {
+		List<String> urls = fOCSPURLs;
+		if (urls == null) {
+			final List<String> found = new ArrayList<String>();
+			final int extension = findExtension(fgAUTHORITY_INFO_ACCESS);
+			if (extension >= 0) {
+				// A sequence of access methods and locations
+				final int end = getEnd(extension);
+				for (int i = getContentStart(extension); i < end; i = getEnd(i)) {
+					final int descriptionEnd = getEnd(expect(i, end,
+							DER.fgSEQUENCE));
+					final int method = expect(getContentStart(i),
+							descriptionEnd, fgOID);
+					final int location = expect(getEnd(method),
+							descriptionEnd, -1);
+					if (equalsContents(method, fgOCSP)
+							&& ((fContents[location] & 0xFF) == fgURI)) {
+						found.add(decodeASCII(location));
+					}
+				}
+			}
+			urls = Collections.unmodifiableList(found);
+			fOCSPURLs = urls;
+		}
+
+		return urls;
+	}
+
+	/**
+	 * Returns the URLs of the full names of the distribution points in the
+	 * CRL distribution points extension of the certificate.
+	 * 
+	 * @return the URLs, empty when the certificate has none
+	 * @throws CertificateParsingException
+	 *             when the extension isn't encoded correctly
+	 */
+	public List<String> getCRLURLs() throws CertificateParsingException {
+		List<String> urls = fCRLURLs;
+		if (urls == null) {
+			final List<String> found = new ArrayList<String>();
+			final int extension = findExtension(fgCRL_DISTRIBUTION_POINTS);
+			if (extension >= 0) {
+				// A sequence of distribution points, of which the name comes
+				// first when present
+				final int end = getEnd(extension);
+				for (int i = getContentStart(extension); i < end; i = getEnd(i)) {
+					final int pointEnd = getEnd(expect(i, end, DER.fgSEQUENCE));
+					final int name = getContentStart(i);
+					if ((name >= pointEnd)
+							|| ((fContents[name] & 0xFF) != fgCONTEXT_0)) {
+						continue;
+					}
+					final int nameEnd = getEnd(expect(name, pointEnd, -1));
+					final int fullName = getContentStart(name);
+					if ((fullName >= nameEnd)
+							|| ((fContents[fullName] & 0xFF) != fgCONTEXT_0)) {
+						continue;
+					}
+
+					// The full name holds general names
+					final int fullNameEnd = getEnd(expect(fullName, nameEnd,
+							-1));
+					for (int j = getContentStart(fullName); j < fullNameEnd; j = getEnd(j)) {
+						if ((fContents[expect(j, fullNameEnd, -1)] & 0xFF) == fgURI) {
+							found.add(decodeASCII(j));
+						}
+					}
+				}
+			}
+			urls = Collections.unmodifiableList(found);
+			fCRLURLs = urls;
+		}
+
+		return urls;
+	}
+
+	/**
+	 * Returns the offset of the value of the extension with the given encoded
+	 * OID, the element inside its OCTET STRING, or -1 when the certificate
+	 * doesn't have the extension.
+	 */
+	private int findExtension(final byte[] oid)
+			throws CertificateParsingException {
+		if (fExtensions < 0) {
+			return -1;
+		}
+
+		final int extensions = expect(getContentStart(fExtensions),
+				getEnd(fExtensions), DER.fgSEQUENCE);
+		final int end = getEnd(extensions);
+		for (int i = getContentStart(extensions); i < end; i = getEnd(i)) {
+			final int extensionEnd = getEnd(expect(i, end, DER.fgSEQUENCE));
+			final int id = expect(getContentStart(i), extensionEnd, fgOID);
+			if (equalsContents(id, oid)) {
+				// The critical flag is optional
+				final int value = DER.findElement(fContents, getEnd(id),
+						extensionEnd, fgOCTET_STRING);
+				if (value < 0) {
+					throw invalid();
+				}
+				return expect(getContentStart(value), getEnd(value), -1);
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Decodes the attributes of the name at the given offset.
+	 */
+	private Map<String, String> decodeName(final int name)
+			throws CertificateParsingException {
+		final Map<String, String> attributes = new LinkedHashMap<String, String>();
+		final int end = getEnd(name);
+		for (int i = getContentStart(name); i < end; i = getEnd(i)) {
+			// Every relative name is a set of attribute types and values
+			final int setEnd = getEnd(expect(i, end, fgSET));
+			for (int j = getContentStart(i); j < setEnd; j = getEnd(j)) {
+				final int attributeEnd = getEnd(expect(j, setEnd,
+						DER.fgSEQUENCE));
+				final int type = expect(getContentStart(j), attributeEnd,
+						fgOID);
+				final int value = expect(getEnd(type), attributeEnd, -1);
+				final String oid = decodeOID(type);
+				if (!attributes.containsKey(oid)) {
+					attributes.put(oid, decodeString(value));
+				}
+			}
+		}
+
+		return Collections.unmodifiableMap(attributes);
+	}
+
+	/**
+	 * Decodes the OID at the given offset into its dotted form.
+	 */
+	private String decodeOID(final int offset)
+			throws CertificateParsingException {
+		final int start = getContentStart(offset);
+		final int end = getEnd(offset);
+		final StringBuilder oid = new StringBuilder();
+		long arc = 0;
+		for (int i = start; i < end; i++) {
+			arc = (arc << 7) | (fContents[i] & 0x7F);
+			if ((fContents[i] & 0x80) == 0) {
+				if (oid.length() == 0) {
+					// The first two arcs share the first number
+					final long first = Math.min(arc / 40, 2);
+					oid.append(first).append('.').append(arc - 40 * first);
+				} else {
+					oid.append('.').append(arc);
+				}
+				arc = 0;
+			} else if (arc > (Long.MAX_VALUE >> 7)) {
+				throw invalid();
+			}
+		}
+
+		return oid.toString();
+	}
+
+	/**
+	 * Decodes the directory string at the given offset.
+	 */
+	private String decodeString(final int offset) {
+		final int start = getContentStart(offset);
+		final int length = getEnd(offset) - start;
+		switch (fContents[offset] & 0xFF) {
+		case fgUTF8_STRING:
+			return new String(fContents, start, length, StandardCharsets.UTF_8);
+		case fgBMP_STRING:
+			return new String(fContents, start, length,
+					StandardCharsets.UTF_16BE);
+		case fgTELETEX_STRING:
+			return new String(fContents, start, length,
+					StandardCharsets.ISO_8859_1);
+		default:
+			// Printable and IA5 strings
+			return new String(fContents, start, length,
+					StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * Decodes the ASCII contents of the element at the given offset.
+	 */
+	private String decodeASCII(final int offset) {
+		final int start = getContentStart(offset);
+		return new String(fContents, start, getEnd(offset) - start,
+				StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Decodes the UTCTime or GeneralizedTime in UTC at the given offset,
+	 * which has to end before the given end.
+	 */
+	private Date decodeTime(final int offset, final int end)
+			throws CertificateParsingException {
+		final int tag = fContents[expect(offset, end, -1)] & 0xFF;
+		final int start = getContentStart(offset);
+		final int length = getEnd(offset) - start;
+
+		int i = start;
+		final int year;
+		if ((tag == fgUTC_TIME) && (length == 13)) {
+			// Two digit years from 1950 up to 2049
+			final int yy = decodeDigits(i, 2);
+			year = (yy < 50) ? 2000 + yy : 1900 + yy;
+			i += 2;
+		} else if ((tag == fgGENERALIZED_TIME) && (length == 15)) {
+			year = decodeDigits(i, 4);
+			i += 4;
+		} else {
+			throw invalid();
+		}
+		if (fContents[start + length - 1] != 'Z') {
+			throw invalid();
+		}
+
+		final Calendar calendar = Calendar.getInstance(TimeZone
+				.getTimeZone("UTC"));
+		calendar.clear();
+		calendar.set(year, decodeDigits(i, 2) - 1, decodeDigits(i + 2, 2),
+				decodeDigits(i + 4, 2), decodeDigits(i + 6, 2), decodeDigits(
+						i + 8, 2));
+		return calendar.getTime();
+	}
+
+	/**
+	 * Decodes the given number of decimal digits at the given offset.
+	 */
+	private int decodeDigits(final int offset, final int count)
+			throws CertificateParsingException {
+		int value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			final int digit = fContents[i] - '0';
+			if ((digit < 0) || (digit > 9)) {
+				throw invalid();
+			}
+			value = 10 * value + digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Indicates whether the contents of the element at the given offset equal
+	 * the given bytes.
+	 */
+	private boolean equalsContents(final int offset, final byte[] expected) {
+		final int start = getContentStart(offset);
+		if (getEnd(offset) - start != expected.length) {
+			return false;
+		}
+		for (int i = 0; i < expected.length; i++) {
+			if (fContents[start + i] != expected[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks that a complete element with the given tag, or any tag when -1,
+	 * starts at the given offset and ends before the given end.
+	 * 
+	 * @return the offset of the element
+	 */
+	private int expect(final int offset, final int end, final int tag)
+			throws CertificateParsingException {
+		final int length = DER.getEncodedLength(fContents, offset, end);
+		if ((length < 0) || (offset + length > end)
+				|| ((tag >= 0) && ((fContents[offset] & 0xFF) != tag))) {
+			throw invalid();
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Returns the offset of the contents of the element at the given offset,
+	 * which has been checked.
+	 */
+	private int getContentStart(final int offset) {
+		return offset
+				+ DER.getHeaderLength(fContents, offset, fContents.length);
+	}
+
+	/**
+	 * Returns the offset right after the element at the given offset, which
+	 * has been checked.
+	 */
+	private int getEnd(final int offset) {
+		return offset
+				+ DER.getEncodedLength(fContents, offset, fContents.length);
+	}
+
+	/**
+	 * Returns the exception thrown when the encoding is invalid.
+	 */
+	private static CertificateParsingException invalid() {
+		return new CertificateParsingException(
+				"Invalid DER encoding of the certificate");
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.security;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.smartcardio.CardException;
+
+import be.belgium.eid.eidcommon.DER;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.exceptions.CardNotFoundException;
+
+/**
+ * The known certificate registry contains the root and CA certificates that
+ * are shared by many cards, so that they don't need to be read in full from
+ * every card. Only the first block of such a certificate is read, which holds
+ * its serial number and its issuer. When a known certificate has the same
+ * serial number and issuer, and the SHA-256 hash of the same first block, it
+ * is taken from the registry and the rest of the file isn't read.
+ * <p>
+ * Only certificates that have been verified are registered: the built-in
+ * root certificates, and the root and CA certificates of a chain of which the
+ * root is a trust anchor and of which the links are valid. A card can thus
+ * never slip in a certificate of its own through the registry, and a card
+ * with a forged certificate that matches a known one gets the known one
+ * instead, against which its own certificates won't validate. To audit what
+ * is actually on a card, the certificates are read in full without a
+ * registry.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class KnownCertificateRegistry {
+
+	/** Contains the length of the first block of a certificate that is read */
+	public final static int fgPREFIX_LEN = SmartCard.fgDEFAULT_BLOCK_LENGTH;
+
+	/** Contains the tag of the explicit version of a certificate */
+	private final static int fgVERSION_TAG = 0xA0;
+
+	/** Contains the tag of an INTEGER element */
+	private final static int fgINTEGER = 0x02;
+
+	/** Contains the encodings of the built-in root certificates */
+	private final static byte[][] fgBUILT_IN_ROOTS = {
+			HardCodedRootCertificate.fgEncodedRootCert,
+			HardCodedRootCertificateV2.fgEncodedRootCert };
+
+	/** Contains the registry used by default */
+	private static volatile KnownCertificateRegistry fgDefault = null;
+
+	/** Contains the known certificates by their serial number and issuer */
+	private final Map<ByteBuffer, KnownCertificate> fCertificates = new ConcurrentHashMap<ByteBuffer, KnownCertificate>();
+
+	/**
+	 * A known certificate is the cached certificate together with the hash of
+	 * its first block. Referring to the cached certificate keeps it in the
+	 * certificate cache while it is known, also when no card uses it.
+	 */
+	private static final class KnownCertificate {
+
+		/** Contains the SHA-256 hash of the first block */
+		private final byte[] fPrefixFingerprint;
+
+		/** Contains the cached certificate */
+		private final CertificateCache.CachedCertificate fCached;
+
+		/**
+		 * Initializes the known certificate with the given hash and cached
+		 * certificate.
+		 */
+		private KnownCertificate(final byte[] prefixFingerprint,
+				final CertificateCache.CachedCertificate cached) {
+			fPrefixFingerprint = prefixFingerprint;
+			fCached = cached;
+		}
+	}
+
+	/**
+	 * Initializes an empty registry, which reads every certificate in full
+	 * until certificates are added.
+	 */
+	public KnownCertificateRegistry() {
+		super();
+	}
+
+	/**
+	 * Returns a new registry that knows the built-in Belgium Root CA
+	 * certificates.
+	 * 
+	 * @return the registry with the built-in roots
+	 */
+	public static KnownCertificateRegistry withBuiltInRoots() {
+		final KnownCertificateRegistry registry = new KnownCertificateRegistry();
+		for (byte[] root : fgBUILT_IN_ROOTS) {
+			registry.addCertificate(root);
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Returns the registry used by default, which knows the built-in roots
+	 * and learns the certificates of the cards read, unless another registry
+	 * has been set.
+	 * 
+	 * @return the default registry
+	 */
+	public static KnownCertificateRegistry getDefault() {
+		KnownCertificateRegistry registry = fgDefault;
+		if (registry == null) {
+			synchronized (KnownCertificateRegistry.class) {
+				registry = fgDefault;
+				if (registry == null) {
+					registry = withBuiltInRoots();
+					fgDefault = registry;
+				}
+			}
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Sets the registry used by default from now on.
+	 * 
+	 * @param registry
+	 *            is the registry to use by default, null for a new one with
+	 *            the built-in roots
+	 */
+	public static void setDefault(final KnownCertificateRegistry registry) {
+		fgDefault = registry;
+	}
+
+	/**
+	 * Adds the certificate with the given DER encoding, which has to be
+	 * verified by the caller. Certificates that fit in their first block, or
+	 * of which the first block doesn't hold the serial number and the issuer,
+	 * are read in full anyway and aren't added.
+	 * 
+	 * @param contents
+	 *            is the encoding of the certificate
+	 * @return whether the certificate has been added
+	 */
+	public boolean addCertificate(final byte[] contents) {
+		return add(contents.clone());
+	}
+
+	/**
+	 * Adds the certificate with the given DER encoding like
+	 * {@link #addCertificate(byte[])}, without copying it.
+	 * 
+	 * @param contents
+	 *            is the encoding of the certificate, which isn't modified
+	 *            afterwards
+	 * @return whether the certificate has been added
+	 */
+	private boolean add(final byte[] contents) {
+		if ((contents.length <= fgPREFIX_LEN)
+				|| (DER.getEncodedLength(contents, 0, fgPREFIX_LEN) != contents.length)) {
+			return false;
+		}
+		final ByteBuffer key = getSerialAndIssuer(contents);
+		if (key == null) {
+			return false;
+		}
+
+		fCertificates.put(key, new KnownCertificate(
+				getPrefixFingerprint(contents), CertificateCache
+						.intern(contents)));
+		return true;
+	}
+
+	/**
+	 * Adds the root and CA certificates of the given chain when its root is
+	 * accepted by the given trust anchors and the links from the root to the
+	 * CA certificate have been validated.
+	 * 
+	 * @param chain
+	 *            is the validated certificate chain of a card
+	 * @param trustAnchors
+	 *            are the accepted root certificates
+	 * @return whether the certificates of the chain are known now
+	 */
+	public boolean addChain(final CertificateChain chain,
+			final TrustAnchorRegistry trustAnchors) {
+		final Certificate root = chain.getRootCert();
+		final Certificate ca = chain.getCertificateAuthorityCert();
+		if (!trustAnchors.isTrusted(root)
+				|| (root.getStatus() != CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK)
+				|| (ca.getStatus() != CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK)) {
+			return false;
+		}
+
+		// The contents are shared with the interned certificates and are
+		// never modified, so they needn't be copied
+		final boolean rootAdded = add(root.getSharedContents());
+		return add(ca.getSharedContents()) && rootAdded;
+	}
+
+	/**
+	 * Returns the known certificate of which the first block equals the given
+	 * one.
+	 * 
+	 * @param prefix
+	 *            is the first block of a certificate
+	 * @return the encoding of the known certificate, or null when unknown
+	 */
+	public byte[] lookup(final byte[] prefix) {
+		if (prefix.length != fgPREFIX_LEN) {
+			return null;
+		}
+		final ByteBuffer key = getSerialAndIssuer(prefix);
+		if (key == null) {
+			return null;
+		}
+
+		// The hash covers the header with the length and the start of the
+		// signed part, on top of the serial number and the issuer
+		final KnownCertificate known = fCertificates.get(key);
+		if ((known == null)
+				|| !MessageDigest.isEqual(known.fPrefixFingerprint,
+						getPrefixFingerprint(prefix))) {
+			return null;
+		}
+
+		return known.fCached.getContents().clone();
+	}
+
+	/**
+	 * Reads the certificate with the given identifier from the certificates
+	 * directory of the given card. Only the first block is read when it
+	 * matches a known certificate, otherwise the certificate is read in full.
+	 * 
+	 * @param card
+	 *            is the smart card to read the certificate from
+	 * @param certificateID
+	 *            is the identifier of the certificate file, such as
+	 *            {@link RootCertificate#fgRoot}
+	 * @return the encoding of the certificate
+	 * @throws CardException
+	 *             when a card related error occurred
+	 * @throws CardNotFoundException
+	 *             indicates that the card wasn't present in the system or was
+	 *             reset
+	 */
+	public byte[] readCertificate(final SmartCard card,
+			final byte[] certificateID) throws CardNotFoundException,
+			CardException {
+		final byte[] fileID = new byte[] { Certificate.fgDFCert[0],
+				Certificate.fgDFCert[1], certificateID[0], certificateID[1] };
+
+		// Hold the card so that the file stays selected for the full read
+		card.beginTransaction();
+		try {
+			final byte[] prefix = card.readFile(fileID, fgPREFIX_LEN);
+			if (prefix.length < fgPREFIX_LEN) {
+				// The whole file has been read
+				return prefix;
+			}
+			final byte[] known = lookup(prefix);
+			if (known != null) {
+				return known;
+			}
+
+			return card.readFile(fileID, Certificate.fgMAX_CERT_LEN);
+		} finally {
+			card.endTransaction();
+		}
+	}
+
+	/**
+	 * Returns the number of known certificates.
+	 * 
+	 * @return the number of certificates
+	 */
+	public int size() {
+		return fCertificates.size();
+	}
+
+	/**
+	 * Returns the encoded serial number and issuer of the certificate of
+	 * which the first block is given, or null when the first block doesn't
+	 * hold them completely.
+	 */
+	private static ByteBuffer getSerialAndIssuer(final byte[] data) {
+		final int end = Math.min(data.length, fgPREFIX_LEN);
+
+		// The signed part of the certificate comes first
+		final int certificateHeader = DER.getHeaderLength(data, 0, end);
+		if ((certificateHeader < 0) || ((data[0] & 0xFF) != DER.fgSEQUENCE)
+				|| ((data[certificateHeader] & 0xFF) != DER.fgSEQUENCE)) {
+			return null;
+		}
+		final int signedHeader = DER.getHeaderLength(data, certificateHeader,
+				end);
+		if (signedHeader < 0) {
+			return null;
+		}
+		int i = certificateHeader + signedHeader;
+		if ((i < end) && ((data[i] & 0xFF) == fgVERSION_TAG)) {
+			final int versionLength = DER.getEncodedLength(data, i, end);
+			if (versionLength < 0) {
+				return null;
+			}
+			i += versionLength;
+		}
+
+		// The serial number, the signature algorithm and the issuer follow
+		final int[] offsets = new int[4];
+		for (int element = 0; element < offsets.length; element++) {
+			offsets[element] = i;
+			if (element < offsets.length - 1) {
+				final int length = DER.getEncodedLength(data, i, end);
+				if ((length < 0) || (i + length > end)) {
+					return null;
+				}
+				i += length;
+			}
+		}
+		if ((data[offsets[0]] & 0xFF) != fgINTEGER) {
+			return null;
+		}
+
+		final ByteBuffer key = ByteBuffer.allocate(offsets[1] - offsets[0]
+				+ offsets[3] - offsets[2]);
+		key.put(data, offsets[0], offsets[1] - offsets[0]);
+		key.put(data, offsets[2], offsets[3] - offsets[2]);
+		key.flip();
+		return key;
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the first block of the given certificate.
+	 */
+	private static byte[] getPrefixFingerprint(final byte[] data) {
+		return CertificateCache.fingerprint(Arrays.copyOf(data, fgPREFIX_LEN));
+	}
+}
@@ -90,8 +90,7 @@ public class OCSPClient {
 			throws OCSPException, IOException, CertificateException {
 		// Generate OCSP request
 		final OCSPReq request = generateOCSPRequest(
-				issuer.getX509Certificate(), cert.getX509Certificate()
-						.getSerialNumber());
+				issuer.getX509Certificate(), cert.getView().getSerialNumber());
 		final byte[] array = request.getEncoded();
 
 		HttpURLConnection con = null;
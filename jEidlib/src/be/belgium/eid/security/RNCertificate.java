@@ -68,6 +68,16 @@ public class RNCertificate extends Certificate implements SmartCardReadable {
 				fgLabel);
 	}
 
+	/**
+	 * Initializes the RN certificate by the given data.
+	 * 
+	 * @param contents
+	 *            are the contents of the certificate
+	 */
+	public RNCertificate(final byte[] contents) {
+		super(contents, fgLabel);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -77,16 +87,14 @@ public class RNCertificate extends Certificate implements SmartCardReadable {
 	public boolean verify() throws CertificateException, IOException {
 		if (super.verify()) {
 
-			// First verify the DN
-			// Parse the principal subject to remove the "CN=", "O=" and "C="
-			final String rawSubject = super.getX509Certificate()
-					.getSubjectX500Principal().getName();
-			final String cn = rawSubject.substring(
-					rawSubject.indexOf("CN=") + 3).split(",")[0];
-			final String o = rawSubject.substring(rawSubject.indexOf("O=") + 2)
-					.split(",")[0];
-			final String c = rawSubject.substring(rawSubject.indexOf("C=") + 2)
-					.split(",")[0];
+			// First verify the DN, of which only the common name,
+			// organization and country are compared
+			final CertificateView view = super.getView();
+			final String cn = view
+					.getSubjectAttribute(CertificateView.fgCOMMON_NAME);
+			final String o = view
+					.getSubjectAttribute(CertificateView.fgORGANIZATION);
+			final String c = view.getSubjectAttribute(CertificateView.fgCOUNTRY);
 
 			// Returns whether they're equal
 			return fgDN_RRN.equals(cn + o + c);
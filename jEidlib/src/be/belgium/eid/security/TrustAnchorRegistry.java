@@ -0,0 +1,291 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The trust anchor registry contains the SHA-256 fingerprints of the root
+ * certificates that are accepted at the top of the certificate chain of a
+ * card. A root certificate read from a card is looked up by its fingerprint,
+ * without parsing it. Besides the built-in Belgium Root CA certificates,
+ * newer generations of root certificates can be loaded from a keystore or
+ * from a directory of certificate files, so that accepting them requires no
+ * new release of the library.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class TrustAnchorRegistry {
+
+	/** Contains the length of a SHA-256 fingerprint */
+	public final static int fgFINGERPRINT_LEN = 32;
+
+	/** Contains the encodings of the built-in root certificates */
+	private final static byte[][] fgBUILT_IN_ROOTS = {
+			HardCodedRootCertificate.fgEncodedRootCert,
+			HardCodedRootCertificateV2.fgEncodedRootCert };
+
+	/** Contains the registry used by default */
+	private static volatile TrustAnchorRegistry fgDefault = null;
+
+	/** Contains the fingerprints of the accepted root certificates */
+	private final Set<ByteBuffer> fFingerprints = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Contains the accepted root certificates of which the encoding is known,
+	 * which are kept in the certificate cache as long as the registry
+	 */
+	private final Set<CertificateCache.CachedCertificate> fCertificates =
+			ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Initializes an empty registry, which doesn't accept any root
+	 * certificate until they are added.
+	 */
+	public TrustAnchorRegistry() {
+		super();
+	}
+
+	/**
+	 * Returns a new registry that accepts the built-in Belgium Root CA
+	 * certificates.
+	 * 
+	 * @return the registry with the built-in roots
+	 */
+	public static TrustAnchorRegistry withBuiltInRoots() {
+		final TrustAnchorRegistry registry = new TrustAnchorRegistry();
+		for (byte[] root : fgBUILT_IN_ROOTS) {
+			registry.addCertificate(root);
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Returns the registry used by default, which accepts the built-in roots
+	 * unless another registry has been set.
+	 * 
+	 * @return the default registry
+	 */
+	public static TrustAnchorRegistry getDefault() {
+		TrustAnchorRegistry registry = fgDefault;
+		if (registry == null) {
+			synchronized (TrustAnchorRegistry.class) {
+				registry = fgDefault;
+				if (registry == null) {
+					registry = withBuiltInRoots();
+					fgDefault = registry;
+				}
+			}
+		}
+
+		return registry;
+	}
+
+	/**
+	 * Sets the registry used by default from now on.
+	 * 
+	 * @param registry
+	 *            is the registry to use by default, null for the built-in
+	 *            roots
+	 */
+	public static void setDefault(final TrustAnchorRegistry registry) {
+		fgDefault = registry;
+	}
+
+	/**
+	 * Accepts the root certificate with the given fingerprint.
+	 * 
+	 * @param fingerprint
+	 *            is the SHA-256 fingerprint of the DER encoding of the root
+	 *            certificate
+	 */
+	public void addFingerprint(final byte[] fingerprint) {
+		if (fingerprint.length != fgFINGERPRINT_LEN) {
+			throw new IllegalArgumentException("Not a SHA-256 fingerprint");
+		}
+		fFingerprints.add(ByteBuffer.wrap(fingerprint.clone()));
+	}
+
+	/**
+	 * Accepts the root certificate with the given DER encoding.
+	 * 
+	 * @param contents
+	 *            is the encoding of the root certificate
+	 */
+	public void addCertificate(final byte[] contents) {
+		final CertificateCache.CachedCertificate cached = CertificateCache
+				.intern(contents);
+		fCertificates.add(cached);
+		fFingerprints.add(ByteBuffer.wrap(cached.getFingerprint()));
+	}
+
+	/**
+	 * Accepts the given root certificate.
+	 * 
+	 * @param certificate
+	 *            is the root certificate
+	 * @throws CertificateEncodingException
+	 *             when the certificate couldn't be encoded
+	 */
+	public void addCertificate(final X509Certificate certificate)
+			throws CertificateEncodingException {
+		addCertificate(certificate.getEncoded());
+	}
+
+	/**
+	 * Accepts all trusted certificates in the given keystore.
+	 * 
+	 * @param keyStore
+	 *            is the loaded keystore
+	 * @return the number of certificates accepted
+	 * @throws GeneralSecurityException
+	 *             when the certificates couldn't be read from the keystore
+	 */
+	public int load(final KeyStore keyStore) throws GeneralSecurityException {
+		int loaded = 0;
+		final Enumeration<String> aliases = keyStore.aliases();
+		while (aliases.hasMoreElements()) {
+			final String alias = aliases.nextElement();
+			if (keyStore.isCertificateEntry(alias)) {
+				addCertificate(keyStore.getCertificate(alias).getEncoded());
+				loaded++;
+			}
+		}
+
+		return loaded;
+	}
+
+	/**
+	 * Accepts all trusted certificates in the keystore file with the given
+	 * password, of any type the platform supports.
+	 * 
+	 * @param keyStoreFile
+	 *            is the keystore file
+	 * @param password
+	 *            is the password of the keystore, or null when it needs none
+	 * @return the number of certificates accepted
+	 * @throws IOException
+	 *             when the keystore couldn't be read
+	 * @throws GeneralSecurityException
+	 *             when the certificates couldn't be read from the keystore
+	 */
+	public int loadKeyStore(final File keyStoreFile, final char[] password)
+			throws IOException, GeneralSecurityException {
+		return load(KeyStore.getInstance(keyStoreFile, password));
+	}
+
+	/**
+	 * Accepts all certificates in the files of the given directory, each of
+	 * which contains one or more certificates in DER or PEM format. Files with
+	 * another extension than .cer, .crt, .der or .pem are skipped.
+	 * 
+	 * @param directory
+	 *            is the directory with the certificate files
+	 * @return the number of certificates accepted
+	 * @throws IOException
+	 *             when the directory or one of its files couldn't be read
+	 * @throws CertificateException
+	 *             when one of the files doesn't contain certificates
+	 */
+	public int loadDirectory(final File directory) throws IOException,
+			CertificateException {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			throw new IOException("Not a directory: " + directory);
+		}
+		Arrays.sort(files);
+
+		final CertificateFactory cf = CertificateFactory.getInstance("X.509");
+		int loaded = 0;
+		for (File file : files) {
+			final String name = file.getName().toLowerCase();
+			if (file.isFile()
+					&& (name.endsWith(".cer") || name.endsWith(".crt")
+							|| name.endsWith(".der") || name.endsWith(".pem"))) {
+				final InputStream in = new FileInputStream(file);
+				try {
+					for (java.security.cert.Certificate certificate : cf
+							.generateCertificates(in)) {
+						addCertificate(certificate.getEncoded());
+						loaded++;
+					}
+				} finally {
+					in.close();
+				}
+			}
+		}
+
+		return loaded;
+	}
+
+	/**
+	 * Indicates whether the given certificate is an accepted root
+	 * certificate. Its fingerprint was computed when it was read, so the
+	 * lookup takes constant time.
+	 * 
+	 * @param certificate
+	 *            is the certificate to look up
+	 * @return whether it is a trust anchor
+	 */
+	public boolean isTrusted(final Certificate certificate) {
+		return fFingerprints.contains(ByteBuffer.wrap(certificate
+				.getSharedFingerprint()));
+	}
+
+	/**
+	 * Indicates whether the certificate with the given DER encoding is an
+	 * accepted root certificate.
+	 * 
+	 * @param contents
+	 *            is the encoding of the certificate
+	 * @return whether it is a trust anchor
+	 */
+	public boolean isTrusted(final byte[] contents) {
+		return fFingerprints.contains(ByteBuffer.wrap(CertificateCache
+				.fingerprint(contents)));
+	}
+
+	/**
+	 * Returns the number of accepted root certificates.
+	 * 
+	 * @return the number of trust anchors
+	 */
+	public int size() {
+		return fFingerprints.size();
+	}
+}
@@ -0,0 +1,1075 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.belgium.eid.eidcommon.ByteConverter;
+import be.belgium.eid.eidlib.BeID;
+import be.belgium.eid.eidlib.CardSession;
+import be.belgium.eid.eidlib.CardSnapshot;
+import be.belgium.eid.eidlib.OperationPriority;
+import be.belgium.eid.eidlib.PrefetchPolicy;
+import be.belgium.eid.eidlib.ReaderProfiles;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.eidlib.SnapshotStore;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.emulator.TestCardGenerator;
+import be.belgium.eid.event.CardAdapter;
+import be.belgium.eid.exceptions.CardNotFoundException;
+import be.belgium.eid.exceptions.EIDException;
+import be.belgium.eid.exceptions.OperationAbortedException;
+import be.belgium.eid.exceptions.WrongPINException;
+import be.belgium.eid.objects.IDAddress;
+import be.belgium.eid.objects.IDData;
+import be.belgium.eid.objects.IDPhoto;
+import be.belgium.eid.objects.IDVersion;
+import be.belgium.eid.security.AuthenticationCertificate;
+import be.belgium.eid.security.CACertificate;
+import be.belgium.eid.security.CertificateChain;
+import be.belgium.eid.security.CertificateStatus;
+import be.belgium.eid.security.CertificateView;
+import be.belgium.eid.security.KnownCertificateRegistry;
+import be.belgium.eid.security.RootCertificate;
+import be.belgium.eid.security.SignatureCertificate;
+import be.belgium.eid.security.TrustAnchorRegistry;
+
+/**
+ * Tests the {@link be.belgium.eid.eidlib.BeID} class against an emulated card
+ * served by the {@link be.belgium.eid.emulator.EmulatorProvider}.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class BeIDEmulatorTest {
+
+	/** Contains the image of the emulated card, generated once */
+	private static EmulatedCardImage fgImage;
+
+	/** Contains the emulated reader */
+	private EmulatedCardTerminal fTerminal;
+
+	/** Contains the eID to test */
+	private BeID fBeID;
+
+	/**
+	 * Generates the image of the test card.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be generated
+	 */
+	@BeforeClass
+	public static void generateCard() throws Exception {
+		fgImage = new TestCardGenerator().generate();
+	}
+
+	/**
+	 * Inserts the test card in a fresh emulated reader.
+	 */
+	@Before
+	public void setUp() {
+		final EmulatedCardTerminals terminals = new EmulatedCardTerminals();
+		fTerminal = new EmulatedCardTerminal("Emulated reader 0",
+				LatencyProfile.NONE);
+		terminals.addTerminal(fTerminal);
+		fTerminal.insertCard(fgImage);
+		SmartCard.setTerminalFactory(EmulatorProvider
+				.getTerminalFactory(terminals));
+		fBeID = new BeID(true);
+	}
+
+	/**
+	 * Disconnects and restores the default terminal factory.
+	 * 
+	 * @throws Exception
+	 *             when the disconnection failed
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fBeID.disconnect();
+		SmartCard.setTerminalFactory(null);
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#getIDData()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testGetIDData() throws Exception {
+		final IDData data = fBeID.getIDData();
+		assertEquals("Specimen", data.getName());
+		assertEquals("Alice Marie", data.get1stFirstname());
+		assertEquals("80031512345", data.getNationalNumber());
+
+		// The chip number must match the one in the card data
+		final IDVersion version = fBeID.getIDVersionInformation();
+		assertEquals(ByteConverter.hexify(version.getChipNumber()), data
+				.getChipNumber());
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#getIDAddress()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testGetIDAddress() throws Exception {
+		final IDAddress address = fBeID.getIDAddress();
+		assertEquals("Wetstraat 16", address.getStreet());
+		assertEquals("1000", address.getZipCode());
+		assertEquals("Brussel", address.getMunicipality());
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#getIDPhoto()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testGetIDPhoto() throws Exception {
+		final IDPhoto photo = fBeID.getIDPhoto();
+		assertEquals(3072, photo.getPhoto().length);
+		assertTrue(photo.verifyHash(fBeID.getIDData().getHashPhoto()));
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#getCertificateChain()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testGetCertificateChain() throws Exception {
+		final CertificateChain chain = fBeID.getCertificateChain();
+		final byte[] root = fgImage.getFile(new byte[] { (byte) 0x3F,
+				(byte) 0x00, (byte) 0xDF, (byte) 0x00, (byte) 0x50,
+				(byte) 0x3B });
+		assertArrayEquals(root, chain.getRootCert().getContents());
+		assertEquals(chain.getCertificateAuthorityCert().getX509Certificate()
+				.getSubjectX500Principal(), chain.getAuthenticationCert()
+				.getX509Certificate().getIssuerX500Principal());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.security.CertificateChain#validate()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testValidateCertificateChain() throws Exception {
+		final CertificateChain chain = fBeID.getCertificateChain();
+		final CertificateStatus ok = CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK;
+		assertTrue(chain.isValid());
+		assertEquals(ok, chain.getRootCert().getStatus());
+		assertEquals(ok, chain.getCertificateAuthorityCert().getStatus());
+		assertEquals(ok, chain.getAuthenticationCert().getStatus());
+		assertEquals(ok, chain.getSignatureCert().getStatus());
+		assertTrue(chain.validate(fBeID.getNationalRegisterCertificate()));
+
+		// The links validated are remembered for the same certificates
+		final RootCertificate root = new RootCertificate(chain.getRootCert()
+				.getContents());
+		final CACertificate ca = new CACertificate(chain
+				.getCertificateAuthorityCert().getContents());
+		final AuthenticationCertificate auth = new AuthenticationCertificate(
+				chain.getAuthenticationCert().getContents());
+		final SignatureCertificate sig = new SignatureCertificate(chain
+				.getSignatureCert().getContents());
+		final long verified = CertificateChain.getLinkVerificationCount();
+		final CertificateChain copy = new CertificateChain(root, ca, auth, sig);
+		assertFalse(copy.isValid());
+		assertTrue(copy.validate());
+		assertTrue(copy.isValid());
+		assertEquals(verified, CertificateChain.getLinkVerificationCount());
+
+		// Links that aren't remembered are verified again
+		final long timeToLive = CertificateChain.getLinkTimeToLive();
+		CertificateChain.setLinkTimeToLive(0);
+		try {
+			CertificateChain.clearValidatedLinks();
+			copy.validate();
+			copy.validate();
+			assertEquals(verified + 8, CertificateChain
+					.getLinkVerificationCount());
+		} finally {
+			CertificateChain.setLinkTimeToLive(timeToLive);
+		}
+
+		// A signature certificate can't be used for authentication
+		final AuthenticationCertificate wrongPurpose = new AuthenticationCertificate(
+				sig.getContents());
+		final CertificateChain invalid = new CertificateChain(root, ca,
+				wrongPurpose, sig);
+		assertFalse(invalid.validate());
+		assertFalse(invalid.isValid());
+		assertEquals(CertificateStatus.BEID_CERTSTATUS_INVALID_PURPOSE,
+				wrongPurpose.getStatus());
+
+		// The CA has to be issued by the root
+		final CACertificate wrongIssuer = new CACertificate(auth.getContents());
+		assertFalse(new CertificateChain(root, wrongIssuer, auth, sig)
+				.validate());
+		assertEquals(
+				CertificateStatus.BEID_CERTSTATUS_SUBJECT_ISSUER_MISMATCH,
+				wrongIssuer.getStatus());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.security.Certificate#getView()}.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be read
+	 */
+	@Test
+	public void testCertificateView() throws Exception {
+		final CertificateChain chain = fBeID.getCertificateChain();
+		final CertificateView auth = chain.getAuthenticationCert().getView();
+		assertEquals(chain.getAuthenticationCert().getX509Certificate()
+				.getSerialNumber(), auth.getSerialNumber());
+		assertEquals(Arrays.asList("http://ocsp.eid.belgium.be"), auth
+				.getOCSPURLs());
+		assertEquals(Arrays.asList("http://crl.eid.belgium.be/eidc200001.crl"),
+				auth.getCRLURLs());
+		assertEquals("Citizen CA Emulated", auth.getIssuerAttributes().get(
+				CertificateView.fgCOMMON_NAME));
+		assertEquals(fBeID.getIDData().getNationalNumber(), auth
+				.getSubjectAttribute(CertificateView.fgSERIAL_NUMBER));
+		assertFalse(auth.isSelfIssued());
+
+		final CertificateView root = chain.getRootCert().getView();
+		assertTrue(root.isSelfIssued());
+		assertTrue(root.getCRLURLs().isEmpty());
+		assertTrue(fBeID.getNationalRegisterCertificate().verify());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.BeID#setKnownCertificateRegistry(KnownCertificateRegistry)}.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be read
+	 */
+	@Test
+	public void testKnownCertificates() throws Exception {
+		final KnownCertificateRegistry known = new KnownCertificateRegistry();
+		final TrustAnchorRegistry trustAnchors = new TrustAnchorRegistry();
+		fBeID.setKnownCertificateRegistry(known);
+		fBeID.setTrustAnchorRegistry(trustAnchors);
+
+		// The certificates are read in full by default and those of a root
+		// that isn't accepted aren't learned
+		assertFalse(fBeID.isKnownCertificateReads());
+		fTerminal.resetStatistics();
+		final CertificateChain full = fBeID.getCertificateChain();
+		final long fullAPDUs = fTerminal.getAPDUCount();
+		assertEquals(0, known.size());
+
+		trustAnchors.addCertificate(full.getRootCert().getContents());
+		fBeID.disconnect();
+		fBeID.getCertificateChain();
+		assertEquals(2, known.size());
+
+		// Only the first block of the known certificates is read
+		fBeID.disconnect();
+		fBeID.setKnownCertificateReads(true);
+		fTerminal.resetStatistics();
+		final CertificateChain chain = fBeID.getCertificateChain();
+		assertTrue(fTerminal.getAPDUCount() < fullAPDUs);
+		assertArrayEquals(full.getRootCert().getContents(), chain
+				.getRootCert().getContents());
+		assertArrayEquals(full.getCertificateAuthorityCert().getContents(),
+				chain.getCertificateAuthorityCert().getContents());
+		assertEquals(CertificateStatus.BEID_CERTSTATUS_CERT_VALIDATED_OK,
+				chain.getSignatureCert().getStatus());
+
+		// A different first block isn't matched
+		final byte[] prefix = Arrays.copyOf(full.getRootCert().getContents(),
+				KnownCertificateRegistry.fgPREFIX_LEN);
+		assertArrayEquals(full.getRootCert().getContents(), known
+				.lookup(prefix));
+		prefix[prefix.length - 1] ^= 1;
+		assertEquals(null, known.lookup(prefix));
+	}
+
+	/**
+	 * Tests that the known root and CA certificates stay in the certificate
+	 * cache when no certificate uses them anymore, unlike the certificates of
+	 * the card holder.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testKnownCertificatesStayCached() throws Exception {
+		final KnownCertificateRegistry known = new KnownCertificateRegistry();
+		final TrustAnchorRegistry trustAnchors = new TrustAnchorRegistry();
+		fBeID.setKnownCertificateRegistry(known);
+		fBeID.setTrustAnchorRegistry(trustAnchors);
+		CertificateChain chain = fBeID.getCertificateChain();
+		trustAnchors.addCertificate(chain.getRootCert().getContents());
+		fBeID.disconnect();
+		chain = fBeID.getCertificateChain();
+		assertEquals(2, known.size());
+
+		final byte[] caContents = chain.getCertificateAuthorityCert()
+				.getContents();
+		final CertificateView ca = chain.getCertificateAuthorityCert()
+				.getView();
+		final byte[] signatureContents = chain.getSignatureCert()
+				.getContents();
+		final CertificateView signature = chain.getSignatureCert().getView();
+		chain = null;
+		fBeID.disconnect();
+
+		// Wait until the unused certificate of the holder has been collected
+		boolean collected = false;
+		for (int i = 0; (i < 50) && !collected; i++) {
+			System.gc();
+			collected = new SignatureCertificate(signatureContents)
+					.getView() != signature;
+		}
+		assertTrue(collected);
+		assertSame(ca, new CACertificate(caContents).getView());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.BeID#generateSignature(byte[], String, be.belgium.eid.eidlib.BeID.SignatureType)}
+	 * .
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testGenerateSignature() throws Exception {
+		final byte[] data = "eID library".getBytes();
+		final byte[] signature = fBeID.generateSignature(data, "1234",
+				BeID.SignatureType.NONREPUDIATIONSIG);
+		assertTrue(fBeID.verifySignature(data, signature,
+				BeID.SignatureType.NONREPUDIATIONSIG));
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.SmartCard#verifyPIN(String)}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testVerifyWrongPIN() throws Exception {
+		fBeID.connect();
+		try {
+			fBeID.verifyPIN("9999");
+			fail("Wrong PIN accepted");
+		} catch (WrongPINException e) {
+			assertEquals(2, e.getNumberOfTriesLeft());
+		}
+
+		// A correct PIN resets the number of tries
+		assertEquals(3, fBeID.verifyPIN("1234"));
+	}
+
+	/**
+	 * Tests that the removal of the card is reported.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test(expected = EIDException.class)
+	public void testCardRemoved() throws Exception {
+		fBeID.connect();
+		fTerminal.removeCard();
+		fBeID.getIDData();
+	}
+
+	/**
+	 * Tests that the latency of the exchanged APDUs is accounted for according
+	 * to the latency profile of the reader.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testLatencyAccounting() throws Exception {
+		fTerminal.setLatencyProfile(LatencyProfile.USB_CCID_TYPICAL);
+		fTerminal.setSimulateDelays(false);
+		fBeID.getIDPhoto();
+
+		final LatencyProfile profile = LatencyProfile.USB_CCID_TYPICAL;
+		assertTrue(fTerminal.getAPDUCount() > 0);
+		assertEquals(1000L * (fTerminal.getAPDUCount()
+				* profile.getRoundTripMicros() + fTerminal.getByteCount()
+				* profile.getByteMicros()), fTerminal.getLatencyNanos());
+	}
+
+	/**
+	 * Tests that every operation holds the exclusive access to the card only
+	 * once, whatever the number of files it reads.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testOneTransactionPerOperation() throws Exception {
+		fBeID.connect();
+		fTerminal.resetStatistics();
+		fBeID.getIDAddress();
+		assertEquals(1, fTerminal.getTransactionCount());
+
+		fTerminal.resetStatistics();
+		fBeID.getCertificateChain();
+		assertEquals(1, fTerminal.getTransactionCount());
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.SmartCard#openSession()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSession() throws Exception {
+		fBeID.connect();
+		fTerminal.resetStatistics();
+
+		final CardSession session = fBeID.openSession();
+		try {
+			assertTrue(fBeID.isInTransaction());
+			fBeID.getIDData();
+			fBeID.getIDAddress();
+			fBeID.getIDPhoto();
+		} finally {
+			session.close();
+		}
+		assertFalse(fBeID.isInTransaction());
+		assertFalse(session.isOpen());
+		assertEquals(1, fTerminal.getTransactionCount());
+
+		// Closing twice has no effect
+		session.close();
+		assertFalse(fBeID.isInTransaction());
+	}
+
+	/**
+	 * Tests that another connection to the card waits until an open session is
+	 * closed.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSessionExcludesOthers() throws Exception {
+		fBeID.connect();
+		final BeID other = new BeID(true);
+		other.connect();
+
+		final CardSession session = fBeID.openSession();
+		final Thread reader = new Thread() {
+			public void run() {
+				try {
+					other.getIDData();
+				} catch (EIDException e) {
+					// Checked below
+				}
+			}
+		};
+		reader.start();
+		try {
+			// The other connection can't get in while the session is open
+			reader.join(200);
+			assertTrue(reader.isAlive());
+			fBeID.getIDData();
+		} finally {
+			session.close();
+		}
+
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		other.disconnect();
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#readAll()}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadAll() throws Exception {
+		fBeID.connect();
+		fTerminal.resetStatistics();
+		fBeID.getIDData();
+		fBeID.getIDAddress();
+		fBeID.getIDVersionInformation();
+		fBeID.getIDPhoto();
+		fBeID.getCertificateChain();
+		final long separateAPDUs = fTerminal.getAPDUCount();
+
+		fTerminal.resetStatistics();
+		final CardSnapshot snapshot = fBeID.readAll();
+		assertEquals(1, fTerminal.getTransactionCount());
+		assertTrue(fTerminal.getAPDUCount() < separateAPDUs);
+		assertTrue(snapshot.isCertificatesValid());
+
+		assertEquals(fBeID.getIDData().getNationalNumber(), snapshot
+				.getIDData().getNationalNumber());
+		assertEquals("Wetstraat 16", snapshot.getIDAddress().getStreet());
+		assertArrayEquals(fBeID.getIDPhoto().getPhoto(), snapshot
+				.getIDPhoto().getPhoto());
+		assertArrayEquals(fBeID.getIDVersionInformation().getChipNumber(),
+				snapshot.getIDVersionInformation().getChipNumber());
+		assertArrayEquals(fBeID.getCertificateChain().getSignatureCert()
+				.getContents(), snapshot.getCertificateChain()
+				.getSignatureCert().getContents());
+		assertArrayEquals(fBeID.getNationalRegisterCertificate()
+				.getContents(), snapshot.getNationalRegisterCertificate()
+				.getContents());
+
+		// The raw contents can't be changed from the outside
+		final byte[] idFile = snapshot.getIDFile();
+		idFile[0] ^= 0x01;
+		assertFalse(idFile[0] == snapshot.getIDFile()[0]);
+	}
+
+	/**
+	 * Tests that data read before from the same card is returned without
+	 * sending commands to the card, until the card is removed or replaced.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testCache() throws Exception {
+		final IDData data = fBeID.getIDData();
+		final IDPhoto photo = fBeID.getIDPhoto();
+		fBeID.getIDAddress();
+		fBeID.getIDVersionInformation();
+		fBeID.getCertificateChain();
+		fBeID.getNationalRegisterCertificate();
+
+		fTerminal.resetStatistics();
+		assertTrue(data == fBeID.getIDData());
+		assertTrue(photo == fBeID.getIDPhoto());
+		fBeID.getIDAddress();
+		fBeID.getIDVersionInformation();
+		fBeID.getCertificateChain();
+		fBeID.getNationalRegisterCertificate();
+		assertEquals(0, fTerminal.getAPDUCount());
+
+		// The files are known, only the card data is asked for
+		fBeID.readAll();
+		assertEquals(1, fTerminal.getAPDUCount());
+
+		// The removal of the card clears the cache
+		fTerminal.removeCard();
+		try {
+			fBeID.getIDData();
+			fail("Data of a removed card returned");
+		} catch (EIDException e) {
+			// Expected
+		}
+
+		// A new connection reads the card again
+		fBeID.disconnect();
+		fTerminal.insertCard(fgImage);
+		fTerminal.resetStatistics();
+		assertEquals(data.getNationalNumber(), fBeID.getIDData()
+				.getNationalNumber());
+		assertTrue(fTerminal.getAPDUCount() > 0);
+
+		// The data of a card replaced without a card listener isn't returned
+		final TestCardGenerator generator = new TestCardGenerator();
+		generator.setAddress("Grote Markt 1", "1000", "Brussel");
+		assertEquals("Wetstraat 16", fBeID.getIDAddress().getStreet());
+		fTerminal.removeCard();
+		fTerminal.insertCard(generator.generate());
+		try {
+			fBeID.getIDAddress();
+			fail("Address of a replaced card returned");
+		} catch (EIDException e) {
+			// Expected
+		}
+		fBeID.disconnect();
+		assertEquals("Grote Markt 1", fBeID.getIDAddress().getStreet());
+	}
+
+	/**
+	 * Tests that the card listener's removal of the card clears the cache.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testCacheClearedOnDisconnect() throws Exception {
+		fBeID.getIDData();
+		fBeID.disconnect();
+
+		fTerminal.resetStatistics();
+		fBeID.getIDData();
+		assertTrue(fTerminal.getAPDUCount() > 0);
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#readAll()} with a
+	 * snapshot store, for a returning card and for a card of which the
+	 * address changed.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSnapshotStore() throws Exception {
+		final File directory = Files.createTempDirectory("snapshots").toFile();
+		final SnapshotStore store = new SnapshotStore(directory);
+		try {
+			fBeID.setSnapshotStore(store);
+			final CardSnapshot first = fBeID.readAll();
+			fBeID.disconnect();
+
+			// Only the card data and the two signatures are read again
+			fTerminal.resetStatistics();
+			final CardSnapshot second = fBeID.readAll();
+			assertTrue(fTerminal.getAPDUCount() < 10);
+			assertArrayEquals(first.getPhotoFile(), second.getPhotoFile());
+			assertArrayEquals(first.getCertificateChain().getRootCert()
+					.getContents(), second.getCertificateChain().getRootCert()
+					.getContents());
+			assertEquals("Wetstraat 16", second.getIDAddress().getStreet());
+			fBeID.disconnect();
+
+			// A damaged snapshot is read completely and stored again
+			for (File file : directory.listFiles()) {
+				final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(raf.length() - 1);
+				} finally {
+					raf.close();
+				}
+			}
+			fTerminal.resetStatistics();
+			assertArrayEquals(first.getPhotoFile(), fBeID.readAll()
+					.getPhotoFile());
+			assertTrue(fTerminal.getAPDUCount() > 10);
+			fBeID.disconnect();
+			fTerminal.resetStatistics();
+			fBeID.readAll();
+			assertTrue(fTerminal.getAPDUCount() < 10);
+			fBeID.disconnect();
+
+			// The same card after moving is read completely
+			final TestCardGenerator generator = new TestCardGenerator();
+			generator.setAddress("Grote Markt 1", "1000", "Brussel");
+			final EmulatedCardImage moved = generator.generate();
+			assertArrayEquals(fgImage.getCardData(), moved.getCardData());
+			fTerminal.removeCard();
+			fTerminal.insertCard(moved);
+			fTerminal.resetStatistics();
+			assertEquals("Grote Markt 1", fBeID.readAll().getIDAddress()
+					.getStreet());
+			assertTrue(fTerminal.getAPDUCount() > 10);
+		} finally {
+			store.clear();
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.BeID#getIDDataAsync()} and
+	 * the other asynchronous operations.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		final CompletableFuture<IDData> data = fBeID.getIDDataAsync();
+		final CompletableFuture<IDPhoto> photo = fBeID.getIDPhotoAsync();
+		final CompletableFuture<byte[]> signature = fBeID
+				.generateSignatureAsync("eID library".getBytes(), "1234",
+						BeID.SignatureType.NONREPUDIATIONSIG);
+		assertEquals("Specimen", data.get(5, TimeUnit.SECONDS).getName());
+		assertTrue(photo.get(5, TimeUnit.SECONDS).verifyHash(
+				data.get().getHashPhoto()));
+		assertTrue(fBeID.verifySignature("eID library".getBytes(), signature
+				.get(5, TimeUnit.SECONDS), BeID.SignatureType.NONREPUDIATIONSIG));
+
+		// The operations run on another thread, which waits for the card
+		final CardSession session = fBeID.openSession();
+		final CompletableFuture<IDAddress> address;
+		try {
+			address = fBeID.getIDAddressAsync();
+			Thread.sleep(200);
+			assertFalse(address.isDone());
+		} finally {
+			session.close();
+		}
+		assertEquals("Wetstraat 16", address.get(5, TimeUnit.SECONDS)
+				.getStreet());
+	}
+
+	/**
+	 * Tests that a failed asynchronous operation completes its future with
+	 * the failure.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testAsyncFailure() throws Exception {
+		fBeID.connect();
+		fTerminal.removeCard();
+		try {
+			fBeID.getIDDataAsync().get(5, TimeUnit.SECONDS);
+			fail("Data of a removed card returned");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof EIDException);
+		}
+	}
+
+	/**
+	 * Tests that the prefetch policy reads the identity as soon as the card
+	 * listener connects the card, so that the getter sends no commands.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testPrefetch() throws Exception {
+		final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+		fBeID.setPrefetchPolicy(PrefetchPolicy.IDENTITY);
+		fBeID.enableCardListener(new CardAdapter() {
+			public void cardInserted() {
+				events.add("inserted");
+			}
+		});
+		try {
+			assertEquals("inserted", events.poll(5, TimeUnit.SECONDS));
+			fBeID.getPrefetch().get(5, TimeUnit.SECONDS);
+
+			final long apdus = fTerminal.getAPDUCount();
+			assertEquals("Specimen", fBeID.getIDData().getName());
+			assertEquals(apdus, fTerminal.getAPDUCount());
+		} finally {
+			fBeID.disableCardListener();
+		}
+	}
+
+	/**
+	 * Tests that many threads can read the same card at once, and that the
+	 * data read before is returned to them without reading the card again.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testConcurrentReads() throws Exception {
+		final int threads = 8;
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final CyclicBarrier start = new CyclicBarrier(threads);
+			final List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < threads; i++) {
+				final int kind = i % 3;
+				results.add(executor.submit(() -> {
+					start.await();
+					if (kind == 0) {
+						return fBeID.getIDData().getName();
+					} else if (kind == 1) {
+						return fBeID.getIDAddress().getZipCode();
+					} else {
+						return "" + fBeID.getIDPhoto().getPhoto().length;
+					}
+				}));
+			}
+			for (int i = 0; i < threads; i++) {
+				assertEquals(results.get(i % 3).get(10, TimeUnit.SECONDS),
+						results.get(i).get(10, TimeUnit.SECONDS));
+			}
+
+			final long apdus = fTerminal.getAPDUCount();
+			final List<Future<?>> reads = new ArrayList<Future<?>>();
+			for (int i = 0; i < threads; i++) {
+				reads.add(executor.submit(() -> {
+					for (int j = 0; j < 200; j++) {
+						assertEquals("Specimen", fBeID.getIDData().getName());
+					}
+					return null;
+				}));
+			}
+			for (Future<?> read : reads) {
+				read.get(10, TimeUnit.SECONDS);
+			}
+			assertEquals(apdus, fTerminal.getAPDUCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests that two instances connected to the same reader take turns.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSharedReader() throws Exception {
+		final BeID other = new BeID("Emulated reader 0", true);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final CyclicBarrier start = new CyclicBarrier(2);
+			final Future<CardSnapshot> first = executor.submit(() -> {
+				start.await();
+				return fBeID.readAll();
+			});
+			final Future<CardSnapshot> second = executor.submit(() -> {
+				start.await();
+				return other.readAll();
+			});
+			assertEquals(first.get(10, TimeUnit.SECONDS).getIDData()
+					.getNationalNumber(), second.get(10, TimeUnit.SECONDS)
+					.getIDData().getNationalNumber());
+		} finally {
+			executor.shutdownNow();
+			other.disconnect();
+		}
+	}
+
+	/**
+	 * Tests that an interactive operation interrupts the photo being read for
+	 * a background operation, which reads on afterwards.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testPriority() throws Exception {
+		fTerminal.setLatencyProfile(LatencyProfile.USB_CCID_FAST);
+		fBeID.connect();
+
+		final List<String> finished = Collections
+				.synchronizedList(new ArrayList<String>());
+		final CountDownLatch reading = new CountDownLatch(1);
+		final CompletableFuture<IDPhoto> photo = fBeID.schedule(
+				OperationPriority.BACKGROUND, eID -> {
+					reading.countDown();
+					final IDPhoto result = eID.getIDPhoto();
+					finished.add("photo");
+					return result;
+				});
+		assertTrue(reading.await(5, TimeUnit.SECONDS));
+		Thread.sleep(50);
+
+		final CompletableFuture<IDData> data = fBeID.schedule(
+				OperationPriority.INTERACTIVE, eID -> {
+					final IDData result = eID.getIDData();
+					finished.add("data");
+					return result;
+				});
+		assertEquals("Specimen", data.get(10, TimeUnit.SECONDS).getName());
+		photo.get(10, TimeUnit.SECONDS);
+		assertEquals(Arrays.asList("data", "photo"), finished);
+
+		// The photo has been read on from where it was interrupted
+		assertArrayEquals(data.get().getHashPhoto(), MessageDigest.getInstance(
+				"SHA1").digest(photo.get().getPhoto()));
+	}
+
+	/**
+	 * Tests that the operations scheduled before and after connecting run on
+	 * the same thread, that of the reader connected with.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSchedulerKeptAfterConnecting() throws Exception {
+		assertFalse(fBeID.isConnected());
+		final Thread before = fBeID.schedule(OperationPriority.NORMAL,
+				eID -> Thread.currentThread()).get(5, TimeUnit.SECONDS);
+		fBeID.connect();
+		final Thread after = fBeID.schedule(OperationPriority.NORMAL,
+				eID -> Thread.currentThread()).get(5, TimeUnit.SECONDS);
+
+		assertSame(before, after);
+		assertTrue(after.getName().endsWith(fTerminal.getName()));
+	}
+
+	/**
+	 * Tests that an operation taking longer than allowed is aborted, and that
+	 * the card can be read afterwards.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testTimeout() throws Exception {
+		ReaderProfiles.resetLearnedDelays();
+		fTerminal.setLatencyProfile(LatencyProfile.USB_CCID_FAST);
+		fBeID.setTimeout(50);
+		try {
+			fBeID.getIDPhoto();
+			fail("The photo can't be read within 50 ms");
+		} catch (EIDException e) {
+			assertEquals(OperationAbortedException.AbortType.TIMED_OUT,
+					((OperationAbortedException) e.getCause()).getType());
+		}
+		assertFalse(fBeID.isInTransaction());
+
+		// The abort isn't mistaken for a reader that needs to settle
+		assertEquals(0, ReaderProfiles.getSettleDelay(fTerminal.getName(),
+				null));
+
+		fBeID.setTimeout(0);
+		final IDPhoto photo = fBeID.getIDPhoto();
+		assertArrayEquals(fBeID.getIDData().getHashPhoto(), MessageDigest
+				.getInstance("SHA1").digest(photo.getPhoto()));
+	}
+
+	/**
+	 * Tests that cancelling an asynchronous operation aborts it before the
+	 * next command, so that the reader is free for the next operation.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testCancel() throws Exception {
+		fTerminal.setLatencyProfile(LatencyProfile.USB_CCID_FAST);
+		fBeID.connect();
+		final CompletableFuture<IDPhoto> photo = fBeID.getIDPhotoAsync();
+		while (fTerminal.getAPDUCount() < 3) {
+			Thread.sleep(5);
+		}
+		assertTrue(photo.cancel(true));
+		assertEquals("Specimen", fBeID.getIDDataAsync().get(5,
+				TimeUnit.SECONDS).getName());
+
+		// The photo hasn't been read to the end
+		fTerminal.resetStatistics();
+		fBeID.getIDPhoto();
+		assertTrue(fTerminal.getAPDUCount() > 0);
+	}
+
+	/**
+	 * Tests that the removal of the card aborts the operation reading it
+	 * right away, and that the card inserted next can be read.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testRemovalAbortsRead() throws Exception {
+		fTerminal.setLatencyProfile(LatencyProfile.USB_CCID_FAST);
+		fBeID.connect();
+		final CompletableFuture<IDPhoto> photo = fBeID.getIDPhotoAsync();
+		while (fTerminal.getAPDUCount() < 3) {
+			Thread.sleep(5);
+		}
+		SmartCard.cardRemoved(fTerminal.getName());
+		fTerminal.removeCard();
+		try {
+			photo.get(5, TimeUnit.SECONDS);
+			fail("The card has been removed");
+		} catch (ExecutionException e) {
+			assertEquals(CardNotFoundException.CardNotFoundType.REMOVED,
+					((CardNotFoundException) e.getCause().getCause())
+							.getType());
+		}
+
+		fTerminal.insertCard(fgImage);
+		assertEquals("Specimen", fBeID.getIDData().getName());
+	}
+
+	/**
+	 * Tests that a PIN command aborted by the deadline of the transaction
+	 * releases the card, so that another instance can use the reader
+	 * afterwards.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testTimeoutAbortsVerifyPIN() throws Exception {
+		fBeID.connect();
+		fBeID.setTimeout(50);
+		final CardSession session = fBeID.openSession();
+		try {
+			Thread.sleep(100);
+			fBeID.verifyPIN("1234");
+			fail("The deadline has passed");
+		} catch (OperationAbortedException e) {
+			assertEquals(OperationAbortedException.AbortType.TIMED_OUT, e
+					.getType());
+		} finally {
+			session.close();
+		}
+		assertFalse(fBeID.isInTransaction());
+
+		final BeID other = new BeID(true);
+		try {
+			other.setTimeout(5000);
+			assertEquals("Specimen", other.getIDData().getName());
+		} finally {
+			other.disconnect();
+		}
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.smartcardio.CardTerminal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.emulator.TestCardGenerator;
+import be.belgium.eid.event.CardAdapter;
+import be.belgium.eid.event.CardEvent;
+import be.belgium.eid.event.CardEventDispatcher;
+import be.belgium.eid.event.CardMonitor;
+import be.belgium.eid.event.TerminalRegistry;
+
+/**
+ * Tests the {@link be.belgium.eid.event.CardMonitor} class with emulated
+ * readers.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardMonitorTest {
+
+	/** Contains the image of the emulated card, generated once */
+	private static EmulatedCardImage fgImage;
+
+	/** Contains the emulated readers */
+	private EmulatedCardTerminals fTerminals;
+
+	/** Contains the smart card connected by the monitor */
+	private SmartCard fCard;
+
+	/** Contains the events received, in order */
+	private final BlockingQueue<String> fEvents = new LinkedBlockingQueue<String>();
+
+	/** Contains the monitor to test */
+	private CardMonitor fMonitor;
+
+	/**
+	 * Generates the image of the test card.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be generated
+	 */
+	@BeforeClass
+	public static void generateCard() throws Exception {
+		fgImage = new TestCardGenerator().generate();
+	}
+
+	/**
+	 * Sets up emulated readers without readers attached.
+	 */
+	@Before
+	public void setUp() {
+		fTerminals = new EmulatedCardTerminals();
+		SmartCard.setTerminalFactory(EmulatorProvider
+				.getTerminalFactory(fTerminals));
+		fCard = new SmartCard();
+	}
+
+	/**
+	 * Stops the monitor and restores the default terminal factory.
+	 * 
+	 * @throws Exception
+	 *             when the monitor couldn't be stopped
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (fMonitor != null) {
+			fMonitor.stopThread();
+			fMonitor.join(5000);
+		}
+		if (fCard.isConnected()) {
+			fCard.disconnect();
+		}
+		SmartCard.setTerminalFactory(null);
+	}
+
+	/**
+	 * Starts the monitor.
+	 */
+	private void startMonitor() {
+		fMonitor = new CardMonitor(fCard, new CardAdapter() {
+			public void cardInserted() {
+				fEvents.add("inserted");
+			}
+
+			public void cardRemoved() {
+				fEvents.add("removed");
+			}
+
+			public void readerAttached(final CardTerminal terminal) {
+				fEvents.add("attached " + terminal.getName());
+			}
+
+			public void readerDetached(final CardTerminal terminal) {
+				fEvents.add("detached " + terminal.getName());
+			}
+		});
+		fMonitor.start();
+	}
+
+	/**
+	 * Attaches a new emulated reader with the given name.
+	 */
+	private EmulatedCardTerminal attachReader(final String name) {
+		final EmulatedCardTerminal terminal = new EmulatedCardTerminal(name,
+				LatencyProfile.NONE);
+		fTerminals.addTerminal(terminal);
+		return terminal;
+	}
+
+	/**
+	 * Tests that insertions and removals in any reader are reported.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testInsertionAndRemoval() throws Exception {
+		attachReader("Monitor reader 0");
+		final EmulatedCardTerminal second = attachReader("Monitor reader 1");
+		startMonitor();
+		assertEquals("attached Monitor reader 0", fEvents.poll(5,
+				TimeUnit.SECONDS));
+		assertEquals("attached Monitor reader 1", fEvents.poll(5,
+				TimeUnit.SECONDS));
+
+		second.insertCard(fgImage);
+		assertEquals("inserted", fEvents.poll(5, TimeUnit.SECONDS));
+		assertEquals("Monitor reader 1", fCard.getConnectedReader().getName());
+		final SmartCard other = new SmartCard();
+		other.connectCard("Monitor reader 1");
+
+		second.removeCard();
+		assertEquals("removed", fEvents.poll(5, TimeUnit.SECONDS));
+		assertFalse(fCard.isConnected());
+
+		// The operations of others using the card are aborted as well
+		assertTrue(other.isCardRemoved());
+		other.disconnect();
+	}
+
+	/**
+	 * Tests that the removal of the connected card is reported also when the
+	 * readers don't report it as a change, as happens when the state from
+	 * which changes are reported is established again after the card has
+	 * been connected.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testRemovalNotReportedAsChange() throws Exception {
+		final EmulatedCardTerminal terminal = attachReader("Monitor reader 9");
+		fMonitor = new CardMonitor(fCard, new CardAdapter() {
+			public void cardInserted() {
+				fEvents.add("inserted");
+			}
+
+			public void cardRemoved() {
+				fEvents.add("removed");
+			}
+		}) {
+			protected void cardConnected(final CardTerminal ct) {
+				// Remove the card and let the readers take the state without
+				// the card as the one from which changes are reported
+				terminal.removeCard();
+				try {
+					fTerminals.waitForChange(1);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		fMonitor.start();
+
+		terminal.insertCard(fgImage);
+		assertEquals("inserted", fEvents.poll(5, TimeUnit.SECONDS));
+		assertEquals("removed", fEvents.poll(CardMonitor.fsWaitForChange
+				+ 5000, TimeUnit.MILLISECONDS));
+		assertFalse(fCard.isConnected());
+	}
+
+	/**
+	 * Tests that a card inserted before the monitor started is reported.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testCardPresentAtStart() throws Exception {
+		attachReader("Monitor reader 2").insertCard(fgImage);
+		startMonitor();
+		assertEquals("attached Monitor reader 2", fEvents.poll(5,
+				TimeUnit.SECONDS));
+
+		assertEquals("inserted", fEvents.poll(5, TimeUnit.SECONDS));
+		assertTrue(fCard.isConnected());
+	}
+
+	/**
+	 * Tests that the monitor hardly uses processor time without readers and
+	 * notices a reader attached later.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testWithoutReaders() throws Exception {
+		startMonitor();
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Thread.sleep(200);
+		final long cpu = threads.getThreadCpuTime(fMonitor.getId());
+		Thread.sleep(1000);
+		assertTrue(threads.getThreadCpuTime(fMonitor.getId()) - cpu < 100000000L);
+
+		attachReader("Monitor reader 3").insertCard(fgImage);
+		assertEquals("attached Monitor reader 3", fEvents.poll(
+				TerminalRegistry.fsMaxPollInterval + 5000,
+				TimeUnit.MILLISECONDS));
+		assertEquals("inserted", fEvents.poll(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that readers attached and detached while the monitor runs are
+	 * reported, and that detaching the reader of the connected card counts as
+	 * removing the card.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReaderAttachedAndDetached() throws Exception {
+		attachReader("Monitor reader 4");
+		startMonitor();
+		assertEquals("attached Monitor reader 4", fEvents.poll(5,
+				TimeUnit.SECONDS));
+
+		final EmulatedCardTerminal second = attachReader("Monitor reader 5");
+		assertEquals("attached Monitor reader 5", fEvents.poll(
+				TerminalRegistry.fsMaxPollInterval + 5000,
+				TimeUnit.MILLISECONDS));
+		assertEquals(2, fMonitor.getRegistry().getReaders().size());
+
+		second.insertCard(fgImage);
+		assertEquals("inserted", fEvents.poll(5, TimeUnit.SECONDS));
+
+		fTerminals.removeTerminal(second);
+		assertEquals("removed", fEvents.poll(
+				TerminalRegistry.fsMaxPollInterval + 5000,
+				TimeUnit.MILLISECONDS));
+		assertEquals("detached Monitor reader 5", fEvents.poll(5,
+				TimeUnit.SECONDS));
+		assertFalse(fCard.isConnected());
+		assertEquals(null, fMonitor.getRegistry().getReader("Monitor reader 5"));
+	}
+
+	/**
+	 * Tests that a listener that takes long doesn't delay the other listeners
+	 * nor the detection of cards, and that the events describe the cards.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSlowListener() throws Exception {
+		final EmulatedCardTerminal first = attachReader("Monitor reader 6");
+		final EmulatedCardTerminal second = attachReader("Monitor reader 7");
+		final CountDownLatch release = new CountDownLatch(1);
+		final BlockingQueue<CardEvent> events = new LinkedBlockingQueue<CardEvent>();
+		final CardEventDispatcher dispatcher = new CardEventDispatcher();
+		dispatcher.addCardListener(new CardAdapter() {
+			public void cardInserted() {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					// Released
+				}
+			}
+		});
+		dispatcher.addCardListener(new CardAdapter() {
+			public void cardInserted(final CardEvent event) {
+				events.add(event);
+			}
+
+			public void cardRemoved(final CardEvent event) {
+				events.add(event);
+			}
+		});
+		fMonitor = new CardMonitor(fCard, dispatcher);
+		fMonitor.start();
+
+		try {
+			first.insertCard(fgImage);
+			final CardEvent inserted = events.poll(5, TimeUnit.SECONDS);
+			assertEquals(CardEvent.Type.CARD_INSERTED, inserted.getType());
+			assertEquals("Monitor reader 6", inserted.getTerminal().getName());
+			assertArrayEquals(fgImage.getATR(), inserted.getATR().getBytes());
+			assertTrue(Math.abs(System.currentTimeMillis()
+					- inserted.getTimestamp()) < 5000);
+
+			first.removeCard();
+			final CardEvent removed = events.poll(5, TimeUnit.SECONDS);
+			assertEquals(CardEvent.Type.CARD_REMOVED, removed.getType());
+			assertTrue(removed.getSequenceNumber() > inserted
+					.getSequenceNumber());
+
+			second.insertCard(fgImage);
+			assertEquals("Monitor reader 7", events.poll(5, TimeUnit.SECONDS)
+					.getTerminal().getName());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	/**
+	 * Tests that the oldest events of a listener are dropped when its queue
+	 * is full.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testBoundedQueue() throws Exception {
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		final CardEventDispatcher dispatcher = new CardEventDispatcher(
+				tasks::add, 2);
+		final List<Long> received = new ArrayList<Long>();
+		dispatcher.addCardListener(new CardAdapter() {
+			public void cardInserted(final CardEvent event) {
+				received.add(event.getSequenceNumber());
+			}
+		});
+
+		final CardTerminal terminal = attachReader("Monitor reader 8");
+		final List<Long> fired = new ArrayList<Long>();
+		for (int i = 0; i < 5; i++) {
+			final CardEvent event = new CardEvent(
+					CardEvent.Type.CARD_INSERTED, terminal, null);
+			fired.add(event.getSequenceNumber());
+			dispatcher.fire(event);
+		}
+		assertEquals(1, tasks.size());
+		assertEquals(3, dispatcher.getDroppedCount());
+
+		tasks.get(0).run();
+		assertEquals(fired.subList(3, 5), received);
+	}
+}
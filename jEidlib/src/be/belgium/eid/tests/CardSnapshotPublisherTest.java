@@ -0,0 +1,184 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.belgium.eid.eidlib.CardSnapshot;
+import be.belgium.eid.eidlib.CardSnapshotPublisher;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.emulator.TestCardGenerator;
+
+/**
+ * Tests the {@link be.belgium.eid.eidlib.CardSnapshotPublisher} class with
+ * emulated readers.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CardSnapshotPublisherTest {
+
+	/** Contains the image of the emulated card, generated once */
+	private static EmulatedCardImage fgImage;
+
+	/** Contains the emulated readers */
+	private final EmulatedCardTerminal[] fTerminals = new EmulatedCardTerminal[2];
+
+	/** Contains the publisher to test */
+	private CardSnapshotPublisher fPublisher;
+
+	/** Contains the subscription of the subscriber */
+	private Flow.Subscription fSubscription;
+
+	/** Contains the snapshots received, and "complete" when completed */
+	private final BlockingQueue<Object> fReceived = new LinkedBlockingQueue<Object>();
+
+	/**
+	 * Generates the image of the test card.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be generated
+	 */
+	@BeforeClass
+	public static void generateCard() throws Exception {
+		fgImage = new TestCardGenerator().generate();
+	}
+
+	/**
+	 * Sets up two emulated readers without cards, and the publisher.
+	 * 
+	 * @throws Exception
+	 *             when the publisher couldn't be set up
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final EmulatedCardTerminals terminals = new EmulatedCardTerminals();
+		for (int i = 0; i < fTerminals.length; i++) {
+			fTerminals[i] = new EmulatedCardTerminal("Publisher reader " + i,
+					LatencyProfile.NONE);
+			terminals.addTerminal(fTerminals[i]);
+		}
+		SmartCard.setTerminalFactory(EmulatorProvider
+				.getTerminalFactory(terminals));
+		fPublisher = new CardSnapshotPublisher(true);
+		fPublisher.subscribe(new Flow.Subscriber<CardSnapshot>() {
+			public void onSubscribe(final Flow.Subscription subscription) {
+				fSubscription = subscription;
+			}
+
+			public void onNext(final CardSnapshot snapshot) {
+				fReceived.add(snapshot);
+			}
+
+			public void onError(final Throwable error) {
+				fReceived.add(error);
+			}
+
+			public void onComplete() {
+				fReceived.add("complete");
+			}
+		});
+	}
+
+	/**
+	 * Closes the publisher and restores the default terminal factory.
+	 * 
+	 * @throws Exception
+	 *             when the publisher couldn't be closed
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fPublisher.close();
+		SmartCard.setTerminalFactory(null);
+	}
+
+	/**
+	 * Tests that cards are only read when requested.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testBackpressure() throws Exception {
+		fTerminals[0].insertCard(fgImage);
+		fTerminals[1].insertCard(fgImage);
+		Thread.sleep(500);
+		assertEquals(2, fPublisher.getPendingCount());
+		assertEquals(0, fTerminals[0].getAPDUCount()
+				+ fTerminals[1].getAPDUCount());
+
+		fSubscription.request(1);
+		assertTrue(fReceived.poll(10, TimeUnit.SECONDS) instanceof CardSnapshot);
+		assertTrue(fTerminals[0].getAPDUCount() > 0);
+
+		// The second card waits for demand
+		assertNull(fReceived.poll(500, TimeUnit.MILLISECONDS));
+		assertEquals(0, fTerminals[1].getAPDUCount());
+
+		fSubscription.request(1);
+		final CardSnapshot second = (CardSnapshot) fReceived.poll(10,
+				TimeUnit.SECONDS);
+		assertNotNull(second);
+		assertEquals("Specimen", second.getIDData().getName());
+
+		fPublisher.close();
+		assertEquals("complete", fReceived.poll(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Tests that a card removed before it is read is skipped.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testRemovedBeforeRead() throws Exception {
+		fTerminals[0].insertCard(fgImage);
+		Thread.sleep(500);
+		fTerminals[0].removeCard();
+		Thread.sleep(500);
+		assertEquals(0, fPublisher.getPendingCount());
+
+		fSubscription.request(1);
+		fTerminals[1].insertCard(fgImage);
+		assertTrue(fReceived.poll(10, TimeUnit.SECONDS) instanceof CardSnapshot);
+		assertEquals(0, fTerminals[0].getAPDUCount());
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import be.belgium.eid.security.CACertificate;
+import be.belgium.eid.security.Certificate;
+import be.belgium.eid.security.CertificateCache;
+import be.belgium.eid.security.CertificateView;
+import be.belgium.eid.security.HardCodedRootCertificate;
+import be.belgium.eid.security.HardCodedRootCertificateV2;
+import be.belgium.eid.security.RootCertificate;
+import be.belgium.eid.security.TrustAnchorRegistry;
+
+/**
+ * Test the {@link be.belgium.eid.security.Certificate} class, the
+ * {@link be.belgium.eid.security.CertificateCache} and
+ * {@link be.belgium.eid.security.CertificateView} it uses and the
+ * {@link be.belgium.eid.security.TrustAnchorRegistry}.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class CertificateTest {
+
+	/**
+	 * Tests that certificates with the same contents share their parsed
+	 * certificate, and that the contents handed out can't be modified.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSharedCertificates() throws Exception {
+		final Certificate hardCoded = new HardCodedRootCertificate();
+		final Certificate root = new RootCertificate(
+				HardCodedRootCertificate.fgEncodedRootCert);
+		final Certificate other = new RootCertificate(
+				HardCodedRootCertificateV2.fgEncodedRootCert);
+
+		assertSame(hardCoded.getX509Certificate(), root.getX509Certificate());
+		assertSame(root.getX509Certificate(), root.getX509Certificate());
+		assertNotSame(root.getX509Certificate(), other.getX509Certificate());
+
+		final byte[] contents = root.getContents();
+		assertArrayEquals(HardCodedRootCertificate.fgEncodedRootCert, contents);
+		contents[0] = 0;
+		assertArrayEquals(HardCodedRootCertificate.fgEncodedRootCert, root
+				.getContents());
+
+		// The buffer on the contents is read-only
+		final ByteBuffer buffer = root.getContentsBuffer();
+		assertTrue(buffer.isReadOnly());
+		assertEquals(ByteBuffer
+				.wrap(HardCodedRootCertificate.fgEncodedRootCert), buffer);
+	}
+
+	/**
+	 * Tests that the certificates are keyed by their SHA-256 fingerprint.
+	 */
+	@Test
+	public void testFingerprint() {
+		final byte[] contents = { 0x30, 0x03, 0x02, 0x01, 0x05 };
+		final Certificate first = new CACertificate(contents);
+		final int size = CertificateCache.size();
+		final Certificate second = new CACertificate(contents.clone());
+
+		// Unused certificates may have been removed meanwhile
+		assertTrue(CertificateCache.size() <= size);
+
+		assertArrayEquals(CertificateCache.fingerprint(contents), first
+				.getFingerprint());
+		assertArrayEquals(first.getFingerprint(), second.getFingerprint());
+		assertEquals(32, first.getFingerprint().length);
+	}
+
+	/**
+	 * Tests that the built-in roots are trusted, and that other roots can be
+	 * loaded from a directory or a keystore.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testTrustAnchors() throws Exception {
+		final Certificate root = new RootCertificate(
+				HardCodedRootCertificate.fgEncodedRootCert);
+		final Certificate rootV2 = new RootCertificate(
+				HardCodedRootCertificateV2.fgEncodedRootCert);
+		final Certificate other = new CACertificate(new byte[] { 0x30, 0x00 });
+
+		final TrustAnchorRegistry builtIn = TrustAnchorRegistry
+				.withBuiltInRoots();
+		assertEquals(2, builtIn.size());
+		assertTrue(builtIn.isTrusted(root));
+		assertTrue(builtIn.isTrusted(rootV2.getContents()));
+		assertFalse(builtIn.isTrusted(other));
+
+		// Load from a directory
+		final File directory = Files.createTempDirectory("anchors").toFile();
+		final File file = new File(directory, "rootv2.der");
+		final File ignored = new File(directory, "readme.txt");
+		try {
+			Files.write(file.toPath(),
+					HardCodedRootCertificateV2.fgEncodedRootCert);
+			Files.write(ignored.toPath(), "Belgium Root CA2".getBytes());
+			final TrustAnchorRegistry loaded = new TrustAnchorRegistry();
+			assertEquals(1, loaded.loadDirectory(directory));
+			assertTrue(loaded.isTrusted(rootV2));
+			assertFalse(loaded.isTrusted(root));
+		} finally {
+			file.delete();
+			ignored.delete();
+			directory.delete();
+		}
+
+		// Load from a keystore
+		final KeyStore keyStore = KeyStore.getInstance("PKCS12");
+		keyStore.load(null, null);
+		keyStore.setCertificateEntry("root", root.getX509Certificate());
+		final TrustAnchorRegistry stored = new TrustAnchorRegistry();
+		assertEquals(1, stored.load(keyStore));
+		assertTrue(stored.isTrusted(root));
+		assertFalse(stored.isTrusted(rootV2));
+	}
+
+	/**
+	 * Tests that the certificate view decodes the same metadata as the
+	 * parsed X509 certificate.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testCertificateView() throws Exception {
+		for (byte[] encoded : new byte[][] {
+				HardCodedRootCertificate.fgEncodedRootCert,
+				HardCodedRootCertificateV2.fgEncodedRootCert }) {
+			final Certificate root = new RootCertificate(encoded);
+			final X509Certificate x509 = root.getX509Certificate();
+			final CertificateView view = root.getView();
+			assertSame(view, new RootCertificate(encoded).getView());
+
+			assertEquals(x509.getSerialNumber(), view.getSerialNumber());
+			assertEquals(x509.getNotBefore(), view.getNotBefore());
+			assertEquals(x509.getNotAfter(), view.getNotAfter());
+			assertEquals("Belgium Root CA", view.getSubjectAttributes().get(
+					CertificateView.fgCOMMON_NAME).substring(0, 15));
+			assertEquals("BE", view.getIssuerAttributes().get(
+					CertificateView.fgCOUNTRY));
+			assertTrue(view.isSelfIssued());
+			assertTrue(view.getOCSPURLs().isEmpty());
+		}
+
+		// A truncated certificate isn't accepted
+		try {
+			new CertificateView(Arrays.copyOf(
+					HardCodedRootCertificate.fgEncodedRootCert, 100));
+			fail("Truncated certificate accepted");
+		} catch (CertificateParsingException e) {
+			// Expected
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import be.belgium.eid.eidcommon.DER;
+
+/**
+ * Test the {@link be.belgium.eid.eidcommon.DER} class.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class DERTest {
+
+	/** Data needed for the tests */
+	private final byte[] fShortForm = { 0x30, 0x03, 0x02, 0x01, 0x05 };
+	private final byte[] fLongForm = { 0x30, (byte) 0x82, 0x03, (byte) 0xA5,
+			(byte) 0xA0 };
+	private final byte[] fIndefinite = { 0x30, (byte) 0x80, 0x02, 0x01, 0x05,
+			0x00, 0x00 };
+	private final byte[] fNotMinimal = { 0x30, (byte) 0x81, 0x03, 0x02, 0x01,
+			0x05 };
+	private final byte[] fFCP = { 0x62, 0x0B, (byte) 0x82, 0x01, 0x01,
+			(byte) 0x80, 0x02, 0x0B, (byte) 0xB8, (byte) 0x83, 0x02, 0x40,
+			0x35 };
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidcommon.DER#getHeaderLength(byte[], int, int)}.
+	 */
+	@Test
+	public void testGetHeaderLength() {
+		assertEquals(2, DER.getHeaderLength(fShortForm, 0, fShortForm.length));
+		assertEquals(2, DER.getHeaderLength(fShortForm, 2, fShortForm.length));
+		assertEquals(4, DER.getHeaderLength(fLongForm, 0, fLongForm.length));
+
+		// Incomplete headers
+		assertEquals(-1, DER.getHeaderLength(fLongForm, 0, 3));
+		assertEquals(-1, DER.getHeaderLength(fShortForm, 0, 1));
+		assertEquals(-1, DER.getHeaderLength(fShortForm, 5, 5));
+
+		// Indefinite lengths are not DER
+		assertEquals(-1, DER.getHeaderLength(fIndefinite, 0,
+				fIndefinite.length));
+
+		// Multiple byte tags
+		final byte[] multiByteTag = { 0x1F, (byte) 0x81, 0x01, 0x01, 0x00 };
+		assertEquals(4, DER.getHeaderLength(multiByteTag, 0,
+				multiByteTag.length));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidcommon.DER#getContentLength(byte[], int, int)}.
+	 */
+	@Test
+	public void testGetContentLength() {
+		assertEquals(3, DER.getContentLength(fShortForm, 0, fShortForm.length));
+		assertEquals(1, DER.getContentLength(fShortForm, 2, fShortForm.length));
+		assertEquals(0x03A5, DER.getContentLength(fLongForm, 0,
+				fLongForm.length));
+
+		// Lengths that are not encoded in the shortest way are rejected
+		assertEquals(-1, DER.getContentLength(fNotMinimal, 0,
+				fNotMinimal.length));
+		final byte[] leadingZero = { 0x30, (byte) 0x82, 0x00, (byte) 0x90 };
+		assertEquals(-1, DER.getContentLength(leadingZero, 0,
+				leadingZero.length));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidcommon.DER#getEncodedLength(byte[], int, int)}.
+	 */
+	@Test
+	public void testGetEncodedLength() {
+		assertEquals(5, DER.getEncodedLength(fShortForm, 0, fShortForm.length));
+
+		// The contents don't need to be available
+		assertEquals(0x03A9, DER.getEncodedLength(fLongForm, 0,
+				fLongForm.length));
+		assertEquals(-1, DER.getEncodedLength(fIndefinite, 0,
+				fIndefinite.length));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidcommon.DER#findElement(byte[], int, int, int)}.
+	 */
+	@Test
+	public void testFindElement() {
+		assertEquals(5, DER.findElement(fFCP, 2, fFCP.length, 0x80));
+		assertEquals(2, DER.findElement(fFCP, 2, fFCP.length, 0x82));
+		assertEquals(9, DER.findElement(fFCP, 2, fFCP.length, 0x83));
+		assertEquals(-1, DER.findElement(fFCP, 2, fFCP.length, 0x81));
+
+		// Elements that don't fit in the range aren't found
+		assertEquals(-1, DER.findElement(fFCP, 2, fFCP.length - 1, 0x83));
+	}
+}
@@ -25,7 +25,10 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 @RunWith(value = Suite.class)
-@Suite.SuiteClasses(value = { ByteConverterTest.class, TLVTest.class })
+@Suite.SuiteClasses(value = { ByteConverterTest.class, TLVTest.class,
+		DERTest.class, BeIDEmulatorTest.class, SmartCardEmulatorTest.class,
+		ReaderPoolTest.class, CardMonitorTest.class,
+		CardSnapshotPublisherTest.class, CertificateTest.class })
 /**
  * The EIDLibTests class contains the test suite with all the tests of the eID
  * library. These tests however are highly incomplete and are only provided for
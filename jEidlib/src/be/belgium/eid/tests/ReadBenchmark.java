@@ -0,0 +1,145 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import be.belgium.eid.eidlib.BeID;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.emulator.TestCardGenerator;
+import be.belgium.eid.objects.IDPhoto;
+
+/**
+ * The read benchmark measures the cost of the most important read operations
+ * of the library against an emulated card for every predefined latency
+ * profile. The cost is expressed in number of APDUs, bytes, exclusive
+ * transactions and the latency according to the profile, which makes the
+ * results reproducible and comparable between read strategies. When started
+ * with the argument <i>--real-time</i> the latency is actually waited for and
+ * the wall clock time is reported as well. The argument <i>--negotiate</i>
+ * enables the negotiation of the READ BINARY block length and the argument
+ * <i>--exact</i> enables exact length reads.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class ReadBenchmark {
+
+	/** Contains the names of the measured operations */
+	private final static String[] fgOPERATIONS = { "readFile(photo)",
+			"getIDData", "getCertificateChain", "readAll" };
+
+	/** Contains the number of times every operation is repeated */
+	private final static int fgITERATIONS = 5;
+
+	/**
+	 * Runs the benchmark.
+	 * 
+	 * @param args
+	 *            may contain <i>--real-time</i> to wait for the latency and
+	 *            <i>--negotiate</i> to negotiate the block length and
+	 *            <i>--exact</i> to read files with their exact length
+	 * @throws Exception
+	 *             when the benchmark failed
+	 */
+	public static void main(final String[] args) throws Exception {
+		boolean realTime = false;
+		boolean negotiate = false;
+		boolean exact = false;
+		for (String arg : args) {
+			realTime |= "--real-time".equals(arg);
+			negotiate |= "--negotiate".equals(arg);
+			exact |= "--exact".equals(arg);
+		}
+		final EmulatedCardImage image = new TestCardGenerator().generate();
+		final LatencyProfile[] profiles = { LatencyProfile.USB_CCID_FAST,
+				LatencyProfile.USB_CCID_TYPICAL, LatencyProfile.USB_CCID_SLOW };
+
+		System.out.println(String.format("%-22s %-20s %6s %7s %4s %10s %10s",
+				"Profile", "Operation", "APDUs", "Bytes", "Tx", "Sim (ms)",
+				"Wall (ms)"));
+		for (LatencyProfile profile : profiles) {
+			for (int op = 0; op < fgOPERATIONS.length; op++) {
+				// Insert the card in a fresh reader
+				final EmulatedCardTerminals terminals = new EmulatedCardTerminals();
+				final EmulatedCardTerminal terminal = new EmulatedCardTerminal(
+						"Benchmark reader", profile);
+				terminal.setSimulateDelays(realTime);
+				terminals.addTerminal(terminal);
+				terminal.insertCard(image);
+				SmartCard.setTerminalFactory(EmulatorProvider
+						.getTerminalFactory(terminals));
+
+				final BeID eID = new BeID(true);
+				eID.setBlockLengthNegotiation(negotiate);
+				eID.setExactLengthReads(exact);
+				terminal.resetStatistics();
+
+				// Reconnect every time, so that nothing is read from the cache
+				final long start = System.nanoTime();
+				for (int i = 0; i < fgITERATIONS; i++) {
+					eID.connect();
+					run(eID, op);
+					eID.disconnect();
+				}
+				final long wall = System.nanoTime() - start;
+
+				System.out.println(String.format(
+						"%-22s %-20s %6d %7d %4d %10.1f %10.1f", profile
+								.getName(), fgOPERATIONS[op], terminal
+								.getAPDUCount()
+								/ fgITERATIONS, terminal.getByteCount()
+								/ fgITERATIONS, terminal.getTransactionCount()
+								/ fgITERATIONS, terminal.getLatencyNanos()
+								/ 1e6 / fgITERATIONS, wall / 1e6
+								/ fgITERATIONS));
+			}
+		}
+
+		SmartCard.setTerminalFactory(null);
+	}
+
+	/**
+	 * Runs the operation with the given index once.
+	 */
+	private static void run(final BeID eID, final int op) throws Exception {
+		switch (op) {
+		case 0:
+			eID.readFile(new byte[] { IDPhoto.fgDFID[0], IDPhoto.fgDFID[1],
+					IDPhoto.fgDataTag, IDPhoto.fgDataTagPHOTO },
+					IDPhoto.fgMAX_RAW_LEN);
+			break;
+		case 1:
+			eID.getIDData();
+			break;
+		case 2:
+			eID.getCertificateChain();
+			break;
+		default:
+			eID.readAll();
+			break;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import be.belgium.eid.eidlib.ReaderPool;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.emulator.TestCardGenerator;
+import be.belgium.eid.exceptions.CardNotFoundException;
+import be.belgium.eid.exceptions.EIDException;
+
+/**
+ * Tests the {@link be.belgium.eid.eidlib.ReaderPool} class with several
+ * emulated readers.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class ReaderPoolTest {
+
+	/** Contains the number of emulated readers */
+	private final static int fgREADERS = 3;
+
+	/** Contains the image of the emulated cards, generated once */
+	private static EmulatedCardImage fgImage;
+
+	/** Contains the image of another card, generated once */
+	private static EmulatedCardImage fgOtherImage;
+
+	/** Contains the emulated readers */
+	private final List<EmulatedCardTerminal> fTerminals = new ArrayList<EmulatedCardTerminal>();
+
+	/** Contains the pool to test */
+	private ReaderPool fPool;
+
+	/**
+	 * Generates the image of the test cards.
+	 * 
+	 * @throws Exception
+	 *             when the card couldn't be generated
+	 */
+	@BeforeClass
+	public static void generateCard() throws Exception {
+		fgImage = new TestCardGenerator().generate();
+		final TestCardGenerator other = new TestCardGenerator();
+		other.setSeed(1);
+		fgOtherImage = other.generate();
+	}
+
+	/**
+	 * Inserts a test card in every emulated reader and creates the pool.
+	 * 
+	 * @throws Exception
+	 *             when the pool couldn't be created
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final EmulatedCardTerminals terminals = new EmulatedCardTerminals();
+		for (int i = 0; i < fgREADERS; i++) {
+			final EmulatedCardTerminal terminal = new EmulatedCardTerminal(
+					"Pool reader " + i, LatencyProfile.NONE);
+			terminals.addTerminal(terminal);
+			terminal.insertCard(fgImage);
+			fTerminals.add(terminal);
+		}
+		SmartCard.setTerminalFactory(EmulatorProvider
+				.getTerminalFactory(terminals));
+		fPool = new ReaderPool(true);
+	}
+
+	/**
+	 * Closes the pool and restores the default terminal factory.
+	 * 
+	 * @throws Exception
+	 *             when the pool couldn't be closed
+	 */
+	@After
+	public void tearDown() throws Exception {
+		fPool.close();
+		SmartCard.setTerminalFactory(null);
+	}
+
+	/**
+	 * Tests that the readers run their jobs in parallel.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testParallel() throws Exception {
+		assertEquals(fgREADERS, fPool.getReaderNames().size());
+
+		// Every job waits until all jobs have read their card
+		final CountDownLatch latch = new CountDownLatch(fgREADERS);
+		final List<CompletableFuture<Boolean>> futures = new ArrayList<CompletableFuture<Boolean>>();
+		for (String name : fPool.getReaderNames()) {
+			futures.add(fPool.submit(name, eID -> {
+				eID.getIDData();
+				latch.countDown();
+				try {
+					return latch.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					return false;
+				}
+			}));
+		}
+		for (CompletableFuture<Boolean> future : futures) {
+			assertTrue(future.get(10, TimeUnit.SECONDS));
+		}
+
+		assertEquals(fgREADERS, fPool.getSubmittedCount());
+		assertEquals(fgREADERS, fPool.getCompletedCount());
+		assertEquals(0, fPool.getQueueDepth());
+		assertTrue(fPool.getThroughput() > 0);
+	}
+
+	/**
+	 * Tests that a job submitted without reader runs on a reader holding a
+	 * card and that failures are counted.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSubmitToReaderWithCard() throws Exception {
+		fTerminals.get(0).removeCard();
+		fTerminals.get(2).removeCard();
+		final String reader = fPool.submit(eID -> {
+			eID.connect();
+			try {
+				return eID.getConnectedReader().getName();
+			} catch (CardNotFoundException e) {
+				throw new EIDException(e);
+			}
+		}).get(5, TimeUnit.SECONDS);
+		assertEquals("Pool reader 1", reader);
+
+		// A job on an empty reader fails
+		try {
+			fPool.submit("Pool reader 0", eID -> eID.getIDData()).get(5,
+					TimeUnit.SECONDS);
+			fail("Read from an empty reader");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof EIDException);
+		}
+		assertEquals(1, fPool.getFailedCount());
+	}
+
+	/**
+	 * Tests that a job submitted for a chip number runs on the reader holding
+	 * that card, and fails when no reader holds it.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSubmitToReaderWithChipNumber() throws Exception {
+		fTerminals.get(1).removeCard();
+		fTerminals.get(1).insertCard(fgOtherImage);
+		final byte[] chipNumber = fPool.submit("Pool reader 1",
+				eID -> eID.getIDVersionInformation().getChipNumber()).get(5,
+				TimeUnit.SECONDS);
+
+		final String reader = fPool.submit(chipNumber, eID -> {
+			try {
+				return eID.getConnectedReader().getName();
+			} catch (CardNotFoundException e) {
+				throw new EIDException(e);
+			}
+		}).get(5, TimeUnit.SECONDS);
+		assertEquals("Pool reader 1", reader);
+
+		// No reader holds a card with another chip number
+		chipNumber[0] ^= 1;
+		try {
+			fPool.submit(chipNumber, eID -> eID.getIDData()).get(5,
+					TimeUnit.SECONDS);
+			fail("Found a card that isn't inserted");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(3, fPool.getSubmittedCount());
+		assertEquals(1, fPool.getFailedCount());
+		assertEquals(0, fPool.getQueueDepth());
+	}
+}
@@ -0,0 +1,698 @@
+/*
+ * 5. LICENSE ISSUES 
+ * The eID Toolkit uses several third-party libraries or code. 
+ * Redistributions in any form of the eID Toolkit  even embedded in a compiled application  
+ * must reproduce all the eID Toolkit and third-partys copyright notices, list of conditions, 
+ * disclaimers, and any other materials provided with the distribution. 
+ * 
+ * 5.1 Disclaimer 
+ * This eID Toolkit is provided by the Belgian Government as is, and any expressed or implied 
+ * warranties, including, but not limited to, the implied warranties of merchantability and fitness 
+ * for a particular purpose are disclaimed.  In no event shall the Belgian Government or its 
+ * contributors be liable for any direct, indirect, incidental, special, exemplary, or consequential 
+ * damages (including, but not limited to, procurement of substitute goods or services; loss of use, 
+ * data, or profits; or business interruption) however caused and on any theory of liability, whether 
+ * in contract, strict liability, or tort (including negligence or otherwise) arising in any way out of 
+ * the use of this Toolkit, even if advised of the possibility of such damage. 
+ * However, the Belgian Government will ensure the maintenance of the Toolkit  that is, bug 
+ * fixing, and support of new versions of the Electronic Identity card.
+ * 
+ * Source: DeveloperGuide.pdf
+ */
+package be.belgium.eid.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.smartcardio.CardException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import be.belgium.eid.eidlib.CardSession;
+import be.belgium.eid.eidlib.ReaderProfile;
+import be.belgium.eid.eidlib.ReaderProfiles;
+import be.belgium.eid.eidlib.SmartCard;
+import be.belgium.eid.emulator.EmulatedCardImage;
+import be.belgium.eid.emulator.EmulatedCardTerminal;
+import be.belgium.eid.emulator.EmulatedCardTerminals;
+import be.belgium.eid.emulator.EmulatorProvider;
+import be.belgium.eid.emulator.LatencyProfile;
+import be.belgium.eid.exceptions.CardNotFoundException;
+
+/**
+ * Tests the file reading of the {@link be.belgium.eid.eidlib.SmartCard} class
+ * against emulated cards and readers with different capabilities.
+ * 
+ * @author Kristof Overdulve
+ * @version 1.0.0 18 Oct 2026
+ */
+public class SmartCardEmulatorTest {
+
+	/** Contains the path of the test file, relative to the master file */
+	private final static byte[] fgFILE = { (byte) 0xDF, (byte) 0x01,
+			(byte) 0x40, (byte) 0x35 };
+
+	/** Contains the absolute path of the test file */
+	private final static byte[] fgPATH = { (byte) 0x3F, (byte) 0x00,
+			(byte) 0xDF, (byte) 0x01, (byte) 0x40, (byte) 0x35 };
+
+	/** Contains the length of the test file */
+	private final static int fgFILE_LENGTH = 3000;
+
+	/** Contains the number of readers created, to keep reader names unique */
+	private static int fgReaderCount = 0;
+
+	/** Contains the contents of the test file */
+	private byte[] fContents;
+
+	/** Contains the image of the emulated card */
+	private EmulatedCardImage fImage;
+
+	/** Contains the emulated readers */
+	private EmulatedCardTerminals fTerminals;
+
+	/** Contains the smart card to test */
+	private SmartCard fCard;
+
+	/**
+	 * Creates a card image with a single test file.
+	 */
+	@Before
+	public void setUp() {
+		fContents = new byte[fgFILE_LENGTH];
+		new Random(42).nextBytes(fContents);
+		fImage = new EmulatedCardImage();
+		fImage.putFile(fgPATH, fContents);
+
+		fTerminals = new EmulatedCardTerminals();
+		SmartCard.setTerminalFactory(EmulatorProvider
+				.getTerminalFactory(fTerminals));
+		fCard = new SmartCard();
+	}
+
+	/**
+	 * Disconnects and restores the default terminal factory.
+	 * 
+	 * @throws Exception
+	 *             when the disconnection failed
+	 */
+	@After
+	public void tearDown() throws Exception {
+		if (fCard.isConnected()) {
+			fCard.disconnect();
+		}
+		SmartCard.setTerminalFactory(null);
+		ReaderProfiles.setAutoDetection(true);
+	}
+
+	/**
+	 * Attaches a new reader with the given capabilities and inserts the card.
+	 */
+	private EmulatedCardTerminal insertCard(final boolean extendedReader) {
+		final EmulatedCardTerminal terminal = new EmulatedCardTerminal(
+				"Emulated reader " + (fgReaderCount++), new LatencyProfile(
+						"Test", 0, 0, extendedReader));
+		fTerminals.addTerminal(terminal);
+		terminal.insertCard(fImage);
+
+		return terminal;
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} without
+	 * block length negotiation.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileDefaultBlockLength() throws Exception {
+		fImage.setExtendedLengthSupported(true);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(SmartCard.fgDEFAULT_BLOCK_LENGTH, fCard.getBlockLength());
+
+		// One SELECT, 13 READ BINARY and one re-read of the last block
+		assertEquals(15, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with a
+	 * card and reader that both support extended length APDUs.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileExtendedLength() throws Exception {
+		fImage.setExtendedLengthSupported(true);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(0x10000, fCard.getBlockLength());
+
+		// One SELECT and a single READ BINARY
+		assertEquals(2, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with a
+	 * reader that doesn't transport extended length APDUs.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileReaderWithoutExtendedLength() throws Exception {
+		fImage.setExtendedLengthSupported(true);
+		insertCard(false);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(0x100, fCard.getBlockLength());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with a
+	 * card that rejects extended length APDUs.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileCardWithoutExtendedLength() throws Exception {
+		insertCard(true);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(0x100, fCard.getBlockLength());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with a
+	 * card that returns less than 256 bytes to a short APDU.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileCardWithShortMaximumLength() throws Exception {
+		fImage.setMaxShortResponseLength(0xFA);
+		insertCard(true);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(SmartCard.fgDEFAULT_BLOCK_LENGTH, fCard.getBlockLength());
+		fCard.disconnect();
+
+		// The length the card rejected isn't remembered
+		fCard = new SmartCard();
+		fCard.setBlockLengthNegotiation(true);
+		fCard.connectCard();
+		assertEquals(SmartCard.fgDEFAULT_BLOCK_LENGTH, fCard.getBlockLength());
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with an
+	 * output buffer that is smaller than the file.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileTruncated() throws Exception {
+		fImage.setExtendedLengthSupported(true);
+		insertCard(true);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+
+		final byte[] read = fCard.readFile(fgFILE, 1000);
+		assertEquals(1000, read.length);
+		for (int i = 0; i < read.length; i++) {
+			assertEquals(fContents[i], read[i]);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#setBlockLengthNegotiation(boolean)}
+	 * that checks whether the negotiated block length is remembered for the
+	 * reader and card.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testNegotiatedBlockLengthRemembered() throws Exception {
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setBlockLengthNegotiation(true);
+		fCard.readFile(fgFILE, 4096);
+		fCard.disconnect();
+
+		// A new connection to the same reader and card doesn't probe again
+		terminal.resetStatistics();
+		fCard = new SmartCard();
+		fCard.setBlockLengthNegotiation(true);
+		fCard.connectCard();
+		assertEquals(0x100, fCard.getBlockLength());
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+
+		// One SELECT, 12 READ BINARY and one re-read of the last block
+		assertEquals(14, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with exact
+	 * length reads on a card that returns the file control information.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileExactLengthFromFCI() throws Exception {
+		fImage.setFCISupported(true);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setExactLengthReads(true);
+
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+
+		// One SELECT and 13 READ BINARY, without reading past the end
+		assertEquals(14, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with exact
+	 * length reads of a DER encoded file on a card that doesn't return the
+	 * file control information.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileExactLengthFromDER() throws Exception {
+		fContents[0] = (byte) 0x30;
+		fContents[1] = (byte) 0x82;
+		fContents[2] = (byte) ((fgFILE_LENGTH - 4) >> 8);
+		fContents[3] = (byte) (fgFILE_LENGTH - 4);
+		fImage.putFile(fgPATH, fContents);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setExactLengthReads(true);
+
+		// The first read finds out that the card doesn't return the FCI
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(15, terminal.getAPDUCount());
+
+		// One SELECT and 13 READ BINARY, without reading past the end
+		terminal.resetStatistics();
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(14, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} with exact
+	 * length reads of a file that is shorter than one block.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileExactLengthShortFile() throws Exception {
+		fImage.setFCISupported(true);
+		final byte[] path = { (byte) 0x3F, (byte) 0x00, (byte) 0xDF,
+				(byte) 0x01, (byte) 0x40, (byte) 0x32 };
+		final byte[] contents = { 0x01, 0x02, 0x03 };
+		fImage.putFile(path, contents);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setExactLengthReads(true);
+
+		assertArrayEquals(contents, fCard.readFile(new byte[] { (byte) 0xDF,
+				(byte) 0x01, (byte) 0x40, (byte) 0x32 }, 4096));
+		assertEquals(2, terminal.getAPDUCount());
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.ReaderProfiles#getSettleDelay(String, byte[])}.
+	 */
+	@Test
+	public void testReaderProfiles() {
+		final byte[] atr = fImage.getATR();
+		final ReaderProfile byName = new ReaderProfile("Slow reader", 30);
+		final ReaderProfile byATR = new ReaderProfile(null, new byte[] {
+				atr[0], atr[1] }, 20);
+		assertNull(ReaderProfiles.getProfile("Slow reader 0", atr));
+		assertEquals(0, ReaderProfiles.getSettleDelay("Slow reader 0", atr));
+
+		ReaderProfiles.addProfile(byName);
+		ReaderProfiles.addProfile(byATR);
+		try {
+			assertEquals(30, ReaderProfiles.getSettleDelay("Slow reader 0", atr));
+			assertEquals(20, ReaderProfiles.getSettleDelay("Other reader", atr));
+			assertEquals(0, ReaderProfiles.getSettleDelay("Other reader",
+					new byte[] { 0x3B }));
+		} finally {
+			ReaderProfiles.removeProfile(byName);
+			ReaderProfiles.removeProfile(byATR);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} on a
+	 * reader that needs time to settle, which is detected automatically.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileSettleDelayDetection() throws Exception {
+		final EmulatedCardTerminal terminal = insertCard(true);
+		terminal.setSettleTime(40);
+		fCard.connectCard();
+		final byte[] atr = fCard.getATR().getBytes();
+
+		// The first read doesn't need to wait for anything
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(0, ReaderProfiles.getSettleDelay(terminal.getName(), atr));
+
+		// The second read fails and is retried after backing off
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertTrue(ReaderProfiles.getSettleDelay(terminal.getName(), atr) >= 40);
+
+		// From now on the reader is given the time to settle
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.ReaderProfiles#reportTransmissionSuccess(String)}.
+	 */
+	@Test
+	public void testLearnedSettleDelayDecays() {
+		final String name = "Glitching reader";
+		final byte[] atr = new byte[0];
+		assertTrue(ReaderProfiles.reportTransmissionFailure(name));
+		assertTrue(ReaderProfiles.reportTransmissionFailure(name));
+		assertTrue(ReaderProfiles.reportTransmissionFailure(name));
+		assertFalse(ReaderProfiles.reportTransmissionFailure(name));
+		assertEquals(100, ReaderProfiles.getSettleDelay(name, atr));
+
+		// A failure starts counting the successful reads again
+		for (int i = 1; i < ReaderProfiles.fgDECAY_READS; i++) {
+			ReaderProfiles.reportTransmissionSuccess(name);
+		}
+		assertFalse(ReaderProfiles.reportTransmissionFailure(name));
+		for (int i = 1; i < ReaderProfiles.fgDECAY_READS; i++) {
+			ReaderProfiles.reportTransmissionSuccess(name);
+		}
+		assertEquals(100, ReaderProfiles.getSettleDelay(name, atr));
+
+		// The delay is halved until it is forgotten
+		ReaderProfiles.reportTransmissionSuccess(name);
+		assertEquals(50, ReaderProfiles.getSettleDelay(name, atr));
+		for (int i = 0; i < ReaderProfiles.fgDECAY_READS; i++) {
+			ReaderProfiles.reportTransmissionSuccess(name);
+		}
+		assertEquals(25, ReaderProfiles.getSettleDelay(name, atr));
+		for (int i = 0; i < ReaderProfiles.fgDECAY_READS; i++) {
+			ReaderProfiles.reportTransmissionSuccess(name);
+		}
+		assertEquals(0, ReaderProfiles.getSettleDelay(name, atr));
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], int)} on a
+	 * reader that needs time to settle without auto detection.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileWithoutSettleDelayDetection() throws Exception {
+		final EmulatedCardTerminal terminal = insertCard(true);
+		terminal.setSettleTime(1000);
+		ReaderProfiles.setAutoDetection(false);
+		fCard.connectCard();
+
+		fCard.readFile(fgFILE, 4096);
+		try {
+			fCard.readFile(fgFILE, 4096);
+			fail("The reader should not have settled yet");
+		} catch (CardException e) {
+			// Expected
+		}
+		assertEquals(0, ReaderProfiles.getSettleDelay(terminal.getName(), fCard
+				.getATR().getBytes()));
+	}
+
+	/**
+	 * Tests that the reader isn't held while it is given the time to settle,
+	 * so that another connection to the same reader can use it meanwhile.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSettleDelayReleasesReader() throws Exception {
+		final EmulatedCardTerminal terminal = insertCard(true);
+		final ReaderProfile profile = new ReaderProfile(terminal.getName(),
+				1000);
+		ReaderProfiles.addProfile(profile);
+		final SmartCard other = new SmartCard();
+		try {
+			fCard.connectCard(terminal.getName());
+			other.connectCard(terminal.getName());
+
+			final byte[][] read = new byte[1][];
+			final Thread reader = new Thread() {
+				public void run() {
+					try {
+						read[0] = fCard.readFile(fgFILE, 4096);
+					} catch (Exception e) {
+						// Checked below
+					}
+				}
+			};
+			terminal.resetStatistics();
+			reader.start();
+			while (reader.isAlive() && (terminal.getAPDUCount() < 14)) {
+				Thread.sleep(5);
+			}
+
+			// The file has been read, the reader settles
+			other.setTimeout(500);
+			other.beginTransaction();
+			other.endTransaction();
+			assertTrue(reader.isAlive());
+
+			reader.join(5000);
+			assertArrayEquals(fContents, read[0]);
+		} finally {
+			ReaderProfiles.removeProfile(profile);
+			other.disconnect();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link be.belgium.eid.eidlib.SmartCard#readFile(byte[], ByteBuffer)}.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testReadFileIntoBuffer() throws Exception {
+		insertCard(true);
+		fCard.connectCard();
+
+		// Read behind the data already in the buffer
+		final ByteBuffer heap = ByteBuffer.allocate(4096);
+		heap.put((byte) 0x55);
+		assertEquals(fgFILE_LENGTH, fCard.readFile(fgFILE, heap));
+		assertEquals(1 + fgFILE_LENGTH, heap.position());
+		for (int i = 0; i < fgFILE_LENGTH; i++) {
+			assertEquals(fContents[i], heap.get(1 + i));
+		}
+
+		// Reuse a direct buffer
+		final ByteBuffer direct = ByteBuffer.allocateDirect(4096);
+		for (int j = 0; j < 2; j++) {
+			direct.clear();
+			assertEquals(fgFILE_LENGTH, fCard.readFile(fgFILE, direct));
+			direct.flip();
+			final byte[] read = new byte[direct.remaining()];
+			direct.get(read);
+			assertArrayEquals(fContents, read);
+		}
+
+		// Never read more than fits in the buffer
+		final ByteBuffer small = ByteBuffer.allocate(1000);
+		assertEquals(1000, fCard.readFile(fgFILE, small));
+		assertEquals(fContents[999], small.get(999));
+	}
+
+	/**
+	 * Test method for {@link be.belgium.eid.eidlib.SmartCard#openSession()}
+	 * that checks whether another thread using the same connection waits
+	 * until the session is closed.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSessionExcludesOtherThreads() throws Exception {
+		insertCard(true);
+		fCard.connectCard();
+
+		final byte[][] read = new byte[1][];
+		final CardSession session = fCard.openSession();
+		final Thread reader = new Thread() {
+			public void run() {
+				try {
+					read[0] = fCard.readFile(fgFILE, 4096);
+				} catch (Exception e) {
+					// Checked below
+				}
+			}
+		};
+		reader.start();
+		try {
+			reader.join(200);
+			assertTrue(reader.isAlive());
+			assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		} finally {
+			session.close();
+		}
+
+		reader.join(5000);
+		assertFalse(reader.isAlive());
+		assertArrayEquals(fContents, read[0]);
+	}
+
+	/**
+	 * Tests that the transaction of a thread ended by a disconnect from
+	 * another thread sends no more commands, not even after reconnecting,
+	 * and that ending it afterwards doesn't fail.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testTransactionEndedByDisconnect() throws Exception {
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+
+		fCard.beginTransaction();
+		try {
+			final Thread other = new Thread() {
+				public void run() {
+					try {
+						fCard.disconnect();
+						fCard.connectCard();
+					} catch (Exception e) {
+						// Checked below
+					}
+				}
+			};
+			other.start();
+			other.join(5000);
+			assertTrue(fCard.isConnected());
+
+			terminal.resetStatistics();
+			try {
+				fCard.readFile(fgFILE, 4096);
+				fail("The ended transaction read from the new connection");
+			} catch (CardNotFoundException e) {
+				assertEquals(
+						CardNotFoundException.CardNotFoundType.NOT_CONNECTED,
+						e.getType());
+			}
+			assertEquals(0, terminal.getAPDUCount());
+		} finally {
+			fCard.endTransaction();
+		}
+
+		// Once ended, the thread can use the new connection
+		assertFalse(fCard.isInTransaction());
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+	}
+
+	/**
+	 * Tests that a file selected before in the same session isn't selected
+	 * again and that another file in the same directory is selected by its
+	 * identifier only.
+	 * 
+	 * @throws Exception
+	 *             when the test failed
+	 */
+	@Test
+	public void testSelectionTracked() throws Exception {
+		fImage.setFCISupported(true);
+		final byte[] sibling = { (byte) 0xDF, (byte) 0x01, (byte) 0x40,
+				(byte) 0x32 };
+		final byte[] contents = { 0x01, 0x02, 0x03 };
+		fImage.putFile(new byte[] { (byte) 0x3F, (byte) 0x00, (byte) 0xDF,
+				(byte) 0x01, (byte) 0x40, (byte) 0x32 }, contents);
+		final EmulatedCardTerminal terminal = insertCard(true);
+		fCard.connectCard();
+		fCard.setExactLengthReads(true);
+
+		// Outside a session the file is selected by its full path
+		assertArrayEquals(contents, fCard.readFile(sibling, 4096));
+		final long pathBytes = terminal.getByteCount();
+
+		final CardSession session = fCard.openSession();
+		try {
+			fCard.readFile(fgFILE, 4096);
+			terminal.resetStatistics();
+
+			// The file is still selected, only the 13 READ BINARY are sent
+			assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+			assertEquals(13, terminal.getAPDUCount());
+
+			// The sibling is selected by its identifier, which saves 4 bytes
+			terminal.resetStatistics();
+			assertArrayEquals(contents, fCard.readFile(sibling, 4096));
+			assertEquals(2, terminal.getAPDUCount());
+			assertEquals(pathBytes - 4, terminal.getByteCount());
+		} finally {
+			session.close();
+		}
+
+		// Other applications may have changed the selection meanwhile
+		terminal.resetStatistics();
+		assertArrayEquals(fContents, fCard.readFile(fgFILE, 4096));
+		assertEquals(14, terminal.getAPDUCount());
+	}
+}